@@ -1,14 +1,23 @@
 package com.lizard.fastdb;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.lizard.fastdb.connection.PoolMetrics;
+import com.lizard.fastdb.connection.PoolSnapshot;
 import com.lizard.fastdb.datasource.DataSource;
 import com.lizard.fastdb.datasource.DataSourceCache;
 import com.lizard.fastdb.datasource.DataSourceManager;
 import com.lizard.fastdb.datasource.DataSourceUtil;
+import com.lizard.fastdb.jdbc.AsyncJdbcHandler;
+import com.lizard.fastdb.jdbc.AsyncJdbcHandlerImpl;
 import com.lizard.fastdb.jdbc.JdbcHandler;
 import com.lizard.fastdb.jdbc.JdbcHandlerImpl;
+import com.lizard.fastdb.stat.SQLStatistics;
 
 /**
  * 数据库工厂
@@ -70,6 +79,29 @@ public final class DBFactory
 		return createJdbcHandler(datasource);
 	}
 
+	/**
+	 * 创建指定名称的数据源的异步 JdbcHandler，操作在数据源的异步线程池中执行，立即返回 JdbcFuture
+	 * 
+	 * @param datasourceName 数据源名称
+	 * @return AsyncJdbcHandler
+	 */
+	public static AsyncJdbcHandler createAsync(String datasourceName)
+	{
+		JdbcHandler jdbcHandler = create(datasourceName);
+		return jdbcHandler == null ? null : new AsyncJdbcHandlerImpl((JdbcHandlerImpl) jdbcHandler);
+	}
+
+	/**
+	 * 创建当前数据源对象的异步 JdbcHandler
+	 * 
+	 * @param datasource 动态DataSource配置
+	 * @return AsyncJdbcHandler
+	 */
+	public static AsyncJdbcHandler createAsync(DataSource datasource)
+	{
+		return new AsyncJdbcHandlerImpl((JdbcHandlerImpl) create(datasource));
+	}
+
 	/**
 	 * 根据数据源对象创建JdbcHandler对象
 	 * 
@@ -99,6 +131,7 @@ public final class DBFactory
 			return;
 		}
 		
+		AsyncJdbcHandlerImpl.shutdown(ds_name);
 		DataSourceManager.destroy(ds_name.toLowerCase().trim());
 	}
 	
@@ -122,4 +155,59 @@ public final class DBFactory
 		
 		DataSourceManager.shutdown(ds_name.toLowerCase().trim());
 	}
+
+	/**
+	 * 获得指定数据源连接池的指标快照：连接数、等待线程数、借出耗时分布、借出失败和连接泄漏等
+	 * 
+	 * @param ds_name 数据源名称或软连接名称
+	 * @return 指标快照，数据源不存在时返回null
+	 */
+	public static PoolSnapshot getPoolSnapshot(String ds_name)
+	{
+		if (ds_name == null || ds_name.trim().length() == 0)
+		{
+			logger.warn("DataSource name can't be null!");
+			return null;
+		}
+
+		PoolMetrics metrics = PoolMetrics.get(ds_name.toLowerCase().trim());
+		return metrics == null ? null : metrics.getSnapshot();
+	}
+
+	/**
+	 * 获得全部已初始化的数据源连接池的指标快照
+	 * 
+	 * @return 数据源名称 与 指标快照 映射
+	 */
+	public static Map<String, PoolSnapshot> getPoolSnapshots()
+	{
+		Map<String, PoolSnapshot> snapshots = new LinkedHashMap<String, PoolSnapshot>();
+		for (String ds_name : DataSourceCache.CONNECTIONPROVIDER_POOL.keySet())
+		{
+			PoolMetrics metrics = PoolMetrics.get(ds_name);
+			if (metrics != null)
+			{
+				snapshots.put(ds_name, metrics.getSnapshot());
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * 获得指定数据源的SQL执行统计：按SQL指纹统计的执行次数、耗时分布、行数、错误和慢SQL次数
+	 * 
+	 * @param ds_name 数据源名称或软连接名称
+	 * @return SQL执行统计，数据源不存在或还没有创建过 JdbcHandler 时返回null
+	 */
+	public static SQLStatistics getSQLStatistics(String ds_name)
+	{
+		if (ds_name == null || ds_name.trim().length() == 0)
+		{
+			logger.warn("DataSource name can't be null!");
+			return null;
+		}
+
+		Properties ds = DataSourceCache.getDataSource(ds_name.toLowerCase().trim());
+		return ds == null ? null : SQLStatistics.get(ds.getProperty("name"));
+	}
 }
@@ -5,23 +5,44 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * 查询结果缓存注解，注解在JavaBean上时，以该JavaBean为结果类型的 queryForBean/queryForList 查询结果将被缓存
+ * <br>
+ * 通过 save/update 等方法保存该JavaBean时，对应的缓存区域将被清空
+ * <br>
+ * 同时启用该实体按主键查询（findById/findAllByIds）的实体缓存，save/update 该实体时只删除对应主键的缓存
+ * 
+ * @see com.lizard.fastdb.cache.CacheFactory
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ ElementType.TYPE, ElementType.METHOD })
 public @interface Cache {
 
 	/**
-	 * 缓存名称,默认为空
+	 * 缓存名称,默认为空，即使用JavaBean类名
 	 */
 	String cacheName() default "";
 
 	/** 
 	 * 增加缓存还是删除缓存，默认为增加缓存
+	 * <br>为false时，该JavaBean的查询结果不缓存，只在保存该JavaBean时清空 cacheName 指定的缓存区域
 	 */
 	boolean addOrdel() default true;
 	
 	/**
 	 * 临时缓存还是永久缓存，默认为永久缓存
+	 * <br>永久缓存不过期，只在超出 maxSize 时淘汰；临时缓存超过 expireSeconds 后过期
 	 */
 	boolean permanent() default true;
 	
+	/**
+	 * 最多缓存的查询结果数量，默认值：1000
+	 */
+	int maxSize() default 1000;
+	
+	/**
+	 * 临时缓存的存活时间（秒），默认值：300
+	 */
+	long expireSeconds() default 300;
+	
 }
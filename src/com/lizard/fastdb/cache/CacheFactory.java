@@ -1,15 +1,617 @@
 package com.lizard.fastdb.cache;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.annotation.Cache;
+import com.lizard.fastdb.cache.local.LocalCacheProvider;
+import com.lizard.fastdb.connection.ConnectionPool;
+
 /**
- * 缓存工厂
+ * 缓存工厂，管理查询结果缓存区域
+ * <p>
+ * 缓存区域由 {@link CacheProvider} 创建，默认使用进程内缓存 {@link LocalCacheProvider}。
+ * 使用 {@link Cache} 注解的JavaBean，其 queryForBean/queryForList 查询结果缓存在注解指定的缓存区域中。
+ * 缓存中保存查询结果的副本，取出时返回新的副本，复制规则参见 {@link CacheValues}。
+ * <p>
+ * 缓存的查询结果按查询涉及的表标记，执行写操作后通过 {@link #invalidate(Collection)} 删除涉及被修改表的缓存；
+ * 事务中的写操作记录下来，直到事务提交后才删除，事务回滚则丢弃。
+ * 每次删除缓存前增加被修改表（或缓存区域）的版本号，查询前通过 {@link #stamp(QueryCache, Collection)} 记录版本号，
+ * 通过 {@link #put(QueryCache, Object, Object, Collection, Stamp)} 放入缓存时，如果查询期间版本号已改变则丢弃查询结果，
+ * 避免在写操作删除缓存之后放入写之前查询到的旧数据。
+ * <p>
+ * 使用 {@link Cache} 注解的实体类，其按主键查询的结果缓存在单独的实体缓存区域中，缓存键为 数据源 + 主键值。
+ * 通过 save/update 写入实体时只删除该主键的缓存，其他修改该表的写操作清空整个实体缓存区域。
  * 
  * @author SHEN.GANG
  */
-public interface CacheFactory {
-	
-	public void add();
-	
-	public void delete();
-	
-	
+public class CacheFactory
+{
+	private static final Log								logger				= LogFactory.getLog(CacheFactory.class);
+
+	/**
+	 * 默认最多缓存的查询结果数量
+	 */
+	public static final int									DEFAULT_MAX_SIZE	= 1000;
+
+	/**
+	 * 临时缓存默认存活时间（秒）
+	 */
+	public static final long								DEFAULT_EXPIRE		= 300;
+
+	/**
+	 * 缓存值为null时的占位对象
+	 */
+	private static final Object								NULL_VALUE			= new Object();
+
+	/**
+	 * 未使用 @Cache 注解或注解为删除缓存的JavaBean的占位对象
+	 */
+	private static final Object								NO_CACHE			= new Object();
+
+	private static volatile CacheProvider					provider			= new LocalCacheProvider();
+
+	/**
+	 * 缓存区域，key -- 缓存区域名称
+	 */
+	private static final ConcurrentMap<String, QueryCache>	CACHES				= new ConcurrentHashMap<String, QueryCache>();
+
+	/**
+	 * JavaBean 与 缓存区域名称 映射，未缓存的JavaBean映射为 NO_CACHE
+	 */
+	private static final ConcurrentMap<Class<?>, Object>	BEAN_CACHES			= new ConcurrentHashMap<Class<?>, Object>();
+
+	/**
+	 * 实体缓存区域名称 与 实体对应的表名（规范化后） 映射
+	 */
+	private static final ConcurrentMap<String, String>		IDENTITY_TABLES		= new ConcurrentHashMap<String, String>();
+
+	/**
+	 * 实体缓存区域名称的后缀
+	 */
+	private static final String								IDENTITY_SUFFIX		= "#identity";
+
+	/**
+	 * 表的版本号，key -- 表名（小写），删除涉及该表的缓存前增加
+	 */
+	private static final ConcurrentMap<String, AtomicLong>	TABLE_GENERATIONS	= new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 缓存区域的版本号，key -- 缓存区域名称，清空该缓存区域前增加
+	 */
+	private static final ConcurrentMap<String, AtomicLong>	REGION_GENERATIONS	= new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 清空所有缓存区域的版本号
+	 */
+	private static final AtomicLong							GLOBAL_GENERATION	= new AtomicLong();
+
+	/**
+	 * 当前线程事务中待删除的缓存，事务提交后执行
+	 */
+	private static final ThreadLocal<PendingInvalidation>	PENDING_LOCAL		= new ThreadLocal<PendingInvalidation>();
+
+	/**
+	 * 设置缓存策略，已存在的缓存区域将被清空并重新创建
+	 * 
+	 * @param cacheProvider 缓存策略
+	 */
+	public static synchronized void setCacheProvider(CacheProvider cacheProvider)
+	{
+		if (cacheProvider == null)
+		{
+			throw new IllegalArgumentException("The cacheProvider can not be null!");
+		}
+
+		CacheProvider old = provider;
+		provider = cacheProvider;
+		clearAll();
+		CACHES.clear();
+		old.shutdown();
+
+		logger.info("Cache provider [" + cacheProvider.getClass().getName() + "] registered.");
+	}
+
+	/**
+	 * 获得当前使用的缓存策略
+	 * 
+	 * @return 缓存策略
+	 */
+	public static CacheProvider getCacheProvider()
+	{
+		return provider;
+	}
+
+	/**
+	 * 获得指定名称的缓存区域，不存在时按临时缓存的默认配置创建
+	 * 
+	 * @param name 缓存区域名称
+	 * @return 缓存区域
+	 */
+	public static QueryCache getCache(String name)
+	{
+		return getCache(name, false, DEFAULT_MAX_SIZE, DEFAULT_EXPIRE);
+	}
+
+	/**
+	 * 获得指定名称的缓存区域，不存在时按指定配置创建；已存在时配置参数无效
+	 * 
+	 * @param name 缓存区域名称
+	 * @param permanent true -- 永久缓存，false -- 临时缓存
+	 * @param maxSize 最多缓存的查询结果数量
+	 * @param expireSeconds 临时缓存的存活时间（秒）
+	 * @return 缓存区域
+	 */
+	public static QueryCache getCache(String name, boolean permanent, int maxSize, long expireSeconds)
+	{
+		QueryCache cache = CACHES.get(name);
+		if (cache == null)
+		{
+			cache = provider.buildCache(name, permanent, maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE, expireSeconds);
+			QueryCache exists = CACHES.putIfAbsent(name, cache);
+			if (exists != null)
+			{
+				cache = exists;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * 获得JavaBean查询结果的缓存区域
+	 * 
+	 * @param beanClass JavaBean.class
+	 * @return 缓存区域，JavaBean未使用 @Cache 注解或注解为删除缓存（addOrdel=false）时返回null
+	 */
+	public static QueryCache getCache(Class<?> beanClass)
+	{
+		Object name = BEAN_CACHES.get(beanClass);
+		if (name == null)
+		{
+			Cache cache = beanClass.getAnnotation(Cache.class);
+			name = (cache == null || !cache.addOrdel()) ? NO_CACHE : getCacheName(beanClass, cache);
+			BEAN_CACHES.putIfAbsent(beanClass, name);
+		}
+
+		if (name == NO_CACHE)
+		{
+			return null;
+		}
+
+		QueryCache cache = CACHES.get(name);
+		if (cache == null)
+		{
+			Cache c = beanClass.getAnnotation(Cache.class);
+			cache = getCache((String) name, c.permanent(), c.maxSize(), c.expireSeconds());
+		}
+		return cache;
+	}
+
+	/**
+	 * 获得实体类按主键查询的缓存区域，放入其中的缓存不按表标记
+	 * 
+	 * @param entityClass 实体类
+	 * @param tableName 实体对应的表名
+	 * @return 缓存区域，实体类未使用 @Cache 注解或注解为删除缓存（addOrdel=false）时返回null
+	 */
+	public static QueryCache getIdentityCache(Class<?> entityClass, String tableName)
+	{
+		Object name = BEAN_CACHES.get(entityClass);
+		if (name == null)
+		{
+			if (getCache(entityClass) == null)
+			{
+				return null;
+			}
+			name = BEAN_CACHES.get(entityClass);
+		}
+
+		if (name == NO_CACHE)
+		{
+			return null;
+		}
+
+		String region = name + IDENTITY_SUFFIX;
+		QueryCache cache = CACHES.get(region);
+		if (cache == null)
+		{
+			Cache c = entityClass.getAnnotation(Cache.class);
+			IDENTITY_TABLES.put(region, SQLTableExtractor.normalizeTable(tableName));
+			cache = getCache(region, c.permanent(), c.maxSize(), c.expireSeconds());
+		}
+		return cache;
+	}
+
+	/**
+	 * 删除某一行数据的缓存，用于通过实体写入该行之后：删除涉及该表的查询缓存，以及各实体缓存区域中该主键的缓存；
+	 * 在事务中时延迟到事务提交之后执行
+	 * 
+	 * @param tableName 表名
+	 * @param identityKey 实体缓存键
+	 */
+	public static void invalidateEntity(String tableName, Object identityKey)
+	{
+		String table = SQLTableExtractor.normalizeTable(tableName);
+		if (ConnectionPool.isInTransaction())
+		{
+			PendingInvalidation pending = getPending();
+			Set<Object> keys = pending.entities.get(table);
+			if (keys == null)
+			{
+				keys = new HashSet<Object>();
+				pending.entities.put(table, keys);
+			}
+			keys.add(identityKey);
+			return;
+		}
+
+		evictEntity(table, Collections.singleton(identityKey));
+	}
+
+	/**
+	 * 清空JavaBean对应的缓存区域，用于JavaBean被保存、更新或删除后
+	 * 
+	 * @param beanClass JavaBean.class
+	 */
+	public static void evict(Class<?> beanClass)
+	{
+		Cache cache = beanClass.getAnnotation(Cache.class);
+		if (cache == null)
+		{
+			return;
+		}
+
+		String name = getCacheName(beanClass, cache);
+		if (ConnectionPool.isInTransaction())
+		{
+			getPending().regions.add(name);
+		}
+		else
+		{
+			clear(name);
+		}
+	}
+
+	/**
+	 * 删除所有缓存区域中涉及指定表的缓存，用于执行写操作之后；在事务中时延迟到事务提交之后执行
+	 * 
+	 * @param tables 被修改的表名（小写），为null或 {@link SQLTableExtractor#UNKNOWN_TABLES} 时清空所有缓存区域
+	 */
+	public static void invalidate(Collection<String> tables)
+	{
+		boolean all = (tables == null || tables == SQLTableExtractor.UNKNOWN_TABLES);
+		if (!all && tables.isEmpty())
+		{
+			return;
+		}
+
+		if (ConnectionPool.isInTransaction())
+		{
+			PendingInvalidation pending = getPending();
+			if (all)
+			{
+				pending.all = true;
+			}
+			else
+			{
+				pending.tables.addAll(tables);
+			}
+			return;
+		}
+
+		if (all)
+		{
+			clearAll();
+		}
+		else
+		{
+			evictTables(tables);
+		}
+	}
+
+	/**
+	 * 执行当前线程事务中记录的缓存删除，在事务成功提交后调用
+	 */
+	public static void commitInvalidation()
+	{
+		PendingInvalidation pending = PENDING_LOCAL.get();
+		if (pending == null)
+		{
+			return;
+		}
+		PENDING_LOCAL.remove();
+
+		if (pending.all)
+		{
+			clearAll();
+			return;
+		}
+
+		evictTables(pending.tables);
+		for (Map.Entry<String, Set<Object>> e : pending.entities.entrySet())
+		{
+			evictEntity(e.getKey(), e.getValue());
+		}
+		for (String name : pending.regions)
+		{
+			clear(name);
+		}
+	}
+
+	/**
+	 * 丢弃当前线程事务中记录的缓存删除，在事务回滚或结束时调用
+	 */
+	public static void discardInvalidation()
+	{
+		PENDING_LOCAL.remove();
+	}
+
+	/**
+	 * 清空指定名称的缓存区域
+	 * 
+	 * @param name 缓存区域名称
+	 */
+	public static void clear(String name)
+	{
+		generation(REGION_GENERATIONS, name).incrementAndGet();
+		QueryCache cache = CACHES.get(name);
+		if (cache != null)
+		{
+			cache.clear();
+		}
+	}
+
+	/**
+	 * 清空所有缓存区域
+	 */
+	public static void clearAll()
+	{
+		GLOBAL_GENERATION.incrementAndGet();
+		for (QueryCache cache : CACHES.values())
+		{
+			cache.clear();
+		}
+	}
+
+	/**
+	 * 获得所有缓存区域的命中统计信息
+	 * 
+	 * @return key -- 缓存区域名称，value -- 统计信息
+	 */
+	public static Map<String, CacheStats> getStats()
+	{
+		Map<String, CacheStats> stats = new HashMap<String, CacheStats>();
+		for (QueryCache cache : CACHES.values())
+		{
+			stats.put(cache.getName(), cache.getStats());
+		}
+		return stats;
+	}
+
+	/**
+	 * 关闭缓存，清空并释放所有缓存区域
+	 */
+	public static synchronized void shutdown()
+	{
+		clearAll();
+		CACHES.clear();
+		provider.shutdown();
+	}
+
+	/**
+	 * 将查询结果转换为可以放入缓存的值，null 使用占位对象代替
+	 * 
+	 * @param value 查询结果
+	 * @return 缓存值
+	 */
+	public static Object maskNull(Object value)
+	{
+		return value == null ? NULL_VALUE : value;
+	}
+
+	/**
+	 * 将缓存值还原为查询结果
+	 * 
+	 * @param value 缓存值
+	 * @return 查询结果
+	 */
+	public static Object unmaskNull(Object value)
+	{
+		return value == NULL_VALUE ? null : value;
+	}
+
+	/**
+	 * 记录查询涉及的表和缓存区域的当前版本号，在执行查询之前调用
+	 * 
+	 * @param cache 查询结果将要放入的缓存区域
+	 * @param tables 查询涉及的表名（小写），可以为null
+	 * @return 版本号
+	 */
+	public static Stamp stamp(QueryCache cache, Collection<String> tables)
+	{
+		return new Stamp(cache.getName(), tables);
+	}
+
+	/**
+	 * 放入查询结果，如果执行查询期间涉及的表或缓存区域已被修改（版本号改变），则丢弃查询结果
+	 * <p>
+	 * 先放入再检查版本号：写操作在删除缓存前增加版本号，因此在检查之后删除缓存的写操作一定会删除刚放入的查询结果。
+	 * 
+	 * @param cache 缓存区域
+	 * @param key 缓存键
+	 * @param value 查询结果，不能为null
+	 * @param tables 用于标记查询结果的表名（小写），可以为null
+	 * @param stamp 执行查询之前通过 {@link #stamp(QueryCache, Collection)} 记录的版本号
+	 * @return true -- 已放入缓存，false -- 查询结果已过时，未放入
+	 */
+	public static boolean put(QueryCache cache, Object key, Object value, Collection<String> tables, Stamp stamp)
+	{
+		if (!stamp.isCurrent())
+		{
+			return false;
+		}
+
+		cache.put(key, value, tables);
+		if (!stamp.isCurrent())
+		{
+			cache.remove(key);
+			return false;
+		}
+		return true;
+	}
+
+	private static AtomicLong generation(ConcurrentMap<String, AtomicLong> generations, String name)
+	{
+		AtomicLong generation = generations.get(name);
+		if (generation == null)
+		{
+			generation = new AtomicLong();
+			AtomicLong exists = generations.putIfAbsent(name, generation);
+			if (exists != null)
+			{
+				generation = exists;
+			}
+		}
+		return generation;
+	}
+
+	private static void evictTables(Collection<String> tables)
+	{
+		if (tables.isEmpty())
+		{
+			return;
+		}
+
+		for (String table : tables)
+		{
+			generation(TABLE_GENERATIONS, table).incrementAndGet();
+		}
+		for (QueryCache cache : CACHES.values())
+		{
+			cache.evictTables(tables);
+		}
+
+		// 实体缓存不按表标记，整个区域清空
+		for (Map.Entry<String, String> e : IDENTITY_TABLES.entrySet())
+		{
+			if (tables.contains(e.getValue()))
+			{
+				clear(e.getKey());
+			}
+		}
+	}
+
+	private static void evictEntity(String table, Collection<Object> identityKeys)
+	{
+		generation(TABLE_GENERATIONS, table).incrementAndGet();
+		Set<String> tables = Collections.singleton(table);
+		for (QueryCache cache : CACHES.values())
+		{
+			cache.evictTables(tables);
+		}
+
+		for (Map.Entry<String, String> e : IDENTITY_TABLES.entrySet())
+		{
+			QueryCache cache = CACHES.get(e.getKey());
+			if (cache != null && table.equals(e.getValue()))
+			{
+				for (Object key : identityKeys)
+				{
+					cache.remove(key);
+				}
+			}
+		}
+	}
+
+	private static PendingInvalidation getPending()
+	{
+		PendingInvalidation pending = PENDING_LOCAL.get();
+		if (pending == null)
+		{
+			pending = new PendingInvalidation();
+			PENDING_LOCAL.set(pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * 获得JavaBean的缓存区域名称，未指定时使用JavaBean类名
+	 */
+	private static String getCacheName(Class<?> beanClass, Cache cache)
+	{
+		return cache.cacheName().length() == 0 ? beanClass.getName() : cache.cacheName();
+	}
+
+	/**
+	 * 查询之前记录的版本号：全部缓存、缓存区域、查询涉及的各个表
+	 */
+	public static final class Stamp
+	{
+		private final long			global;
+		private final AtomicLong	region;
+		private final long			regionValue;
+		private final AtomicLong[]	tables;
+		private final long[]		tableValues;
+
+		private Stamp(String regionName, Collection<String> tableNames)
+		{
+			this.global = GLOBAL_GENERATION.get();
+			this.region = generation(REGION_GENERATIONS, regionName);
+			this.regionValue = region.get();
+
+			int n = (tableNames == null) ? 0 : tableNames.size();
+			this.tables = new AtomicLong[n];
+			this.tableValues = new long[n];
+			if (n > 0)
+			{
+				int i = 0;
+				for (String table : tableNames)
+				{
+					tables[i] = generation(TABLE_GENERATIONS, table);
+					tableValues[i] = tables[i].get();
+					i++;
+				}
+			}
+		}
+
+		/**
+		 * 版本号是否仍然有效，即查询涉及的表和缓存区域没有被修改
+		 */
+		boolean isCurrent()
+		{
+			if (GLOBAL_GENERATION.get() != global || region.get() != regionValue)
+			{
+				return false;
+			}
+			for (int i = 0; i < tables.length; i++)
+			{
+				if (tables[i].get() != tableValues[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 事务中待删除的缓存：被修改的表、通过实体写入的行、需要清空的缓存区域
+	 */
+	private static class PendingInvalidation
+	{
+		private final Set<String>				tables		= new HashSet<String>();
+		private final Map<String, Set<Object>>	entities	= new HashMap<String, Set<Object>>();
+		private final Set<String>				regions		= new HashSet<String>();
+		private boolean							all			= false;
+	}
 }
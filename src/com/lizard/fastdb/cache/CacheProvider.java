@@ -0,0 +1,28 @@
+package com.lizard.fastdb.cache;
+
+/**
+ * 查询结果缓存策略接口 <br>
+ * <br>
+ * fastDB 默认使用进程内缓存 <tt>LocalCacheProvider</tt>，可以通过 {@link CacheFactory#setCacheProvider(CacheProvider)} 替换为其他实现。 <br>
+ * 注意：实现者需要提供一个默认的（不带参数的）构造方法
+ * 
+ * @see CacheFactory
+ */
+public interface CacheProvider
+{
+	/**
+	 * 创建缓存区域
+	 * 
+	 * @param name 缓存区域名称
+	 * @param permanent true -- 永久缓存，缓存不过期，只在超出最大数量时淘汰；false -- 临时缓存，超过存活时间后过期
+	 * @param maxSize 最多缓存的查询结果数量
+	 * @param expireSeconds 临时缓存的存活时间（秒）
+	 * @return 缓存区域
+	 */
+	public QueryCache buildCache(String name, boolean permanent, int maxSize, long expireSeconds);
+
+	/**
+	 * 关闭缓存，释放所有缓存区域
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,118 @@
+package com.lizard.fastdb.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存命中统计信息
+ */
+public class CacheStats implements Serializable
+{
+	private static final long	serialVersionUID	= 1L;
+
+	private final AtomicLong	hits				= new AtomicLong();	// 命中次数
+	private final AtomicLong	misses				= new AtomicLong();	// 未命中次数
+	private final AtomicLong	puts				= new AtomicLong();	// 放入缓存次数
+	private final AtomicLong	evictions			= new AtomicLong();	// 因超出数量或过期被淘汰的次数
+
+	/**
+	 * 记录一次命中
+	 */
+	public void recordHit()
+	{
+		hits.incrementAndGet();
+	}
+
+	/**
+	 * 记录一次未命中
+	 */
+	public void recordMiss()
+	{
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * 记录一次放入缓存
+	 */
+	public void recordPut()
+	{
+		puts.incrementAndGet();
+	}
+
+	/**
+	 * 记录一次淘汰
+	 */
+	public void recordEviction()
+	{
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * 获得命中次数
+	 * 
+	 * @return 命中次数
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * 获得未命中次数
+	 * 
+	 * @return 未命中次数
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * 获得放入缓存次数
+	 * 
+	 * @return 放入缓存次数
+	 */
+	public long getPutCount()
+	{
+		return puts.get();
+	}
+
+	/**
+	 * 获得因超出数量或过期被淘汰的次数
+	 * 
+	 * @return 淘汰次数
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * 获得命中率
+	 * 
+	 * @return 命中率，0 到 1 之间，没有请求时为 0
+	 */
+	public double getHitRate()
+	{
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * 重置统计信息
+	 */
+	public void reset()
+	{
+		hits.set(0);
+		misses.set(0);
+		puts.set(0);
+		evictions.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits=" + hits.get() + ", misses=" + misses.get() + ", puts=" + puts.get() + ", evictions=" + evictions.get();
+	}
+}
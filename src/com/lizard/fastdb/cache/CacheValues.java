@@ -0,0 +1,228 @@
+package com.lizard.fastdb.cache;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.lizard.fastdb.persistence.CaseInsensitiveHashMap;
+
+/**
+ * 查询结果的复制工具，缓存中保存查询结果的副本，每次取出时返回新的副本，调用者修改返回的对象不影响缓存
+ * <p>
+ * 复制规则：
+ * <ul>
+ * <li>String、基本类型的包装类、BigDecimal、BigInteger、枚举等不可变对象直接使用</li>
+ * <li>Date（包括 java.sql.Date/Time/Timestamp）和数组复制</li>
+ * <li>List 复制为 ArrayList，Map 复制为 key 不区分大小写的 LinkedHashMap，元素逐个复制</li>
+ * <li>其他对象按 JavaBean 复制：使用公共的无参构造方法创建新对象，逐个复制可读写的属性；属性值按以上规则复制，其他类型的属性值共享</li>
+ * </ul>
+ * java.* 和 javax.* 中的其他类型、没有公共无参构造方法的类不能复制，缓存和调用者共享同一个对象，应当只缓存不可变的值。
+ */
+public final class CacheValues
+{
+	/**
+	 * JavaBean 与 可读写属性 映射
+	 */
+	private static final ConcurrentMap<Class<?>, BeanCopier>	COPIERS	= new ConcurrentHashMap<Class<?>, BeanCopier>();
+
+	private CacheValues()
+	{
+	}
+
+	/**
+	 * 复制查询结果
+	 *
+	 * @param value 查询结果，可以为null
+	 * @return 查询结果的副本，不能复制时返回查询结果本身
+	 */
+	public static Object copy(Object value)
+	{
+		if (value == null || isImmutable(value))
+		{
+			return value;
+		}
+
+		Object copy = copyValue(value);
+		if (copy != value)
+		{
+			return copy;
+		}
+		return getCopier(value.getClass()).copy(value);
+	}
+
+	/**
+	 * 复制不可变对象以外的 Date、数组、List、Map，其他对象原样返回
+	 */
+	private static Object copyValue(Object value)
+	{
+		if (value == null || isImmutable(value))
+		{
+			return value;
+		}
+		if (value instanceof Date)
+		{
+			return ((Date) value).clone();
+		}
+		if (value instanceof List)
+		{
+			List<?> list = (List<?>) value;
+			List<Object> copy = new ArrayList<Object>(list.size());
+			for (Object element : list)
+			{
+				copy.add(copy(element));
+			}
+			return copy;
+		}
+		if (value instanceof Map)
+		{
+			Map<?, ?> map = (Map<?, ?>) value;
+			if (isStringKeyed(map))
+			{
+				Map<String, Object> copy = new CaseInsensitiveHashMap<Object>();
+				for (Map.Entry<?, ?> e : map.entrySet())
+				{
+					copy.put((String) e.getKey(), copy(e.getValue()));
+				}
+				return copy;
+			}
+
+			Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+			for (Map.Entry<?, ?> e : map.entrySet())
+			{
+				copy.put(e.getKey(), copy(e.getValue()));
+			}
+			return copy;
+		}
+		if (value.getClass().isArray())
+		{
+			int length = Array.getLength(value);
+			Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+			if (value.getClass().getComponentType().isPrimitive())
+			{
+				System.arraycopy(value, 0, copy, 0, length);
+			}
+			else
+			{
+				for (int i = 0; i < length; i++)
+				{
+					Array.set(copy, i, copy(Array.get(value, i)));
+				}
+			}
+			return copy;
+		}
+		return value;
+	}
+
+	private static boolean isImmutable(Object value)
+	{
+		return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Boolean
+				|| value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte
+				|| value instanceof Character || value instanceof BigDecimal || value instanceof BigInteger || value instanceof Enum
+				|| value instanceof Class;
+	}
+
+	private static boolean isStringKeyed(Map<?, ?> map)
+	{
+		for (Object key : map.keySet())
+		{
+			if (!(key instanceof String))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static BeanCopier getCopier(Class<?> beanClass)
+	{
+		BeanCopier copier = COPIERS.get(beanClass);
+		if (copier == null)
+		{
+			copier = new BeanCopier(beanClass);
+			COPIERS.putIfAbsent(beanClass, copier);
+		}
+		return copier;
+	}
+
+	/**
+	 * JavaBean 的复制器：无参构造方法 + 可读写属性的 getter/setter，不能复制时构造方法为null
+	 */
+	private static class BeanCopier
+	{
+		private final Class<?>			beanClass;
+		private final Constructor<?>	constructor;
+		private final Method[]			getters;
+		private final Method[]			setters;
+
+		BeanCopier(Class<?> beanClass)
+		{
+			this.beanClass = beanClass;
+			Constructor<?> constructor = null;
+			List<Method> getters = new ArrayList<Method>();
+			List<Method> setters = new ArrayList<Method>();
+
+			String className = beanClass.getName();
+			if (!className.startsWith("java.") && !className.startsWith("javax."))
+			{
+				try
+				{
+					constructor = beanClass.getConstructor();
+					for (PropertyDescriptor pd : Introspector.getBeanInfo(beanClass).getPropertyDescriptors())
+					{
+						if (pd.getReadMethod() != null && pd.getWriteMethod() != null)
+						{
+							getters.add(pd.getReadMethod());
+							setters.add(pd.getWriteMethod());
+						}
+					}
+				}
+				catch (NoSuchMethodException e)
+				{
+					// 没有公共的无参构造方法，不能复制
+				}
+				catch (IntrospectionException e)
+				{
+					constructor = null;
+				}
+			}
+
+			this.constructor = constructor;
+			this.getters = getters.toArray(new Method[getters.size()]);
+			this.setters = setters.toArray(new Method[setters.size()]);
+		}
+
+		Object copy(Object bean)
+		{
+			if (constructor == null)
+			{
+				return bean;
+			}
+
+			try
+			{
+				Object copy = constructor.newInstance();
+				for (int i = 0; i < getters.length; i++)
+				{
+					setters[i].invoke(copy, copyValue(getters[i].invoke(bean)));
+				}
+				return copy;
+			}
+			catch (Exception e)
+			{
+				throw new IllegalStateException("Failed to copy " + beanClass.getName() + "!", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.lizard.fastdb.cache;
+
+import java.util.Collection;
+
+/**
+ * 查询结果缓存区域，由 {@link CacheProvider} 创建
+ * <p>
+ * 实现者必须是线程安全的。
+ */
+public interface QueryCache
+{
+	/**
+	 * 获得缓存区域名称
+	 * 
+	 * @return 缓存区域名称
+	 */
+	public String getName();
+
+	/**
+	 * 根据缓存键获得缓存的查询结果
+	 * 
+	 * @param key 缓存键
+	 * @return 缓存的查询结果，不存在或已过期时返回null
+	 */
+	public Object get(Object key);
+
+	/**
+	 * 缓存查询结果
+	 * 
+	 * @param key 缓存键
+	 * @param value 查询结果，不能为null
+	 */
+	public void put(Object key, Object value);
+
+	/**
+	 * 缓存查询结果，并按查询涉及的表标记，以便这些表被修改时删除
+	 * 
+	 * @param key 缓存键
+	 * @param value 查询结果，不能为null
+	 * @param tables 查询涉及的表名（小写），可以为null
+	 */
+	public void put(Object key, Object value, Collection<String> tables);
+
+	/**
+	 * 删除涉及指定表的全部缓存
+	 * 
+	 * @param tables 被修改的表名（小写）
+	 */
+	public void evictTables(Collection<String> tables);
+
+	/**
+	 * 删除指定的缓存
+	 * 
+	 * @param key 缓存键
+	 */
+	public void remove(Object key);
+
+	/**
+	 * 清空当前缓存区域
+	 */
+	public void clear();
+
+	/**
+	 * 获得当前缓存的查询结果数量
+	 * 
+	 * @return 缓存数量
+	 */
+	public int size();
+
+	/**
+	 * 获得缓存命中统计信息
+	 * 
+	 * @return 统计信息
+	 */
+	public CacheStats getStats();
+}
@@ -0,0 +1,158 @@
+package com.lizard.fastdb.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 查询结果缓存键：数据源 + 查询方式 + 结果类型 + 规范化的SQL + 参数值
+ * <p>
+ * SQL 规范化时去掉首尾空白，并将字符串常量以外的连续空白合并为一个空格，
+ * 因此仅格式不同的相同查询使用同一个缓存。
+ */
+public final class QueryKey implements Serializable
+{
+	private static final long	serialVersionUID	= 1L;
+
+	private final String		dsName;
+	private final String		kind;
+	private final Class<?>		resultType;
+	private final String		sql;
+	private final Object[]		params;
+	private final int			hash;
+
+	/**
+	 * 创建查询结果缓存键
+	 * 
+	 * @param dsName 数据源名称
+	 * @param kind 查询方式，例如 bean、list、object
+	 * @param resultType 结果类型，可以为null
+	 * @param sql 查询语句
+	 * @param params 查询语句中的变量值
+	 */
+	public QueryKey(String dsName, String kind, Class<?> resultType, String sql, Object[] params)
+	{
+		this.dsName = dsName;
+		this.kind = kind;
+		this.resultType = resultType;
+		this.sql = normalize(sql);
+		this.params = (params == null) ? new Object[0] : params.clone();
+
+		int h = dsName.hashCode();
+		h = h * 31 + kind.hashCode();
+		h = h * 31 + (resultType == null ? 0 : resultType.hashCode());
+		h = h * 31 + this.sql.hashCode();
+		h = h * 31 + Arrays.deepHashCode(this.params);
+		this.hash = h;
+	}
+
+	/**
+	 * 获得规范化后的SQL
+	 * 
+	 * @return SQL语句
+	 */
+	public String getSQL()
+	{
+		return sql;
+	}
+
+	/**
+	 * 获得数据源名称
+	 * 
+	 * @return 数据源名称
+	 */
+	public String getDataSourceName()
+	{
+		return dsName;
+	}
+
+	/**
+	 * 规范化SQL：去掉首尾空白，合并字符串常量以外的连续空白
+	 * 
+	 * @param sql SQL语句
+	 * @return 规范化的SQL
+	 */
+	public static String normalize(String sql)
+	{
+		int len = sql.length();
+		StringBuilder sb = null;
+		boolean inQuote = false;
+		boolean lastSpace = true;
+
+		for (int i = 0; i < len; i++)
+		{
+			char c = sql.charAt(i);
+			if (c == '\'')
+			{
+				inQuote = !inQuote;
+			}
+
+			if (!inQuote && Character.isWhitespace(c))
+			{
+				if (sb == null)
+				{
+					// 单个空格且前面不是空白，不需要改写
+					if (c == ' ' && !lastSpace && i + 1 < len && !Character.isWhitespace(sql.charAt(i + 1)))
+					{
+						lastSpace = true;
+						continue;
+					}
+					sb = new StringBuilder(len).append(sql, 0, i);
+				}
+				if (!lastSpace)
+				{
+					sb.append(' ');
+				}
+				lastSpace = true;
+				continue;
+			}
+
+			if (sb != null)
+			{
+				sb.append(c);
+			}
+			lastSpace = false;
+		}
+
+		if (sb == null)
+		{
+			return sql;
+		}
+
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ' ')
+		{
+			end--;
+		}
+		sb.setLength(end);
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof QueryKey))
+		{
+			return false;
+		}
+
+		QueryKey other = (QueryKey) obj;
+		return hash == other.hash && resultType == other.resultType && kind.equals(other.kind) && dsName.equals(other.dsName)
+				&& sql.equals(other.sql) && Arrays.deepEquals(params, other.params);
+	}
+
+	@Override
+	public String toString()
+	{
+		return dsName + ":" + kind + ":" + sql + " " + Arrays.deepToString(params);
+	}
+}
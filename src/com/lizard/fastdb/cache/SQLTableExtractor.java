@@ -0,0 +1,512 @@
+package com.lizard.fastdb.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 轻量级SQL表名解析器，用于按表标记缓存的查询结果，以及确定写操作影响的表
+ * <p>
+ * 不做完整的语法分析，只识别以下位置的表名：
+ * <ul>
+ * <li>查询：FROM 及其后用逗号分隔的表、JOIN 之后的表（包括子查询中的）</li>
+ * <li>写操作：INSERT/REPLACE/MERGE ... INTO、UPDATE、DELETE FROM、TRUNCATE [TABLE] 的目标表</li>
+ * </ul>
+ * 表名统一转换为小写，并去掉库名（schema）前缀和引号。解析结果按SQL缓存，超过 {@link #MAX_CACHED_SQLS} 条时按 CLOCK 算法淘汰最近未使用的。
+ */
+public final class SQLTableExtractor
+{
+	/**
+	 * 最多缓存解析结果的SQL数量
+	 */
+	public static final int								MAX_CACHED_SQLS	= 2048;
+
+	/**
+	 * 表示无法确定写操作影响的表（例如 DDL、存储过程），此时应清空全部缓存
+	 */
+	public static final Set<String>					UNKNOWN_TABLES	= Collections.unmodifiableSet(new HashSet<String>());
+
+	private static final TableCache						READ_TABLES		= new TableCache();
+	private static final TableCache						WRITE_TABLES	= new TableCache();
+
+	/**
+	 * 表名或别名之后不能作为别名的关键字
+	 */
+	private static final Set<String>					KEYWORDS		= new HashSet<String>();
+
+	static
+	{
+		String[] words = { "where", "join", "inner", "left", "right", "full", "outer", "cross", "natural", "straight_join", "on", "using",
+				"group", "order", "having", "limit", "union", "intersect", "minus", "except", "set", "values", "select", "into", "for", "start",
+				"connect", "window", "fetch", "offset", "when", "returning", "partition", "force", "ignore", "use", "lock", "with" };
+		for (String word : words)
+		{
+			KEYWORDS.add(word);
+		}
+	}
+
+	private SQLTableExtractor()
+	{
+	}
+
+	/**
+	 * 获得SQL语句中查询（读取）的表
+	 *
+	 * @param sql SQL语句
+	 * @return 表名集合（小写），不可修改
+	 */
+	public static Set<String> getTables(String sql)
+	{
+		Set<String> tables = READ_TABLES.get(sql);
+		if (tables == null)
+		{
+			tables = Collections.unmodifiableSet(parseReadTables(tokenize(sql)));
+			READ_TABLES.put(sql, tables);
+		}
+		return tables;
+	}
+
+	/**
+	 * 获得写操作SQL语句修改的表
+	 *
+	 * @param sql SQL语句
+	 * @return 表名集合（小写），不可修改；查询语句返回空集合；无法确定时返回 {@link #UNKNOWN_TABLES}
+	 */
+	public static Set<String> getWriteTables(String sql)
+	{
+		Set<String> tables = WRITE_TABLES.get(sql);
+		if (tables == null)
+		{
+			tables = parseWriteTables(tokenize(sql));
+			if (tables != UNKNOWN_TABLES)
+			{
+				tables = Collections.unmodifiableSet(tables);
+			}
+			WRITE_TABLES.put(sql, tables);
+		}
+		return tables;
+	}
+
+	/**
+	 * 获得当前缓存的SQL数量
+	 *
+	 * @return 查询和写操作解析结果的缓存数量之和
+	 */
+	public static int getCacheSize()
+	{
+		return READ_TABLES.entries.size() + WRITE_TABLES.entries.size();
+	}
+
+	/**
+	 * 将表名转换为与解析结果一致的形式：去掉引号和库名前缀，转换为小写
+	 *
+	 * @param tableName 表名，例如 @Table 注解的表名
+	 * @return 规范化的表名
+	 */
+	public static String normalizeTable(String tableName)
+	{
+		List<String> tokens = tokenize(tableName);
+		if (tokens.isEmpty())
+		{
+			return "";
+		}
+
+		String token = tokens.get(0);
+		int dot = token.lastIndexOf('.');
+		return dot >= 0 ? token.substring(dot + 1) : token;
+	}
+
+	/**
+	 * 解析查询的表：FROM 之后（含逗号分隔的列表）和 JOIN 之后的表
+	 */
+	private static Set<String> parseReadTables(List<String> tokens)
+	{
+		Set<String> tables = new LinkedHashSet<String>();
+		for (int i = 0; i < tokens.size(); i++)
+		{
+			String token = tokens.get(i);
+			if ("from".equals(token) || "using".equals(token))
+			{
+				readTableList(tokens, i + 1, tables);
+			}
+			else if ("join".equals(token) || "straight_join".equals(token))
+			{
+				addTable(tokens, i + 1, tables);
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * 解析写操作的目标表
+	 */
+	private static Set<String> parseWriteTables(List<String> tokens)
+	{
+		Set<String> tables = new LinkedHashSet<String>();
+		if (tokens.isEmpty())
+		{
+			return tables;
+		}
+
+		int start = 0;
+		// WITH ... 公用表表达式之后的语句，以及左括号开头的查询
+		while (start < tokens.size() && "(".equals(tokens.get(start)))
+		{
+			start++;
+		}
+		String first = start < tokens.size() ? tokens.get(start) : "";
+
+		if ("select".equals(first) || "with".equals(first))
+		{
+			// 查询语句（含 SELECT ... FOR UPDATE）不修改数据；WITH 之后为写操作时按写操作处理
+			if ("with".equals(first))
+			{
+				for (int i = start + 1; i < tokens.size(); i++)
+				{
+					String token = tokens.get(i);
+					if ("insert".equals(token) || "update".equals(token) || "delete".equals(token) || "merge".equals(token))
+					{
+						return parseWriteTables(tokens.subList(i, tokens.size()));
+					}
+				}
+			}
+			return tables;
+		}
+
+		if ("insert".equals(first) || "replace".equals(first) || "merge".equals(first))
+		{
+			// INSERT ALL INTO t1 ... INTO t2 ... 可以有多个目标表
+			for (int i = start + 1; i < tokens.size(); i++)
+			{
+				String token = tokens.get(i);
+				if ("into".equals(token))
+				{
+					addTable(tokens, i + 1, tables);
+				}
+				else if ("select".equals(token) || "values".equals(token) || "using".equals(token))
+				{
+					if (!"insert".equals(first) || !"select".equals(token))
+					{
+						break;
+					}
+				}
+			}
+			// REPLACE t VALUES(...)（MySQL 允许省略 INTO）
+			if (tables.isEmpty() && "replace".equals(first))
+			{
+				addTable(tokens, start + 1, tables);
+			}
+		}
+		else if ("update".equals(first))
+		{
+			// UPDATE t1 a, t2 b ... / UPDATE t1 JOIN t2 ...（MySQL 多表更新）
+			int i = readTableList(tokens, start + 1, tables);
+			for (; i < tokens.size() && !"set".equals(tokens.get(i)); i++)
+			{
+				if ("join".equals(tokens.get(i)) || "straight_join".equals(tokens.get(i)))
+				{
+					addTable(tokens, i + 1, tables);
+				}
+			}
+		}
+		else if ("delete".equals(first))
+		{
+			// DELETE FROM t / DELETE t1 FROM t1 JOIN t2 ...，保守地将 FROM、USING 和 JOIN 之后的表都作为目标表
+			for (int i = start + 1; i < tokens.size() && !"where".equals(tokens.get(i)); i++)
+			{
+				String token = tokens.get(i);
+				if ("from".equals(token) || "using".equals(token))
+				{
+					readTableList(tokens, i + 1, tables);
+				}
+				else if ("join".equals(token) || "straight_join".equals(token))
+				{
+					addTable(tokens, i + 1, tables);
+				}
+			}
+			// DELETE t WHERE ...（Oracle 允许省略 FROM）
+			if (tables.isEmpty())
+			{
+				addTable(tokens, start + 1, tables);
+			}
+		}
+		else if ("truncate".equals(first))
+		{
+			int i = start + 1;
+			if (i < tokens.size() && "table".equals(tokens.get(i)))
+			{
+				i++;
+			}
+			addTable(tokens, i, tables);
+		}
+		else
+		{
+			// DDL、存储过程调用等，无法确定影响的表
+			return UNKNOWN_TABLES;
+		}
+
+		return tables.isEmpty() ? UNKNOWN_TABLES : tables;
+	}
+
+	/**
+	 * 读取逗号分隔的表列表：table [AS] [alias], table [AS] [alias] ...
+	 *
+	 * @return 表列表之后的位置
+	 */
+	private static int readTableList(List<String> tokens, int i, Set<String> tables)
+	{
+		while (i < tokens.size())
+		{
+			if (!addTable(tokens, i, tables))
+			{
+				return i;
+			}
+			i++;
+
+			// 别名
+			if (i < tokens.size() && "as".equals(tokens.get(i)))
+			{
+				i++;
+			}
+			if (i < tokens.size() && isIdentifier(tokens.get(i)) && !KEYWORDS.contains(tokens.get(i)))
+			{
+				i++;
+			}
+
+			if (i < tokens.size() && ",".equals(tokens.get(i)))
+			{
+				i++;
+			}
+			else
+			{
+				return i;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * 如果指定位置是表名，则加入集合
+	 *
+	 * @return 是否是表名
+	 */
+	private static boolean addTable(List<String> tokens, int i, Set<String> tables)
+	{
+		if (i >= tokens.size())
+		{
+			return false;
+		}
+
+		String token = tokens.get(i);
+		if (!isIdentifier(token) || KEYWORDS.contains(token) || "table".equals(token) || "only".equals(token))
+		{
+			// ONLY t（PostgreSQL）、子查询等
+			if (("only".equals(token) || "table".equals(token)) && i + 1 < tokens.size())
+			{
+				return addTable(tokens, i + 1, tables);
+			}
+			return false;
+		}
+
+		// 去掉库名前缀
+		int dot = token.lastIndexOf('.');
+		tables.add(dot >= 0 ? token.substring(dot + 1) : token);
+		return true;
+	}
+
+	private static boolean isIdentifier(String token)
+	{
+		char c = token.charAt(0);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+	}
+
+	/**
+	 * 将SQL拆分为小写的单词和符号，跳过字符串常量和注释，去掉标识符的引号
+	 */
+	private static List<String> tokenize(String sql)
+	{
+		List<String> tokens = new ArrayList<String>();
+		int len = sql.length();
+		int i = 0;
+
+		while (i < len)
+		{
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c))
+			{
+				i++;
+			}
+			else if (c == '\'')
+			{
+				// 字符串常量，'' 为转义的单引号
+				i++;
+				while (i < len)
+				{
+					if (sql.charAt(i) == '\'')
+					{
+						if (i + 1 < len && sql.charAt(i + 1) == '\'')
+						{
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+			}
+			else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-')
+			{
+				while (i < len && sql.charAt(i) != '\n')
+				{
+					i++;
+				}
+			}
+			else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*')
+			{
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? len : end + 2;
+			}
+			else if (isWordChar(c) || c == '`' || c == '"' || c == '[')
+			{
+				// 标识符，可以是 schema.table 或带引号的形式
+				StringBuilder sb = new StringBuilder();
+				while (i < len)
+				{
+					c = sql.charAt(i);
+					if (c == '`' || c == '"' || c == '[')
+					{
+						char close = (c == '[') ? ']' : c;
+						int end = sql.indexOf(close, i + 1);
+						if (end < 0)
+						{
+							end = len;
+						}
+						sb.append(sql, i + 1, end);
+						i = end + 1;
+					}
+					else if (isWordChar(c) || c == '.')
+					{
+						sb.append(c);
+						i++;
+					}
+					else
+					{
+						break;
+					}
+				}
+				if (sb.length() > 0)
+				{
+					tokens.add(sb.toString().toLowerCase());
+				}
+			}
+			else
+			{
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}
+
+		return tokens;
+	}
+
+	private static boolean isWordChar(char c)
+	{
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+	}
+
+	/**
+	 * SQL -> 表名集合的缓存，超过 MAX_CACHED_SQLS 条时按 CLOCK 算法淘汰
+	 */
+	private static final class TableCache
+	{
+		private final ConcurrentMap<String, Entry>	entries		= new ConcurrentHashMap<String, Entry>(256);
+
+		/**
+		 * 是否有线程正在淘汰缓存，同一时间只由一个线程淘汰
+		 */
+		private final AtomicBoolean					evicting	= new AtomicBoolean();
+
+		Set<String> get(String sql)
+		{
+			Entry entry = entries.get(sql);
+			if (entry == null)
+			{
+				return null;
+			}
+
+			// 只在标记变化时写入，避免命中时的写竞争
+			if (!entry.used)
+			{
+				entry.used = true;
+			}
+			return entry.tables;
+		}
+
+		void put(String sql, Set<String> tables)
+		{
+			if (entries.putIfAbsent(sql, new Entry(tables)) == null && entries.size() > MAX_CACHED_SQLS)
+			{
+				evict();
+			}
+		}
+
+		/**
+		 * 淘汰缓存至 MAX_CACHED_SQLS 的 3/4：按 CLOCK 算法，最近被使用过的清除使用标记后保留，未被使用过的淘汰
+		 */
+		private void evict()
+		{
+			if (!evicting.compareAndSet(false, true))
+			{
+				return;
+			}
+
+			try
+			{
+				int target = MAX_CACHED_SQLS * 3 / 4;
+				for (int pass = 0; pass < 2 && entries.size() > target; pass++)
+				{
+					Iterator<Entry> it = entries.values().iterator();
+					while (it.hasNext() && entries.size() > target)
+					{
+						Entry entry = it.next();
+						if (entry.used)
+						{
+							entry.used = false;
+						}
+						else
+						{
+							it.remove();
+						}
+					}
+				}
+			}
+			finally
+			{
+				evicting.set(false);
+			}
+		}
+	}
+
+	/**
+	 * 缓存项，used 为 CLOCK 淘汰算法的使用标记
+	 */
+	private static final class Entry
+	{
+		private final Set<String>	tables;
+		private volatile boolean	used;
+
+		Entry(Set<String> tables)
+		{
+			this.tables = tables;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.lizard.fastdb.cache.local;
+
+import com.lizard.fastdb.cache.CacheProvider;
+import com.lizard.fastdb.cache.QueryCache;
+
+/**
+ * CacheProvider 的进程内实现，每个缓存区域是一个有数量上限的 LRU 缓存
+ */
+public class LocalCacheProvider implements CacheProvider
+{
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.CacheProvider#buildCache(java.lang.String, boolean, int, long)
+	 */
+	public QueryCache buildCache(String name, boolean permanent, int maxSize, long expireSeconds)
+	{
+		// 永久缓存不过期，只在超出最大数量时淘汰
+		return new LocalQueryCache(name, maxSize, permanent ? 0 : expireSeconds);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.CacheProvider#shutdown()
+	 */
+	public void shutdown()
+	{
+		// 进程内缓存由 CacheFactory 清空，无需释放其他资源
+	}
+}
@@ -0,0 +1,279 @@
+package com.lizard.fastdb.cache.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.lizard.fastdb.cache.CacheStats;
+import com.lizard.fastdb.cache.QueryCache;
+
+/**
+ * 进程内查询结果缓存区域，按最近最少使用（LRU）原则限制缓存数量，临时缓存超过存活时间后过期
+ * <p>
+ * 维护 表名 与 缓存键 的索引，表被修改时只删除涉及该表的缓存。
+ */
+public class LocalQueryCache implements QueryCache
+{
+	private final String						name;
+	private final int							maxSize;
+	private final long							expireMillis;	// 存活时间（毫秒），0 表示永不过期
+	private final CacheStats					stats	= new CacheStats();
+	private final LinkedHashMap<Object, CacheEntry>	entries;
+	private final Map<String, Set<Object>>		tableIndex	= new HashMap<String, Set<Object>>();	// 表名 -- 缓存键，由 entries 锁保护
+
+	/**
+	 * 创建进程内缓存区域
+	 * 
+	 * @param name 缓存区域名称
+	 * @param maxSize 最多缓存的查询结果数量
+	 * @param expireSeconds 存活时间（秒），小于等于0表示永不过期
+	 */
+	public LocalQueryCache(String name, int maxSize, long expireSeconds)
+	{
+		this.name = name;
+		this.maxSize = maxSize;
+		this.expireMillis = expireSeconds > 0 ? expireSeconds * 1000 : 0;
+		this.entries = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true)
+		{
+			private static final long	serialVersionUID	= 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest)
+			{
+				if (size() > LocalQueryCache.this.maxSize)
+				{
+					unindex(eldest.getKey(), eldest.getValue());
+					stats.recordEviction();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#getName()
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#get(java.lang.Object)
+	 */
+	public Object get(Object key)
+	{
+		CacheEntry entry;
+		synchronized (entries)
+		{
+			entry = entries.get(key);
+			if (entry != null && entry.isExpired())
+			{
+				entries.remove(key);
+				unindex(key, entry);
+				stats.recordEviction();
+				entry = null;
+			}
+		}
+
+		if (entry == null)
+		{
+			stats.recordMiss();
+			return null;
+		}
+
+		stats.recordHit();
+		return entry.value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#put(java.lang.Object, java.lang.Object)
+	 */
+	public void put(Object key, Object value)
+	{
+		put(key, value, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#put(java.lang.Object, java.lang.Object, java.util.Collection)
+	 */
+	public void put(Object key, Object value, Collection<String> tables)
+	{
+		String[] tableNames = (tables == null || tables.isEmpty()) ? null : tables.toArray(new String[tables.size()]);
+		CacheEntry entry = new CacheEntry(value, expireMillis > 0 ? System.currentTimeMillis() + expireMillis : 0, tableNames);
+		synchronized (entries)
+		{
+			CacheEntry old = entries.put(key, entry);
+			if (old != null)
+			{
+				unindex(key, old);
+			}
+			if (tableNames != null)
+			{
+				for (String table : tableNames)
+				{
+					Set<Object> keys = tableIndex.get(table);
+					if (keys == null)
+					{
+						keys = new HashSet<Object>();
+						tableIndex.put(table, keys);
+					}
+					keys.add(key);
+				}
+			}
+		}
+		stats.recordPut();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#evictTables(java.util.Collection)
+	 */
+	public void evictTables(Collection<String> tables)
+	{
+		if (tables == null || tables.isEmpty())
+		{
+			return;
+		}
+
+		synchronized (entries)
+		{
+			for (String table : tables)
+			{
+				Set<Object> keys = tableIndex.remove(table);
+				if (keys == null)
+				{
+					continue;
+				}
+				for (Object key : new ArrayList<Object>(keys))
+				{
+					CacheEntry entry = entries.remove(key);
+					if (entry != null)
+					{
+						unindex(key, entry);
+						stats.recordEviction();
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#remove(java.lang.Object)
+	 */
+	public void remove(Object key)
+	{
+		synchronized (entries)
+		{
+			CacheEntry entry = entries.remove(key);
+			if (entry != null)
+			{
+				unindex(key, entry);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#clear()
+	 */
+	public void clear()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+			tableIndex.clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#size()
+	 */
+	public int size()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.cache.QueryCache#getStats()
+	 */
+	public CacheStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * 从表名索引中删除缓存键，调用者必须持有 entries 锁
+	 */
+	private void unindex(Object key, CacheEntry entry)
+	{
+		if (entry.tables == null)
+		{
+			return;
+		}
+
+		for (String table : entry.tables)
+		{
+			Set<Object> keys = tableIndex.get(table);
+			if (keys != null)
+			{
+				keys.remove(key);
+				if (keys.isEmpty())
+				{
+					tableIndex.remove(table);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LocalQueryCache[" + name + ", size=" + size() + ", " + stats + "]";
+	}
+
+	/**
+	 * 缓存项：查询结果 + 过期时间 + 涉及的表
+	 */
+	private static class CacheEntry
+	{
+		private final Object	value;
+		private final long		expireAt;	// 过期时间点，0 表示永不过期
+		private final String[]	tables;		// 查询涉及的表，null 表示未标记
+
+		CacheEntry(Object value, long expireAt, String[] tables)
+		{
+			this.value = value;
+			this.expireAt = expireAt;
+			this.tables = tables;
+		}
+
+		boolean isExpired()
+		{
+			return expireAt > 0 && System.currentTimeMillis() >= expireAt;
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.sql.SQLException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.lizard.fastdb.DBException;
 import com.lizard.fastdb.datasource.DataSourceCache;
 import com.lizard.fastdb.transaction.MultiTransactionController;
 import com.lizard.fastdb.transaction.Transaction;
@@ -26,12 +27,12 @@ public class ConnectionPool
 	 * 
 	 * @param ds_name 数据源名称
 	 * @return 当前数据源的数据库连接
+	 * @throws DBException 获取连接失败
 	 */
 	public static Connection getConnection(String ds_name)
 	{
 		// 确保ds_name是真实数据源名称
 		Connection conn = null;
-		ConnectionProvider connP = DataSourceCache.getConnectionProvider(ds_name);
 
 		// 事务模式
 		int trans_model = Transaction.getTransMode();
@@ -39,14 +40,7 @@ public class ConnectionPool
 		// 无事务模式
 		if (trans_model == TransactionConstant.TRANS_MODE_NOTRANSACTION)
 		{
-			try
-			{
-				conn = connP.getConnection();
-			}
-			catch (SQLException e)
-			{
-				e.printStackTrace();
-			}
+			conn = borrow(ds_name, false, true);
 		}
 		// 单数据源事务模式
 		else if (trans_model == TransactionConstant.TRANS_MODE_SINGLEDATASOURCE)
@@ -58,14 +52,8 @@ public class ConnectionPool
 			}
 			else
 			{
-				try
-				{
-					conn = connP.getConnection();
-				}
-				catch (SQLException e)
-				{
-					e.printStackTrace();
-				}
+				// 事务连接由事务管理器关闭，不跟踪归还
+				conn = borrow(ds_name, false, false);
 
 				// 单数据源事务第一次启动，没有数据源被加载
 				if (!TransactionController.isUsed())
@@ -89,14 +77,7 @@ public class ConnectionPool
 			}
 			else
 			{
-				try
-				{
-					conn = connP.getXAConnection(MultiTransactionController.transMgr);
-				}
-				catch (SQLException e)
-				{
-					e.printStackTrace();
-				}
+				conn = borrow(ds_name, true, false);
 				MultiTransactionController.load(ds_name, conn);
 			}
 		}
@@ -109,20 +90,98 @@ public class ConnectionPool
 	 * 
 	 * @param ds_name 数据源名称
 	 * @return 数据库连接
+	 * @throws DBException 获取连接失败
 	 */
 	public static Connection getIndependConnection(String ds_name)
 	{
-		Connection conn = null;
+		return borrow(ds_name, false, true);
+	}
+
+	/**
+	 * 从数据源的连接池借出连接，并记录连接池指标
+	 * 
+	 * @param ds_name 数据源名称
+	 * @param xa 是否获取由多数据源事务管理器管理的XA连接
+	 * @param track 是否跟踪连接的归还，用于连接泄漏检测
+	 * @return 数据库连接
+	 * @throws DBException 数据源未初始化，或连接池没有返回可用的连接
+	 */
+	private static Connection borrow(String ds_name, boolean xa, boolean track)
+	{
+		ConnectionProvider connP = DataSourceCache.getConnectionProvider(ds_name);
+		if (connP == null)
+		{
+			logger.error("DataSource [" + ds_name + "] is not initialized!");
+			throw new DBException("DataSource [" + ds_name + "] is not initialized!");
+		}
+
+		PoolMetrics metrics = PoolMetrics.get(connP, ds_name);
+		long start = System.nanoTime();
 		try
 		{
-			conn = DataSourceCache.getConnectionProvider(ds_name).getConnection();
+			Connection conn = xa ? connP.getXAConnection(MultiTransactionController.transMgr) : connP.getConnection();
+			if (conn == null)
+			{
+				throw new SQLException("Connection provider returned no connection.");
+			}
+			if (!xa)
+			{
+				conn = cacheStatements(connP, conn);
+			}
+			if (metrics != null)
+			{
+				metrics.borrowed(conn, start, track);
+			}
+			return conn;
 		}
 		catch (SQLException e)
 		{
-			e.printStackTrace();
+			if (metrics != null)
+			{
+				metrics.borrowFailed(start);
+			}
+			logger.error("Failed to get connection from DataSource [" + ds_name + "]!", e);
+			throw new DBException("Failed to get connection from DataSource [" + ds_name + "]!", e);
 		}
+	}
 
-		return conn;
+	/**
+	 * 连接池支持时，为借出的连接使用物理连接的语句缓存
+	 * 
+	 * @param connP 连接策略
+	 * @param conn 借出的连接
+	 * @return 使用语句缓存的连接代理，不缓存语句时返回借出的连接
+	 */
+	private static Connection cacheStatements(ConnectionProvider connP, Connection conn)
+	{
+		if (!(connP instanceof StatementCachingConnectionProvider))
+		{
+			return conn;
+		}
+
+		StatementCachingConnectionProvider cachingP = (StatementCachingConnectionProvider) connP;
+		int cacheSize = cachingP.getStatementCacheSize();
+		if (cacheSize <= 0)
+		{
+			return conn;
+		}
+
+		Connection physical;
+		try
+		{
+			physical = cachingP.getPhysicalConnection(conn);
+		}
+		catch (SQLException e)
+		{
+			// 不影响连接的使用，只是不缓存语句
+			logger.warn("Failed to get the physical connection, statements will not be cached.", e);
+			return conn;
+		}
+		if (physical == null)
+		{
+			return conn;
+		}
+		return StatementCachingConnection.wrap(conn, physical, StatementCache.get(connP, physical, cacheSize));
 	}
 
 	/**
@@ -135,14 +194,7 @@ public class ConnectionPool
 	{
 		if (Transaction.getTransMode() == TransactionConstant.TRANS_MODE_NOTRANSACTION)
 		{
-			try
-			{
-				DataSourceCache.getConnectionProvider(name).closeConnection(conn);
-			}
-			catch (SQLException e)
-			{
-				e.printStackTrace();
-			}
+			release(name, conn);
 		}
 	}
 
@@ -156,18 +208,36 @@ public class ConnectionPool
 	{
 		if (conn != null)
 		{
-			try
-			{
-				DataSourceCache.getConnectionProvider(ds_name).closeConnection(conn);
-			}
-			catch (SQLException e)
-			{
-				e.printStackTrace();
-			}
+			release(ds_name, conn);
 			conn = null;
 		}
 	}
 
+	/**
+	 * 将连接归还连接池，并记录连接池指标
+	 * 
+	 * @param ds_name 数据源名称
+	 * @param conn 数据库连接
+	 */
+	private static void release(String ds_name, Connection conn)
+	{
+		ConnectionProvider connP = DataSourceCache.getConnectionProvider(ds_name);
+		PoolMetrics metrics = PoolMetrics.get(connP, ds_name);
+		if (metrics != null)
+		{
+			metrics.returned(conn);
+		}
+
+		try
+		{
+			connP.closeConnection(conn);
+		}
+		catch (SQLException e)
+		{
+			logger.error("Failed to close connection of DataSource [" + ds_name + "]!", e);
+		}
+	}
+
 	/**
 	 * 判断当前是否处于事务中
 	 * 
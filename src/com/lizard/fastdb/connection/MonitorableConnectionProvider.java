@@ -0,0 +1,19 @@
+package com.lizard.fastdb.connection;
+
+/**
+ * 可以读取连接池内部状态的 ConnectionProvider <br>
+ * <br>
+ * fastDB 自带的连接策略都实现了这个接口；自定义的 ConnectionProvider 可以不实现，此时连接池指标中只有 fastDB
+ * 自己统计的借出耗时、借出失败和连接泄漏，连接数等状态值为 -1。
+ *
+ * @see PoolMetrics
+ */
+public interface MonitorableConnectionProvider extends ConnectionProvider
+{
+	/**
+	 * 读取连接池当前的状态
+	 *
+	 * @return 连接池状态，连接池未初始化时返回null
+	 */
+	public PoolState getPoolState();
+}
@@ -0,0 +1,547 @@
+package com.lizard.fastdb.connection;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.datasource.DataSourceCache;
+
+/**
+ * 数据源连接池指标，每个真实数据源一个，由 {@link ConnectionPool} 在借出和归还连接时记录
+ * <p>
+ * 统计借出次数、借出失败次数、借出耗时分布和连接泄漏，与具体连接池无关；连接数、等待线程数、创建和检测失败次数从实现了
+ * {@link MonitorableConnectionProvider} 的连接策略读取。每个数据源的指标同时注册为 JMX MBean，参见 {@link PoolMetricsMBean}。
+ * <p>
+ * 配置了 leak-detection-threshold 时，记录每个借出连接的借出时间和借出位置：归还时超过阈值计为泄漏，获取快照时统计仍未归还的疑似泄漏连接，并各记录一次借出位置。
+ */
+public class PoolMetrics implements PoolMetricsMBean
+{
+	private static final Log								logger				= LogFactory.getLog(PoolMetrics.class);
+
+	private static final String								JMX_DOMAIN			= "com.lizard.fastdb";
+
+	/**
+	 * 数据源名称 与 连接池指标 映射
+	 */
+	private static final ConcurrentMap<String, PoolMetrics>	METRICS				= new ConcurrentHashMap<String, PoolMetrics>();
+
+	/**
+	 * 连接策略 与 连接池指标 映射，借出和归还连接时按连接策略查找，不再解析数据源名称
+	 */
+	private static final ConcurrentMap<ConnectionProvider, PoolMetrics>	PROVIDERS	= new ConcurrentHashMap<ConnectionProvider, PoolMetrics>();
+
+	private final String									name;
+	private final long										leakThreshold;		// 毫秒，0 表示不检测
+
+	private final AtomicLong								borrowCount			= new AtomicLong();
+	private final AtomicLong								borrowFailures		= new AtomicLong();
+	private final AtomicLong								borrowTimeTotal		= new AtomicLong();
+	private final AtomicLong								borrowTimeMax		= new AtomicLong();
+	private final AtomicLongArray							borrowTimeHistogram	= new AtomicLongArray(PoolSnapshot.BORROW_TIME_BUCKETS.length + 1);
+	private final AtomicLong								leakedConnections	= new AtomicLong();
+
+	// 借出未归还的连接，仅在检测连接泄漏时记录
+	private final Map<Connection, Borrow>					borrowed			= new IdentityHashMap<Connection, Borrow>();
+
+	private ObjectName										objectName;
+
+	private PoolMetrics(String name, long leakThreshold)
+	{
+		this.name = name;
+		this.leakThreshold = leakThreshold;
+	}
+
+	/**
+	 * 获得数据源的连接池指标，不存在时创建并注册 JMX MBean
+	 *
+	 * @param ds_name 数据源名称或软连接名称
+	 * @return 连接池指标，数据源不存在时返回null
+	 */
+	public static PoolMetrics get(String ds_name)
+	{
+		Properties ds = DataSourceCache.getDataSource(ds_name);
+		if (ds == null)
+		{
+			return null;
+		}
+
+		String name = ds.getProperty("name").toLowerCase();
+		PoolMetrics metrics = METRICS.get(name);
+		if (metrics != null)
+		{
+			return metrics;
+		}
+
+		String threshold = ds.getProperty("leak-detection-threshold");
+		long leakThreshold = (threshold == null || !threshold.trim().matches("^\\d+$")) ? 0 : TimeUnit.SECONDS.toMillis(Long.parseLong(threshold.trim()));
+
+		metrics = new PoolMetrics(name, leakThreshold);
+		PoolMetrics exists = METRICS.putIfAbsent(name, metrics);
+		if (exists != null)
+		{
+			return exists;
+		}
+
+		metrics.register();
+		return metrics;
+	}
+
+	/**
+	 * 获得连接策略所属数据源的连接池指标，每个连接策略只按数据源名称解析一次
+	 *
+	 * @param connP 数据源的连接策略
+	 * @param ds_name 数据源名称或软连接名称
+	 * @return 连接池指标，数据源不存在时返回null
+	 */
+	static PoolMetrics get(ConnectionProvider connP, String ds_name)
+	{
+		PoolMetrics metrics = PROVIDERS.get(connP);
+		if (metrics == null)
+		{
+			metrics = get(ds_name);
+			if (metrics != null)
+			{
+				PROVIDERS.put(connP, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * 移除数据源的连接池指标，并注销 JMX MBean
+	 *
+	 * @param name 真实数据源名称
+	 */
+	public static void remove(String name)
+	{
+		PoolMetrics metrics = METRICS.remove(name.toLowerCase());
+		if (metrics != null)
+		{
+			PROVIDERS.values().removeAll(Collections.singleton(metrics));
+			metrics.unregister();
+		}
+	}
+
+	/**
+	 * 移除全部连接池指标
+	 */
+	public static void removeAll()
+	{
+		for (String name : METRICS.keySet())
+		{
+			remove(name);
+		}
+	}
+
+	/**
+	 * 记录一次成功的借出
+	 *
+	 * @param conn 借出的连接
+	 * @param startNanos 开始借出的时间，System.nanoTime()
+	 * @param track 是否跟踪该连接的归还，只有通过 {@link #returned(Connection)} 归还的连接才能跟踪
+	 */
+	void borrowed(Connection conn, long startNanos, boolean track)
+	{
+		borrowCount.incrementAndGet();
+		recordBorrowTime(startNanos);
+
+		if (track && leakThreshold > 0 && conn != null)
+		{
+			synchronized (borrowed)
+			{
+				borrowed.put(conn, new Borrow());
+			}
+		}
+	}
+
+	/**
+	 * 记录一次失败的借出
+	 *
+	 * @param startNanos 开始借出的时间，System.nanoTime()
+	 */
+	void borrowFailed(long startNanos)
+	{
+		borrowFailures.incrementAndGet();
+		recordBorrowTime(startNanos);
+	}
+
+	/**
+	 * 记录连接归还，归还时借出已超过 leak-detection-threshold 的计为泄漏
+	 *
+	 * @param conn 归还的连接
+	 */
+	void returned(Connection conn)
+	{
+		if (leakThreshold <= 0 || conn == null)
+		{
+			return;
+		}
+
+		Borrow borrow;
+		synchronized (borrowed)
+		{
+			borrow = borrowed.remove(conn);
+		}
+
+		if (borrow != null)
+		{
+			long held = System.currentTimeMillis() - borrow.time;
+			if (held > leakThreshold)
+			{
+				leakedConnections.incrementAndGet();
+				if (!borrow.reported)
+				{
+					logger.warn("Connection of [" + name + "] was held for " + held + "ms before returned, exceeds leak-detection-threshold "
+							+ leakThreshold + "ms. Borrowed at:", borrow.stack);
+				}
+			}
+		}
+	}
+
+	private void recordBorrowTime(long startNanos)
+	{
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		borrowTimeTotal.addAndGet(millis);
+
+		long max;
+		while (millis > (max = borrowTimeMax.get()) && !borrowTimeMax.compareAndSet(max, millis))
+		{
+			// 重试
+		}
+
+		long[] buckets = PoolSnapshot.BORROW_TIME_BUCKETS;
+		int i = 0;
+		while (i < buckets.length && millis > buckets[i])
+		{
+			i++;
+		}
+		borrowTimeHistogram.incrementAndGet(i);
+	}
+
+	/**
+	 * 获得当前的指标快照
+	 *
+	 * @return 指标快照
+	 */
+	public PoolSnapshot getSnapshot()
+	{
+		return new PoolSnapshot(name, getConnectionProvider(), getPoolState(), borrowCount.get(), borrowFailures.get(), borrowTimeTotal.get(),
+				borrowTimeMax.get(), getBorrowTimeHistogram(), leakedConnections.get(), detectLeaks());
+	}
+
+	/**
+	 * 从连接策略读取连接池状态
+	 *
+	 * @return 连接池状态，不支持时各状态值为 -1
+	 */
+	private PoolState getPoolState()
+	{
+		ConnectionProvider connP = DataSourceCache.getConnectionProvider(name);
+
+		PoolState state = null;
+		if (connP instanceof MonitorableConnectionProvider)
+		{
+			try
+			{
+				state = ((MonitorableConnectionProvider) connP).getPoolState();
+			}
+			catch (RuntimeException e)
+			{
+				logger.warn("Failed to read the pool state of [" + name + "].", e);
+			}
+		}
+		return state == null ? new PoolState() : state;
+	}
+
+	/**
+	 * 统计借出已超过 leak-detection-threshold 仍未归还的连接，每个连接记录一次借出位置
+	 */
+	private int detectLeaks()
+	{
+		if (leakThreshold <= 0)
+		{
+			return 0;
+		}
+
+		long now = System.currentTimeMillis();
+		List<Borrow> leaks = new ArrayList<Borrow>();
+		synchronized (borrowed)
+		{
+			for (Borrow borrow : borrowed.values())
+			{
+				if (now - borrow.time > leakThreshold)
+				{
+					leaks.add(borrow);
+				}
+			}
+		}
+
+		for (Borrow borrow : leaks)
+		{
+			if (!borrow.reported)
+			{
+				borrow.reported = true;
+				logger.warn("Connection of [" + name + "] has been held for " + (now - borrow.time) + "ms, exceeds leak-detection-threshold "
+						+ leakThreshold + "ms, possible leak. Borrowed at:", borrow.stack);
+			}
+		}
+		return leaks.size();
+	}
+
+	private void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":type=ConnectionPool,name=" + (name.matches("[\\w.\\-]+") ? name : ObjectName.quote(name)));
+			if (!server.isRegistered(on))
+			{
+				server.registerMBean(this, on);
+				this.objectName = on;
+			}
+		}
+		catch (Exception e)
+		{
+			logger.warn("Failed to register the pool metrics MBean of [" + name + "].", e);
+		}
+	}
+
+	private void unregister()
+	{
+		if (objectName == null)
+		{
+			return;
+		}
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (Exception e)
+		{
+			logger.warn("Failed to unregister the pool metrics MBean of [" + name + "].", e);
+		}
+		objectName = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getDataSourceName()
+	 */
+	public String getDataSourceName()
+	{
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getConnectionProvider()
+	 */
+	public String getConnectionProvider()
+	{
+		ConnectionProvider connP = DataSourceCache.getConnectionProvider(name);
+		return connP == null ? null : connP.getClass().getName();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getMaxConnections()
+	 */
+	public int getMaxConnections()
+	{
+		return getPoolState().getMaxConnections();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getTotalConnections()
+	 */
+	public int getTotalConnections()
+	{
+		return getPoolState().getTotalConnections();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getActiveConnections()
+	 */
+	public int getActiveConnections()
+	{
+		return getPoolState().getActiveConnections();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getIdleConnections()
+	 */
+	public int getIdleConnections()
+	{
+		return getPoolState().getIdleConnections();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getWaitingThreads()
+	 */
+	public int getWaitingThreads()
+	{
+		return getPoolState().getWaitingThreads();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getCreationFailures()
+	 */
+	public long getCreationFailures()
+	{
+		return getPoolState().getCreationFailures();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getValidationFailures()
+	 */
+	public long getValidationFailures()
+	{
+		return getPoolState().getValidationFailures();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowCount()
+	 */
+	public long getBorrowCount()
+	{
+		return borrowCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowFailures()
+	 */
+	public long getBorrowFailures()
+	{
+		return borrowFailures.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowTimeAvg()
+	 */
+	public double getBorrowTimeAvg()
+	{
+		long count = borrowCount.get() + borrowFailures.get();
+		return count == 0 ? 0 : (double) borrowTimeTotal.get() / count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowTimeMax()
+	 */
+	public long getBorrowTimeMax()
+	{
+		return borrowTimeMax.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowTimeBuckets()
+	 */
+	public long[] getBorrowTimeBuckets()
+	{
+		return PoolSnapshot.BORROW_TIME_BUCKETS.clone();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getBorrowTimeHistogram()
+	 */
+	public long[] getBorrowTimeHistogram()
+	{
+		long[] histogram = new long[borrowTimeHistogram.length()];
+		for (int i = 0; i < histogram.length; i++)
+		{
+			histogram[i] = borrowTimeHistogram.get(i);
+		}
+		return histogram;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getLeakedConnections()
+	 */
+	public long getLeakedConnections()
+	{
+		return leakedConnections.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#getSuspectedLeaks()
+	 */
+	public int getSuspectedLeaks()
+	{
+		return detectLeaks();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.connection.PoolMetricsMBean#resetStatistics()
+	 */
+	public void resetStatistics()
+	{
+		borrowCount.set(0);
+		borrowFailures.set(0);
+		borrowTimeTotal.set(0);
+		borrowTimeMax.set(0);
+		for (int i = 0; i < borrowTimeHistogram.length(); i++)
+		{
+			borrowTimeHistogram.set(i, 0);
+		}
+		leakedConnections.set(0);
+	}
+
+	/**
+	 * 一次借出的时间和位置
+	 */
+	private static class Borrow
+	{
+		private final long			time		= System.currentTimeMillis();
+		private final Throwable		stack		= new Throwable("Borrowed by thread [" + Thread.currentThread().getName() + "]");
+		private volatile boolean	reported	= false;
+	}
+}
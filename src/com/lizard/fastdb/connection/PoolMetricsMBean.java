@@ -0,0 +1,48 @@
+package com.lizard.fastdb.connection;
+
+/**
+ * 数据源连接池指标的 JMX 接口，每个数据源注册一个，ObjectName 为 com.lizard.fastdb:type=ConnectionPool,name=数据源名称
+ *
+ * @see PoolSnapshot
+ */
+public interface PoolMetricsMBean
+{
+	public String getDataSourceName();
+
+	public String getConnectionProvider();
+
+	public int getMaxConnections();
+
+	public int getTotalConnections();
+
+	public int getActiveConnections();
+
+	public int getIdleConnections();
+
+	public int getWaitingThreads();
+
+	public long getCreationFailures();
+
+	public long getValidationFailures();
+
+	public long getBorrowCount();
+
+	public long getBorrowFailures();
+
+	public double getBorrowTimeAvg();
+
+	public long getBorrowTimeMax();
+
+	public long[] getBorrowTimeBuckets();
+
+	public long[] getBorrowTimeHistogram();
+
+	public long getLeakedConnections();
+
+	public int getSuspectedLeaks();
+
+	/**
+	 * 清零 fastDB 统计的借出次数、借出耗时和连接泄漏次数
+	 */
+	public void resetStatistics();
+}
@@ -0,0 +1,214 @@
+package com.lizard.fastdb.connection;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 数据源连接池指标在某一时刻的快照，参见 {@link PoolMetrics}
+ * <p>
+ * 连接数等状态由连接池提供，连接池不支持时为 -1；借出次数、借出耗时和连接泄漏由 fastDB 统计，与连接池无关。
+ */
+public class PoolSnapshot implements Serializable
+{
+	private static final long	serialVersionUID	= -3187455962613880245L;
+
+	/**
+	 * 借出耗时分布的区间上限（毫秒），最后一个区间为超过 5000 毫秒
+	 */
+	public static final long[]	BORROW_TIME_BUCKETS	= { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+	private final String		dataSourceName;
+	private final String		connectionProvider;
+	private final long			timestamp;
+
+	private final int			maxConnections;
+	private final int			totalConnections;
+	private final int			activeConnections;
+	private final int			idleConnections;
+	private final int			waitingThreads;
+	private final long			creationFailures;
+	private final long			validationFailures;
+
+	private final long			borrowCount;
+	private final long			borrowFailures;
+	private final long			borrowTimeTotal;	// 毫秒
+	private final long			borrowTimeMax;		// 毫秒
+	private final long[]		borrowTimeHistogram;
+
+	private final long			leakedConnections;
+	private final int			suspectedLeaks;
+
+	PoolSnapshot(String dataSourceName, String connectionProvider, PoolState state, long borrowCount, long borrowFailures, long borrowTimeTotal,
+			long borrowTimeMax, long[] borrowTimeHistogram, long leakedConnections, int suspectedLeaks)
+	{
+		if (state == null)
+		{
+			state = new PoolState();
+		}
+
+		this.dataSourceName = dataSourceName;
+		this.connectionProvider = connectionProvider;
+		this.timestamp = System.currentTimeMillis();
+		this.maxConnections = state.getMaxConnections();
+		this.totalConnections = state.getTotalConnections();
+		this.activeConnections = state.getActiveConnections();
+		this.idleConnections = state.getIdleConnections();
+		this.waitingThreads = state.getWaitingThreads();
+		this.creationFailures = state.getCreationFailures();
+		this.validationFailures = state.getValidationFailures();
+		this.borrowCount = borrowCount;
+		this.borrowFailures = borrowFailures;
+		this.borrowTimeTotal = borrowTimeTotal;
+		this.borrowTimeMax = borrowTimeMax;
+		this.borrowTimeHistogram = borrowTimeHistogram;
+		this.leakedConnections = leakedConnections;
+		this.suspectedLeaks = suspectedLeaks;
+	}
+
+	/**
+	 * 获得数据源名称
+	 */
+	public String getDataSourceName()
+	{
+		return dataSourceName;
+	}
+
+	/**
+	 * 获得连接策略类名
+	 */
+	public String getConnectionProvider()
+	{
+		return connectionProvider;
+	}
+
+	/**
+	 * 获得快照时间
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * 获得最大连接数，不支持时为 -1
+	 */
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	/**
+	 * 获得当前连接总数，不支持时为 -1
+	 */
+	public int getTotalConnections()
+	{
+		return totalConnections;
+	}
+
+	/**
+	 * 获得借出的连接数，不支持时为 -1
+	 */
+	public int getActiveConnections()
+	{
+		return activeConnections;
+	}
+
+	/**
+	 * 获得空闲的连接数，不支持时为 -1
+	 */
+	public int getIdleConnections()
+	{
+		return idleConnections;
+	}
+
+	/**
+	 * 获得等待连接的线程数，不支持时为 -1
+	 */
+	public int getWaitingThreads()
+	{
+		return waitingThreads;
+	}
+
+	/**
+	 * 获得创建物理连接失败的次数，不支持时为 -1
+	 */
+	public long getCreationFailures()
+	{
+		return creationFailures;
+	}
+
+	/**
+	 * 获得连接有效性检测失败的次数，不支持时为 -1
+	 */
+	public long getValidationFailures()
+	{
+		return validationFailures;
+	}
+
+	/**
+	 * 获得成功借出连接的次数
+	 */
+	public long getBorrowCount()
+	{
+		return borrowCount;
+	}
+
+	/**
+	 * 获得借出连接失败的次数
+	 */
+	public long getBorrowFailures()
+	{
+		return borrowFailures;
+	}
+
+	/**
+	 * 获得借出连接的平均耗时（毫秒），包括失败的借出
+	 */
+	public double getBorrowTimeAvg()
+	{
+		long count = borrowCount + borrowFailures;
+		return count == 0 ? 0 : (double) borrowTimeTotal / count;
+	}
+
+	/**
+	 * 获得借出连接的最大耗时（毫秒）
+	 */
+	public long getBorrowTimeMax()
+	{
+		return borrowTimeMax;
+	}
+
+	/**
+	 * 获得借出耗时分布，第 i 个值为耗时不超过 {@link #BORROW_TIME_BUCKETS}[i] 毫秒（且超过前一个区间）的次数，最后一个值为超过 5000 毫秒的次数
+	 */
+	public long[] getBorrowTimeHistogram()
+	{
+		return borrowTimeHistogram.clone();
+	}
+
+	/**
+	 * 获得归还时已超过 leak-detection-threshold 的连接数
+	 */
+	public long getLeakedConnections()
+	{
+		return leakedConnections;
+	}
+
+	/**
+	 * 获得当前借出已超过 leak-detection-threshold 仍未归还的连接数
+	 */
+	public int getSuspectedLeaks()
+	{
+		return suspectedLeaks;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PoolSnapshot[" + dataSourceName + ", provider=" + connectionProvider + ", max=" + maxConnections + ", total=" + totalConnections
+				+ ", active=" + activeConnections + ", idle=" + idleConnections + ", waiting=" + waitingThreads + ", creationFailures="
+				+ creationFailures + ", validationFailures=" + validationFailures + ", borrows=" + borrowCount + ", borrowFailures="
+				+ borrowFailures + ", borrowTimeAvg=" + getBorrowTimeAvg() + "ms, borrowTimeMax=" + borrowTimeMax + "ms, histogram="
+				+ Arrays.toString(borrowTimeHistogram) + ", leaked=" + leakedConnections + ", suspectedLeaks=" + suspectedLeaks + "]";
+	}
+}
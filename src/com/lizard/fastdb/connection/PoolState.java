@@ -0,0 +1,87 @@
+package com.lizard.fastdb.connection;
+
+/**
+ * 连接池在某一时刻的内部状态，由 {@link MonitorableConnectionProvider} 从具体连接池读取
+ * <p>
+ * 连接池不支持的状态值为 -1。
+ */
+public class PoolState
+{
+	private int		maxConnections		= -1;	// 最大连接数
+	private int		totalConnections	= -1;	// 当前连接总数
+	private int		activeConnections	= -1;	// 借出的连接数
+	private int		idleConnections		= -1;	// 空闲的连接数
+	private int		waitingThreads		= -1;	// 等待连接的线程数
+	private long	creationFailures	= -1;	// 创建物理连接失败的次数
+	private long	validationFailures	= -1;	// 连接有效性检测失败的次数
+
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections)
+	{
+		this.maxConnections = maxConnections;
+	}
+
+	public int getTotalConnections()
+	{
+		return totalConnections;
+	}
+
+	public void setTotalConnections(int totalConnections)
+	{
+		this.totalConnections = totalConnections;
+	}
+
+	public int getActiveConnections()
+	{
+		return activeConnections;
+	}
+
+	public void setActiveConnections(int activeConnections)
+	{
+		this.activeConnections = activeConnections;
+	}
+
+	public int getIdleConnections()
+	{
+		return idleConnections;
+	}
+
+	public void setIdleConnections(int idleConnections)
+	{
+		this.idleConnections = idleConnections;
+	}
+
+	public int getWaitingThreads()
+	{
+		return waitingThreads;
+	}
+
+	public void setWaitingThreads(int waitingThreads)
+	{
+		this.waitingThreads = waitingThreads;
+	}
+
+	public long getCreationFailures()
+	{
+		return creationFailures;
+	}
+
+	public void setCreationFailures(long creationFailures)
+	{
+		this.creationFailures = creationFailures;
+	}
+
+	public long getValidationFailures()
+	{
+		return validationFailures;
+	}
+
+	public void setValidationFailures(long validationFailures)
+	{
+		this.validationFailures = validationFailures;
+	}
+}
@@ -0,0 +1,376 @@
+package com.lizard.fastdb.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 连接池中一个物理连接的 PreparedStatement 缓存（LRU），按 (SQL, 是否返回自动生成的主键) 缓存已预编译的语句
+ * <p>
+ * 缓存随物理连接存在，跨多次借出复用；语句被取出使用期间从缓存中移除，关闭时放回，
+ * 因此同一连接上同时执行相同的SQL时，将各自使用不同的语句。物理连接从连接池移除时关闭缓存中的全部语句。
+ * <p>
+ * 第三方连接池的物理连接由 {@link #get(ConnectionProvider, Connection, int)} 按连接池登记缓存，登记新连接时清理同一连接池中已关闭的物理连接的缓存；
+ * 关闭连接池时由 {@link #removeAll(ConnectionProvider)} 关闭该连接池的全部缓存。
+ */
+public final class StatementCache
+{
+	private static final Log										logger		= LogFactory.getLog(StatementCache.class);
+
+	/**
+	 * 第三方连接池 -> 物理连接 -> 语句缓存
+	 */
+	private static final ConcurrentMap<ConnectionProvider, ConcurrentMap<PhysicalKey, StatementCache>>	CACHES	= new ConcurrentHashMap<ConnectionProvider, ConcurrentMap<PhysicalKey, StatementCache>>();
+
+	private final int												maxSize;
+	private final LinkedHashMap<Key, Holder>						idle;
+	private boolean													closed		= false;
+
+	/**
+	 * @param maxSize 最多缓存的语句数，必须大于0
+	 */
+	public StatementCache(int maxSize)
+	{
+		this.maxSize = maxSize;
+		this.idle = new LinkedHashMap<Key, Holder>(16, 0.75f, true)
+		{
+			private static final long	serialVersionUID	= 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, Holder> eldest)
+			{
+				if (size() > StatementCache.this.maxSize)
+				{
+					closeQuietly(eldest.getValue().statement);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 从缓存中取出语句
+	 *
+	 * @param key 缓存键
+	 * @return 缓存的语句，不存在时返回null
+	 */
+	public synchronized Holder checkout(Key key)
+	{
+		return closed ? null : idle.remove(key);
+	}
+
+	/**
+	 * 将使用完毕的语句放回缓存，缓存已关闭或已有相同的语句时直接关闭
+	 * <p>
+	 * 放回前清除参数和批量，并恢复创建时的 maxRows、queryTimeout 等设置，避免借出的调用者修改的设置影响之后的使用者。
+	 *
+	 * @param holder 取出或新创建的语句
+	 * @throws SQLException
+	 */
+	public synchronized void checkin(Holder holder) throws SQLException
+	{
+		if (closed || idle.containsKey(holder.key))
+		{
+			holder.statement.close();
+			return;
+		}
+
+		try
+		{
+			holder.reset();
+		}
+		catch (SQLException e)
+		{
+			// 语句已不可用，不再缓存
+			closeQuietly(holder.statement);
+			return;
+		}
+		idle.put(holder.key, holder);
+	}
+
+	/**
+	 * 关闭缓存中的全部语句，之后放回的语句直接关闭
+	 */
+	public void close()
+	{
+		List<Holder> holders;
+		synchronized (this)
+		{
+			closed = true;
+			holders = new ArrayList<Holder>(idle.values());
+			idle.clear();
+		}
+
+		for (Holder holder : holders)
+		{
+			closeQuietly(holder.statement);
+		}
+	}
+
+	/**
+	 * 获得物理连接的语句缓存，不存在时创建
+	 *
+	 * @param owner 物理连接所属的连接池
+	 * @param physical 物理连接
+	 * @param maxSize 最多缓存的语句数，必须大于0
+	 * @return 语句缓存
+	 */
+	public static StatementCache get(ConnectionProvider owner, Connection physical, int maxSize)
+	{
+		ConcurrentMap<PhysicalKey, StatementCache> caches = CACHES.get(owner);
+		if (caches == null)
+		{
+			caches = new ConcurrentHashMap<PhysicalKey, StatementCache>();
+			ConcurrentMap<PhysicalKey, StatementCache> existing = CACHES.putIfAbsent(owner, caches);
+			if (existing != null)
+			{
+				caches = existing;
+			}
+		}
+
+		PhysicalKey key = new PhysicalKey(physical);
+		StatementCache cache = caches.get(key);
+		if (cache != null)
+		{
+			return cache;
+		}
+
+		cache = new StatementCache(maxSize);
+		StatementCache existing = caches.putIfAbsent(key, cache);
+		if (existing != null)
+		{
+			return existing;
+		}
+
+		// 新的物理连接，说明连接池可能已关闭了旧的物理连接
+		removeClosed(caches);
+		return cache;
+	}
+
+	/**
+	 * 关闭连接池的全部语句缓存，在关闭连接池之前调用，以便在物理连接上关闭语句
+	 *
+	 * @param owner 要关闭的连接池
+	 */
+	public static void removeAll(ConnectionProvider owner)
+	{
+		ConcurrentMap<PhysicalKey, StatementCache> caches = CACHES.remove(owner);
+		if (caches == null)
+		{
+			return;
+		}
+
+		for (StatementCache cache : caches.values())
+		{
+			cache.close();
+		}
+		caches.clear();
+	}
+
+	/**
+	 * 移除已关闭的物理连接的语句缓存
+	 */
+	private static void removeClosed(ConcurrentMap<PhysicalKey, StatementCache> caches)
+	{
+		for (Iterator<Map.Entry<PhysicalKey, StatementCache>> it = caches.entrySet().iterator(); it.hasNext();)
+		{
+			Map.Entry<PhysicalKey, StatementCache> entry = it.next();
+			boolean closed;
+			try
+			{
+				closed = entry.getKey().connection.isClosed();
+			}
+			catch (SQLException e)
+			{
+				closed = true;
+			}
+			if (closed)
+			{
+				it.remove();
+				entry.getValue().close();
+			}
+		}
+	}
+
+	private static void closeQuietly(Statement stmt)
+	{
+		try
+		{
+			stmt.close();
+		}
+		catch (SQLException e)
+		{
+			logger.warn("Failed to close the cached PreparedStatement.", e);
+		}
+	}
+
+	/**
+	 * 缓存的语句，记录语句创建时的设置，放回缓存时恢复
+	 */
+	public static final class Holder
+	{
+		private final Key				key;
+		private final PreparedStatement	statement;
+		private final int				maxRows;
+		private final int				maxFieldSize;
+		private final int				queryTimeout;
+		private final int				fetchSize;
+		private final int				fetchDirection;
+
+		/**
+		 * 记录新创建的语句的设置，失败时关闭语句
+		 *
+		 * @param key 缓存键
+		 * @param statement 新创建的语句
+		 * @throws SQLException
+		 */
+		public Holder(Key key, PreparedStatement statement) throws SQLException
+		{
+			this.key = key;
+			this.statement = statement;
+			try
+			{
+				this.maxRows = statement.getMaxRows();
+				this.maxFieldSize = statement.getMaxFieldSize();
+				this.queryTimeout = statement.getQueryTimeout();
+				this.fetchSize = statement.getFetchSize();
+				this.fetchDirection = statement.getFetchDirection();
+			}
+			catch (SQLException e)
+			{
+				closeQuietly(statement);
+				throw e;
+			}
+		}
+
+		public PreparedStatement getStatement()
+		{
+			return statement;
+		}
+
+		/**
+		 * 清除参数和批量，恢复创建时的设置
+		 *
+		 * @throws SQLException
+		 */
+		private void reset() throws SQLException
+		{
+			statement.clearParameters();
+			statement.clearBatch();
+			if (statement.getMaxRows() != maxRows)
+			{
+				statement.setMaxRows(maxRows);
+			}
+			if (statement.getMaxFieldSize() != maxFieldSize)
+			{
+				statement.setMaxFieldSize(maxFieldSize);
+			}
+			if (statement.getQueryTimeout() != queryTimeout)
+			{
+				statement.setQueryTimeout(queryTimeout);
+			}
+			if (statement.getFetchSize() != fetchSize)
+			{
+				statement.setFetchSize(fetchSize);
+			}
+			if (statement.getFetchDirection() != fetchDirection)
+			{
+				statement.setFetchDirection(fetchDirection);
+			}
+		}
+	}
+
+	/**
+	 * 缓存键：SQL语句 + 是否返回自动生成的主键
+	 */
+	public static final class Key
+	{
+		private final String	sql;
+		private final int		autoGeneratedKeys;
+		private final int		hash;
+
+		private Key(String sql, int autoGeneratedKeys)
+		{
+			this.sql = sql;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			this.hash = sql.hashCode() * 31 + autoGeneratedKeys;
+		}
+
+		/**
+		 * 根据 Connection.prepareStatement 的参数创建缓存键，只缓存 prepareStatement(String) 和
+		 * prepareStatement(String, int autoGeneratedKeys)
+		 *
+		 * @param args prepareStatement 的参数
+		 * @return 缓存键，不可缓存时返回null
+		 */
+		public static Key of(Object[] args)
+		{
+			if (args == null || !(args[0] instanceof String))
+			{
+				return null;
+			}
+			if (args.length == 1)
+			{
+				return new Key((String) args[0], Statement.NO_GENERATED_KEYS);
+			}
+			if (args.length == 2 && args[1] instanceof Integer)
+			{
+				return new Key((String) args[0], ((Integer) args[1]).intValue());
+			}
+			return null;
+		}
+
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+		}
+	}
+
+	/**
+	 * 按对象标识比较物理连接，不依赖驱动实现的 equals
+	 */
+	private static final class PhysicalKey
+	{
+		private final Connection	connection;
+
+		private PhysicalKey(Connection connection)
+		{
+			this.connection = connection;
+		}
+
+		public int hashCode()
+		{
+			return System.identityHashCode(connection);
+		}
+
+		public boolean equals(Object obj)
+		{
+			return obj instanceof PhysicalKey && ((PhysicalKey) obj).connection == connection;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.lizard.fastdb.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 第三方连接池借出连接的代理，为 prepareStatement(String) 和 prepareStatement(String, int) 使用物理连接的语句缓存
+ * <p>
+ * 可缓存的预编译语句在物理连接上创建，关闭时放回物理连接的 {@link StatementCache}，不随借出连接的关闭而关闭；
+ * 借出连接关闭时仍未关闭的缓存语句被直接关闭，不放回缓存。其他方法都交给借出连接执行。
+ */
+final class StatementCachingConnection implements InvocationHandler
+{
+	private final Connection					logical;
+	private final Connection					physical;
+	private final StatementCache				cache;
+
+	// 从缓存取出或新建且尚未关闭的语句
+	private final List<CachedStatement>			openStatements	= new ArrayList<CachedStatement>();
+
+	private StatementCachingConnection(Connection logical, Connection physical, StatementCache cache)
+	{
+		this.logical = logical;
+		this.physical = physical;
+		this.cache = cache;
+	}
+
+	/**
+	 * 为借出的连接创建代理
+	 *
+	 * @param logical 连接池借出的连接
+	 * @param physical 借出连接对应的物理连接
+	 * @param cache 物理连接的语句缓存
+	 * @return 连接代理
+	 */
+	static Connection wrap(Connection logical, Connection physical, StatementCache cache)
+	{
+		return (Connection) Proxy.newProxyInstance(StatementCachingConnection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				new StatementCachingConnection(logical, physical, cache));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+
+		if ("close".equals(name))
+		{
+			close();
+			return null;
+		}
+		if ("equals".equals(name))
+		{
+			return proxy == args[0];
+		}
+		if ("hashCode".equals(name))
+		{
+			return System.identityHashCode(proxy);
+		}
+		if ("toString".equals(name))
+		{
+			return logical.toString();
+		}
+
+		if ("prepareStatement".equals(name))
+		{
+			StatementCache.Key key = StatementCache.Key.of(args);
+			if (key != null && !logical.isClosed())
+			{
+				return prepare((Connection) proxy, method, args, key);
+			}
+		}
+		return invokeTarget(logical, method, args);
+	}
+
+	/**
+	 * 从缓存中取出预编译语句，不存在时在物理连接上创建
+	 */
+	private PreparedStatement prepare(Connection proxy, Method method, Object[] args, StatementCache.Key key) throws Throwable
+	{
+		StatementCache.Holder holder = cache.checkout(key);
+		if (holder == null)
+		{
+			holder = new StatementCache.Holder(key, (PreparedStatement) invokeTarget(physical, method, args));
+		}
+
+		CachedStatement handler = new CachedStatement(proxy, holder);
+		synchronized (openStatements)
+		{
+			openStatements.add(handler);
+		}
+		return (PreparedStatement) Proxy.newProxyInstance(StatementCachingConnection.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+	/**
+	 * 关闭仍未关闭的缓存语句，再关闭借出连接
+	 *
+	 * @throws SQLException
+	 */
+	private void close() throws SQLException
+	{
+		List<CachedStatement> stmts;
+		synchronized (openStatements)
+		{
+			stmts = new ArrayList<CachedStatement>(openStatements);
+			openStatements.clear();
+		}
+
+		try
+		{
+			for (CachedStatement stmt : stmts)
+			{
+				stmt.abandon();
+			}
+		}
+		finally
+		{
+			logical.close();
+		}
+	}
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * 缓存语句的代理：close() 时放回物理连接的语句缓存；getConnection() 返回借出连接的代理
+	 */
+	private final class CachedStatement implements InvocationHandler
+	{
+		private final Connection				connection;
+		private final StatementCache.Holder		holder;
+		private final PreparedStatement			statement;
+
+		private volatile boolean				closed	= false;
+
+		private CachedStatement(Connection connection, StatementCache.Holder holder)
+		{
+			this.connection = connection;
+			this.holder = holder;
+			this.statement = holder.getStatement();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			String name = method.getName();
+
+			if ("close".equals(name))
+			{
+				close();
+				return null;
+			}
+			if ("isClosed".equals(name))
+			{
+				return closed || statement.isClosed();
+			}
+			if ("equals".equals(name))
+			{
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name))
+			{
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(name))
+			{
+				return statement.toString();
+			}
+
+			if (closed)
+			{
+				throw new SQLException("The statement has been closed!");
+			}
+			if ("getConnection".equals(name))
+			{
+				return connection;
+			}
+			return invokeTarget(statement, method, args);
+		}
+
+		/**
+		 * 放回语句缓存；可以重复调用
+		 *
+		 * @throws SQLException
+		 */
+		private void close() throws SQLException
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			synchronized (openStatements)
+			{
+				openStatements.remove(this);
+			}
+			cache.checkin(holder);
+		}
+
+		/**
+		 * 借出连接关闭时关闭仍未关闭的语句，不放回缓存
+		 *
+		 * @throws SQLException
+		 */
+		private void abandon() throws SQLException
+		{
+			if (!closed)
+			{
+				closed = true;
+				statement.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.lizard.fastdb.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 可以由 fastDB 缓存 PreparedStatement 的 ConnectionProvider <br>
+ * <br>
+ * 借出连接时，{@link ConnectionPool} 通过 {@link #getPhysicalConnection(Connection)} 找到连接池中的物理连接，
+ * 预编译语句在物理连接上创建并缓存在物理连接的 {@link StatementCache} 中，因此缓存可以跨多次借出复用。
+ * 自定义的 ConnectionProvider 可以不实现这个接口，此时不缓存语句。
+ *
+ * @see StatementCache
+ */
+public interface StatementCachingConnectionProvider extends ConnectionProvider
+{
+	/**
+	 * 每个物理连接最多缓存的语句数，对应数据源配置 statement-cache-size
+	 *
+	 * @return 最多缓存的语句数，0 表示不缓存
+	 */
+	public int getStatementCacheSize();
+
+	/**
+	 * 获得借出连接对应的物理连接
+	 *
+	 * @param conn 从当前连接池借出的连接
+	 * @return 物理连接，无法获得时返回null
+	 * @throws SQLException
+	 */
+	public Connection getPhysicalConnection(Connection conn) throws SQLException;
+}
@@ -0,0 +1,369 @@
+package com.lizard.fastdb.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.XAConnection;
+import javax.transaction.TransactionManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.enhydra.jdbc.standard.StandardXAConnection;
+import org.enhydra.jdbc.standard.StandardXADataSource;
+
+import com.lizard.fastdb.datasource.DataSourceUtil;
+import com.lizard.fastdb.dialect.Dialect;
+
+/**
+ * 多数据源事务使用的 XA 连接池，按数据源缓存物理 XAConnection，在分布式事务之间复用
+ * <p>
+ * 每次借出时从 XAConnection 取得新的连接句柄并交给当前事务管理器；多数据源事务关闭时通过 {@link #release(Connection)}
+ * 关闭句柄，并将物理 XAConnection 放回连接池。空闲连接按后进先出复用，超过 max-connection-idletime 或
+ * max-connection-lifetime 后关闭，最多缓存 max-connection-size 个空闲连接。
+ */
+public class XAConnectionPool
+{
+	private static final Log									logger		= LogFactory.getLog(XAConnectionPool.class);
+
+	/**
+	 * 数据源名称 与 XA连接池 映射
+	 */
+	private static final ConcurrentMap<String, XAConnectionPool>	POOLS		= new ConcurrentHashMap<String, XAConnectionPool>();
+
+	/**
+	 * 借出的连接句柄 与 物理XA连接 映射，用于归还
+	 */
+	private static final Map<Connection, PooledXAConnection>		CHECKED_OUT	= Collections
+																					.synchronizedMap(new IdentityHashMap<Connection, PooledXAConnection>());
+
+	private final String										name;
+	private final StandardXADataSource							xads;
+	private final int											maxIdle;
+	private final long											idleTimeout;	// 毫秒，0 表示不限制
+	private final long											maxLifetime;	// 毫秒，0 表示不限制
+	private final boolean										testOnBorrow;
+	private final String										testSql;
+
+	// 空闲连接，头部为最近归还的连接
+	private final LinkedBlockingDeque<PooledXAConnection>		idle		= new LinkedBlockingDeque<PooledXAConnection>();
+
+	private volatile boolean									closed		= false;
+
+	private XAConnectionPool(Properties prop) throws SQLException
+	{
+		this.name = prop.getProperty("name");
+		this.xads = DataSourceUtil.convertPropertiesToXADataSource(prop);
+		this.maxIdle = Math.max(0, getInt(prop, "max-connection-size", 0));
+		this.idleTimeout = TimeUnit.SECONDS.toMillis(getInt(prop, "max-connection-idletime", 0));
+		this.maxLifetime = TimeUnit.SECONDS.toMillis(getInt(prop, "max-connection-lifetime", 0));
+		this.testOnBorrow = Boolean.parseBoolean(prop.getProperty("test-connection-checkout", "false").trim());
+
+		String sql = prop.getProperty("test-sql");
+		if (sql == null || sql.trim().length() == 0)
+		{
+			Dialect dialect = Dialect.getDialect(prop.getProperty("driver-class"));
+			sql = (dialect == null) ? null : dialect.getTestSQL();
+		}
+		this.testSql = sql;
+	}
+
+	/**
+	 * 获得数据源的事务连接，并交给指定的事务管理器管理；连接使用完毕后必须调用 {@link #release(Connection)} 归还
+	 *
+	 * @param prop 数据源配置
+	 * @param tm 事务管理器
+	 * @return 由XAConnection创建的连接句柄，已关闭自动提交
+	 * @throws SQLException
+	 */
+	public static Connection getConnection(Properties prop, TransactionManager tm) throws SQLException
+	{
+		String name = prop.getProperty("name");
+		XAConnectionPool pool = POOLS.get(name);
+		if (pool == null)
+		{
+			pool = new XAConnectionPool(prop);
+			XAConnectionPool exists = POOLS.putIfAbsent(name, pool);
+			if (exists != null)
+			{
+				pool = exists;
+			}
+		}
+
+		return pool.borrow(tm);
+	}
+
+	/**
+	 * 归还事务连接：关闭连接句柄，将物理XA连接放回连接池；不是从连接池借出的连接直接关闭
+	 *
+	 * @param conn 连接句柄
+	 * @throws SQLException
+	 */
+	public static void release(Connection conn) throws SQLException
+	{
+		if (conn == null)
+		{
+			return;
+		}
+
+		PooledXAConnection pooled = CHECKED_OUT.remove(conn);
+		if (pooled == null)
+		{
+			if (!conn.isClosed())
+			{
+				conn.close();
+			}
+			return;
+		}
+
+		try
+		{
+			if (!conn.isClosed())
+			{
+				conn.close();
+			}
+		}
+		catch (SQLException e)
+		{
+			pooled.broken = true;
+			logger.warn("Failed to close the XA connection handle of [" + pooled.pool.name + "].", e);
+		}
+
+		pooled.pool.checkin(pooled);
+	}
+
+	/**
+	 * 关闭数据源的XA连接池，释放全部空闲的物理XA连接；借出的连接在归还时关闭
+	 *
+	 * @param name 数据源名称
+	 */
+	public static void shutdown(String name)
+	{
+		XAConnectionPool pool = POOLS.remove(name);
+		if (pool != null)
+		{
+			pool.close();
+		}
+	}
+
+	/**
+	 * 关闭全部XA连接池
+	 */
+	public static void shutdownAll()
+	{
+		for (String name : POOLS.keySet())
+		{
+			shutdown(name);
+		}
+	}
+
+	private Connection borrow(TransactionManager tm) throws SQLException
+	{
+		long now = System.currentTimeMillis();
+
+		PooledXAConnection pooled;
+		while ((pooled = idle.pollFirst()) != null)
+		{
+			if (isExpired(pooled, now))
+			{
+				pooled.close();
+				continue;
+			}
+
+			Connection conn = pooled.open(tm);
+			if (testOnBorrow && !isValid(conn))
+			{
+				closeHandle(conn);
+				pooled.close();
+				continue;
+			}
+			CHECKED_OUT.put(conn, pooled);
+			return conn;
+		}
+
+		// 没有可复用的连接，创建新的物理XA连接
+		xads.setTransactionManager(tm);
+		pooled = new PooledXAConnection(this, xads.getXAConnection());
+		Connection conn = pooled.open(tm);
+		CHECKED_OUT.put(conn, pooled);
+		return conn;
+	}
+
+	private void checkin(PooledXAConnection pooled)
+	{
+		long now = System.currentTimeMillis();
+		pooled.lastUsed = now;
+
+		if (closed || pooled.broken || isExpired(pooled, now) || idle.size() >= maxIdle)
+		{
+			pooled.close();
+			return;
+		}
+
+		idle.offerFirst(pooled);
+
+		// 关闭空闲过久的连接，它们位于队列尾部
+		PooledXAConnection eldest;
+		while ((eldest = idle.peekLast()) != null && idleTimeout > 0 && now - eldest.lastUsed > idleTimeout)
+		{
+			if (idle.removeLastOccurrence(eldest))
+			{
+				eldest.close();
+			}
+		}
+
+		// 关闭期间归还的连接
+		if (closed && idle.remove(pooled))
+		{
+			pooled.close();
+		}
+	}
+
+	private void close()
+	{
+		closed = true;
+
+		PooledXAConnection pooled;
+		while ((pooled = idle.pollFirst()) != null)
+		{
+			pooled.close();
+		}
+		logger.info("XA connection pool [" + name + "] shut down.");
+	}
+
+	private boolean isExpired(PooledXAConnection pooled, long now)
+	{
+		return (maxLifetime > 0 && now - pooled.createdAt > maxLifetime) || (idleTimeout > 0 && now - pooled.lastUsed > idleTimeout);
+	}
+
+	private boolean isValid(Connection conn)
+	{
+		try
+		{
+			if (testSql == null)
+			{
+				return conn.isValid(5);
+			}
+
+			Statement stmt = conn.createStatement();
+			try
+			{
+				stmt.execute(testSql);
+			}
+			finally
+			{
+				stmt.close();
+			}
+			return true;
+		}
+		catch (SQLException e)
+		{
+			logger.warn("XA connection of [" + name + "] is invalid, closed.", e);
+			return false;
+		}
+	}
+
+	private static void closeHandle(Connection conn)
+	{
+		try
+		{
+			conn.close();
+		}
+		catch (SQLException e)
+		{
+			// 连接已不可用，忽略
+		}
+	}
+
+	private static int getInt(Properties prop, String key, int defaultValue)
+	{
+		String value = prop.getProperty(key);
+		if (value == null || !value.trim().matches("^\\d+$"))
+		{
+			return defaultValue;
+		}
+		return Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * 连接池中的物理XA连接
+	 */
+	private static class PooledXAConnection implements ConnectionEventListener
+	{
+		private final XAConnectionPool	pool;
+		private final XAConnection		xacon;
+		private final long				createdAt;
+		private volatile long			lastUsed;
+		private volatile boolean		broken	= false;
+
+		PooledXAConnection(XAConnectionPool pool, XAConnection xacon)
+		{
+			this.pool = pool;
+			this.xacon = xacon;
+			this.createdAt = System.currentTimeMillis();
+			this.lastUsed = this.createdAt;
+			xacon.addConnectionEventListener(this);
+		}
+
+		/**
+		 * 取得新的连接句柄，交给事务管理器管理并关闭自动提交
+		 */
+		Connection open(TransactionManager tm) throws SQLException
+		{
+			if (xacon instanceof StandardXAConnection)
+			{
+				((StandardXAConnection) xacon).setTransactionManager(tm);
+			}
+
+			Connection conn = xacon.getConnection();
+			conn.setAutoCommit(false);
+			return conn;
+		}
+
+		/**
+		 * 关闭物理XA连接
+		 */
+		void close()
+		{
+			try
+			{
+				xacon.removeConnectionEventListener(this);
+				xacon.close();
+			}
+			catch (SQLException e)
+			{
+				logger.warn("Failed to close the XA connection of [" + pool.name + "].", e);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.sql.ConnectionEventListener#connectionClosed(javax.sql.ConnectionEvent)
+		 */
+		public void connectionClosed(ConnectionEvent event)
+		{
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.sql.ConnectionEventListener#connectionErrorOccurred(javax.sql.ConnectionEvent)
+		 */
+		public void connectionErrorOccurred(ConnectionEvent event)
+		{
+			// 物理连接出错，归还时关闭
+			broken = true;
+		}
+	}
+}
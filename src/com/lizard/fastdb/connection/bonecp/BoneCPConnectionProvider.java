@@ -9,23 +9,25 @@ import javax.transaction.TransactionManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.enhydra.jdbc.standard.StandardXADataSource;
 
 import com.lizard.fastdb.DBException;
 import com.lizard.fastdb.connection.ConfigureReflect;
-import com.lizard.fastdb.connection.ConnectionProvider;
+import com.lizard.fastdb.connection.MonitorableConnectionProvider;
+import com.lizard.fastdb.connection.PoolState;
+import com.lizard.fastdb.connection.StatementCachingConnectionProvider;
+import com.lizard.fastdb.connection.XAConnectionPool;
 import com.lizard.fastdb.datasource.DataSourceException;
-import com.lizard.fastdb.datasource.DataSourceUtil;
 import com.lizard.fastdb.dialect.Dialect;
 import com.jolbox.bonecp.BoneCP;
 import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.ConnectionHandle;
 
 /**
  * 数据库连接策略 BoneCP 实现
  * 
  * @author SHEN.GANG
  */
-public class BoneCPConnectionProvider implements ConnectionProvider
+public class BoneCPConnectionProvider implements MonitorableConnectionProvider, StatementCachingConnectionProvider
 {
 	private static final long	serialVersionUID	= 8860369586785396697L;
 	private static final Log	LOG					= LogFactory.getLog(BoneCPConnectionProvider.class);
@@ -38,6 +40,10 @@ public class BoneCPConnectionProvider implements ConnectionProvider
 	 * 连接池对象
 	 */
 	private BoneCP				pool;
+	/**
+	 * 每个物理连接最多缓存的语句数
+	 */
+	private int					statementCacheSize	= 0;
 
 	public void configure(Properties prop)
 	{
@@ -162,6 +168,9 @@ public class BoneCPConnectionProvider implements ConnectionProvider
 		// 空闲连接的检查周期（包括 检查空闲连接是否超期 和 连接是否可用-使用connectionTestStatement测试Connection的有效性 ）
 		ds.setProperty("idleConnectionTestPeriodInSeconds", ds.getProperty("idle-connection-test-period"));
 
+		// PreparedStatement 由 fastDB 缓存在物理连接上，不使用 BoneCP 的 statementsCacheSize
+		statementCacheSize = Integer.parseInt(ds.getProperty("statement-cache-size", "0").trim());
+
 		// 初始化BoneCP属性
 		try
 		{
@@ -183,13 +192,7 @@ public class BoneCPConnectionProvider implements ConnectionProvider
 
 	public Connection getXAConnection(TransactionManager tm) throws SQLException
 	{
-		StandardXADataSource sxd = DataSourceUtil.convertPropertiesToXADataSource(ds);
-		sxd.setTransactionManager(tm);
-
-		Connection conn = sxd.getXAConnection().getConnection();
-		conn.setAutoCommit(false);
-
-		return conn;
+		return XAConnectionPool.getConnection(ds, tm);
 	}
 
 	public void closeConnection(Connection conn) throws SQLException
@@ -201,6 +204,16 @@ public class BoneCPConnectionProvider implements ConnectionProvider
 
 	}
 
+	public int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+
+	public Connection getPhysicalConnection(Connection conn) throws SQLException
+	{
+		return (conn instanceof ConnectionHandle) ? ((ConnectionHandle) conn).getInternalConnection() : null;
+	}
+
 	public void shutdown()
 	{
 		if (pool != null)
@@ -209,6 +222,25 @@ public class BoneCPConnectionProvider implements ConnectionProvider
 		}
 	}
 
+	/**
+	 * 读取BoneCP连接池的状态，BoneCP 不统计等待线程数和失败次数
+	 */
+	public PoolState getPoolState()
+	{
+		BoneCP pool = this.pool;
+		if (pool == null)
+		{
+			return null;
+		}
+
+		PoolState state = new PoolState();
+		state.setMaxConnections(Integer.parseInt(ds.getProperty("max-connection-size")));
+		state.setTotalConnections(pool.getTotalCreatedConnections());
+		state.setActiveConnections(pool.getTotalLeased());
+		state.setIdleConnections(pool.getTotalFree());
+		return state;
+	}
+
 	// public synchronized void destory()
 	// {
 	// if (pool != null)
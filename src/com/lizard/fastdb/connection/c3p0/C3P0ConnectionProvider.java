@@ -1,5 +1,7 @@
 package com.lizard.fastdb.connection.c3p0;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Properties;
@@ -8,27 +10,48 @@ import javax.transaction.TransactionManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.enhydra.jdbc.standard.StandardXADataSource;
 
 import com.lizard.fastdb.connection.ConfigureReflect;
-import com.lizard.fastdb.connection.ConnectionProvider;
-import com.lizard.fastdb.datasource.DataSourceUtil;
+import com.lizard.fastdb.connection.MonitorableConnectionProvider;
+import com.lizard.fastdb.connection.PoolState;
+import com.lizard.fastdb.connection.StatementCachingConnectionProvider;
+import com.lizard.fastdb.connection.XAConnectionPool;
+import com.mchange.v2.c3p0.C3P0ProxyConnection;
 import com.mchange.v2.c3p0.C3P0Registry;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.mchange.v2.c3p0.DataSources;
+import com.mchange.v2.c3p0.PooledDataSource;
 
 /**
  * ConnectionProvicer 的 C3P0 实现
  * 
  * @author SHEN.GANG
  */
-public class C3P0ConnectionProvider implements ConnectionProvider
+public class C3P0ConnectionProvider implements MonitorableConnectionProvider, StatementCachingConnectionProvider
 {
 	private static final long		serialVersionUID	= 1L;
 	private static final Log		logger				= LogFactory.getLog(C3P0ConnectionProvider.class);
 
+	/**
+	 * 通过 C3P0ProxyConnection.rawConnectionOperation 取出物理连接
+	 */
+	private static final Method		RAW_CONNECTION;
+
+	static
+	{
+		try
+		{
+			RAW_CONNECTION = C3P0ConnectionProvider.class.getMethod("rawConnection", Connection.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
 	private Properties				ds					= null;											// 数据源配置
 	private String					name				= null;											// 数据源名称
+	private int						statementCacheSize	= 0;											// 每个物理连接最多缓存的语句数
 
 	private ComboPooledDataSource	cpds				= null;											// 当前ConnectionProvider对应的C3P0数据源
 
@@ -44,6 +67,7 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 
 		this.ds = ds;
 		this.name = this.ds.getProperty("name");
+		this.statementCacheSize = Integer.parseInt(this.ds.getProperty("statement-cache-size", "0").trim());
 
 		if (!isDataSourcePooled(name))
 		{
@@ -69,13 +93,7 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 	 */
 	public Connection getXAConnection(TransactionManager tm) throws SQLException
 	{
-		StandardXADataSource sxd = DataSourceUtil.convertPropertiesToXADataSource(ds);
-		sxd.setTransactionManager(tm);
-
-		Connection conn = sxd.getXAConnection().getConnection();
-		conn.setAutoCommit(false);
-
-		return conn;
+		return XAConnectionPool.getConnection(ds, tm);
 	}
 
 	/**
@@ -123,6 +141,34 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 		// }
 	}
 
+	/**
+	 * 读取C3P0连接池的状态，C3P0 不统计创建物理连接失败的次数
+	 */
+	public PoolState getPoolState()
+	{
+		PooledDataSource pds = C3P0Registry.pooledDataSourceByName(name);
+		if (pds == null)
+		{
+			return null;
+		}
+
+		PoolState state = new PoolState();
+		try
+		{
+			state.setMaxConnections(Integer.parseInt(ds.getProperty("max-connection-size")));
+			state.setTotalConnections(pds.getNumConnectionsDefaultUser());
+			state.setActiveConnections(pds.getNumBusyConnectionsDefaultUser());
+			state.setIdleConnections(pds.getNumIdleConnectionsDefaultUser());
+			state.setWaitingThreads(pds.getNumThreadsAwaitingCheckoutDefaultUser());
+			state.setValidationFailures(pds.getNumFailedIdleTestsDefaultUser() + pds.getNumFailedCheckinsDefaultUser());
+		}
+		catch (SQLException e)
+		{
+			logger.warn("Failed to read the state of C3P0 pool [" + name + "].", e);
+		}
+		return state;
+	}
+
 	/**
 	 * 查看指定名称的连接池是否存在
 	 * 
@@ -147,6 +193,50 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 		}
 	}
 
+	/**
+	 * 每个物理连接最多缓存的语句数
+	 */
+	public int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+
+	/**
+	 * 获得借出连接对应的物理连接
+	 */
+	public Connection getPhysicalConnection(Connection conn) throws SQLException
+	{
+		if (!(conn instanceof C3P0ProxyConnection))
+		{
+			return null;
+		}
+
+		try
+		{
+			return (Connection) ((C3P0ProxyConnection) conn).rawConnectionOperation(RAW_CONNECTION, null,
+					new Object[] { C3P0ProxyConnection.RAW_CONNECTION });
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new SQLException("Failed to get the physical connection of C3P0 pool [" + name + "]!", e);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw new SQLException("Failed to get the physical connection of C3P0 pool [" + name + "]!", e.getCause());
+		}
+	}
+
+	/**
+	 * 供 rawConnectionOperation 调用，原样返回 C3P0 传入的物理连接
+	 * 
+	 * @param conn 物理连接
+	 * @return 物理连接
+	 */
+	public static Connection rawConnection(Connection conn)
+	{
+		return conn;
+	}
+
 	/**
 	 * 将数据源配置（properties）转换为C3P0的数据源对象
 	 */
@@ -169,7 +259,7 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 		}
 		catch (Exception e1)
 		{
-			e1.printStackTrace();
+			logger.error("Fail to initialize C3P0 pool [" + name + "]", e1);
 		}
 	}
 
@@ -200,5 +290,7 @@ public class C3P0ConnectionProvider implements ConnectionProvider
 		this.ds.setProperty("idleConnectionTestPeriod", this.ds.getProperty("idle-connection-test-period"));
 
 		this.ds.setProperty("loginTimeout", this.ds.getProperty("connection-timeout"));
+
+		// PreparedStatement 由 fastDB 缓存在物理连接上，不使用 C3P0 的 maxStatementsPerConnection
 	}
 }
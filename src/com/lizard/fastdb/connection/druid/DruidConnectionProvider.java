@@ -8,44 +8,62 @@ import javax.transaction.TransactionManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.enhydra.jdbc.standard.StandardXADataSource;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.pool.DruidDataSourceFactory;
-import com.lizard.fastdb.connection.ConnectionProvider;
-import com.lizard.fastdb.datasource.DataSourceUtil;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import com.lizard.fastdb.connection.MonitorableConnectionProvider;
+import com.lizard.fastdb.connection.PoolState;
+import com.lizard.fastdb.connection.StatementCachingConnectionProvider;
+import com.lizard.fastdb.connection.XAConnectionPool;
+import com.lizard.fastdb.dialect.Dialect;
 
 /**
  * ConnectionProvicer 的  Druid 实现
+ * <p>
+ * 每个数据源对应一个 ConnectionProvider 实例，各自拥有独立的 Druid 连接池（连接数、等待队列、连接检测和 stat 统计互不影响）
  * 
  * @author SHEN.GANG
  */
-public class DruidConnectionProvider implements ConnectionProvider {
+public class DruidConnectionProvider implements MonitorableConnectionProvider, StatementCachingConnectionProvider {
 
 	private static final long		serialVersionUID	= 1L;
 	private static final Log		logger				= LogFactory.getLog(DruidConnectionProvider.class);
 	
 	private Properties				prop 				= null;
 	
-	private static  DruidDataSource  		ds 			= new DruidDataSource();  				
+	/**
+	 * 当前数据源的连接池
+	 */
+	private DruidDataSource			ds					= null;
+	
+	/**
+	 * 每个物理连接最多缓存的语句数
+	 */
+	private int						statementCacheSize	= 0;
 	
 	@Override
-	public void configure(Properties prop) {
+	public synchronized void configure(Properties prop) {
 		
-		if (this.prop != null) return;
+		if (this.ds != null) return;
 		
 		this.prop = prop;
+		this.statementCacheSize = Integer.parseInt(prop.getProperty("statement-cache-size", "0").trim());
 		
+		DruidDataSource pool = new DruidDataSource();
 		try {
 			// 转换prop属性
 			convertProp();
-			DruidDataSourceFactory.config(ds, prop);
+			DruidDataSourceFactory.config(pool, prop);
+			// 连接池名称用于区分各数据源的 stat 统计
+			pool.setName(prop.getProperty("name"));
 			
+			this.ds = pool;
 			logger.info("Druid pool [" + prop.getProperty("name") + "] registered.");
 		} 
 		catch (Exception e) 
 		{
-			e.printStackTrace();
+			pool.close();
 			logger.error("Fail to register Druid pool [" + prop.getProperty("name") + "]", e);
 		}
 	}
@@ -53,18 +71,16 @@ public class DruidConnectionProvider implements ConnectionProvider {
 	@Override
 	public Connection getConnection() throws SQLException 
 	{
+		if (ds == null)
+		{
+			throw new SQLException("Druid pool [" + (prop == null ? null : prop.getProperty("name")) + "] is not registered!");
+		}
 		return ds.getConnection();
 	}	
 
 	@Override
 	public Connection getXAConnection(TransactionManager tm) throws SQLException {
-		StandardXADataSource sxd = DataSourceUtil.convertPropertiesToXADataSource(prop);
-		sxd.setTransactionManager(tm);
-
-		Connection conn = sxd.getXAConnection().getConnection();
-		conn.setAutoCommit(false);
-
-		return conn;
+		return XAConnectionPool.getConnection(prop, tm);
 	}
 
 	@Override
@@ -76,15 +92,45 @@ public class DruidConnectionProvider implements ConnectionProvider {
 	}
 
 	@Override
-	public void shutdown() {
+	public synchronized void shutdown() {
+		if (ds == null) return;
+		
 		try {
 			ds.close();
 		} catch( Exception e ) {
-			e.printStackTrace();
-			logger.error("Failed to close Druid pool.");
+			logger.error("Failed to close Druid pool [" + prop.getProperty("name") + "].", e);
+		} finally {
+			ds = null;
 		}
 	}
 
+	@Override
+	public PoolState getPoolState() {
+		DruidDataSource pool = this.ds;
+		if (pool == null) return null;
+
+		PoolState state = new PoolState();
+		state.setMaxConnections(pool.getMaxActive());
+		state.setActiveConnections(pool.getActiveCount());
+		state.setIdleConnections(pool.getPoolingCount());
+		state.setTotalConnections(pool.getActiveCount() + pool.getPoolingCount());
+		state.setWaitingThreads(pool.getWaitThreadCount());
+		state.setCreationFailures(pool.getCreateErrorCount());
+		// 检测无效等原因被丢弃的连接数
+		state.setValidationFailures(pool.getDiscardCount());
+		return state;
+	}
+
+	@Override
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	@Override
+	public Connection getPhysicalConnection(Connection conn) throws SQLException {
+		return (conn instanceof DruidPooledConnection) ? ((DruidPooledConnection) conn).getConnection() : null;
+	}
+
 	/**
 	 * 设置属性映射，用于通过方法反射设置属性
 	 */
@@ -100,8 +146,35 @@ public class DruidConnectionProvider implements ConnectionProvider {
 		this.prop.setProperty("maxActive", this.prop.getProperty("max-connection-size"));
 		this.prop.setProperty("minIdle", this.prop.getProperty("min-connection-size"));
 		this.prop.setProperty("initialSize", this.prop.getProperty("init-connection-size"));
-		this.prop.setProperty("maxWait", this.prop.getProperty("max-connection-idletime"));
-//		this.prop.setProperty("validationQuery", null);
+		
+		// 获取连接的最长等待时间（毫秒），对应 connection-timeout（秒）
+		this.prop.setProperty("maxWait", String.valueOf(Long.parseLong(this.prop.getProperty("connection-timeout", "5").trim()) * 1000));
+		// 连接的最大空闲时间（毫秒），超过后被回收
+		this.prop.setProperty("minEvictableIdleTimeMillis", String.valueOf(Long.parseLong(this.prop.getProperty("max-connection-idletime", "3600").trim()) * 1000));
+		
+		// 连接有效性检测
+		String testSql = this.prop.getProperty("test-sql");
+		if (null == testSql || testSql.trim().length() == 0)
+		{
+			Dialect dialect = Dialect.getDialect(this.prop.getProperty("driver-class"));
+			testSql = (dialect == null) ? null : dialect.getTestSQL();
+		}
+		if (null != testSql)
+		{
+			this.prop.setProperty("validationQuery", testSql);
+		}
+		this.prop.setProperty("testOnBorrow", this.prop.getProperty("test-connection-checkout", "false"));
+		this.prop.setProperty("testOnReturn", this.prop.getProperty("test-connection-checkin", "false"));
+		long testPeriod = Long.parseLong(this.prop.getProperty("idle-connection-test-period", "0").trim());
+		this.prop.setProperty("testWhileIdle", String.valueOf(testPeriod > 0));
+		if (testPeriod > 0)
+		{
+			this.prop.setProperty("timeBetweenEvictionRunsMillis", String.valueOf(testPeriod * 1000));
+		}
+		
+		// stat 统计挂在当前连接池上，各数据源分别统计
 		this.prop.setProperty("filters", "stat");
+
+		// PreparedStatement 由 fastDB 缓存在物理连接上，不使用 Druid 的 poolPreparedStatements
 	}
 }
@@ -0,0 +1,294 @@
+package com.lizard.fastdb.connection.fast;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lizard.fastdb.connection.StatementCache;
+
+/**
+ * 借出连接的代理：close() 将物理连接归还连接池，而不是关闭
+ * <p>
+ * 每次借出创建一个新的代理，已关闭的代理不能再使用；记录使用期间修改的连接状态，归还时恢复。
+ * 通过代理创建的语句被跟踪，归还时关闭使用者未关闭的语句；配置了 statement-cache-size 时，
+ * prepareStatement 返回的语句在关闭时放回物理连接的语句缓存。
+ */
+final class ConnectionHandler implements InvocationHandler
+{
+	private static final Constructor<?>	PROXY_CONSTRUCTOR;
+
+	static
+	{
+		try
+		{
+			PROXY_CONSTRUCTOR = Proxy.getProxyClass(ConnectionHandler.class.getClassLoader(), new Class<?>[] { Connection.class })
+					.getConstructor(InvocationHandler.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final FastPool				pool;
+	private final PoolEntry				entry;
+
+	private volatile boolean			closed				= false;
+
+	// 通过代理创建且尚未关闭的语句
+	private final List<StatementHandler>	openStatements		= new ArrayList<StatementHandler>();
+
+	// 使用期间修改过的连接状态，归还时恢复
+	private boolean						autoCommitChanged	= false;
+	private boolean						readOnlyChanged		= false;
+	private int							originalIsolation	= -1;
+
+	private ConnectionHandler(FastPool pool, PoolEntry entry)
+	{
+		this.pool = pool;
+		this.entry = entry;
+	}
+
+	/**
+	 * 为借出的连接创建代理
+	 *
+	 * @param pool 所属连接池
+	 * @param entry 借出的连接
+	 * @return 连接代理
+	 */
+	static Connection newProxy(FastPool pool, PoolEntry entry)
+	{
+		try
+		{
+			return (Connection) PROXY_CONSTRUCTOR.newInstance(new ConnectionHandler(pool, entry));
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Failed to create the connection proxy!", e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+
+		if ("close".equals(name))
+		{
+			close();
+			return null;
+		}
+		if ("isClosed".equals(name))
+		{
+			return closed || entry.connection.isClosed();
+		}
+		if ("equals".equals(name))
+		{
+			return proxy == args[0];
+		}
+		if ("hashCode".equals(name))
+		{
+			return System.identityHashCode(proxy);
+		}
+		if ("toString".equals(name))
+		{
+			return "FastConnection[" + pool.getName() + ", " + entry.connection + (closed ? ", closed]" : "]");
+		}
+
+		if (closed)
+		{
+			throw new SQLException("The connection has been closed and returned to the pool [" + pool.getName() + "]!", "08003");
+		}
+
+		if ("setAutoCommit".equals(name))
+		{
+			autoCommitChanged = true;
+		}
+		else if ("setReadOnly".equals(name))
+		{
+			readOnlyChanged = true;
+		}
+		else if ("setTransactionIsolation".equals(name) && originalIsolation < 0)
+		{
+			originalIsolation = entry.connection.getTransactionIsolation();
+		}
+
+		if ("createStatement".equals(name) || "prepareStatement".equals(name) || "prepareCall".equals(name))
+		{
+			return openStatement((Connection) proxy, method, args);
+		}
+		return invokeTarget(method, args);
+	}
+
+	/**
+	 * 创建语句并跟踪，连接归还时关闭未关闭的语句；可缓存的预编译语句优先从物理连接的语句缓存中取出
+	 *
+	 * @param proxy 连接代理
+	 * @param method createStatement、prepareStatement 或 prepareCall
+	 * @param args 方法参数
+	 * @return 语句代理
+	 */
+	private Statement openStatement(Connection proxy, Method method, Object[] args) throws Throwable
+	{
+		StatementCache.Key key = null;
+		StatementCache.Holder holder = null;
+		if (entry.statements != null && "prepareStatement".equals(method.getName()))
+		{
+			key = StatementCache.Key.of(args);
+			holder = (key == null) ? null : entry.statements.checkout(key);
+		}
+
+		Statement stmt;
+		if (holder != null)
+		{
+			stmt = holder.getStatement();
+		}
+		else
+		{
+			stmt = (Statement) invokeTarget(method, args);
+			if (key != null)
+			{
+				holder = new StatementCache.Holder(key, (PreparedStatement) stmt);
+			}
+		}
+
+		StatementHandler handler = new StatementHandler(this, proxy, stmt, holder == null ? null : entry.statements, holder);
+		synchronized (openStatements)
+		{
+			openStatements.add(handler);
+		}
+		return handler.newProxy(method.getReturnType());
+	}
+
+	/**
+	 * 在物理连接上执行方法，出现连接级错误时标记连接不可用
+	 */
+	private Object invokeTarget(Method method, Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(entry.connection, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException)
+			{
+				checkError((SQLException) cause);
+			}
+			throw cause;
+		}
+	}
+
+	/**
+	 * 语句已关闭，停止跟踪
+	 *
+	 * @param handler 语句代理
+	 */
+	void untrack(StatementHandler handler)
+	{
+		synchronized (openStatements)
+		{
+			// 通常最后打开的语句最先关闭，从后向前查找
+			for (int i = openStatements.size() - 1; i >= 0; i--)
+			{
+				if (openStatements.get(i) == handler)
+				{
+					openStatements.remove(i);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 连接或语句执行出错时调用，连接级错误将连接标记为不可用，归还时关闭
+	 *
+	 * @param e 执行时的异常
+	 */
+	void checkError(SQLException e)
+	{
+		if (isConnectionError(e))
+		{
+			entry.broken = true;
+		}
+	}
+
+	/**
+	 * 恢复连接状态并归还连接池，可以重复调用
+	 */
+	private void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+
+		// 关闭使用者未关闭的语句
+		StatementHandler[] abandoned;
+		synchronized (openStatements)
+		{
+			abandoned = openStatements.toArray(new StatementHandler[openStatements.size()]);
+			openStatements.clear();
+		}
+		for (StatementHandler handler : abandoned)
+		{
+			try
+			{
+				handler.abandon();
+			}
+			catch (SQLException e)
+			{
+				checkError(e);
+			}
+		}
+
+		Connection conn = entry.connection;
+		try
+		{
+			if (autoCommitChanged && !entry.broken && !conn.getAutoCommit())
+			{
+				// 未提交的数据回滚，避免带入下一次借出
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+			if (readOnlyChanged && !entry.broken)
+			{
+				conn.setReadOnly(false);
+			}
+			if (originalIsolation >= 0 && !entry.broken)
+			{
+				conn.setTransactionIsolation(originalIsolation);
+			}
+		}
+		catch (SQLException e)
+		{
+			entry.broken = true;
+		}
+
+		pool.release(entry);
+	}
+
+	/**
+	 * 是否是连接级错误（连接已断开等），SQLState 以 08 开头
+	 */
+	private static boolean isConnectionError(SQLException e)
+	{
+		String state = e.getSQLState();
+		return e instanceof SQLNonTransientConnectionException || (state != null && state.startsWith("08"));
+	}
+}
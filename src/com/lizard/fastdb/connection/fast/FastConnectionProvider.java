@@ -0,0 +1,126 @@
+package com.lizard.fastdb.connection.fast;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import javax.transaction.TransactionManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.connection.MonitorableConnectionProvider;
+import com.lizard.fastdb.connection.PoolState;
+import com.lizard.fastdb.connection.XAConnectionPool;
+
+/**
+ * 数据库连接策略 fastDB 内置连接池实现，参见 {@link FastPool}
+ * <p>
+ * 在 datasource.xml 中配置：
+ *
+ * <pre>
+ * &lt;connection-provider&gt;com.lizard.fastdb.connection.fast.FastConnectionProvider&lt;/connection-provider&gt;
+ * </pre>
+ *
+ * 使用的连接属性：max-connection-size, min-connection-size, init-connection-size, max-connection-idletime,
+ * max-connection-lifetime, idle-connection-test-period, test-sql, test-connection-checkout, connection-timeout,
+ * acquire-retry-attempts, acquire-retry-delay, statement-cache-size
+ */
+public class FastConnectionProvider implements MonitorableConnectionProvider
+{
+	private static final long	serialVersionUID	= 2925046387384117601L;
+	private static final Log	logger				= LogFactory.getLog(FastConnectionProvider.class);
+
+	/**
+	 * 数据源配置
+	 */
+	private Properties			ds;
+	/**
+	 * 连接池对象
+	 */
+	private transient FastPool	pool;
+
+	public synchronized void configure(Properties prop)
+	{
+		// 如果已经存在，则直接返回
+		if (pool != null)
+		{
+			return;
+		}
+
+		ds = prop;
+		try
+		{
+			pool = new FastPool(prop);
+
+			logger.info("Fast pool [" + prop.getProperty("name") + "] registered.");
+		}
+		catch (ClassNotFoundException e)
+		{
+			logger.error("Fail to load jdbc driver: " + prop.getProperty("driver-class"), e);
+		}
+	}
+
+	public Connection getConnection() throws SQLException
+	{
+		if (pool == null)
+		{
+			throw new SQLException("Fast pool [" + (ds == null ? null : ds.getProperty("name")) + "] is not registered!");
+		}
+		return pool.getConnection();
+	}
+
+	public Connection getXAConnection(TransactionManager tm) throws SQLException
+	{
+		return XAConnectionPool.getConnection(ds, tm);
+	}
+
+	public void closeConnection(Connection conn) throws SQLException
+	{
+		if (conn != null && !conn.isClosed())
+		{
+			conn.close();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	public synchronized void shutdown()
+	{
+		if (pool != null)
+		{
+			pool.shutdown();
+			pool = null;
+
+			logger.info("Fast pool [" + ds.getProperty("name") + "] shut down.");
+		}
+	}
+
+	public PoolState getPoolState()
+	{
+		FastPool pool = this.pool;
+		if (pool == null)
+		{
+			return null;
+		}
+
+		PoolState state = new PoolState();
+		state.setMaxConnections(pool.getMaxConnections());
+		state.setTotalConnections(pool.getTotalConnections());
+		state.setActiveConnections(pool.getActiveConnections());
+		state.setIdleConnections(pool.getIdleConnections());
+		state.setWaitingThreads(pool.getWaitingThreads());
+		state.setCreationFailures(pool.getCreationFailures());
+		state.setValidationFailures(pool.getValidationFailures());
+		return state;
+	}
+
+	/**
+	 * 获得连接池对象，用于查看连接池状态
+	 *
+	 * @return 连接池对象，未注册时返回null
+	 */
+	public FastPool getPool()
+	{
+		return pool;
+	}
+}
@@ -0,0 +1,642 @@
+package com.lizard.fastdb.connection.fast;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.dialect.Dialect;
+
+/**
+ * fastDB 内置的轻量级连接池
+ * <p>
+ * 借出连接不加锁：
+ * <ol>
+ * <li>优先借出当前线程最近归还的连接（线程亲和），多数情况下无竞争</li>
+ * <li>其次扫描全部连接，通过 CAS 抢占空闲连接</li>
+ * <li>没有空闲连接时，异步创建新连接（不超过最大连接数），并在 SynchronousQueue 上等待归还或新建的连接，超过 connection-timeout 后失败</li>
+ * </ol>
+ * 后台线程定期回收超过最大生命周期或最大空闲时间的连接，使用 test-sql（默认为数据库方言的测试SQL）检测空闲连接，并维持最小连接数。
+ */
+public final class FastPool
+{
+	private static final Log								logger				= LogFactory.getLog(FastPool.class);
+
+	// 每个线程最多记录的最近归还的连接数
+	private static final int								MAX_THREAD_ENTRIES	= 16;
+
+	// 等待连接时，每次在交接队列上等待的最长时间，超时后重新扫描全部连接
+	private static final long								POLL_SLICE_NANOS	= TimeUnit.MILLISECONDS.toNanos(10);
+
+	// 归还连接时，向等待线程直接交接的最多尝试次数
+	private static final int								HANDOFF_SPINS		= 256;
+
+	// 后台检测的默认周期（毫秒）
+	private static final long								HOUSEKEEPING_PERIOD	= 30000;
+
+	private final String									name;
+	private final String									url;
+	private final String									user;
+	private final String									password;
+	private final int										maxSize;
+	private final int										minSize;
+	private final long										connectionTimeout;	// 毫秒，0 表示无限等待
+	private final long										maxLifetime;		// 毫秒，0 表示不限制
+	private final long										idleTimeout;		// 毫秒，0 表示不回收
+	private final long										testPeriod;			// 毫秒，0 表示不检测空闲连接
+	private final boolean									testOnBorrow;
+	private final String									testSql;
+	private final int										retryAttempts;
+	private final long										retryDelay;
+	private final int										statementCacheSize;	// 每个连接最多缓存的语句数，0 表示不缓存
+
+	private final CopyOnWriteArrayList<PoolEntry>			entries				= new CopyOnWriteArrayList<PoolEntry>();
+	private final ThreadLocal<List<WeakReference<PoolEntry>>>	threadEntries	= new ThreadLocal<List<WeakReference<PoolEntry>>>()
+																				{
+																					protected List<WeakReference<PoolEntry>> initialValue()
+																					{
+																						return new ArrayList<WeakReference<PoolEntry>>(
+																								MAX_THREAD_ENTRIES);
+																					}
+																				};
+	private final SynchronousQueue<PoolEntry>				handoff				= new SynchronousQueue<PoolEntry>(true);
+
+	// 等待连接的线程数
+	private final AtomicInteger								waiters				= new AtomicInteger();
+	// 连接总数，包括正在创建的连接
+	private final AtomicInteger								totalConnections	= new AtomicInteger();
+	// 正在创建的连接数
+	private final AtomicInteger								pendingAdds			= new AtomicInteger();
+	// 创建物理连接失败的次数
+	private final AtomicLong								creationFailures	= new AtomicLong();
+	// 连接有效性检测失败的次数
+	private final AtomicLong								validationFailures	= new AtomicLong();
+
+	private final ThreadPoolExecutor						adder;
+	private final ScheduledExecutorService					housekeeper;
+
+	private volatile boolean								shutdown			= false;
+
+	/**
+	 * 根据数据源配置创建连接池，并创建初始连接
+	 *
+	 * @param prop 数据源配置
+	 * @throws ClassNotFoundException 数据库驱动类不存在
+	 */
+	FastPool(Properties prop) throws ClassNotFoundException
+	{
+		String driverClass = prop.getProperty("driver-class");
+		Class.forName(driverClass);
+
+		this.name = prop.getProperty("name");
+		this.url = prop.getProperty("driver-url");
+		this.user = prop.getProperty("user");
+		this.password = prop.getProperty("password");
+		this.maxSize = Math.max(1, getInt(prop, "max-connection-size", 100));
+		this.minSize = Math.min(maxSize, Math.max(0, getInt(prop, "min-connection-size", 2)));
+		this.connectionTimeout = TimeUnit.SECONDS.toMillis(getInt(prop, "connection-timeout", 5));
+		this.maxLifetime = TimeUnit.SECONDS.toMillis(getInt(prop, "max-connection-lifetime", 0));
+		this.idleTimeout = TimeUnit.SECONDS.toMillis(getInt(prop, "max-connection-idletime", 0));
+		this.testPeriod = TimeUnit.SECONDS.toMillis(getInt(prop, "idle-connection-test-period", 0));
+		this.testOnBorrow = Boolean.parseBoolean(prop.getProperty("test-connection-checkout", "false").trim());
+		this.retryAttempts = Math.max(1, getInt(prop, "acquire-retry-attempts", 1));
+		this.retryDelay = Math.max(0, getInt(prop, "acquire-retry-delay", 1000));
+		this.statementCacheSize = Math.max(0, getInt(prop, "statement-cache-size", 0));
+
+		String sql = prop.getProperty("test-sql");
+		if (sql == null || sql.trim().length() == 0)
+		{
+			// 未知的数据库方言，使用 Connection.isValid 检测
+			Dialect dialect = Dialect.getDialect(driverClass);
+			sql = (dialect == null) ? null : dialect.getTestSQL();
+		}
+		this.testSql = sql;
+
+		this.adder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreads("adder"));
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(daemonThreads("housekeeper"));
+
+		// 创建初始连接
+		int initSize = Math.min(maxSize, Math.max(minSize, getInt(prop, "init-connection-size", minSize)));
+		for (int i = 0; i < initSize; i++)
+		{
+			totalConnections.incrementAndGet();
+			PoolEntry entry = createEntry(1);
+			if (entry == null)
+			{
+				totalConnections.decrementAndGet();
+				break;
+			}
+			entries.add(entry);
+		}
+
+		long period = testPeriod > 0 ? Math.min(testPeriod, HOUSEKEEPING_PERIOD) : HOUSEKEEPING_PERIOD;
+		housekeeper.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				housekeep();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 借出连接，连接使用完毕后调用 close() 归还
+	 *
+	 * @return 连接代理
+	 * @throws SQLException 连接池已关闭，或超过 connection-timeout 仍没有可用连接
+	 */
+	Connection getConnection() throws SQLException
+	{
+		if (shutdown)
+		{
+			throw new SQLException("The fast pool [" + name + "] has been shut down!");
+		}
+
+		return ConnectionHandler.newProxy(this, borrow(System.nanoTime()));
+	}
+
+	private PoolEntry borrow(long start) throws SQLException
+	{
+		// 1. 当前线程最近归还的连接
+		List<WeakReference<PoolEntry>> recent = threadEntries.get();
+		for (int i = recent.size() - 1; i >= 0; i--)
+		{
+			PoolEntry entry = recent.remove(i).get();
+			if (entry != null && entry.compareAndSet(PoolEntry.STATE_IDLE, PoolEntry.STATE_IN_USE) && checkBorrowed(entry))
+			{
+				return entry;
+			}
+		}
+
+		// 2. 扫描全部连接，没有空闲连接时等待
+		long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectionTimeout);
+		waiters.incrementAndGet();
+		try
+		{
+			while (!shutdown)
+			{
+				for (PoolEntry entry : entries)
+				{
+					if (entry.compareAndSet(PoolEntry.STATE_IDLE, PoolEntry.STATE_IN_USE) && checkBorrowed(entry))
+					{
+						return entry;
+					}
+				}
+
+				addConnectionAsync();
+
+				long wait = POLL_SLICE_NANOS;
+				if (timeoutNanos > 0)
+				{
+					long remaining = timeoutNanos - (System.nanoTime() - start);
+					if (remaining <= 0)
+					{
+						break;
+					}
+					wait = Math.min(wait, remaining);
+				}
+
+				PoolEntry entry = handoff.poll(wait, TimeUnit.NANOSECONDS);
+				if (entry != null && entry.compareAndSet(PoolEntry.STATE_IDLE, PoolEntry.STATE_IN_USE) && checkBorrowed(entry))
+				{
+					return entry;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection from the fast pool [" + name + "]!", e);
+		}
+		finally
+		{
+			waiters.decrementAndGet();
+		}
+
+		if (shutdown)
+		{
+			throw new SQLException("The fast pool [" + name + "] has been shut down!");
+		}
+		throw new SQLException("Timeout after " + connectionTimeout + "ms waiting for a connection from the fast pool [" + name + "], total="
+				+ totalConnections.get() + ", waiting=" + waiters.get() + "!", "08001");
+	}
+
+	/**
+	 * 检查抢占到的连接：超过最大生命周期或检测无效时移除
+	 *
+	 * @return true -- 连接可以借出
+	 */
+	private boolean checkBorrowed(PoolEntry entry)
+	{
+		if (isExpired(entry, System.currentTimeMillis()) || (testOnBorrow && !isValid(entry)))
+		{
+			remove(entry);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 归还连接：优先直接交给等待的线程，否则记录到当前线程最近归还的连接中
+	 *
+	 * @param entry 归还的连接
+	 */
+	void release(PoolEntry entry)
+	{
+		long now = System.currentTimeMillis();
+		entry.lastAccessed = now;
+
+		if (shutdown || entry.broken || isExpired(entry, now))
+		{
+			remove(entry);
+			if (!shutdown && waiters.get() > 0)
+			{
+				addConnectionAsync();
+			}
+			return;
+		}
+
+		entry.setState(PoolEntry.STATE_IDLE);
+		if (handoff(entry))
+		{
+			return;
+		}
+
+		List<WeakReference<PoolEntry>> recent = threadEntries.get();
+		if (recent.size() < MAX_THREAD_ENTRIES)
+		{
+			recent.add(new WeakReference<PoolEntry>(entry));
+		}
+	}
+
+	/**
+	 * 将空闲连接交给等待的线程
+	 *
+	 * @return true -- 已交接或已被其他线程抢占
+	 */
+	private boolean handoff(PoolEntry entry)
+	{
+		for (int i = 0; i < HANDOFF_SPINS && waiters.get() > 0; i++)
+		{
+			if (entry.getState() != PoolEntry.STATE_IDLE || handoff.offer(entry))
+			{
+				return true;
+			}
+			Thread.yield();
+		}
+		return false;
+	}
+
+	/**
+	 * 在后台创建一个新连接，不超过最大连接数，正在创建的连接数不超过等待的线程数
+	 */
+	private void addConnectionAsync()
+	{
+		for (;;)
+		{
+			int pending = pendingAdds.get();
+			if (pending >= Math.max(1, waiters.get()))
+			{
+				return;
+			}
+
+			int total = totalConnections.get();
+			if (total >= maxSize)
+			{
+				return;
+			}
+			if (!totalConnections.compareAndSet(total, total + 1))
+			{
+				continue;
+			}
+
+			pendingAdds.incrementAndGet();
+			try
+			{
+				adder.execute(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							PoolEntry entry = shutdown ? null : createEntry(retryAttempts);
+							if (entry == null)
+							{
+								totalConnections.decrementAndGet();
+								return;
+							}
+							entries.add(entry);
+							handoff(entry);
+						}
+						finally
+						{
+							pendingAdds.decrementAndGet();
+						}
+					}
+				});
+			}
+			catch (RuntimeException e)
+			{
+				// 连接池已关闭
+				pendingAdds.decrementAndGet();
+				totalConnections.decrementAndGet();
+			}
+			return;
+		}
+	}
+
+	/**
+	 * 创建物理连接，失败时按 acquire-retry-attempts 和 acquire-retry-delay 重试
+	 *
+	 * @param attempts 最多尝试次数
+	 * @return 新连接，全部失败时返回null
+	 */
+	private PoolEntry createEntry(int attempts)
+	{
+		for (int i = 1; i <= attempts && !shutdown; i++)
+		{
+			try
+			{
+				return new PoolEntry(DriverManager.getConnection(url, user, password), statementCacheSize);
+			}
+			catch (SQLException e)
+			{
+				creationFailures.incrementAndGet();
+				logger.warn("Failed to create connection for the fast pool [" + name + "], attempt " + i + "/" + attempts + ".", e);
+				if (i < attempts && retryDelay > 0)
+				{
+					try
+					{
+						Thread.sleep(retryDelay);
+					}
+					catch (InterruptedException ie)
+					{
+						Thread.currentThread().interrupt();
+						return null;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 后台检测：回收超期和空闲过久的连接，检测空闲连接的有效性，维持最小连接数
+	 */
+	private void housekeep()
+	{
+		try
+		{
+			long now = System.currentTimeMillis();
+			for (PoolEntry entry : entries)
+			{
+				if (!entry.compareAndSet(PoolEntry.STATE_IDLE, PoolEntry.STATE_RESERVED))
+				{
+					continue;
+				}
+
+				if (isExpired(entry, now) || (idleTimeout > 0 && now - entry.lastAccessed > idleTimeout && entries.size() > minSize))
+				{
+					remove(entry);
+					continue;
+				}
+
+				if (testPeriod > 0 && now - entry.lastTested >= testPeriod)
+				{
+					if (!isValid(entry))
+					{
+						remove(entry);
+						continue;
+					}
+					entry.lastTested = now;
+				}
+
+				entry.setState(PoolEntry.STATE_IDLE);
+				handoff(entry);
+			}
+
+			// 维持最小连接数
+			while (!shutdown && totalConnections.get() < minSize)
+			{
+				int total = totalConnections.get();
+				if (!totalConnections.compareAndSet(total, total + 1))
+				{
+					continue;
+				}
+				PoolEntry entry = createEntry(1);
+				if (entry == null)
+				{
+					totalConnections.decrementAndGet();
+					break;
+				}
+				entries.add(entry);
+				handoff(entry);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Failed to check the connections of the fast pool [" + name + "].", e);
+		}
+	}
+
+	private boolean isExpired(PoolEntry entry, long now)
+	{
+		return maxLifetime > 0 && now - entry.createdAt > maxLifetime;
+	}
+
+	/**
+	 * 使用 test-sql 检测连接是否有效，没有 test-sql 时使用 Connection.isValid
+	 */
+	private boolean isValid(PoolEntry entry)
+	{
+		int timeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(connectionTimeout));
+		try
+		{
+			if (testSql == null)
+			{
+				return entry.connection.isValid(timeout);
+			}
+
+			Statement stmt = entry.connection.createStatement();
+			try
+			{
+				stmt.setQueryTimeout(timeout);
+				stmt.execute(testSql);
+			}
+			finally
+			{
+				stmt.close();
+			}
+			return true;
+		}
+		catch (SQLException e)
+		{
+			validationFailures.incrementAndGet();
+			logger.warn("Connection of the fast pool [" + name + "] is invalid, evicted.", e);
+			return false;
+		}
+	}
+
+	/**
+	 * 从连接池中移除连接，并关闭物理连接
+	 */
+	private void remove(PoolEntry entry)
+	{
+		entry.setState(PoolEntry.STATE_REMOVED);
+		if (entries.remove(entry))
+		{
+			totalConnections.decrementAndGet();
+		}
+
+		if (entry.statements != null)
+		{
+			entry.statements.close();
+		}
+		try
+		{
+			entry.connection.close();
+		}
+		catch (SQLException e)
+		{
+			logger.warn("Failed to close connection of the fast pool [" + name + "].", e);
+		}
+	}
+
+	/**
+	 * 关闭连接池：关闭全部空闲连接，正在使用的连接在归还时关闭
+	 */
+	void shutdown()
+	{
+		shutdown = true;
+		housekeeper.shutdownNow();
+		adder.shutdownNow();
+
+		for (PoolEntry entry : entries)
+		{
+			if (entry.compareAndSet(PoolEntry.STATE_IDLE, PoolEntry.STATE_REMOVED))
+			{
+				remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * 获得连接池名称，即数据源名称
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * 获得最大连接数
+	 */
+	public int getMaxConnections()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * 获得当前的连接总数
+	 */
+	public int getTotalConnections()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * 获得当前的空闲连接数
+	 */
+	public int getIdleConnections()
+	{
+		int idle = 0;
+		for (PoolEntry entry : entries)
+		{
+			if (entry.getState() == PoolEntry.STATE_IDLE)
+			{
+				idle++;
+			}
+		}
+		return idle;
+	}
+
+	/**
+	 * 获得当前借出的连接数
+	 */
+	public int getActiveConnections()
+	{
+		int active = 0;
+		for (PoolEntry entry : entries)
+		{
+			if (entry.getState() == PoolEntry.STATE_IN_USE)
+			{
+				active++;
+			}
+		}
+		return active;
+	}
+
+	/**
+	 * 获得当前等待连接的线程数
+	 */
+	public int getWaitingThreads()
+	{
+		return waiters.get();
+	}
+
+	/**
+	 * 获得创建物理连接失败的次数
+	 */
+	public long getCreationFailures()
+	{
+		return creationFailures.get();
+	}
+
+	/**
+	 * 获得连接有效性检测失败的次数
+	 */
+	public long getValidationFailures()
+	{
+		return validationFailures.get();
+	}
+
+	private ThreadFactory daemonThreads(final String role)
+	{
+		return new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "fastdb-pool-" + name + "-" + role);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	private static int getInt(Properties prop, String key, int defaultValue)
+	{
+		String value = prop.getProperty(key);
+		if (value == null || value.trim().length() == 0)
+		{
+			return defaultValue;
+		}
+		return Integer.parseInt(value.trim());
+	}
+}
@@ -0,0 +1,75 @@
+package com.lizard.fastdb.connection.fast;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.lizard.fastdb.connection.StatementCache;
+
+/**
+ * 连接池中的一个物理连接及其状态
+ * <p>
+ * 状态通过 CAS 切换，借出、归还和后台检测互不加锁。
+ */
+final class PoolEntry
+{
+	/**
+	 * 空闲，可以借出
+	 */
+	static final int			STATE_IDLE		= 0;
+
+	/**
+	 * 已借出
+	 */
+	static final int			STATE_IN_USE	= 1;
+
+	/**
+	 * 被后台线程占用（检测或回收中）
+	 */
+	static final int			STATE_RESERVED	= 2;
+
+	/**
+	 * 已从连接池移除
+	 */
+	static final int			STATE_REMOVED	= -1;
+
+	final Connection			connection;
+	final long					createdAt;
+
+	// 物理连接的语句缓存，不缓存时为null
+	final StatementCache		statements;
+
+	private final AtomicInteger	state			= new AtomicInteger(STATE_IDLE);
+
+	// 最后一次归还的时间，用于空闲回收和空闲检测
+	volatile long				lastAccessed;
+
+	// 最后一次通过有效性检测的时间
+	volatile long				lastTested;
+
+	// 使用期间出现了连接级错误，归还时关闭
+	volatile boolean			broken			= false;
+
+	PoolEntry(Connection connection, int statementCacheSize)
+	{
+		this.connection = connection;
+		this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+		this.createdAt = System.currentTimeMillis();
+		this.lastAccessed = this.createdAt;
+		this.lastTested = this.createdAt;
+	}
+
+	boolean compareAndSet(int expect, int update)
+	{
+		return state.compareAndSet(expect, update);
+	}
+
+	int getState()
+	{
+		return state.get();
+	}
+
+	void setState(int update)
+	{
+		state.set(update);
+	}
+}
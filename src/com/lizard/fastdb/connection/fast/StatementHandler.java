@@ -0,0 +1,176 @@
+package com.lizard.fastdb.connection.fast;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.lizard.fastdb.connection.StatementCache;
+
+/**
+ * 借出连接上创建的语句的代理
+ * <p>
+ * close() 时从借出连接的语句跟踪中移除；从语句缓存取出的预编译语句放回缓存，其他语句直接关闭。
+ * 连接归还时仍未关闭的语句由连接代理关闭。已关闭的代理不能再使用；getConnection() 返回借出连接的代理。
+ */
+final class StatementHandler implements InvocationHandler
+{
+	private static final Constructor<?>	STATEMENT_PROXY	= proxyConstructor(Statement.class);
+	private static final Constructor<?>	PREPARED_PROXY	= proxyConstructor(PreparedStatement.class);
+	private static final Constructor<?>	CALLABLE_PROXY	= proxyConstructor(CallableStatement.class);
+
+	private final ConnectionHandler		owner;
+	private final Connection			connection;
+	private final Statement				statement;
+	private final StatementCache		cache;
+	private final StatementCache.Holder	holder;
+
+	private volatile boolean			closed	= false;
+
+	/**
+	 * @param owner 创建语句的连接代理
+	 * @param connection 借出连接的代理
+	 * @param statement 物理语句
+	 * @param cache 物理连接的语句缓存，语句不缓存时为null
+	 * @param holder 缓存的语句，语句不缓存时为null
+	 */
+	StatementHandler(ConnectionHandler owner, Connection connection, Statement statement, StatementCache cache, StatementCache.Holder holder)
+	{
+		this.owner = owner;
+		this.connection = connection;
+		this.statement = statement;
+		this.cache = cache;
+		this.holder = holder;
+	}
+
+	/**
+	 * 创建语句代理
+	 *
+	 * @param type 语句类型：Statement、PreparedStatement 或 CallableStatement
+	 * @return 语句代理
+	 */
+	Statement newProxy(Class<?> type)
+	{
+		Constructor<?> constructor = CallableStatement.class.equals(type) ? CALLABLE_PROXY : PreparedStatement.class.equals(type) ? PREPARED_PROXY
+				: STATEMENT_PROXY;
+		try
+		{
+			return (Statement) constructor.newInstance(this);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Failed to create the statement proxy!", e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+
+		if ("close".equals(name))
+		{
+			close();
+			return null;
+		}
+		if ("isClosed".equals(name))
+		{
+			return closed || statement.isClosed();
+		}
+		if ("equals".equals(name))
+		{
+			return proxy == args[0];
+		}
+		if ("hashCode".equals(name))
+		{
+			return System.identityHashCode(proxy);
+		}
+		if ("toString".equals(name))
+		{
+			return "FastStatement[" + statement + (closed ? ", closed]" : "]");
+		}
+
+		if (closed)
+		{
+			throw new SQLException("The statement has been closed!");
+		}
+		if ("getConnection".equals(name))
+		{
+			return connection;
+		}
+
+		try
+		{
+			return method.invoke(statement, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException)
+			{
+				owner.checkError((SQLException) cause);
+			}
+			throw cause;
+		}
+	}
+
+	/**
+	 * 关闭语句：缓存的预编译语句放回缓存，其他语句直接关闭；可以重复调用
+	 *
+	 * @throws SQLException
+	 */
+	private void close() throws SQLException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		owner.untrack(this);
+
+		if (holder != null)
+		{
+			cache.checkin(holder);
+		}
+		else
+		{
+			statement.close();
+		}
+	}
+
+	/**
+	 * 连接归还时关闭仍未关闭的语句，不放回缓存
+	 *
+	 * @throws SQLException
+	 */
+	void abandon() throws SQLException
+	{
+		if (!closed)
+		{
+			closed = true;
+			statement.close();
+		}
+	}
+
+	private static Constructor<?> proxyConstructor(Class<?> type)
+	{
+		try
+		{
+			return Proxy.getProxyClass(StatementHandler.class.getClassLoader(), new Class<?>[] { type }).getConstructor(InvocationHandler.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
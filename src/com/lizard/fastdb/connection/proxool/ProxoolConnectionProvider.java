@@ -10,19 +10,21 @@ import javax.transaction.TransactionManager;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.enhydra.jdbc.standard.StandardXADataSource;
 import org.logicalcobwebs.proxool.ProxoolException;
 import org.logicalcobwebs.proxool.ProxoolFacade;
+import org.logicalcobwebs.proxool.admin.SnapshotIF;
 
-import com.lizard.fastdb.connection.ConnectionProvider;
-import com.lizard.fastdb.datasource.DataSourceUtil;
+import com.lizard.fastdb.connection.MonitorableConnectionProvider;
+import com.lizard.fastdb.connection.PoolState;
+import com.lizard.fastdb.connection.StatementCachingConnectionProvider;
+import com.lizard.fastdb.connection.XAConnectionPool;
 
 /**
  * ConnectionProvider的 Proxool 实现类
  * 
  * @author SHEN.GANG
  */
-public class ProxoolConnectionProvider implements ConnectionProvider
+public class ProxoolConnectionProvider implements MonitorableConnectionProvider, StatementCachingConnectionProvider
 {
 	private static final long	serialVersionUID		= 1L;
 	private static final Log	logger					= LogFactory.getLog(ProxoolConnectionProvider.class);
@@ -33,6 +35,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 	private int					connectionTimeOut		= 0;													// 设置驱动程序试图连接到某一数据库时将等待的最长时间，以秒为单位
 	private int					acquireRetryAttempts	= 0;													// 重试次数
 	private long				acquireRetryDelay		= 0;													// 每次重试的间隔时间
+	private int					statementCacheSize		= 0;													// 每个物理连接最多缓存的语句数
 
 	/**
 	 * 根据给定的数据源配置信息初始化数据库连接池
@@ -51,6 +54,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 		this.connectionTimeOut = Integer.valueOf(this.prop.getProperty("connection-timeout"));
 		this.acquireRetryAttempts = Integer.parseInt(this.prop.getProperty("acquire-retry-attempts"));
 		this.acquireRetryDelay = Long.parseLong(this.prop.getProperty("acquire-retry-delay"));
+		this.statementCacheSize = Integer.parseInt(this.prop.getProperty("statement-cache-size", "0").trim());
 
 		// 未注册
 		if (!isDataSourceRegistered(name))
@@ -64,8 +68,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 			}
 			catch (ProxoolException e)
 			{
-				logger.info("Fail to register proxool pool [" + name + "]！");
-				e.printStackTrace();
+				logger.error("Fail to register proxool pool [" + name + "]！", e);
 			}
 		}
 	}
@@ -130,13 +133,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 	 */
 	public Connection getXAConnection(TransactionManager tm) throws SQLException
 	{
-		StandardXADataSource sxd = DataSourceUtil.convertPropertiesToXADataSource(prop);
-		sxd.setTransactionManager(tm);
-
-		Connection conn = sxd.getXAConnection().getConnection();
-		conn.setAutoCommit(false);
-
-		return conn;
+		return XAConnectionPool.getConnection(prop, tm);
 	}
 
 	/**
@@ -153,6 +150,31 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 		}
 	}
 
+	/**
+	 * 每个物理连接最多缓存的语句数
+	 */
+	public int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+
+	/**
+	 * 获得借出连接对应的物理连接
+	 */
+	// Proxool 0.9.1 基于 JDBC 3，连接代理不支持 unwrap，只能通过已废弃的 getDelegateConnection 获得物理连接
+	@SuppressWarnings("deprecation")
+	public Connection getPhysicalConnection(Connection conn) throws SQLException
+	{
+		try
+		{
+			return ProxoolFacade.getDelegateConnection(conn);
+		}
+		catch (ProxoolException e)
+		{
+			throw new SQLException("Failed to get the physical connection of proxool pool [" + name + "]!", e);
+		}
+	}
+
 	/**
 	 * 销毁数据源
 	 */
@@ -168,8 +190,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 			}
 			catch (ProxoolException e)
 			{
-				logger.info("Fail to destroy proxool pool [" + name + "]！");
-				e.printStackTrace();
+				logger.error("Fail to destroy proxool pool [" + name + "]！", e);
 			}
 			this.prop = null;
 			this.name = null;
@@ -192,6 +213,33 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 		}
 	}
 
+	/**
+	 * 读取Proxool连接池的状态，Proxool 不统计等待线程数和失败次数
+	 */
+	public PoolState getPoolState()
+	{
+		String name = this.name;
+		if (name == null || !isDataSourceRegistered(name))
+		{
+			return null;
+		}
+
+		PoolState state = new PoolState();
+		try
+		{
+			SnapshotIF snapshot = ProxoolFacade.getSnapshot(name);
+			state.setMaxConnections(snapshot.getMaximumConnectionCount());
+			state.setActiveConnections(snapshot.getActiveConnectionCount());
+			state.setIdleConnections(snapshot.getAvailableConnectionCount());
+			state.setTotalConnections(snapshot.getActiveConnectionCount() + snapshot.getAvailableConnectionCount());
+		}
+		catch (ProxoolException e)
+		{
+			logger.warn("Failed to read the state of proxool pool [" + name + "].", e);
+		}
+		return state;
+	}
+
 	/**
 	 * 检查指定名称的数据源是否已经注册
 	 * 
@@ -233,6 +281,7 @@ public class ProxoolConnectionProvider implements ConnectionProvider
 		// init-connection-size
 		// acquire-increment-size
 		// max-connection-idletime
+		// statement-cache-size（Proxool 无语句缓存，由 fastDB 缓存在物理连接上）
 
 		@SuppressWarnings("rawtypes")
 		Enumeration names = ds.propertyNames();
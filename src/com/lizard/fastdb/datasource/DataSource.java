@@ -42,6 +42,12 @@ public class DataSource implements Serializable
 	private boolean				testConnectionCheckout		= Boolean.parseBoolean(Config.DEFAULT_PROP.getProperty("test-connection-checkout"));	// 是否在将连接从连接池取出时检查连接有效性
 	private boolean				testConnectionCheckin		= Boolean.parseBoolean(Config.DEFAULT_PROP.getProperty("test-connection-checkin"));	// 是否在连接放入连接池之前检查其有效性
 	private int					idleConnectionTestPeriod	= Integer.parseInt(Config.DEFAULT_PROP.getProperty("idle-connection-test-period"));	// 测试空闲连接有效性的间隔时间
+	private String				beanMaterializer			= Config.DEFAULT_PROP.getProperty("bean-materializer");								// 查询结果转换为JavaBean的方式：reflection 或 methodhandle
+	private int					statementCacheSize			= Integer.parseInt(Config.DEFAULT_PROP.getProperty("statement-cache-size"));		// 每个连接最多缓存的PreparedStatement数量
+	private int					leakDetectionThreshold		= Integer.parseInt(Config.DEFAULT_PROP.getProperty("leak-detection-threshold"));	// 连接借出超过该时间（秒）未归还视为泄漏
+	private int					slowSqlThreshold			= Integer.parseInt(Config.DEFAULT_PROP.getProperty("slow-sql-threshold"));			// SQL执行超过该时间（毫秒）记录为慢SQL
+	private boolean				batchInsertRewrite			= Boolean.parseBoolean(Config.DEFAULT_PROP.getProperty("batch-insert-rewrite"));		// 是否将批量的单行INSERT改写为多行INSERT执行
+	private boolean				sqlStatistics				= Boolean.parseBoolean(Config.DEFAULT_PROP.getProperty("sql-statistics"));			// 是否统计SQL执行次数、耗时并记录慢SQL
 
 	private Map<String, String>	customize					= new HashMap<String, String>();														// 自定义属性
 
@@ -226,6 +232,42 @@ public class DataSource implements Serializable
 			this.idleConnectionTestPeriod = Integer.parseInt(value.toString());
 		}
 
+		value = p.remove("bean-materializer");
+		if (value != null)
+		{
+			this.beanMaterializer = String.valueOf(value);
+		}
+
+		value = p.remove("statement-cache-size");
+		if (value != null)
+		{
+			this.statementCacheSize = Integer.parseInt(value.toString());
+		}
+
+		value = p.remove("leak-detection-threshold");
+		if (value != null)
+		{
+			this.leakDetectionThreshold = Integer.parseInt(value.toString());
+		}
+
+		value = p.remove("slow-sql-threshold");
+		if (value != null)
+		{
+			this.slowSqlThreshold = Integer.parseInt(value.toString());
+		}
+
+		value = p.remove("batch-insert-rewrite");
+		if (value != null)
+		{
+			this.batchInsertRewrite = Boolean.parseBoolean(value.toString());
+		}
+
+		value = p.remove("sql-statistics");
+		if (value != null)
+		{
+			this.sqlStatistics = Boolean.parseBoolean(value.toString());
+		}
+
 		entrySet = p.entrySet();
 		for (Map.Entry<Object, Object> entry : entrySet)
 		{
@@ -679,6 +721,126 @@ public class DataSource implements Serializable
 		this.idleConnectionTestPeriod = idleConnectionTestPeriod;
 	}
 
+	/**
+	 * 获得查询结果转换为JavaBean的方式
+	 * 
+	 * @return reflection -- 反射方式（默认），methodhandle -- 使用MethodHandle生成的物化器
+	 */
+	public String getBeanMaterializer()
+	{
+		return beanMaterializer;
+	}
+
+	/**
+	 * 设置查询结果转换为JavaBean的方式
+	 * 
+	 * @param beanMaterializer reflection -- 反射方式，methodhandle -- 使用MethodHandle生成的物化器
+	 */
+	public void setBeanMaterializer(String beanMaterializer)
+	{
+		this.beanMaterializer = beanMaterializer;
+	}
+
+	/**
+	 * 获得每个连接最多缓存的PreparedStatement数量
+	 * 
+	 * @return 最多缓存的语句数，0 表示不缓存
+	 */
+	public int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+
+	/**
+	 * 设置每个连接最多缓存的PreparedStatement数量
+	 * 
+	 * @param statementCacheSize 最多缓存的语句数，0 表示不缓存
+	 */
+	public void setStatementCacheSize(int statementCacheSize)
+	{
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * 获得连接泄漏检测的阈值
+	 * 
+	 * @return 连接借出超过该时间（秒）未归还视为泄漏，0 表示不检测
+	 */
+	public int getLeakDetectionThreshold()
+	{
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * 设置连接泄漏检测的阈值
+	 * 
+	 * @param leakDetectionThreshold 连接借出超过该时间（秒）未归还视为泄漏，0 表示不检测
+	 */
+	public void setLeakDetectionThreshold(int leakDetectionThreshold)
+	{
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	/**
+	 * 获得慢SQL的阈值
+	 * 
+	 * @return SQL执行超过该时间（毫秒）记录为慢SQL，0 表示不记录
+	 */
+	public int getSlowSqlThreshold()
+	{
+		return slowSqlThreshold;
+	}
+
+	/**
+	 * 设置慢SQL的阈值
+	 * 
+	 * @param slowSqlThreshold SQL执行超过该时间（毫秒）记录为慢SQL，0 表示不记录
+	 */
+	public void setSlowSqlThreshold(int slowSqlThreshold)
+	{
+		this.slowSqlThreshold = slowSqlThreshold;
+	}
+
+	/**
+	 * 获得是否将批量的单行INSERT改写为多行INSERT执行
+	 * 
+	 * @return true -- 改写，false -- 不改写（默认）
+	 */
+	public boolean isBatchInsertRewrite()
+	{
+		return batchInsertRewrite;
+	}
+
+	/**
+	 * 设置是否将批量的单行INSERT改写为多行INSERT执行，参见 {@link com.lizard.fastdb.dialect.Dialect#getMultiRowInsertSQL(String, String, String, int)}
+	 * 
+	 * @param batchInsertRewrite true -- 改写，false -- 不改写
+	 */
+	public void setBatchInsertRewrite(boolean batchInsertRewrite)
+	{
+		this.batchInsertRewrite = batchInsertRewrite;
+	}
+
+	/**
+	 * 获得是否统计SQL执行
+	 * 
+	 * @return true -- 统计（默认），false -- 不统计
+	 */
+	public boolean isSqlStatistics()
+	{
+		return sqlStatistics;
+	}
+
+	/**
+	 * 设置是否统计SQL执行，不统计时也不记录慢SQL，参见 {@link com.lizard.fastdb.stat.SQLStatistics}
+	 * 
+	 * @param sqlStatistics true -- 统计，false -- 不统计
+	 */
+	public void setSqlStatistics(boolean sqlStatistics)
+	{
+		this.sqlStatistics = sqlStatistics;
+	}
+
 	/**
 	 * 设置自定义属性，该方法用于设置除当前DataSource已有属性外的特殊属性（无相应的get和set方法）<br>
 	 * 注意：key在内部将被强制转换为小写格式
@@ -9,6 +9,10 @@ import org.apache.commons.logging.LogFactory;
 
 import com.lizard.fastdb.config.Config;
 import com.lizard.fastdb.connection.ConnectionProvider;
+import com.lizard.fastdb.connection.PoolMetrics;
+import com.lizard.fastdb.connection.StatementCache;
+import com.lizard.fastdb.connection.XAConnectionPool;
+import com.lizard.fastdb.stat.SQLStatistics;
 
 /**
  * 数据源管理类 负责加载数据源，获得数据源，更新数据源，销毁数据源，销毁连接池等
@@ -235,12 +239,18 @@ public class DataSourceManager
 
 			if (null != connP)
 			{
-				// 分别调用ConnectionProvider的shutdown方法关闭当前这个连接池
+				// 分别调用ConnectionProvider的shutdown方法关闭当前这个连接池，关闭前先在物理连接上关闭缓存的语句
+				StatementCache.removeAll(connP);
 				connP.shutdown();
 				connP = null;
 			}
 		}
 
+		// 关闭多数据源事务使用的XA连接池
+		XAConnectionPool.shutdownAll();
+		PoolMetrics.removeAll();
+		SQLStatistics.removeAll();
+
 		// 清理缓存
 		DataSourceCache.clean();
 		// hasShutdown.clear();
@@ -284,11 +294,15 @@ public class DataSourceManager
 			
 			// ConnectionProvider.destory 方法废弃，由 shutdown()替代
 			// connP.destory();
+			StatementCache.removeAll(connP);
 			connP.shutdown();
+			XAConnectionPool.shutdown(real);
+			PoolMetrics.remove(real);
 			
 			// 只有当为 true -- 彻底销毁时，才清除对应的缓存数据
 			if(isCompleted) {
 				DataSourceCache.evictDataSource(real);
+				SQLStatistics.remove(real);
 			}
 			
 			DataSourceCache.evictConnectionProvider(real);
@@ -186,6 +186,26 @@ public class DataSourceUtil
 		prop.setProperty("idle-connection-test-period", idl_conn_tesp <= 0 ? Config.DEFAULT_PROP.getProperty("idle-connection-test-period") : String
 				.valueOf(idl_conn_tesp));
 
+		String bean_mat = ds.getBeanMaterializer();
+		prop.setProperty("bean-materializer", StringUtils.isEmptyString(bean_mat) ? Config.DEFAULT_PROP.getProperty("bean-materializer") : bean_mat);
+
+		int stmt_cache_size = ds.getStatementCacheSize();
+		prop.setProperty("statement-cache-size", stmt_cache_size < 0 ? Config.DEFAULT_PROP.getProperty("statement-cache-size") : String
+				.valueOf(stmt_cache_size));
+
+		int leak_threshold = ds.getLeakDetectionThreshold();
+		prop.setProperty("leak-detection-threshold", leak_threshold < 0 ? Config.DEFAULT_PROP.getProperty("leak-detection-threshold") : String
+				.valueOf(leak_threshold));
+
+		int slow_threshold = ds.getSlowSqlThreshold();
+		prop.setProperty("slow-sql-threshold", slow_threshold < 0 ? Config.DEFAULT_PROP.getProperty("slow-sql-threshold") : String
+				.valueOf(slow_threshold));
+
+		boolean batch_insert_rewrite = ds.isBatchInsertRewrite();
+		prop.setProperty("batch-insert-rewrite", String.valueOf(batch_insert_rewrite));
+
+		prop.setProperty("sql-statistics", String.valueOf(ds.isSqlStatistics()));
+
 		return prop;
 	}
 
@@ -317,6 +337,36 @@ public class DataSourceUtil
 			throw new UnsupportedOperationException("Can't change any value!");
 		}
 
+		public void setBeanMaterializer(String beanMaterializer)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
+		public void setStatementCacheSize(int statementCacheSize)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
+		public void setLeakDetectionThreshold(int leakDetectionThreshold)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
+		public void setSlowSqlThreshold(int slowSqlThreshold)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
+		public void setBatchInsertRewrite(boolean batchInsertRewrite)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
+		public void setSqlStatistics(boolean sqlStatistics)
+		{
+			throw new UnsupportedOperationException("Can't change any value!");
+		}
+
 		public void set(String key, String value)
 		{
 			throw new UnsupportedOperationException("Can't change any value!");
@@ -1,5 +1,7 @@
 package com.lizard.fastdb.dialect;
 
+import java.util.List;
+
 import com.lizard.fastdb.util.ReflectUtils;
 
 /**
@@ -17,6 +19,11 @@ public abstract class Dialect
 	 * Oracle数据库方言
 	 */
 	public static final String	ORACLE	= OracleDialect.class.getName();
+	
+	/**
+	 * 流式查询默认每次从数据库读取的行数
+	 */
+	public static final int		DEFAULT_FETCH_SIZE	= 500;
 
 	/**
 	 * 特定关系型数据库查询结果的数量限制原则
@@ -49,6 +56,119 @@ public abstract class Dialect
 	 */
 	public abstract String getTestSQL();
 	
+	/**
+	 * 获取流式查询（逐行读取游标）时使用的 Statement fetchSize
+	 * 
+	 * @param fetchSize
+	 *            用户设置的每次从数据库读取的行数，小于等于0表示未设置
+	 * @return 用于 Statement.setFetchSize 的值，默认每次读取 fetchSize 行，未设置时为 {@link #DEFAULT_FETCH_SIZE}
+	 */
+	public int getStreamingFetchSize(int fetchSize)
+	{
+		return fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+	}
+	
+	/**
+	 * 生成键集分页（seek 分页）的定位条件：排序键在上一页最后一行之后的行<br>
+	 * 默认生成 c1 &gt;= ? AND (c1 &gt; ? OR (c1 = ? AND c2 &gt; ?) ...)，第一个排序键上的范围条件可以使用索引
+	 * 
+	 * @param sql
+	 *            追加定位条件的SQL语句
+	 * @param params
+	 *            追加定位条件参数的参数列表
+	 * @param columns
+	 *            排序键
+	 * @param descending
+	 *            各排序键是否降序
+	 * @param lastValues
+	 *            上一页最后一行的排序键值
+	 */
+	public void appendSeekPredicate(StringBuilder sql, List<Object> params, String[] columns, boolean[] descending, Object[] lastValues)
+	{
+		if (columns.length > 1)
+		{
+			sql.append(columns[0]).append(descending[0] ? " <= ? AND " : " >= ? AND ");
+			params.add(lastValues[0]);
+		}
+
+		sql.append("(");
+		for (int i = 0; i < columns.length; i++)
+		{
+			if (i > 0)
+			{
+				sql.append(" OR ");
+			}
+			sql.append("(");
+			for (int j = 0; j < i; j++)
+			{
+				sql.append(columns[j]).append(" = ? AND ");
+				params.add(lastValues[j]);
+			}
+			sql.append(columns[i]).append(descending[i] ? " < ?" : " > ?");
+			params.add(lastValues[i]);
+			sql.append(")");
+		}
+		sql.append(")");
+	}
+	
+	/**
+	 * 将单行 INSERT 语句改写为一次插入多行的语句，用于批量插入，参数按行依次排列<br>
+	 * 默认不支持改写，返回null
+	 * 
+	 * @param insert
+	 *            VALUES 之前的部分，如 INSERT INTO t (a, b)
+	 * @param values
+	 *            一行的值，如 (?, ?)
+	 * @param suffix
+	 *            值之后的部分，如 ON DUPLICATE KEY UPDATE ...，没有时为空字符串
+	 * @param rows
+	 *            行数
+	 * @return 多行 INSERT 语句，不支持改写时返回null
+	 */
+	public String getMultiRowInsertSQL(String insert, String values, String suffix, int rows)
+	{
+		return null;
+	}
+
+	/**
+	 * 获取一条多行 INSERT 语句最多绑定的参数数量
+	 * 
+	 * @return 参数数量
+	 */
+	public int getMaxMultiRowInsertParameters()
+	{
+		return 0;
+	}
+
+	/**
+	 * 获取一条多行 INSERT 语句（含参数值）的最大字节数，0 表示不限制
+	 * 
+	 * @return 最大字节数
+	 */
+	public int getMaxMultiRowInsertBytes()
+	{
+		return 0;
+	}
+
+	/**
+	 * 根据方言类名获取数据库方言实例
+	 * 
+	 * @param db_dialect
+	 *            数据库方言类名
+	 * @return 数据库方言
+	 */
+	public static Dialect getInstance(String db_dialect)
+	{
+		try
+		{
+			return (Dialect) ReflectUtils.newInstanceFromCache(db_dialect);
+		}
+		catch (Exception e)
+		{
+			throw new UnknownDialectException(e);
+		}
+	}
+	
 	/**
 	 * 组装完整的分页语句
 	 * 
@@ -1,5 +1,6 @@
 package com.lizard.fastdb.dialect;
 
+import java.util.List;
 
 /**
  * MySQL5 关系型数据库特定的 SQL Limit 方言
@@ -39,6 +40,90 @@ public class MySQLDialect extends Dialect
 	{
 		return "SELECT 1";
 	}
+
+	/**
+	 * 排序方向相同时使用行构造器比较 (c1, c2) &gt; (?, ?)，并保留第一个排序键上的范围条件以便使用索引
+	 */
+	@Override
+	public void appendSeekPredicate(StringBuilder sql, List<Object> params, String[] columns, boolean[] descending, Object[] lastValues)
+	{
+		for (int i = 1; i < descending.length; i++)
+		{
+			if (descending[i] != descending[0])
+			{
+				super.appendSeekPredicate(sql, params, columns, descending, lastValues);
+				return;
+			}
+		}
+
+		if (columns.length == 1)
+		{
+			sql.append(columns[0]).append(descending[0] ? " < ?" : " > ?");
+			params.add(lastValues[0]);
+			return;
+		}
+
+		sql.append(columns[0]).append(descending[0] ? " <= ? AND (" : " >= ? AND (");
+		params.add(lastValues[0]);
+		for (int i = 0; i < columns.length; i++)
+		{
+			sql.append(i == 0 ? "" : ", ").append(columns[i]);
+		}
+		sql.append(descending[0] ? ") < (" : ") > (");
+		for (int i = 0; i < columns.length; i++)
+		{
+			sql.append(i == 0 ? "?" : ", ?");
+			params.add(lastValues[i]);
+		}
+		sql.append(")");
+	}
+
+	/**
+	 * 改写为 INSERT INTO t (a, b) VALUES (?, ?), (?, ?) ...
+	 */
+	@Override
+	public String getMultiRowInsertSQL(String insert, String values, String suffix, int rows)
+	{
+		StringBuilder sb = new StringBuilder(insert.length() + suffix.length() + (values.length() + 2) * rows + 10);
+		sb.append(insert).append(" VALUES ");
+		for (int i = 0; i < rows; i++)
+		{
+			sb.append(i == 0 ? "" : ", ").append(values);
+		}
+		if (suffix.length() > 0)
+		{
+			sb.append(' ').append(suffix);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 预编译语句最多 65535 个参数
+	 */
+	@Override
+	public int getMaxMultiRowInsertParameters()
+	{
+		return 65535;
+	}
+
+	/**
+	 * Connector/J 默认在客户端将参数值填充到语句中，整条语句不能超过服务器的 max_allowed_packet（MySQL 5.5 默认为 1M）
+	 */
+	@Override
+	public int getMaxMultiRowInsertBytes()
+	{
+		return 1000000;
+	}
+
+	/**
+	 * MySQL Connector/J 默认一次读取全部结果，只有 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取，
+	 * 因此忽略用户设置的 fetchSize
+	 */
+	@Override
+	public int getStreamingFetchSize(int fetchSize)
+	{
+		return Integer.MIN_VALUE;
+	}
 	
 
 
@@ -53,4 +53,42 @@ public class OracleDialect extends Dialect
 		return "SELECT 1 FROM dual";
 	}
 
+	/**
+	 * 改写为 INSERT ALL INTO t (a, b) VALUES (?, ?) INTO t (a, b) VALUES (?, ?) ... SELECT 1 FROM dual<br>
+	 * 序列的 NEXTVAL 在一条 INSERT ALL 中只取值一次，有后缀（如 RETURNING）时也不改写，返回null
+	 */
+	@Override
+	public String getMultiRowInsertSQL(String insert, String values, String suffix, int rows)
+	{
+		if (suffix.length() > 0 || values.toLowerCase().indexOf("nextval") != -1)
+		{
+			return null;
+		}
+
+		// 去掉开头的 INSERT，保留 INTO t (a, b)；带提示等其他写法时不改写
+		String into = insert.trim().substring(6).trim();
+		if (!into.regionMatches(true, 0, "into", 0, 4))
+		{
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder((into.length() + values.length() + 10) * rows + 30);
+		sb.append("INSERT ALL");
+		for (int i = 0; i < rows; i++)
+		{
+			sb.append(" ").append(into).append(" VALUES ").append(values);
+		}
+		sb.append(" SELECT 1 FROM dual");
+		return sb.toString();
+	}
+
+	/**
+	 * INSERT ALL 中所有 INTO 子句的列总数不能超过 1000（ORA-24335）
+	 */
+	@Override
+	public int getMaxMultiRowInsertParameters()
+	{
+		return 999;
+	}
+
 }
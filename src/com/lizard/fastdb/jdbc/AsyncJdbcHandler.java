@@ -0,0 +1,149 @@
+package com.lizard.fastdb.jdbc;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * fastDB 异步 JDBC 操作接口，由 {@link com.lizard.fastdb.DBFactory#createAsync(String)} 创建
+ * <p>
+ * 每个方法立即返回 {@link JdbcFuture}，操作在数据源的异步线程池中通过 {@link JdbcHandler} 执行，执行方式与 JdbcHandler 中的同名方法相同：
+ * <ul>
+ * <li>线程池的线程数为数据源的最大连接数，排队的操作超过上限时不再接受，返回的 JdbcFuture 以 DBException 失败（原因为 RejectedExecutionException），由调用方降低提交速度</li>
+ * <li>提交操作时当前线程的 setBatchSize、setFetchSize、setCacheName 等设置随操作一起传递到执行线程</li>
+ * <li>异步操作不能参与事务，在事务管理器中提交时抛出 DBException</li>
+ * <li>取消操作时调用正在执行的 Statement.cancel()</li>
+ * </ul>
+ * 使用示例：
+ * <pre>
+ * AsyncJdbcHandler async = DBFactory.createAsync(alias);
+ * async.queryForList(User.class, "SELECT * FROM user WHERE age &gt; ?", 20).addListener(new JdbcFuture.Listener&lt;List&lt;User&gt;&gt;()
+ * {
+ *     public void operationComplete(JdbcFuture&lt;List&lt;User&gt;&gt; future)
+ *     {
+ *         if (future.isSuccess()) ...
+ *     }
+ * });
+ * </pre>
+ */
+public interface AsyncJdbcHandler
+{
+	/**
+	 * 获得执行异步操作的 JdbcHandler，用于设置批量大小、缓存区域等线程相关的设置
+	 */
+	public JdbcHandler getJdbcHandler();
+
+	/**
+	 * 在异步线程池中执行自定义的操作，操作中通过 {@link #getJdbcHandler()} 执行的语句同样可以取消
+	 *
+	 * @param task 数据库操作
+	 * @return 操作结果
+	 */
+	public <T> JdbcFuture<T> submit(Callable<T> task);
+
+	/**
+	 * 获得等待执行的操作数量
+	 */
+	public int getQueuedCount();
+
+	/**
+	 * 参见 {@link JdbcHandler#save(Object)}
+	 */
+	public JdbcFuture<Boolean> save(Object bean);
+
+	/**
+	 * 参见 {@link JdbcHandler#saveAll(Collection)}
+	 */
+	public JdbcFuture<BatchUpdateResult> saveAll(Collection<?> beans);
+
+	/**
+	 * 参见 {@link JdbcHandler#execute(String, Object...)}
+	 */
+	public JdbcFuture<Boolean> execute(String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#execute(String, Map)}
+	 */
+	public JdbcFuture<Boolean> execute(String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#batchUpdate(String[], boolean)}
+	 */
+	public JdbcFuture<BatchUpdateResult> batchUpdate(String[] sqls, boolean rollback);
+
+	/**
+	 * 参见 {@link JdbcHandler#batchUpdate(String, Object[][], boolean)}
+	 */
+	public JdbcFuture<BatchUpdateResult> batchUpdate(String sql, Object[][] paramValues, boolean rollback);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForBean(Class, String, Object...)}
+	 */
+	public <T> JdbcFuture<T> queryForBean(Class<T> beanClass, String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForBean(Class, String, Map)}
+	 */
+	public <T> JdbcFuture<T> queryForBean(Class<T> beanClass, String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForObject(String, Object...)}
+	 */
+	public JdbcFuture<Object> queryForObject(String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForObject(String, Map)}
+	 */
+	public JdbcFuture<Object> queryForObject(String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForMap(String, Object...)}
+	 */
+	public JdbcFuture<Map<String, Object>> queryForMap(String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForMap(String, Map)}
+	 */
+	public JdbcFuture<Map<String, Object>> queryForMap(String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForLong(String, Object...)}
+	 */
+	public JdbcFuture<Long> queryForLong(String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForLong(String, Map)}
+	 */
+	public JdbcFuture<Long> queryForLong(String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForList(Class, String, Object...)}
+	 */
+	public <T> JdbcFuture<List<T>> queryForList(Class<T> beanClass, String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForList(Class, String, Map)}
+	 */
+	public <T> JdbcFuture<List<T>> queryForList(Class<T> beanClass, String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForList(String, Object...)}
+	 */
+	public JdbcFuture<List<Map<String, Object>>> queryForList(String sql, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForList(String, Map)}
+	 */
+	public JdbcFuture<List<Map<String, Object>>> queryForList(String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForPage(Class, String, int, int, Object...)}
+	 */
+	public <T> JdbcFuture<Page<T>> queryForPage(Class<T> beanClass, String sql, int page, int pagesize, Object... paramValues);
+
+	/**
+	 * 参见 {@link JdbcHandler#queryForPage(String, int, int, Object...)}
+	 */
+	public JdbcFuture<Page<Map<String, Object>>> queryForPage(String sql, int page, int pagesize, Object... paramValues);
+}
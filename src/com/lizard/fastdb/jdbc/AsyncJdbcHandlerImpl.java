@@ -0,0 +1,622 @@
+package com.lizard.fastdb.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.connection.ConnectionPool;
+import com.lizard.fastdb.datasource.DataSource;
+
+/**
+ * AsyncJdbcHandler 接口实现类，操作通过 JdbcHandlerImpl 在数据源的异步线程池中执行
+ */
+public class AsyncJdbcHandlerImpl implements AsyncJdbcHandler
+{
+	private static final Log										logger						= LogFactory.getLog(AsyncJdbcHandlerImpl.class);
+
+	/**
+	 * 最大连接数未设置时异步线程池的线程数
+	 */
+	private static final int										DEFAULT_THREADS				= 10;
+
+	/**
+	 * 每个线程最多排队的操作数量
+	 */
+	private static final int										QUEUE_SIZE_PER_THREAD		= 4;
+
+	/**
+	 * 数据源名称 与 异步线程池 映射
+	 */
+	private static final ConcurrentMap<String, ThreadPoolExecutor>	EXECUTORS					= new ConcurrentHashMap<String, ThreadPoolExecutor>();
+
+	private final JdbcHandlerImpl									jdbcHandler;
+	private final String											datasourceName;
+	private final int												threads;					// 异步线程池的线程数
+
+	public AsyncJdbcHandlerImpl(JdbcHandlerImpl jdbcHandler)
+	{
+		DataSource ds = jdbcHandler.getDataSource();
+		this.jdbcHandler = jdbcHandler;
+		this.datasourceName = ds.getName().toLowerCase().trim();
+		this.threads = ds.getMaxConnectionSize() > 0 ? ds.getMaxConnectionSize() : DEFAULT_THREADS;
+	}
+
+	/**
+	 * 关闭数据源的异步线程池，已提交的操作继续执行；数据源销毁时调用
+	 *
+	 * @param datasourceName 数据源名称
+	 */
+	public static void shutdown(String datasourceName)
+	{
+		ThreadPoolExecutor executor = EXECUTORS.remove(datasourceName.toLowerCase().trim());
+		if (executor != null)
+		{
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#getJdbcHandler()
+	 */
+	public JdbcHandler getJdbcHandler()
+	{
+		return jdbcHandler;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#submit(java.util.concurrent.Callable)
+	 */
+	public <T> JdbcFuture<T> submit(Callable<T> task)
+	{
+		if (ConnectionPool.isInTransaction())
+		{
+			throw new DBException("The asynchronous operation can't take part in the transaction!");
+		}
+
+		AsyncTask<T> future = new AsyncTask<T>(jdbcHandler, task);
+		try
+		{
+			getExecutor().execute(future);
+		}
+		catch (RejectedExecutionException e)
+		{
+			String msg = "The asynchronous queue of DataSource [" + datasourceName + "] is full!";
+			logger.warn(msg);
+			future.fail(new DBException(msg, e));
+		}
+		return future;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#getQueuedCount()
+	 */
+	public int getQueuedCount()
+	{
+		// 还没有提交过异步操作时不创建线程池
+		ThreadPoolExecutor executor = EXECUTORS.get(datasourceName);
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#save(java.lang.Object)
+	 */
+	public JdbcFuture<Boolean> save(final Object bean)
+	{
+		return submit(new Callable<Boolean>()
+		{
+			public Boolean call()
+			{
+				return jdbcHandler.save(bean);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#saveAll(java.util.Collection)
+	 */
+	public JdbcFuture<BatchUpdateResult> saveAll(final Collection<?> beans)
+	{
+		return submit(new Callable<BatchUpdateResult>()
+		{
+			public BatchUpdateResult call()
+			{
+				return jdbcHandler.saveAll(beans);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#execute(java.lang.String, java.lang.Object[])
+	 */
+	public JdbcFuture<Boolean> execute(final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<Boolean>()
+		{
+			public Boolean call()
+			{
+				return jdbcHandler.execute(sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#execute(java.lang.String, java.util.Map)
+	 */
+	public JdbcFuture<Boolean> execute(final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<Boolean>()
+		{
+			public Boolean call()
+			{
+				return jdbcHandler.execute(namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#batchUpdate(java.lang.String[], boolean)
+	 */
+	public JdbcFuture<BatchUpdateResult> batchUpdate(final String[] sqls, final boolean rollback)
+	{
+		return submit(new Callable<BatchUpdateResult>()
+		{
+			public BatchUpdateResult call()
+			{
+				return jdbcHandler.batchUpdate(sqls, rollback);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][], boolean)
+	 */
+	public JdbcFuture<BatchUpdateResult> batchUpdate(final String sql, final Object[][] paramValues, final boolean rollback)
+	{
+		return submit(new Callable<BatchUpdateResult>()
+		{
+			public BatchUpdateResult call()
+			{
+				return jdbcHandler.batchUpdate(sql, paramValues, rollback);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForBean(java.lang.Class, java.lang.String, java.lang.Object[])
+	 */
+	public <T> JdbcFuture<T> queryForBean(final Class<T> beanClass, final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<T>()
+		{
+			public T call()
+			{
+				return jdbcHandler.queryForBean(beanClass, sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForBean(java.lang.Class, java.lang.String, java.util.Map)
+	 */
+	public <T> JdbcFuture<T> queryForBean(final Class<T> beanClass, final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<T>()
+		{
+			public T call()
+			{
+				return jdbcHandler.queryForBean(beanClass, namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForObject(java.lang.String, java.lang.Object[])
+	 */
+	public JdbcFuture<Object> queryForObject(final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<Object>()
+		{
+			public Object call()
+			{
+				return jdbcHandler.queryForObject(sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForObject(java.lang.String, java.util.Map)
+	 */
+	public JdbcFuture<Object> queryForObject(final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<Object>()
+		{
+			public Object call()
+			{
+				return jdbcHandler.queryForObject(namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForMap(java.lang.String, java.lang.Object[])
+	 */
+	public JdbcFuture<Map<String, Object>> queryForMap(final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<Map<String, Object>>()
+		{
+			public Map<String, Object> call()
+			{
+				return jdbcHandler.queryForMap(sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForMap(java.lang.String, java.util.Map)
+	 */
+	public JdbcFuture<Map<String, Object>> queryForMap(final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<Map<String, Object>>()
+		{
+			public Map<String, Object> call()
+			{
+				return jdbcHandler.queryForMap(namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForLong(java.lang.String, java.lang.Object[])
+	 */
+	public JdbcFuture<Long> queryForLong(final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<Long>()
+		{
+			public Long call()
+			{
+				return jdbcHandler.queryForLong(sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForLong(java.lang.String, java.util.Map)
+	 */
+	public JdbcFuture<Long> queryForLong(final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<Long>()
+		{
+			public Long call()
+			{
+				return jdbcHandler.queryForLong(namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForList(java.lang.Class, java.lang.String, java.lang.Object[])
+	 */
+	public <T> JdbcFuture<List<T>> queryForList(final Class<T> beanClass, final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<List<T>>()
+		{
+			public List<T> call()
+			{
+				return jdbcHandler.queryForList(beanClass, sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForList(java.lang.Class, java.lang.String, java.util.Map)
+	 */
+	public <T> JdbcFuture<List<T>> queryForList(final Class<T> beanClass, final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<List<T>>()
+		{
+			public List<T> call()
+			{
+				return jdbcHandler.queryForList(beanClass, namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForList(java.lang.String, java.lang.Object[])
+	 */
+	public JdbcFuture<List<Map<String, Object>>> queryForList(final String sql, final Object... paramValues)
+	{
+		return submit(new Callable<List<Map<String, Object>>>()
+		{
+			public List<Map<String, Object>> call()
+			{
+				return jdbcHandler.queryForList(sql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForList(java.lang.String, java.util.Map)
+	 */
+	public JdbcFuture<List<Map<String, Object>>> queryForList(final String namedSql, final Map<String, Object> paramValues)
+	{
+		return submit(new Callable<List<Map<String, Object>>>()
+		{
+			public List<Map<String, Object>> call()
+			{
+				return jdbcHandler.queryForList(namedSql, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForPage(java.lang.Class, java.lang.String, int, int, java.lang.Object[])
+	 */
+	public <T> JdbcFuture<Page<T>> queryForPage(final Class<T> beanClass, final String sql, final int page, final int pagesize,
+			final Object... paramValues)
+	{
+		return submit(new Callable<Page<T>>()
+		{
+			public Page<T> call()
+			{
+				return jdbcHandler.queryForPage(beanClass, sql, page, pagesize, paramValues);
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.jdbc.AsyncJdbcHandler#queryForPage(java.lang.String, int, int, java.lang.Object[])
+	 */
+	public JdbcFuture<Page<Map<String, Object>>> queryForPage(final String sql, final int page, final int pagesize, final Object... paramValues)
+	{
+		return submit(new Callable<Page<Map<String, Object>>>()
+		{
+			public Page<Map<String, Object>> call()
+			{
+				return jdbcHandler.queryForPage(sql, page, pagesize, paramValues);
+			}
+		});
+	}
+
+	/**
+	 * 获得数据源的异步线程池，第一次使用时创建：线程数为数据源的最大连接数，空闲 60 秒后回收，队列满时拒绝提交
+	 */
+	private ThreadPoolExecutor getExecutor()
+	{
+		ThreadPoolExecutor executor = EXECUTORS.get(datasourceName);
+		if (executor == null)
+		{
+			ThreadPoolExecutor created = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads
+					* QUEUE_SIZE_PER_THREAD), new ThreadFactory()
+			{
+				private final AtomicInteger	count	= new AtomicInteger();
+
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "FastDB-Async-" + datasourceName + "-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			created.allowCoreThreadTimeOut(true);
+
+			executor = EXECUTORS.putIfAbsent(datasourceName, created);
+			if (executor == null)
+			{
+				executor = created;
+			}
+			else
+			{
+				created.shutdown();
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 异步操作：在执行线程中应用提交线程的设置，并记录正在执行的 Statement 以便取消
+	 */
+	private static final class AsyncTask<T> extends FutureTask<T> implements JdbcFuture<T>
+	{
+		private final JdbcHandlerImpl				jdbcHandler;
+		private final JdbcHandlerImpl.ThreadSettings	settings;
+		private final StatementCanceller			canceller	= new StatementCanceller();
+
+		private List<Listener<T>>					listeners	= new ArrayList<Listener<T>>();	// 完成后为null
+
+		AsyncTask(JdbcHandlerImpl jdbcHandler, Callable<T> task)
+		{
+			super(task);
+			this.jdbcHandler = jdbcHandler;
+			this.settings = jdbcHandler.getThreadSettings();
+		}
+
+		public void run()
+		{
+			StatementCanceller previousCanceller = canceller.bind();
+			JdbcHandlerImpl.ThreadSettings previous = jdbcHandler.setThreadSettings(settings);
+			try
+			{
+				super.run();
+			}
+			finally
+			{
+				jdbcHandler.setThreadSettings(previous);
+				canceller.unbind(previousCanceller);
+			}
+		}
+
+		/**
+		 * 取消操作：不中断执行线程，调用正在执行的 Statement.cancel()
+		 */
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			boolean cancelled = super.cancel(false);
+			if (cancelled)
+			{
+				canceller.cancel();
+			}
+			return cancelled;
+		}
+
+		/**
+		 * 提交失败时设置失败的原因
+		 */
+		void fail(Throwable cause)
+		{
+			setException(cause);
+		}
+
+		public void addListener(Listener<T> listener)
+		{
+			synchronized (this)
+			{
+				if (listeners != null)
+				{
+					listeners.add(listener);
+					return;
+				}
+			}
+			notifyListener(listener);
+		}
+
+		public boolean isSuccess()
+		{
+			return isDone() && getCause() == null;
+		}
+
+		public Throwable getCause()
+		{
+			if (!isDone())
+			{
+				return null;
+			}
+
+			try
+			{
+				get();
+				return null;
+			}
+			catch (CancellationException e)
+			{
+				return e;
+			}
+			catch (ExecutionException e)
+			{
+				return e.getCause();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return e;
+			}
+		}
+
+		public T join()
+		{
+			try
+			{
+				return get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new DBException("Interrupted while waiting for the asynchronous operation!", e);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				throw cause instanceof RuntimeException ? (RuntimeException) cause : new DBException(cause);
+			}
+		}
+
+		protected void done()
+		{
+			List<Listener<T>> completed;
+			synchronized (this)
+			{
+				completed = listeners;
+				listeners = null;
+			}
+			for (Listener<T> listener : completed)
+			{
+				notifyListener(listener);
+			}
+		}
+
+		private void notifyListener(Listener<T> listener)
+		{
+			try
+			{
+				listener.operationComplete(this);
+			}
+			catch (RuntimeException e)
+			{
+				logger.error("Failed to notify the listener of asynchronous operation!", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.lizard.fastdb.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 批量操作执行过程中累计 {@link BatchUpdateResult}，计数存放在按需扩容的 int 数组中，不产生 Integer 对象
+ * <p>
+ * 只统计汇总时不保存每条语句的更新计数，只累计影响的总行数和失败批次的行范围。
+ * 回滚的批次不计入影响的总行数，其中的语句计数均为 {@link Statement#EXECUTE_FAILED}。
+ */
+final class BatchResultBuilder
+{
+	private final boolean	summaryOnly;
+	private boolean			success			= true;
+
+	private int[]			rows;					// 每条语句的更新计数，只统计汇总时为null
+	private int				rowCount		= 0;
+	private long			affectedRows	= 0;
+
+	// 当前批次开始时的语句数量和影响的总行数，用于回滚当前批次
+	private int				markRow			= 0;
+	private long			markAffected	= 0;
+
+	private int[]			errorBatchs		= new int[4];
+	private int[]			errorRanges		= new int[8];	// 失败批次的行范围，每两个数为一组 [开始行, 结束行)
+	private int				errorCount		= 0;
+
+	/**
+	 * @param summaryOnly 是否只统计汇总
+	 * @param expectedRows 预计的语句数量，用于分配计数数组
+	 */
+	BatchResultBuilder(boolean summaryOnly, int expectedRows)
+	{
+		this.summaryOnly = summaryOnly;
+		this.rows = summaryOnly ? null : new int[Math.max(expectedRows, 0)];
+	}
+
+	/**
+	 * 添加一次 executeBatch 返回的更新计数，正数计入影响的总行数
+	 *
+	 * @param counts 更新计数，可以为null
+	 */
+	void addRows(int[] counts)
+	{
+		if (counts == null)
+		{
+			return;
+		}
+
+		for (int count : counts)
+		{
+			if (count > 0)
+			{
+				affectedRows += count;
+			}
+		}
+		if (!summaryOnly)
+		{
+			ensureCapacity(rowCount + counts.length);
+			System.arraycopy(counts, 0, rows, rowCount, counts.length);
+		}
+		rowCount += counts.length;
+	}
+
+	/**
+	 * 添加 n 条相同的更新计数，不计入影响的总行数
+	 *
+	 * @param count 更新计数
+	 * @param n 语句数量
+	 */
+	void fillRows(int count, int n)
+	{
+		if (!summaryOnly)
+		{
+			ensureCapacity(rowCount + n);
+			Arrays.fill(rows, rowCount, rowCount + n, count);
+		}
+		rowCount += n;
+	}
+
+	/**
+	 * 记录执行失败的批次的更新计数：批次已回滚时全部记为 EXECUTE_FAILED，不计入影响的总行数；
+	 * 未回滚时记录驱动返回的 {@link BatchUpdateException#getUpdateCounts()}
+	 *
+	 * @param e 执行批次时的异常
+	 * @param rolledBack 批次是否已回滚
+	 * @param n 批次的语句数量
+	 */
+	void addFailedRows(SQLException e, boolean rolledBack, int n)
+	{
+		if (rolledBack)
+		{
+			fillRows(Statement.EXECUTE_FAILED, n);
+		}
+		else if (e instanceof BatchUpdateException)
+		{
+			addRows(((BatchUpdateException) e).getUpdateCounts());
+		}
+	}
+
+	/**
+	 * 开始一个新的批次，之后记录的计数和影响的行数可以通过 {@link #rollbackBatch()} 撤销
+	 */
+	void beginBatch()
+	{
+		markRow = rowCount;
+		markAffected = affectedRows;
+	}
+
+	/**
+	 * 撤销当前批次已记录的更新计数和影响的行数，用于回滚的批次重新记录
+	 */
+	void rollbackBatch()
+	{
+		rowCount = markRow;
+		affectedRows = markAffected;
+	}
+
+	/**
+	 * 累计影响的行数
+	 */
+	void addAffectedRows(long count)
+	{
+		affectedRows += count;
+	}
+
+	/**
+	 * 记录执行失败的批次
+	 *
+	 * @param batch 批次编号，从1开始
+	 * @param fromRow 批次的开始行（从0开始）
+	 * @param toRow 批次的结束行（不含）
+	 */
+	void addErrorBatch(int batch, int fromRow, int toRow)
+	{
+		success = false;
+		if (errorCount == errorBatchs.length)
+		{
+			errorBatchs = Arrays.copyOf(errorBatchs, errorCount * 2);
+			errorRanges = Arrays.copyOf(errorRanges, errorCount * 4);
+		}
+		errorBatchs[errorCount] = batch;
+		errorRanges[errorCount * 2] = fromRow;
+		errorRanges[errorCount * 2 + 1] = toRow;
+		errorCount++;
+	}
+
+	/**
+	 * 合并另一个批量操作的结果
+	 *
+	 * @param result 批量操作结果
+	 * @param batchOffset 批次编号的偏移量
+	 * @param rowOffset 行号的偏移量
+	 */
+	void add(BatchUpdateResult result, int batchOffset, int rowOffset)
+	{
+		success &= result.isSuccess();
+
+		int[] counts = result.getBatchRows();
+		if (counts != null && !summaryOnly)
+		{
+			ensureCapacity(rowCount + counts.length);
+			System.arraycopy(counts, 0, rows, rowCount, counts.length);
+			rowCount += counts.length;
+		}
+		affectedRows += result.getAffectedRows();
+
+		int[] batchs = result.getErrorBatchs();
+		int[][] ranges = result.getErrorRowRanges();
+		for (int i = 0; i < batchs.length; i++)
+		{
+			boolean hasRange = ranges != null && i < ranges.length;
+			addErrorBatch(batchOffset + batchs[i], hasRange ? rowOffset + ranges[i][0] : -1, hasRange ? rowOffset + ranges[i][1] : -1);
+		}
+	}
+
+	/**
+	 * 获得影响的总行数
+	 */
+	long getAffectedRows()
+	{
+		return affectedRows;
+	}
+
+	/**
+	 * 生成批量操作结果
+	 */
+	BatchUpdateResult build()
+	{
+		BatchUpdateResult result = new BatchUpdateResult();
+		result.setSuccess(success);
+		if (!summaryOnly)
+		{
+			result.setBatchRows(rowCount == rows.length ? rows : Arrays.copyOf(rows, rowCount));
+		}
+		result.setAffectedRows(affectedRows);
+		result.setSummaryOnly(summaryOnly);
+
+		if (errorCount > 0)
+		{
+			int[][] ranges = new int[errorCount][];
+			for (int i = 0; i < errorCount; i++)
+			{
+				ranges[i] = new int[] { errorRanges[i * 2], errorRanges[i * 2 + 1] };
+			}
+			result.setErrorBatchs(Arrays.copyOf(errorBatchs, errorCount));
+			result.setErrorRowRanges(ranges);
+		}
+		return result;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > rows.length)
+		{
+			rows = Arrays.copyOf(rows, Math.max(capacity, rows.length + (rows.length >> 1) + 16));
+		}
+	}
+}
@@ -17,6 +17,12 @@ public class BatchUpdateResult implements Serializable
 	private int[]	errorBatchs	= new int[0];
 	// 成功影响的计数
 	private int[]	batchRows	= null;
+	// 失败批次的行范围
+	private int[][]	errorRowRanges	= new int[0][];
+	// 影响的总行数
+	private long	affectedRows	= 0;
+	// 是否只统计汇总，不保存每条语句的计数
+	private boolean	summaryOnly	= false;
 
 	public BatchUpdateResult()
 	{
@@ -28,6 +34,16 @@ public class BatchUpdateResult implements Serializable
 		this.success = success;
 		this.errorBatchs = errorBatchs;
 		this.batchRows = batchRows;
+		if (batchRows != null)
+		{
+			for (int rows : batchRows)
+			{
+				if (rows > 0)
+				{
+					this.affectedRows += rows;
+				}
+			}
+		}
 	}
 
 	/**
@@ -48,7 +64,7 @@ public class BatchUpdateResult implements Serializable
 	/**
 	 * 获得成功执行的SQL语句的更新计数
 	 * 
-	 * @return 计数结果数组
+	 * @return 计数结果数组，只统计汇总时为null
 	 */
 	public int[] getBatchRows()
 	{
@@ -74,4 +90,49 @@ public class BatchUpdateResult implements Serializable
 	{
 		this.errorBatchs = errorBatchs;
 	}
+
+	/**
+	 * 获得失败批次的行范围，与 {@link #getErrorBatchs()} 一一对应
+	 * 
+	 * @return 每个失败批次的 {开始行, 结束行}，行号从0开始，不含结束行
+	 */
+	public int[][] getErrorRowRanges()
+	{
+		return errorRowRanges;
+	}
+
+	public void setErrorRowRanges(int[][] errorRowRanges)
+	{
+		this.errorRowRanges = errorRowRanges;
+	}
+
+	/**
+	 * 获得影响的总行数，不包括未知的计数（Statement.SUCCESS_NO_INFO 和 Statement.EXECUTE_FAILED）和已回滚的批次
+	 * 
+	 * @return 影响的总行数
+	 */
+	public long getAffectedRows()
+	{
+		return affectedRows;
+	}
+
+	public void setAffectedRows(long affectedRows)
+	{
+		this.affectedRows = affectedRows;
+	}
+
+	/**
+	 * 是否只统计汇总，参见 {@link JdbcHandler#setBatchSummaryOnly(boolean)}
+	 * 
+	 * @return true -- 只有影响的总行数和失败批次，没有每条语句的更新计数
+	 */
+	public boolean isSummaryOnly()
+	{
+		return summaryOnly;
+	}
+
+	public void setSummaryOnly(boolean summaryOnly)
+	{
+		this.summaryOnly = summaryOnly;
+	}
 }
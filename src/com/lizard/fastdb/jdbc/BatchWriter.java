@@ -0,0 +1,413 @@
+package com.lizard.fastdb.jdbc;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.connection.ConnectionPool;
+import com.lizard.fastdb.persistence.EntityMetadata;
+
+/**
+ * 流式批量写入：逐行接收参数，每满 batchSize 行执行一次批量操作，不需要预先将全部参数放入内存
+ * <p>
+ * 由 {@link JdbcHandler#createBatchWriter(String, int, boolean, boolean)} 创建，支持两种提交方式：
+ * <ul>
+ * <li>按批次提交 -- 每次写入后提交；rollback 为 true 时回滚执行失败的批次，之后的行继续写入，与设置了分批的 batchUpdate 相同</li>
+ * <li>单一事务 -- 所有批次在一个事务中执行，{@link #finish()} 时提交；任一批次执行失败时回滚全部并抛出异常，
+ * 已执行的行数和影响的行数清零</li>
+ * </ul>
+ * 创建时当前线程在事务管理器中，则由事务管理器统一提交和回滚。批次编号为写入的次数，从1开始。
+ * <p>
+ * 使用示例：
+ * <pre>
+ * BatchWriter writer = jdbc.createBatchWriter("INSERT INTO t (a, b) VALUES (?, ?)", 1000, true, false);
+ * try
+ * {
+ *     while (...)
+ *     {
+ *         writer.add(a, b);
+ *     }
+ *     writer.finish();
+ * }
+ * finally
+ * {
+ *     writer.close();
+ * }
+ * </pre>
+ * 未调用 {@link #finish()} 就关闭时，缓冲的行不再写入，单一事务回滚。BatchWriter 不是线程安全的。
+ */
+public class BatchWriter implements Closeable
+{
+	private static final Log					logger			= LogFactory.getLog(BatchWriter.class);
+
+	private final JdbcHandlerImpl				handler;
+	private final String						sql;
+	private final EntityMetadata.SQLTemplate	template;			// 写入实体时的 INSERT 模板，写入参数时为null
+	private final Class<?>						entityClass;
+	private final int							batchSize;
+	private final boolean						rollback;
+	private final boolean						singleTransaction;
+	private final boolean						inTransaction;		// 创建时是否在事务管理器中
+
+	private Connection							conn			= null;
+	private boolean								autoCommit		= true;	// 连接原有的自动提交设置
+
+	private Object[][]							buffer;
+	private int									buffered		= 0;
+
+	private long								rowCount		= 0;	// 已接收的行数
+	private long								writtenRows		= 0;	// 已执行且未随单一事务回滚的行数
+	private long								affectedRows	= 0;	// 影响的行数
+	private int									batchCount		= 0;	// 已执行的批次
+	private int[]								errorBatchs		= new int[0];	// 失败的批次编号
+
+	private boolean								finished		= false;
+	private boolean								closed			= false;
+
+	private FlushListener						listener		= null;
+
+	BatchWriter(JdbcHandlerImpl handler, String sql, EntityMetadata.SQLTemplate template, Class<?> entityClass, int batchSize,
+			boolean rollback, boolean singleTransaction)
+	{
+		if (batchSize <= 0)
+		{
+			throw new IllegalArgumentException("The batchSize must be greater than 0!");
+		}
+
+		this.handler = handler;
+		this.sql = sql;
+		this.template = template;
+		this.entityClass = entityClass;
+		this.batchSize = batchSize;
+		this.rollback = rollback;
+		this.singleTransaction = singleTransaction;
+		this.inTransaction = ConnectionPool.isInTransaction();
+		this.buffer = new Object[Math.min(batchSize, 1024)][];
+	}
+
+	/**
+	 * 设置每次写入后的回调，用于报告进度和错误
+	 *
+	 * @param listener 回调
+	 */
+	public void setFlushListener(FlushListener listener)
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * 添加一行参数，满 batchSize 行时写入
+	 *
+	 * @param paramValues 预编译sql语句一行的参数
+	 */
+	public void add(Object... paramValues)
+	{
+		checkOpen();
+		if (buffered == buffer.length)
+		{
+			Object[][] larger = new Object[Math.min(batchSize, buffer.length * 2)][];
+			System.arraycopy(buffer, 0, larger, 0, buffered);
+			buffer = larger;
+		}
+
+		buffer[buffered++] = paramValues;
+		rowCount++;
+		if (buffered >= batchSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * 添加一个实体对象，只能用于 {@link JdbcHandler#createBatchWriter(Class, int, boolean, boolean)} 创建的 BatchWriter
+	 *
+	 * @param bean 使用了 fastDB annotation 的对象，类型必须与创建时指定的实体类相同
+	 */
+	public void addBean(Object bean)
+	{
+		if (template == null)
+		{
+			throw new IllegalStateException("The BatchWriter of SQL [" + sql + "] can't write beans!");
+		}
+		if (bean == null || bean.getClass() != entityClass)
+		{
+			throw new IllegalArgumentException("The bean must be an instance of " + entityClass.getName() + "!");
+		}
+		add(template.getParameters(bean));
+	}
+
+	/**
+	 * 逐行添加参数
+	 *
+	 * @param rows 每行的参数
+	 */
+	public void addAll(Iterator<Object[]> rows)
+	{
+		while (rows.hasNext())
+		{
+			add(rows.next());
+		}
+	}
+
+	/**
+	 * 逐个添加实体对象，参见 {@link #addBean(Object)}
+	 *
+	 * @param beans 实体对象
+	 */
+	public void addBeans(Iterator<?> beans)
+	{
+		while (beans.hasNext())
+		{
+			addBean(beans.next());
+		}
+	}
+
+	/**
+	 * 立即写入缓冲的行
+	 *
+	 * @return 本批次的执行结果，没有缓冲的行时返回null
+	 */
+	public BatchUpdateResult flush()
+	{
+		checkOpen();
+		if (buffered == 0)
+		{
+			return null;
+		}
+
+		Object[][] rows = new Object[buffered][];
+		System.arraycopy(buffer, 0, rows, 0, buffered);
+		for (int i = 0; i < buffered; i++)
+		{
+			buffer[i] = null;
+		}
+		buffered = 0;
+
+		BatchUpdateResult result;
+		try
+		{
+			result = handler.executeBatch(getConnection(), sql, rows, rollback || singleTransaction, singleTransaction || inTransaction);
+		}
+		catch (RuntimeException e)
+		{
+			// 单一事务中任一批次失败，回滚全部
+			addErrorBatch(++batchCount);
+			abort();
+			throw e;
+		}
+
+		batchCount++;
+		writtenRows += rows.length;
+		affectedRows += result.getAffectedRows();
+		if (!result.isSuccess())
+		{
+			addErrorBatch(batchCount);
+			logger.warn("Batch " + batchCount + " of SQL [" + sql + "] failed, " + writtenRows + " rows written.");
+		}
+
+		if (listener != null)
+		{
+			listener.afterFlush(this, result);
+		}
+		return result;
+	}
+
+	/**
+	 * 写入剩余的行；单一事务时提交事务
+	 *
+	 * @return true -- 全部批次执行成功，false -- 有批次执行失败
+	 */
+	public boolean finish()
+	{
+		flush();
+		if (singleTransaction && !inTransaction && conn != null)
+		{
+			try
+			{
+				conn.commit();
+			}
+			catch (SQLException e)
+			{
+				abort();
+				String msg = "Failed to commit the BatchWriter of SQL [" + sql + "]!";
+				logger.error(msg, e);
+				throw new DBException(msg, e);
+			}
+		}
+		finished = true;
+		return isSuccess();
+	}
+
+	/**
+	 * 释放数据库连接；未调用 {@link #finish()} 时缓冲的行不再写入，单一事务回滚
+	 */
+	public void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		if (!finished)
+		{
+			abort();
+			return;
+		}
+		release();
+	}
+
+	/**
+	 * 是否全部批次执行成功
+	 */
+	public boolean isSuccess()
+	{
+		return errorBatchs.length == 0;
+	}
+
+	/**
+	 * 获得已添加的行数
+	 */
+	public long getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * 获得已执行的行数，包括按批次回滚的行；单一事务回滚后为0
+	 */
+	public long getWrittenRows()
+	{
+		return writtenRows;
+	}
+
+	/**
+	 * 获得影响的行数，驱动未返回计数的行和已回滚的行不计算在内；单一事务回滚后为0
+	 */
+	public long getAffectedRows()
+	{
+		return affectedRows;
+	}
+
+	/**
+	 * 获得已执行的批次数量
+	 */
+	public int getBatchCount()
+	{
+		return batchCount;
+	}
+
+	/**
+	 * 获得失败的批次编号，批次编号从1开始
+	 */
+	public int[] getErrorBatchs()
+	{
+		return errorBatchs.clone();
+	}
+
+	private void addErrorBatch(int batch)
+	{
+		errorBatchs = Arrays.copyOf(errorBatchs, errorBatchs.length + 1);
+		errorBatchs[errorBatchs.length - 1] = batch;
+	}
+
+	private Connection getConnection() throws DBException
+	{
+		if (conn == null)
+		{
+			conn = handler.getConnection();
+			if (singleTransaction && !inTransaction)
+			{
+				try
+				{
+					autoCommit = conn.getAutoCommit();
+					conn.setAutoCommit(false);
+				}
+				catch (SQLException e)
+				{
+					release();
+					throw new DBException("Failed to begin the transaction of BatchWriter!", e);
+				}
+			}
+		}
+		return conn;
+	}
+
+	/**
+	 * 回滚单一事务并释放连接，之后不能再添加
+	 */
+	private void abort()
+	{
+		if (singleTransaction && !inTransaction && conn != null)
+		{
+			try
+			{
+				conn.rollback();
+				// 之前批次执行的行已随事务撤销
+				writtenRows = 0;
+				affectedRows = 0;
+			}
+			catch (SQLException e)
+			{
+				logger.error("Failed to rollback the BatchWriter of SQL [" + sql + "]!", e);
+			}
+		}
+		release();
+	}
+
+	private void release()
+	{
+		closed = true;
+		buffer = null;
+		if (conn != null)
+		{
+			try
+			{
+				if (singleTransaction && !inTransaction)
+				{
+					conn.setAutoCommit(autoCommit);
+				}
+			}
+			catch (SQLException e)
+			{
+				logger.warn("Failed to restore the auto-commit of connection.", e);
+			}
+			finally
+			{
+				handler.close(conn);
+				conn = null;
+			}
+		}
+	}
+
+	private void checkOpen()
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("The BatchWriter of SQL [" + sql + "] is closed!");
+		}
+		if (finished)
+		{
+			throw new IllegalStateException("The BatchWriter of SQL [" + sql + "] is finished!");
+		}
+	}
+
+	/**
+	 * 每次写入后的回调
+	 */
+	public interface FlushListener
+	{
+		/**
+		 * 一个批次执行之后调用
+		 *
+		 * @param writer 当前 BatchWriter，可以读取累计的行数和失败批次
+		 * @param result 本批次的执行结果
+		 */
+		public void afterFlush(BatchWriter writer, BatchUpdateResult result);
+	}
+}
@@ -0,0 +1,155 @@
+package com.lizard.fastdb.jdbc;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.lizard.fastdb.DBException;
+
+/**
+ * 以JavaBean作为命名参数值的只读Map，命名参数 :name 取 getName()/isName() 的返回值或 public 属性 name 的值<br>
+ * 属性名不区分大小写。每个类的属性访问器只解析一次并缓存，不需要为每次调用创建 HashMap。
+ * <p>
+ * Example: jdbc.queryForList("SELECT * FROM user WHERE name = :name AND age > :age", new BeanParameterMap(user));
+ */
+public class BeanParameterMap extends AbstractMap<String, Object>
+{
+	/**
+	 * 类 与 属性访问器（key -- 小写的属性名） 映射
+	 */
+	private static final ConcurrentMap<Class<?>, Map<String, AccessibleObject>>	ACCESSORS	= new ConcurrentHashMap<Class<?>, Map<String, AccessibleObject>>();
+
+	private final Object														bean;
+	private final Map<String, AccessibleObject>									accessors;
+
+	/**
+	 * 创建以JavaBean作为命名参数值的Map
+	 * 
+	 * @param bean JavaBean
+	 */
+	public BeanParameterMap(Object bean)
+	{
+		if (bean == null)
+		{
+			throw new IllegalArgumentException("bean can't be null!");
+		}
+
+		this.bean = bean;
+		this.accessors = getAccessors(bean.getClass());
+	}
+
+	/**
+	 * 获得类的属性访问器，不存在时解析并缓存
+	 */
+	private static Map<String, AccessibleObject> getAccessors(Class<?> beanClass)
+	{
+		Map<String, AccessibleObject> accessors = ACCESSORS.get(beanClass);
+		if (accessors != null)
+		{
+			return accessors;
+		}
+
+		accessors = new LinkedHashMap<String, AccessibleObject>();
+		for (Field field : beanClass.getFields())
+		{
+			if (!Modifier.isStatic(field.getModifiers()))
+			{
+				accessors.put(field.getName().toLowerCase(), field);
+			}
+		}
+
+		try
+		{
+			BeanInfo info = Introspector.getBeanInfo(beanClass, Object.class);
+			for (PropertyDescriptor pd : info.getPropertyDescriptors())
+			{
+				Method getter = pd.getReadMethod();
+				if (getter != null)
+				{
+					getter.setAccessible(true);
+					accessors.put(pd.getName().toLowerCase(), getter);
+				}
+			}
+		}
+		catch (IntrospectionException e)
+		{
+			throw new DBException("Failed to introspect " + beanClass.getName() + "!", e);
+		}
+
+		accessors = Collections.unmodifiableMap(accessors);
+		Map<String, AccessibleObject> exists = ACCESSORS.putIfAbsent(beanClass, accessors);
+		return exists != null ? exists : accessors;
+	}
+
+	/**
+	 * 获得JavaBean
+	 */
+	public Object getBean()
+	{
+		return bean;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		AccessibleObject accessor = (key instanceof String) ? accessors.get(((String) key).toLowerCase()) : null;
+		if (accessor == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return (accessor instanceof Method) ? ((Method) accessor).invoke(bean) : ((Field) accessor).get(bean);
+		}
+		catch (Exception e)
+		{
+			throw new DBException("Failed to read property [" + key + "] of " + bean.getClass().getName() + "!", e);
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return (key instanceof String) && accessors.containsKey(((String) key).toLowerCase());
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return accessors.isEmpty();
+	}
+
+	@Override
+	public int size()
+	{
+		return accessors.size();
+	}
+
+	/**
+	 * 读取全部属性值，仅用于遍历和输出，按名称取值请使用 {@link #get(Object)}
+	 */
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet()
+	{
+		Map<String, Object> values = new HashMap<String, Object>();
+		for (String name : accessors.keySet())
+		{
+			values.put(name, get(name));
+		}
+		return values.entrySet();
+	}
+}
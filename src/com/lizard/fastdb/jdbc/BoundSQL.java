@@ -0,0 +1,32 @@
+package com.lizard.fastdb.jdbc;
+
+/**
+ * 绑定了参数值的预编译SQL语句，由 {@link NamedSQL#bind(java.util.Map)} 创建
+ */
+public class BoundSQL
+{
+	private final String	sql;		// 预编译SQL语句
+	private final Object[]	parameters;	// 与占位符一一对应的参数值
+
+	public BoundSQL(String sql, Object[] parameters)
+	{
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * 获得预编译SQL语句
+	 */
+	public String getSQL()
+	{
+		return sql;
+	}
+
+	/**
+	 * 获得与占位符一一对应的参数值
+	 */
+	public Object[] getParameters()
+	{
+		return parameters;
+	}
+}
@@ -0,0 +1,188 @@
+package com.lizard.fastdb.jdbc;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 由分页查询语句生成统计总行数的语句
+ * <p>
+ * 生成规则：
+ * <ul>
+ * <li>去掉最外层末尾的 ORDER BY，排序不影响总行数</li>
+ * <li>最外层是简单的 SELECT ... FROM ...（没有 DISTINCT、GROUP BY、UNION、聚合函数等）时，将查询列替换为 count(*)，不再读取不需要的列</li>
+ * <li>否则将查询语句作为子查询：SELECT count(*) FROM (...) count_</li>
+ * </ul>
+ * 被去掉的部分包含参数（?）时不做改写，保证参数的顺序不变。生成结果按SQL缓存，超过 {@link #MAX_CACHED_SQLS} 条时按 CLOCK 算法淘汰最近未使用的。
+ */
+final class CountSQL
+{
+	/**
+	 * 最多缓存生成结果的SQL数量
+	 */
+	static final int									MAX_CACHED_SQLS	= 1024;
+
+	private static final ConcurrentMap<String, Entry>	COUNT_SQLS		= new ConcurrentHashMap<String, Entry>(256);
+
+	/**
+	 * 是否有线程正在淘汰缓存，同一时间只由一个线程淘汰
+	 */
+	private static final AtomicBoolean					EVICTING		= new AtomicBoolean();
+
+	private static final Pattern						ORDER_BY		= Pattern.compile("\\border\\s+by\\b");
+
+	/**
+	 * ORDER BY 之后出现时不能去掉 ORDER BY 的子句
+	 */
+	private static final Pattern						AFTER_ORDER_BY	= Pattern.compile("\\b(limit|offset|fetch|for\\s+update|rows)\\b");
+
+	/**
+	 * 不能替换查询列的最外层子句
+	 */
+	private static final Pattern						COMPLEX_CLAUSES	= Pattern
+																				.compile("\\b(distinct|unique|top|group\\s+by|having|union|intersect|minus|except|limit|offset|fetch|for\\s+update|connect\\s+by|start\\s+with|into)\\b");
+
+	/**
+	 * 查询列中的聚合函数，没有 GROUP BY 时查询结果只有一行
+	 */
+	private static final Pattern						AGGREGATES		= Pattern
+																				.compile(
+																						"\\b(count|sum|avg|min|max|group_concat|listagg|wm_concat|stddev\\w*|variance|var_pop|var_samp|bit_and|bit_or|bit_xor|json_arrayagg|json_objectagg)\\s*\\(",
+																						Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern						SELECT			= Pattern.compile("^select\\b");
+	private static final Pattern						FROM			= Pattern.compile("\\bfrom\\b");
+
+	private CountSQL()
+	{
+	}
+
+	/**
+	 * 生成统计总行数的语句，参数与原查询语句相同
+	 *
+	 * @param sql 查询语句
+	 * @return 统计总行数的语句
+	 */
+	static String create(String sql)
+	{
+		Entry entry = COUNT_SQLS.get(sql);
+		if (entry != null)
+		{
+			// 只在标记变化时写入，避免命中时的写竞争
+			if (!entry.used)
+			{
+				entry.used = true;
+			}
+			return entry.countSql;
+		}
+
+		String countSql = rewrite(sql);
+		if (COUNT_SQLS.putIfAbsent(sql, new Entry(countSql)) == null && COUNT_SQLS.size() > MAX_CACHED_SQLS)
+		{
+			evict();
+		}
+		return countSql;
+	}
+
+	/**
+	 * 获得当前缓存的SQL数量
+	 *
+	 * @return 缓存数量
+	 */
+	static int getCacheSize()
+	{
+		return COUNT_SQLS.size();
+	}
+
+	/**
+	 * 淘汰缓存至 MAX_CACHED_SQLS 的 3/4：按 CLOCK 算法，最近被使用过的清除使用标记后保留，未被使用过的淘汰
+	 */
+	private static void evict()
+	{
+		if (!EVICTING.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		try
+		{
+			int target = MAX_CACHED_SQLS * 3 / 4;
+			for (int pass = 0; pass < 2 && COUNT_SQLS.size() > target; pass++)
+			{
+				Iterator<Entry> it = COUNT_SQLS.values().iterator();
+				while (it.hasNext() && COUNT_SQLS.size() > target)
+				{
+					Entry entry = it.next();
+					if (entry.used)
+					{
+						entry.used = false;
+					}
+					else
+					{
+						it.remove();
+					}
+				}
+			}
+		}
+		finally
+		{
+			EVICTING.set(false);
+		}
+	}
+
+	/**
+	 * 缓存项，used 为 CLOCK 淘汰算法的使用标记
+	 */
+	private static final class Entry
+	{
+		private final String		countSql;
+		private volatile boolean	used;
+
+		Entry(String countSql)
+		{
+			this.countSql = countSql;
+		}
+	}
+
+	private static String rewrite(String sql)
+	{
+		sql = sql.trim();
+		if (sql.endsWith(";"))
+		{
+			sql = sql.substring(0, sql.length() - 1).trim();
+		}
+		String masked = JdbcUtil.maskNested(sql);
+
+		// 去掉末尾的 ORDER BY
+		Matcher orderBy = ORDER_BY.matcher(masked);
+		int start = -1;
+		while (orderBy.find())
+		{
+			start = orderBy.start();
+		}
+		if (start != -1 && !AFTER_ORDER_BY.matcher(masked.substring(start)).find() && sql.indexOf('?', start) == -1)
+		{
+			sql = sql.substring(0, start).trim();
+			masked = masked.substring(0, start);
+		}
+
+		// 替换查询列
+		if (SELECT.matcher(masked).find() && !COMPLEX_CLAUSES.matcher(masked).find())
+		{
+			Matcher from = FROM.matcher(masked);
+			if (from.find())
+			{
+				String columns = sql.substring(6, from.start());
+				if (columns.indexOf('?') == -1 && !AGGREGATES.matcher(columns).find())
+				{
+					return "SELECT count(*) FROM" + sql.substring(from.end());
+				}
+			}
+		}
+
+		return "SELECT count(*) FROM (" + sql + ") count_";
+	}
+}
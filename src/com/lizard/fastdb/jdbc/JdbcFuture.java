@@ -0,0 +1,52 @@
+package com.lizard.fastdb.jdbc;
+
+import java.util.concurrent.Future;
+
+/**
+ * 异步数据库操作的结果，参见 {@link AsyncJdbcHandler}
+ * <p>
+ * 除了阻塞的 {@link #get()} 之外，可以通过 {@link #addListener(Listener)} 在操作完成时得到通知，不占用调用线程。
+ * {@link #cancel(boolean)} 调用正在执行的 {@link java.sql.Statement#cancel()} 中止数据库端的执行，不中断执行线程；
+ * 参数 mayInterruptIfRunning 被忽略。
+ */
+public interface JdbcFuture<T> extends Future<T>
+{
+	/**
+	 * 添加操作完成（成功、失败或取消）时的回调；操作已完成时在当前线程立即调用，否则在完成操作的线程中调用
+	 * <p>
+	 * 回调在数据库操作的执行线程中运行，耗时的处理应转交给其他线程
+	 *
+	 * @param listener 回调
+	 */
+	public void addListener(Listener<T> listener);
+
+	/**
+	 * 是否执行成功，未完成时返回 false
+	 */
+	public boolean isSuccess();
+
+	/**
+	 * 获得执行失败的原因，未完成或执行成功时返回null；取消时返回 CancellationException
+	 */
+	public Throwable getCause();
+
+	/**
+	 * 等待并获得执行结果，执行失败时抛出原来的 RuntimeException（通常为 DBException），其他异常包装为 DBException
+	 *
+	 * @return 执行结果
+	 */
+	public T join();
+
+	/**
+	 * 异步操作完成时的回调
+	 */
+	public interface Listener<T>
+	{
+		/**
+		 * 操作完成时调用
+		 *
+		 * @param future 已完成的操作，可以直接调用 get() 获得结果而不会阻塞
+		 */
+		public void operationComplete(JdbcFuture<T> future);
+	}
+}
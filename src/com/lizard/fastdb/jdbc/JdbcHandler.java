@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -103,6 +104,104 @@ public interface JdbcHandler extends Serializable
 	 */
 	public boolean update(Object bean, String[] updatedFields);
 
+	/**
+	 * 批量保存使用了 fastDB Annotation 的对象到数据库
+	 * <p>
+	 * 对象按实体类分组，每组使用同一条预编译的 INSERT SQL 通过 JDBC 批处理（addBatch/executeBatch）执行，所有分组共用一个数据库连接；
+	 * 分批大小由 {@link #setBatchSize(int)} 设置，默认不分批，不回滚（回滚失败批次使用 {@link #saveAll(Collection, boolean)}）。
+	 * <hr>
+	 * <blockquote>
+	 * User Annotation 参见 {@link #save(Object)} 的User样例
+	 * <pre>
+	 * List&lt;User&gt; users = ...;
+	 * 
+	 * jdbcHandler.setBatchSize(500);
+	 * BatchUpdateResult result = jdbcHandler.saveAll( users );
+	 * </pre>
+	 * </blockquote>
+	 * <hr>
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @return BatchUpdateResult 批量操作结果信息，errorBatchs 中的批次编号在所有分组中连续编号，batchRows 按分组顺序排列
+	 */
+	public BatchUpdateResult saveAll(Collection<?> beans);
+
+	/**
+	 * 批量保存使用了 fastDB Annotation 的对象到数据库
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection)}，rollback 为 true 时回滚执行失败的批次
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult saveAll(Collection<?> beans, boolean rollback);
+
+	/**
+	 * 批量更新使用了 fastDB Annotation 的对象到数据库，更新对象的全部属性
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection)}
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans);
+
+	/**
+	 * 批量更新使用了 fastDB Annotation 的对象到数据库，更新对象的全部属性
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection, boolean)}
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, boolean rollback);
+
+	/**
+	 * 批量更新使用了 fastDB Annotation 对象的部分属性到数据库
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection)}
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @param updatedFields 需要更新的字段(指Bean的属性，而不是@Column的name属性值)集合，如果为null或空，则更新Bean的全部属性。
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, String[] updatedFields);
+
+	/**
+	 * 批量更新使用了 fastDB Annotation 对象的部分属性到数据库
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection, boolean)}
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @param updatedFields 需要更新的字段(指Bean的属性，而不是@Column的name属性值)集合，如果为null或空，则更新Bean的全部属性。
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, String[] updatedFields, boolean rollback);
+
+	/**
+	 * 根据主键批量删除使用了 fastDB Annotation 的对象对应的数据库记录
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection)}，实体类必须定义主键
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult deleteAll(Collection<?> beans);
+
+	/**
+	 * 根据主键批量删除使用了 fastDB Annotation 的对象对应的数据库记录
+	 * <p>
+	 * 执行方式同 {@link #saveAll(Collection, boolean)}，实体类必须定义主键
+	 * 
+	 * @param beans 使用了 fastDB annotation 的对象集合，可以包含不同的实体类
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	public BatchUpdateResult deleteAll(Collection<?> beans, boolean rollback);
+
 	/**
 	 * 执行一个INSERT SQL语句，不可以执行 UPDATE, DELETE 等语句，<br>
 	 * 如果要执行 UPDATE, DELETE 等语句，使用 {@link #execute(String)} 替代。
@@ -346,6 +445,61 @@ public interface JdbcHandler extends Serializable
 	 */
 	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues, boolean rollback);
 
+	/**
+	 * 使用多个数据库连接并行执行预编译SQL的批量操作，用于大量数据的导入。
+	 * <p>
+	 * 参数按批次拆分为 parallelism 个连续的分区，每个分区使用一个连接按批次执行和提交；
+	 * 必须先通过 {@link #setBatchSize(int)} 设置批次大小，批次是提交和回滚的单位。
+	 * 返回结果按参数顺序合并，失败批次编号为全局的批次编号，与顺序执行时相同。
+	 * <p>
+	 * <b>整个操作不是原子的</b>：每个批次在各自的连接上单独提交，部分批次失败时，其他批次（包括同一分区中之前的批次和其他分区的全部批次）
+	 * 已经提交且不会回滚，调用者需要根据 errorBatchs 处理失败的批次。需要全部成功或全部回滚时，请在事务中调用或使用
+	 * {@link #batchUpdate(String, Object[][], boolean)}。
+	 * <ul>
+	 * <li>并行度不超过数据源的最大连接数</li>
+	 * <li>rollback 只回滚执行失败的批次，已提交的批次和其他分区不受影响</li>
+	 * <li>当前操作在事务管理器中时，在当前连接上顺序执行</li>
+	 * <li>某个分区执行出错（如获取连接失败）时，等待所有分区结束后抛出第一个分区的异常，此时其他分区的批次可能已经提交</li>
+	 * </ul>
+	 * 
+	 * @param sql 带?占位符的预编译sql语句，例如：INSERT INTO tableName VALUES(?, ?, ?, ...)
+	 * @param paramValues 预编译sql语句的参数
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @param parallelism 并行度，即同时使用的数据库连接数
+	 * @return BatchUpdateResult 批量操作结果信息，参见 {@link #batchUpdate(String, Object[][], boolean)}
+	 * @throws DBException 当前线程没有通过 setBatchSize 设置批次大小
+	 */
+	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues, boolean rollback, int parallelism);
+
+	/**
+	 * 创建流式批量写入器，逐行添加参数，每满 batchSize 行执行一次批量操作，用于行数未知或无法全部放入内存的数据导入。
+	 * <p>
+	 * 写入器持有一个数据库连接，直到 {@link BatchWriter#close()}；添加完成后调用 {@link BatchWriter#finish()} 写入剩余的行。
+	 * <ul>
+	 * <li>singleTransaction 为 false -- 每个批次执行后提交，rollback 为 true 时回滚执行失败的批次，之后的行继续写入</li>
+	 * <li>singleTransaction 为 true -- 所有批次在一个事务中执行，finish 时提交，任一批次失败时回滚全部并抛出异常</li>
+	 * </ul>
+	 *
+	 * @param sql 带?占位符的预编译sql语句，例如：INSERT INTO tableName VALUES(?, ?, ?, ...)
+	 * @param batchSize 每个批次的行数
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @param singleTransaction 是否在一个事务中执行所有批次
+	 * @return BatchWriter
+	 */
+	public BatchWriter createBatchWriter(String sql, int batchSize, boolean rollback, boolean singleTransaction);
+
+	/**
+	 * 创建插入实体对象的流式批量写入器，通过 {@link BatchWriter#addBean(Object)} 添加对象，
+	 * 执行方式同 {@link #createBatchWriter(String, int, boolean, boolean)}
+	 *
+	 * @param entityClass 使用了 fastDB annotation 的实体类
+	 * @param batchSize 每个批次的行数
+	 * @param rollback 事务回滚， true -- 回滚执行失败的批次，false -- 不设置事务回滚
+	 * @param singleTransaction 是否在一个事务中执行所有批次
+	 * @return BatchWriter
+	 */
+	public BatchWriter createBatchWriter(Class<?> entityClass, int batchSize, boolean rollback, boolean singleTransaction);
+
 	/**
 	 * 执行一个带参数的SQL语句，并通过自定义实现RowCallbackHandler接口返回对象
 	 * <p>
@@ -468,6 +622,41 @@ public interface JdbcHandler extends Serializable
 	 */
 	public <T> T queryForBean(Class<T> beanClass, String namedSql, Map<String, Object> paramValues);
 
+	/**
+	 * 根据主键查询使用了 fastDB Annotation 的对象
+	 * <p>
+	 * 查询 @Column 注解的全部列，条件为全部 @Column(primaryKey=true) 主键列。
+	 * 实体类使用了 {@link com.lizard.fastdb.annotation.Cache} 注解时，查询结果缓存在实体缓存区域中（不在事务中时），
+	 * 通过 save/update 写入该实体时删除对应主键的缓存，其他修改该表的写操作清空实体缓存区域；缓存的对象为共享实例，调用者不应修改。
+	 * <hr>
+	 * <blockquote>
+	 * User Annotation 参见 {@link #save(Object)} 的User样例
+	 * <pre>
+	 * User user = jdbcHandler.findById( User.class, 1 );
+	 * </pre>
+	 * </blockquote>
+	 * <hr>
+	 * 
+	 * @param <T> 泛型，接受使用了 fastDB annotation 的JavaBean.class
+	 * @param beanClass 使用了 fastDB annotation 的JavaBean.class，必须定义主键
+	 * @param pkValues 主键值，联合主键按主键属性在实体类中的顺序给出
+	 * @return 查询到的对象，不存在时返回null
+	 */
+	public <T> T findById(Class<T> beanClass, Object... pkValues);
+
+	/**
+	 * 根据多个主键批量查询使用了 fastDB Annotation 的对象
+	 * <p>
+	 * 先从实体缓存区域中查找，未命中的主键合并为一条 pk IN (...) 查询（联合主键为 (pk1 = ? AND pk2 = ?) OR ...），
+	 * 每条查询最多 1000 个主键值（Oracle IN 列表的上限），分批大小可以通过 {@link #setBatchSize(int)} 设置得更小
+	 * 
+	 * @param <T> 泛型，接受使用了 fastDB annotation 的JavaBean.class
+	 * @param beanClass 使用了 fastDB annotation 的JavaBean.class，必须定义主键
+	 * @param ids 主键值集合，联合主键的每个元素为 Object[]
+	 * @return 查询到的对象，按 ids 的顺序排列，不存在的主键被忽略，重复的主键只返回一次
+	 */
+	public <T> List<T> findAllByIds(Class<T> beanClass, Collection<?> ids);
+
 	/**
 	 * 查询单一数据对象，以超类Object返回
 	 * 
@@ -678,6 +867,164 @@ public interface JdbcHandler extends Serializable
 	 * @return 分页后存储Map<String, Object>类型的结果集List
 	 */
 	public List<Map<String, Object>> queryForPageList(String namedSql, int page, int pagesize, Map<String, Object> paramValues);
+
+	/**
+	 * 分页查询，以自定义泛型类型返回当前页数据和符合条件的总行数
+	 * <p>
+	 * 总行数由查询语句自动生成的统计语句获得：去掉末尾的 ORDER BY，简单查询将查询列替换为 count(*)，否则作为子查询统计。
+	 * 当前页不足 pagesize 行时由当前页推算总行数，不再执行统计语句。
+	 * 通过 {@link #setPageCountOptions(boolean, int)} 可以设置统计语句与分页查询并行执行，以及缓存总行数。
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param sql 要执行的查询语句
+	 * @param page 页码，从1开始
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 查询语句中的变量值
+	 * @return 当前页数据和总行数
+	 */
+	public <T> Page<T> queryForPage(Class<T> beanClass, String sql, int page, int pagesize, Object... paramValues);
+
+	/**
+	 * 分页查询，以自定义泛型类型返回当前页数据和总行数，参见 {@link #queryForPage(Class, String, int, int, Object...)}
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)
+	 * @param page 页码，从1开始
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 命名参数值
+	 * @return 当前页数据和总行数
+	 */
+	public <T> Page<T> queryForPage(Class<T> beanClass, String namedSql, int page, int pagesize, Map<String, Object> paramValues);
+
+	/**
+	 * 分页查询，以Map<String, Object>类型返回当前页数据和总行数，参见 {@link #queryForPage(Class, String, int, int, Object...)}
+	 * 
+	 * @param sql 要执行的查询语句
+	 * @param page 页码，从1开始
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 查询语句中的变量值
+	 * @return 当前页数据和总行数
+	 */
+	public Page<Map<String, Object>> queryForPage(String sql, int page, int pagesize, Object... paramValues);
+
+	/**
+	 * 分页查询，以Map<String, Object>类型返回当前页数据和总行数，参见 {@link #queryForPage(Class, String, int, int, Object...)}
+	 * 
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)
+	 * @param page 页码，从1开始
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 命名参数值
+	 * @return 当前页数据和总行数
+	 */
+	public Page<Map<String, Object>> queryForPage(String namedSql, int page, int pagesize, Map<String, Object> paramValues);
+
+	/**
+	 * 键集分页（seek 分页）查询，以自定义泛型类型返回当前页数据和下一页的分页标记
+	 * <p>
+	 * 按排序键上一页最后一行的值定位下一页，而不是跳过 (page - 1) * pagesize 行，深分页的代价与第一页相同，适用于大表的逐页浏览和导出。
+	 * 只能逐页向后翻页，不能跳到指定页码。
+	 * <ul>
+	 * <li>sql 不能包含 ORDER BY，排序由 orderBy 指定</li>
+	 * <li>orderBy 只能是列名（可以带表别名）和 ASC/DESC，如 create_time DESC, id DESC；最后一个排序键必须唯一（如主键），排序键的值不能为null</li>
+	 * <li>排序键必须出现在查询结果中</li>
+	 * </ul>
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param sql 要执行的查询语句，不含 ORDER BY
+	 * @param orderBy 排序键
+	 * @param pageToken 分页标记，即上一页的 {@link KeysetPage#getNextPageToken()}，第一页为null
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 查询语句中的变量值
+	 * @return 当前页数据和下一页的分页标记
+	 */
+	public <T> KeysetPage<T> queryForKeysetPage(Class<T> beanClass, String sql, String orderBy, String pageToken, int pagesize,
+			Object... paramValues);
+
+	/**
+	 * 键集分页查询，以自定义泛型类型返回，参见 {@link #queryForKeysetPage(Class, String, String, String, int, Object...)}
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)，不含 ORDER BY
+	 * @param orderBy 排序键
+	 * @param pageToken 分页标记，第一页为null
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 命名参数值
+	 * @return 当前页数据和下一页的分页标记
+	 */
+	public <T> KeysetPage<T> queryForKeysetPage(Class<T> beanClass, String namedSql, String orderBy, String pageToken, int pagesize,
+			Map<String, Object> paramValues);
+
+	/**
+	 * 键集分页查询，以Map<String, Object>类型返回，参见 {@link #queryForKeysetPage(Class, String, String, String, int, Object...)}
+	 * 
+	 * @param sql 要执行的查询语句，不含 ORDER BY
+	 * @param orderBy 排序键
+	 * @param pageToken 分页标记，第一页为null
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 查询语句中的变量值
+	 * @return 当前页数据和下一页的分页标记
+	 */
+	public KeysetPage<Map<String, Object>> queryForKeysetPage(String sql, String orderBy, String pageToken, int pagesize, Object... paramValues);
+
+	/**
+	 * 键集分页查询，以Map<String, Object>类型返回，参见 {@link #queryForKeysetPage(Class, String, String, String, int, Object...)}
+	 * 
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)，不含 ORDER BY
+	 * @param orderBy 排序键
+	 * @param pageToken 分页标记，第一页为null
+	 * @param pagesize 分页结果集大小
+	 * @param paramValues 命名参数值
+	 * @return 当前页数据和下一页的分页标记
+	 */
+	public KeysetPage<Map<String, Object>> queryForKeysetPage(String namedSql, String orderBy, String pageToken, int pagesize,
+			Map<String, Object> paramValues);
+
+	/**
+	 * 流式查询数据结果集，逐行转换为自定义泛型类型，不在内存中保存整个结果集，适用于大数据量的导出、报表等
+	 * <p>
+	 * 使用只进、只读游标，每次从数据库读取的行数由 {@link #setFetchSize(int)} 设置，MySQL 使用逐行流式读取。
+	 * 迭代结束时自动释放数据库连接，提前结束迭代时必须调用 {@link ResultIterator#close()}。
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param sql 要执行的查询语句
+	 * @param paramValues 查询语句中的变量值
+	 * @return 可关闭的结果迭代器
+	 */
+	public <T> ResultIterator<T> queryForIterator(Class<T> beanClass, String sql, Object... paramValues);
+
+	/**
+	 * 流式查询数据结果集，逐行转换为自定义泛型类型，参见 {@link #queryForIterator(Class, String, Object...)}
+	 * 
+	 * @param <T> 自定义泛型类型
+	 * @param beanClass 自定义JavaBean.class
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)
+	 * @param paramValues 命名参数值
+	 * @return 可关闭的结果迭代器
+	 */
+	public <T> ResultIterator<T> queryForIterator(Class<T> beanClass, String namedSql, Map<String, Object> paramValues);
+
+	/**
+	 * 流式查询数据结果集，逐行转换为Map<String, Object>类型，参见 {@link #queryForIterator(Class, String, Object...)}
+	 * 
+	 * @param sql 要执行的查询语句
+	 * @param paramValues 查询语句中的变量值
+	 * @return 可关闭的结果迭代器
+	 */
+	public ResultIterator<Map<String, Object>> queryForIterator(String sql, Object... paramValues);
+
+	/**
+	 * 流式查询数据结果集，逐行转换为Map<String, Object>类型，参见 {@link #queryForIterator(Class, String, Object...)}
+	 * 
+	 * @param namedSql 使用了命名参数的SQL语句(Example: SELECT * FROM table WHERE id >:id)
+	 * @param paramValues 命名参数值
+	 * @return 可关闭的结果迭代器
+	 */
+	public ResultIterator<Map<String, Object>> queryForIterator(String namedSql, Map<String, Object> paramValues);
 	
 	/**
 	 * 获取数据表所有字段名称值
@@ -802,6 +1149,49 @@ public interface JdbcHandler extends Serializable
 	 */
 	public void setBatchSize(int batchSize);
 
+	/**
+	 * 设置批量操作是否只统计汇总，默认 false
+	 * <p>
+	 * 为 true 时 {@link BatchUpdateResult#getBatchRows()} 为 null，不保存每条语句的更新计数，
+	 * 只返回影响的总行数 {@link BatchUpdateResult#getAffectedRows()} 和失败批次的行范围 {@link BatchUpdateResult#getErrorRowRanges()}，
+	 * 用于减少大批量导入时的内存占用
+	 * 
+	 * @param summaryOnly true -- 只统计汇总
+	 */
+	public void setBatchSummaryOnly(boolean summaryOnly);
+
+	/**
+	 * 设置流式查询（queryForIterator）每次从数据库读取的行数，默认为 0，即使用数据库方言的默认值
+	 * <p>
+	 * MySQL 总是逐行流式读取，忽略该设置
+	 * 
+	 * @param fetchSize 每次从数据库读取的行数
+	 */
+	public void setFetchSize(int fetchSize);
+
+	/**
+	 * 设置当前线程后续 queryForBean、queryForList、queryForObject 查询使用的缓存区域，查询结果按 SQL 和参数值缓存
+	 * <p>
+	 * 使用 {@link com.lizard.fastdb.annotation.Cache} 注解的JavaBean总是使用注解指定的缓存区域；事务中的查询不使用缓存。
+	 * 缓存中保存查询结果的副本，每次返回新的副本，修改返回的JavaBean和Map对象不影响缓存，参见 {@link com.lizard.fastdb.cache.CacheValues}。
+	 * 
+	 * @param cacheName 缓存区域名称，null 表示不再使用缓存
+	 * @see com.lizard.fastdb.cache.CacheFactory
+	 */
+	public void setCacheName(String cacheName);
+
+	/**
+	 * 设置当前线程后续 queryForPage 统计总行数的方式
+	 * <p>
+	 * 并行执行时统计语句使用另一个数据库连接，与分页查询同时执行，当前页不足 pagesize 行时由当前页推算总行数并取消统计语句（调用 Statement.cancel() 中止数据库端的执行）；
+	 * 事务中总是顺序执行且不缓存总行数。
+	 * 缓存的总行数按统计语句和参数值缓存，在缓存时间内或涉及的表被修改前不再重新统计。
+	 * 
+	 * @param parallel true -- 统计语句与分页查询并行执行，false -- 顺序执行（默认）
+	 * @param cacheSeconds 总行数的缓存时间（秒），0 表示不缓存（默认）
+	 */
+	public void setPageCountOptions(boolean parallel, int cacheSeconds);
+
 	/**
 	 * 判断序列是否存在，仅用于Oracle数据库
 	 * 
@@ -1,5 +1,7 @@
 package com.lizard.fastdb.jdbc;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
@@ -12,12 +14,33 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.dbutils.BasicRowProcessor;
+import org.apache.commons.dbutils.BeanProcessor;
+import org.apache.commons.dbutils.ParameterTypeCache;
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.RowProcessor;
 import org.apache.commons.dbutils.handlers.BeanHandler;
 import org.apache.commons.dbutils.handlers.BeanListHandler;
 import org.apache.commons.dbutils.handlers.ColumnListHandler;
@@ -28,11 +51,22 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.cache.CacheFactory;
+import com.lizard.fastdb.cache.CacheValues;
+import com.lizard.fastdb.cache.QueryCache;
+import com.lizard.fastdb.cache.QueryKey;
+import com.lizard.fastdb.cache.SQLTableExtractor;
 import com.lizard.fastdb.connection.ConnectionPool;
 import com.lizard.fastdb.datasource.DataSource;
+import com.lizard.fastdb.datasource.DataSourceCache;
 import com.lizard.fastdb.datasource.DataSourceUtil;
 import com.lizard.fastdb.dialect.Dialect;
+import com.lizard.fastdb.listener.SQLEvent;
+import com.lizard.fastdb.listener.SQLListener;
+import com.lizard.fastdb.listener.SQLListeners;
+import com.lizard.fastdb.persistence.EntityMetadata;
 import com.lizard.fastdb.persistence.PersistenceUtil;
+import com.lizard.fastdb.stat.SQLStatistics;
 import com.lizard.fastdb.util.StringUtils;
 
 /**
@@ -48,9 +82,66 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	private DataSource							ds					= null;									// 对应的数据源配置
 
 	/**
-	 * 查询对象，true -- 表示不使用getParameterType，因为Oracle不支持此功能
+	 * 查询对象，参数按值类型使用对应的setXxx方法赋值，null值的SQL类型按SQL只获取一次
+	 */
+	private transient QueryRunner				QUERY_RUNNER		= null;
+
+	/**
+	 * 当前数据源的SQL参数类型缓存
+	 */
+	private transient ParameterTypeCache		parameterTypes		= null;
+
+	/**
+	 * 当前数据源的SQL执行统计，记录每条SQL的耗时、行数和错误，并记录慢SQL
+	 */
+	private SQLStatistics						statistics			= null;
+
+	/**
+	 * 当前数据源的SQL执行监听器，未开启 show-sql 且没有注册监听器时为null
+	 */
+	private transient SQLListener				listener			= null;
+
+	/**
+	 * 各数据源的SQL参数类型缓存，key -- 数据源名称
+	 */
+	private final static ConcurrentMap<String, ParameterTypeCache>	PARAMETER_TYPES	= new ConcurrentHashMap<String, ParameterTypeCache>();
+
+	/**
+	 * 查询结果转换为JavaBean时是否使用MethodHandle物化器，由数据源的 bean-materializer 配置决定
+	 */
+	private boolean								materialize			= false;
+
+	/**
+	 * 使用MethodHandle物化器的Bean处理器，物化器按JavaBean类和查询列缓存，所有数据源共享
+	 */
+	private final static BeanProcessor			MATERIALIZER_BEAN_PROCESSOR	= new BeanProcessor(true);
+
+	/**
+	 * 使用反射的Bean处理器
+	 */
+	private final static BeanProcessor			REFLECTION_BEAN_PROCESSOR	= new BeanProcessor();
+
+	/**
+	 * 使用MethodHandle物化器的行处理器
+	 */
+	private final static RowProcessor			MATERIALIZER_ROW_PROCESSOR	= new BasicRowProcessor(MATERIALIZER_BEAN_PROCESSOR);
+
+	/**
+	 * 使用反射的行处理器
+	 */
+	private final static RowProcessor			REFLECTION_ROW_PROCESSOR	= new BasicRowProcessor(REFLECTION_BEAN_PROCESSOR);
+
+	/**
+	 * 一条查询中 IN 列表的最多元素个数（Oracle 的上限，超过时报 ORA-01795）
+	 */
+	private static final int					MAX_IN_LIST_SIZE	= 1000;
+
+	/**
+	 * 批量持久化注解对象的操作类型
 	 */
-	private QueryRunner							QUERY_RUNNER		= new QueryRunner(true);
+	private static final int					PERSIST_INSERT		= 0;
+	private static final int					PERSIST_UPDATE		= 1;
+	private static final int					PERSIST_DELETE		= 2;
 
 	/**
 	 * 存储批量分批操作大小，默认不分批操作
@@ -63,6 +154,43 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 																		}
 																	};
 
+	/**
+	 * 存储批量操作是否只统计汇总，默认保存每条语句的更新计数
+	 */
+	private static final ThreadLocal<Boolean>	BATCH_SUMMARY_LOCAL	= new ThreadLocal<Boolean>()
+																	{
+																		protected Boolean initialValue()
+																		{
+																			return Boolean.FALSE;
+																		}
+																	};
+
+	/**
+	 * 存储流式查询每次从数据库读取的行数，默认使用数据库方言的默认值
+	 */
+	private static final ThreadLocal<Integer>	FETCH_SIZE_LOCAL	= new ThreadLocal<Integer>()
+																	{
+																		protected Integer initialValue()
+																		{
+																			return 0;
+																		}
+																	};
+
+	/**
+	 * 存储当前线程查询使用的缓存区域名称，null 表示只缓存使用 @Cache 注解的JavaBean
+	 */
+	private static final ThreadLocal<String>	CACHE_NAME_LOCAL	= new ThreadLocal<String>();
+
+	/**
+	 * 存储当前线程分页查询统计总行数的方式，null 表示顺序执行且不缓存
+	 */
+	private static final ThreadLocal<PageCountOptions>	PAGE_COUNT_LOCAL	= new ThreadLocal<PageCountOptions>();
+
+	/**
+	 * 分页查询总行数缓存区域名称的前缀，每种缓存时间使用一个缓存区域
+	 */
+	private static final String					COUNT_CACHE_PREFIX	= "com.lizard.fastdb.page-count#";
+
 	/**
 	 * 重写dbutils中的ColumnListHandler的handleRow方法，处理BigInt型数据为Long型 注意：这里处理BigInteger 和 BigDecimal 方式已经转移到 apache dbutils 源码中了，所以注释了处理代码段。
 	 */
@@ -137,6 +265,62 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	public JdbcHandlerImpl(DataSource ds)
 	{
 		this.ds = ds;
+		this.parameterTypes = getParameterTypeCache(ds.getName());
+		// 重复的数据源会被映射为软连接，SQL执行统计按真实数据源记录
+		Properties real = DataSourceCache.getDataSource(ds.getName());
+		this.statistics = ds.isSqlStatistics() ? SQLStatistics.get(real == null ? ds.getName() : real.getProperty("name"), ds
+				.getSlowSqlThreshold()) : SQLStatistics.DISABLED;
+		this.listener = SQLListeners.get(ds.getName(), ds.getShowSQL());
+		this.QUERY_RUNNER = new StatisticsQueryRunner(parameterTypes, statistics);
+		this.materialize = "methodhandle".equalsIgnoreCase(ds.getBeanMaterializer());
+	}
+
+	/**
+	 * 获得查询结果转换为JavaBean的行处理器
+	 */
+	private RowProcessor getRowProcessor()
+	{
+		return materialize ? MATERIALIZER_ROW_PROCESSOR : REFLECTION_ROW_PROCESSOR;
+	}
+
+	/**
+	 * 获得查询结果转换为JavaBean的Bean处理器，与 {@link #getRowProcessor()} 对应，用于流式查询逐行转换
+	 */
+	private BeanProcessor getBeanProcessor()
+	{
+		return materialize ? MATERIALIZER_BEAN_PROCESSOR : REFLECTION_BEAN_PROCESSOR;
+	}
+
+	/**
+	 * 获得数据源的SQL参数类型缓存，不存在时创建
+	 * 
+	 * @param ds_name 数据源名称
+	 * @return SQL参数类型缓存
+	 */
+	private static ParameterTypeCache getParameterTypeCache(String ds_name)
+	{
+		ParameterTypeCache cache = PARAMETER_TYPES.get(ds_name);
+		if (cache == null)
+		{
+			cache = new ParameterTypeCache();
+			ParameterTypeCache exists = PARAMETER_TYPES.putIfAbsent(ds_name, cache);
+			if (exists != null)
+			{
+				cache = exists;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * 反序列化后重新获得数据源共享的SQL参数类型缓存和SQL执行监听器
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		this.parameterTypes = getParameterTypeCache(ds.getName());
+		this.QUERY_RUNNER = new StatisticsQueryRunner(parameterTypes, statistics);
+		this.listener = SQLListeners.get(ds.getName(), ds.getShowSQL());
 	}
 
 	/**
@@ -181,9 +365,9 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
 		
-		return query(namedSQL.getSQL(), rch, namedSQL.parseParameterValue(paramValues));
+		return query(bound.getSQL(), rch, bound.getParameters());
 	}
 
 	/*
@@ -204,12 +388,33 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	@SuppressWarnings("unchecked")
 	public <T> T queryForBean(Class<T> beanClass, String sql, Object... paramValues)
 	{
+		QueryCache cache = getQueryCache(beanClass, sql);
+		QueryKey key = null;
+		CacheFactory.Stamp stamp = null;
+		if (cache != null)
+		{
+			key = new QueryKey(ds.getName(), "bean", beanClass, sql, paramValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				// 返回副本，调用者修改JavaBean不影响缓存
+				return (T) CacheValues.copy(CacheFactory.unmaskNull(cached));
+			}
+			stamp = CacheFactory.stamp(cache, SQLTableExtractor.getTables(sql));
+		}
+
 		printSQL(sql, paramValues);
 
 		Connection conn = getConnection();
 		try
 		{
-			return (T) QUERY_RUNNER.query(conn, sql, isPrimitiveClass(beanClass) ? SCALAR_HANDLER : new BeanHandler<T>(beanClass), paramValues);
+			T bean = (T) QUERY_RUNNER.query(conn, sql, isPrimitiveClass(beanClass) ? SCALAR_HANDLER : new BeanHandler<T>(beanClass,
+					getRowProcessor()), paramValues);
+			if (cache != null)
+			{
+				CacheFactory.put(cache, key, CacheFactory.maskNull(CacheValues.copy(bean)), SQLTableExtractor.getTables(sql), stamp);
+			}
+			return bean;
 		}
 		catch (SQLException e)
 		{
@@ -229,8 +434,186 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForBean(beanClass, namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForBean(beanClass, bound.getSQL(), bound.getParameters());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#findById(java.lang.Class, java.lang.Object[])
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T findById(Class<T> beanClass, Object... pkValues)
+	{
+		EntityMetadata meta = PersistenceUtil.getEntityMetadata(beanClass);
+		EntityMetadata.SQLTemplate template;
+		try
+		{
+			template = meta.getSelectByIdTemplate();
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new DBException("Can't find " + beanClass.getName() + " by id!", e);
+		}
+
+		if (pkValues == null || pkValues.length != meta.getPrimaryKeys().size())
+		{
+			throw new DBException("The " + beanClass.getName() + " has " + meta.getPrimaryKeys().size() + " primary key(s), but "
+					+ (pkValues == null ? 0 : pkValues.length) + " value(s) given!");
+		}
+
+		QueryCache cache = getIdentityCache(meta);
+		Object key = null;
+		CacheFactory.Stamp stamp = null;
+		if (cache != null)
+		{
+			key = identityKey(pkValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				// 返回副本，调用者修改对象不影响缓存
+				return (T) CacheValues.copy(cached);
+			}
+			stamp = identityStamp(cache, meta);
+		}
+
+		String sql = template.getSQL();
+		printSQL(sql, pkValues);
+
+		Connection conn = getConnection();
+		try
+		{
+			T bean = QUERY_RUNNER.query(conn, sql, new BeanHandler<T>(beanClass, getRowProcessor()), pkValues);
+			// 不缓存不存在的主键，新增的记录不需要删除缓存
+			if (cache != null && bean != null)
+			{
+				CacheFactory.put(cache, key, CacheValues.copy(bean), null, stamp);
+			}
+			return bean;
+		}
+		catch (SQLException e)
+		{
+			throw new DBException("Failed to find " + beanClass.getName() + " by [ " + JdbcUtil.fillSQL(sql, pkValues) + " ]!", e);
+		}
+		finally
+		{
+			close(conn);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#findAllByIds(java.lang.Class, java.util.Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> findAllByIds(Class<T> beanClass, Collection<?> ids)
+	{
+		if (ids == null)
+		{
+			throw new DBException("The ids collection can not be null!");
+		}
+
+		EntityMetadata meta = PersistenceUtil.getEntityMetadata(beanClass);
+		try
+		{
+			meta.getSelectByIdTemplate();
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new DBException("Can't find " + beanClass.getName() + " by ids!", e);
+		}
+
+		// 缓存键 与 主键值 映射，保持 ids 的顺序并去除重复的主键
+		int pkCount = meta.getPrimaryKeys().size();
+		Map<Object, Object[]> keys = new LinkedHashMap<Object, Object[]>();
+		for (Object id : ids)
+		{
+			Object[] pkValues = (pkCount == 1 && !(id instanceof Object[])) ? new Object[] { id } : (Object[]) id;
+			if (pkValues == null || pkValues.length != pkCount)
+			{
+				throw new DBException("The " + beanClass.getName() + " has " + pkCount + " primary key(s), but the id " + Arrays.toString(pkValues)
+						+ " is given!");
+			}
+			keys.put(identityKey(pkValues), pkValues);
+		}
+
+		// 先从实体缓存中查找
+		QueryCache cache = getIdentityCache(meta);
+		Map<Object, T> found = new HashMap<Object, T>();
+		List<Object[]> misses = new ArrayList<Object[]>();
+		for (Map.Entry<Object, Object[]> e : keys.entrySet())
+		{
+			Object cached = (cache == null) ? null : cache.get(e.getKey());
+			if (cached != null)
+			{
+				found.put(e.getKey(), (T) CacheValues.copy(cached));
+			}
+			else
+			{
+				misses.add(e.getValue());
+			}
+		}
+
+		if (!misses.isEmpty())
+		{
+			// 每条查询的主键个数不超过 setBatchSize 设置的大小，且主键参数不超过 IN 列表的上限
+			int maxIds = Math.max(1, MAX_IN_LIST_SIZE / pkCount);
+			int batchSize = BATCH_SIZE_LOCAL.get();
+			int chunk = batchSize > 0 ? Math.min(batchSize, maxIds) : maxIds;
+			CacheFactory.Stamp stamp = (cache == null) ? null : identityStamp(cache, meta);
+
+			Connection conn = getConnection();
+			String sql = null;
+			Object[] params = null;
+			try
+			{
+				for (int from = 0; from < misses.size(); from += chunk)
+				{
+					List<Object[]> part = misses.subList(from, Math.min(from + chunk, misses.size()));
+					// 主键个数补齐到与 IN 列表相同的大小，补齐的主键重复最后一个，减少不同的SQL语句
+					int padded = NamedSQL.paddedSize(part.size());
+					sql = meta.getSelectByIdsSQL(padded);
+					params = new Object[padded * pkCount];
+					for (int i = 0; i < padded; i++)
+					{
+						System.arraycopy(part.get(Math.min(i, part.size() - 1)), 0, params, i * pkCount, pkCount);
+					}
+
+					printSQL(sql, params);
+					List<T> beans = QUERY_RUNNER.query(conn, sql, new BeanListHandler<T>(beanClass, getRowProcessor()), params);
+					for (T bean : beans)
+					{
+						Object key = identityKey(meta.getPrimaryKeyValues(bean));
+						found.put(key, bean);
+						if (cache != null)
+						{
+							CacheFactory.put(cache, key, CacheValues.copy(bean), null, stamp);
+						}
+					}
+				}
+			}
+			catch (SQLException e)
+			{
+				throw new DBException("Failed to find " + beanClass.getName() + " by [ " + JdbcUtil.fillSQL(sql, params) + " ]!", e);
+			}
+			finally
+			{
+				close(conn);
+			}
+		}
+
+		List<T> result = new ArrayList<T>(found.size());
+		for (Object key : keys.keySet())
+		{
+			T bean = found.get(key);
+			if (bean != null)
+			{
+				result.add(bean);
+			}
+		}
+		return result;
 	}
 
 
@@ -277,8 +660,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForInteger(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForInteger(bound.getSQL(), bound.getParameters());
 	}
 
 	/*
@@ -324,8 +707,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForLong( namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues) );
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForLong( bound.getSQL(), bound.getParameters() );
 	}
 
 	/*
@@ -369,8 +752,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForMap(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForMap(bound.getSQL(), bound.getParameters());
 	}
 
 	/*
@@ -390,12 +773,31 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	 */
 	public Object queryForObject(String sql, Object... paramValues)
 	{
+		QueryCache cache = getQueryCache(null, sql);
+		QueryKey key = null;
+		CacheFactory.Stamp stamp = null;
+		if (cache != null)
+		{
+			key = new QueryKey(ds.getName(), "object", null, sql, paramValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				return CacheValues.copy(CacheFactory.unmaskNull(cached));
+			}
+			stamp = CacheFactory.stamp(cache, SQLTableExtractor.getTables(sql));
+		}
+
 		printSQL(sql, paramValues);
 
 		Connection conn = getConnection();
 		try
 		{
-			return QUERY_RUNNER.query(conn, sql, SCALAR_HANDLER, paramValues);
+			Object value = QUERY_RUNNER.query(conn, sql, SCALAR_HANDLER, paramValues);
+			if (cache != null)
+			{
+				CacheFactory.put(cache, key, CacheFactory.maskNull(CacheValues.copy(value)), SQLTableExtractor.getTables(sql), stamp);
+			}
+			return value;
 		}
 		catch (SQLException e)
 		{
@@ -414,8 +816,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForObject(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForObject(bound.getSQL(), bound.getParameters());
 	}
 
 	/*
@@ -436,14 +838,34 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	@SuppressWarnings("unchecked")
 	public <T> List<T> queryForList(Class<T> beanClass, String sql, Object... paramValues)
 	{
+		QueryCache cache = getQueryCache(beanClass, sql);
+		QueryKey key = null;
+		CacheFactory.Stamp stamp = null;
+		if (cache != null)
+		{
+			key = new QueryKey(ds.getName(), "list", beanClass, sql, paramValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				// 返回副本，调用者修改List及其中的JavaBean不影响缓存
+				return (List<T>) CacheValues.copy(cached);
+			}
+			stamp = CacheFactory.stamp(cache, SQLTableExtractor.getTables(sql));
+		}
+
 		printSQL(sql, paramValues);
 
 		Connection conn = getConnection();
 		try
 		{
-			return (List<T>) QUERY_RUNNER
+			List<T> list = (List<T>) QUERY_RUNNER
 					.query(conn, sql, isPrimitiveClass(beanClass) ? ("java.lang.String".equals(beanClass.getName()) ? STRINGLIST_HANDLER
-							: COLUMNLIST_HANDLER) : new BeanListHandler<T>(beanClass), paramValues);
+							: COLUMNLIST_HANDLER) : new BeanListHandler<T>(beanClass, getRowProcessor()), paramValues);
+			if (cache != null)
+			{
+				CacheFactory.put(cache, key, CacheValues.copy(list), SQLTableExtractor.getTables(sql), stamp);
+			}
+			return list;
 		}
 		catch (SQLException e)
 		{
@@ -463,8 +885,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForList(beanClass, namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForList(beanClass, bound.getSQL(), bound.getParameters());
 	}
 
 	/*
@@ -488,8 +910,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForPageList(beanClass, namedSQL.getSQL(), page, pagesize, namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForPageList(beanClass, bound.getSQL(), page, pagesize, bound.getParameters());
 	}
 
 	/*
@@ -507,14 +929,34 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	 * 
 	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForList(java.lang.String, java.lang.Object[])
 	 */
+	@SuppressWarnings("unchecked")
 	public List<Map<String, Object>> queryForList(String sql, Object... paramValues)
 	{
+		QueryCache cache = getQueryCache(null, sql);
+		QueryKey key = null;
+		CacheFactory.Stamp stamp = null;
+		if (cache != null)
+		{
+			key = new QueryKey(ds.getName(), "maplist", null, sql, paramValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				return (List<Map<String, Object>>) CacheValues.copy(cached);
+			}
+			stamp = CacheFactory.stamp(cache, SQLTableExtractor.getTables(sql));
+		}
+
 		printSQL(sql, paramValues);
 
 		Connection conn = getConnection();
 		try
 		{
-			return (List<Map<String, Object>>) QUERY_RUNNER.query(conn, sql, new MapListHandler(), paramValues);
+			List<Map<String, Object>> list = (List<Map<String, Object>>) QUERY_RUNNER.query(conn, sql, new MapListHandler(), paramValues);
+			if (cache != null)
+			{
+				CacheFactory.put(cache, key, CacheValues.copy(list), SQLTableExtractor.getTables(sql), stamp);
+			}
+			return list;
 		}
 		catch (SQLException e)
 		{
@@ -533,8 +975,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForList(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForList(bound.getSQL(), bound.getParameters());
 	}
 
 
@@ -560,92 +1002,564 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return queryForPageList(namedSQL.getSQL(), page, pagesize, namedSQL.parseParameterValue(paramValues));
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String)
-	 */
-	public boolean execute(String sql)
-	{
-		return execute(sql, new Object[]{});
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForPageList(bound.getSQL(), page, pagesize, bound.getParameters());
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String, java.lang.Object[])
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForPage(java.lang.Class, java.lang.String, int, int, java.lang.Object[])
 	 */
-	public boolean execute(String sql, Object... paramValues)
+	public <T> Page<T> queryForPage(final Class<T> beanClass, String sql, int page, int pagesize, final Object... paramValues)
 	{
-		Connection conn = getConnection();
-		try
+		// 分页语句与分页结果使用相同的页码和分页大小
+		int pageNo = page < 1 ? 1 : page;
+		int size = pagesize <= 0 ? 10 : pagesize;
+		final String pagerSql = Dialect.createPageSQL(ds.getDialect(), sql, pageNo, size);
+		return queryForPage(sql, pageNo, size, paramValues, new Callable<List<T>>()
 		{
-			return execute(conn, sql, paramValues);
-		}
-		finally
-		{
-			close(conn);
-		}
+			public List<T> call()
+			{
+				return queryForList(beanClass, pagerSql, paramValues);
+			}
+		});
 	}
-	
+
 	/* (non-Javadoc)
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String, java.util.Map)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForPage(java.lang.Class, java.lang.String, int, int, java.util.Map)
 	 */
-	public boolean execute(String namedSql, Map<String, Object> paramValues)
+	public <T> Page<T> queryForPage(Class<T> beanClass, String namedSql, int page, int pagesize, Map<String, Object> paramValues)
 	{
 		printNamedSQL(namedSql, paramValues);
-		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return execute(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForPage(beanClass, bound.getSQL(), page, pagesize, bound.getParameters());
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.sql.Connection, java.lang.String, java.lang.Object[])
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForPage(java.lang.String, int, int, java.lang.Object[])
 	 */
-	public boolean execute(Connection conn, String sql, Object... paramValues)
+	public Page<Map<String, Object>> queryForPage(String sql, int page, int pagesize, final Object... paramValues)
 	{
-		printSQL(sql, paramValues);
-
-		try
-		{
-			QUERY_RUNNER.update(conn, sql, paramValues);
-
-			return true;
-		}
-		catch (SQLException e)
+		// 分页语句与分页结果使用相同的页码和分页大小
+		int pageNo = page < 1 ? 1 : page;
+		int size = pagesize <= 0 ? 10 : pagesize;
+		final String pagerSql = Dialect.createPageSQL(ds.getDialect(), sql, pageNo, size);
+		return queryForPage(sql, pageNo, size, paramValues, new Callable<List<Map<String, Object>>>()
 		{
-			logger.error("Failed to execute [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
-			// 如果处于事务管理，则抛出异常，用于捕获
-			if (ConnectionPool.isInTransaction())
+			public List<Map<String, Object>> call()
 			{
-				throw new DBException("Failed to execute [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
+				return queryForList(pagerSql, paramValues);
 			}
-			return false;
-		}
+		});
 	}
 
 	/* (non-Javadoc)
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.sql.Connection, java.lang.String, java.util.Map)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForPage(java.lang.String, int, int, java.util.Map)
 	 */
-	public boolean execute(Connection conn, String namedSql, Map<String, Object> paramValues)
+	public Page<Map<String, Object>> queryForPage(String namedSql, int page, int pagesize, Map<String, Object> paramValues)
 	{
 		printNamedSQL(namedSql, paramValues);
-		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return execute(conn, namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForPage(bound.getSQL(), page, pagesize, bound.getParameters());
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * 执行分页查询并获得总行数
+	 * <p>
+	 * 按以下顺序获得总行数：缓存的总行数；当前页不足 pagesize 行时由当前页推算；执行统计语句（可与分页查询并行）。
 	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#save(java.lang.Object)
-	 */
+	 * @param sql 要执行的查询语句
+	 * @param pageNo 页码，从1开始
+	 * @param size 分页结果集大小，大于0
+	 * @param paramValues 查询语句中的变量值
+	 * @param pageQuery 查询当前页数据
+	 * @return 当前页数据和总行数
+	 */
+	private <T> Page<T> queryForPage(String sql, int pageNo, int size, final Object[] paramValues, Callable<List<T>> pageQuery)
+	{
+		final String countSql = CountSQL.create(sql);
+
+		PageCountOptions options = PAGE_COUNT_LOCAL.get();
+		boolean inTransaction = ConnectionPool.isInTransaction();
+
+		QueryCache cache = null;
+		QueryKey key = null;
+		CacheFactory.Stamp stamp = null;
+		// 无法解析出查询的表时，任何写操作都不会使缓存的总行数失效，因此不缓存
+		if (options != null && options.cacheSeconds > 0 && !inTransaction && !SQLTableExtractor.getTables(countSql).isEmpty())
+		{
+			cache = CacheFactory.getCache(COUNT_CACHE_PREFIX + options.cacheSeconds, false, CacheFactory.DEFAULT_MAX_SIZE, options.cacheSeconds);
+			key = new QueryKey(ds.getName(), "count", null, countSql, paramValues);
+			Object cached = cache.get(key);
+			if (cached != null)
+			{
+				return new Page<T>(callPageQuery(pageQuery), pageNo, size, (Long) cached);
+			}
+			stamp = CacheFactory.stamp(cache, SQLTableExtractor.getTables(countSql));
+		}
+
+		// 事务中的数据只有当前连接可见，不能并行统计
+		// 统计语句使用单独的 StatementCanceller，不再需要总行数时取消数据库端的执行并释放连接
+		Future<Long> countFuture = null;
+		StatementCanceller countCanceller = null;
+		if (options != null && options.parallel && !inTransaction)
+		{
+			final StatementCanceller canceller = StatementCanceller.fork();
+			countCanceller = canceller;
+			countFuture = WorkerExecutorHolder.EXECUTOR.submit(new Callable<Long>()
+			{
+				public Long call()
+				{
+					// 线程池满时在当前线程执行，结束后恢复当前线程所属异步操作的绑定
+					StatementCanceller previous = canceller.bind();
+					try
+					{
+						return queryForLong(countSql, paramValues);
+					}
+					finally
+					{
+						canceller.unbind(previous);
+					}
+				}
+			});
+		}
+
+		List<T> rows;
+		try
+		{
+			rows = callPageQuery(pageQuery);
+		}
+		catch (RuntimeException e)
+		{
+			cancelCount(countFuture, countCanceller);
+			throw e;
+		}
+
+		long totalRows;
+		if (rows.size() < size && (pageNo == 1 || !rows.isEmpty()))
+		{
+			totalRows = (long) (pageNo - 1) * size + rows.size();
+			// 总行数已由当前页推算，不再需要并行的统计语句
+			cancelCount(countFuture, countCanceller);
+		}
+		else if (countFuture != null)
+		{
+			totalRows = getCount(countFuture, countCanceller, countSql, paramValues);
+		}
+		else
+		{
+			totalRows = queryForLong(countSql, paramValues);
+		}
+
+		if (cache != null)
+		{
+			CacheFactory.put(cache, key, totalRows, SQLTableExtractor.getTables(countSql), stamp);
+		}
+		return new Page<T>(rows, pageNo, size, totalRows);
+	}
+
+	private <T> List<T> callPageQuery(Callable<List<T>> pageQuery)
+	{
+		try
+		{
+			return pageQuery.call();
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new DBException(e);
+		}
+	}
+
+	/**
+	 * 取消并行执行的统计语句：未开始时不再执行，正在执行时调用 {@link java.sql.Statement#cancel()} 中止数据库端的执行
+	 */
+	private void cancelCount(Future<Long> countFuture, StatementCanceller countCanceller)
+	{
+		if (countFuture != null)
+		{
+			countFuture.cancel(false);
+			countCanceller.cancel();
+		}
+	}
+
+	/**
+	 * 等待并行执行的统计语句结束，获得总行数
+	 */
+	private long getCount(Future<Long> countFuture, StatementCanceller countCanceller, String countSql, Object[] paramValues)
+	{
+		try
+		{
+			return countFuture.get();
+		}
+		catch (InterruptedException e)
+		{
+			cancelCount(countFuture, countCanceller);
+			Thread.currentThread().interrupt();
+			throw new DBException("Interrupted while counting by [ " + JdbcUtil.fillSQL(countSql, paramValues) + " ]!", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof DBException)
+			{
+				throw (DBException) e.getCause();
+			}
+			throw new DBException("Failed to count by [ " + JdbcUtil.fillSQL(countSql, paramValues) + " ]!", e.getCause());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForKeysetPage(java.lang.Class, java.lang.String, java.lang.String, java.lang.String, int, java.lang.Object[])
+	 */
+	public <T> KeysetPage<T> queryForKeysetPage(Class<T> beanClass, String sql, String orderBy, String pageToken, int pagesize,
+			Object... paramValues)
+	{
+		return queryForKeysetPage(sql, orderBy, pageToken, pagesize, paramValues, createRowMapper(beanClass));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForKeysetPage(java.lang.Class, java.lang.String, java.lang.String, java.lang.String, int, java.util.Map)
+	 */
+	public <T> KeysetPage<T> queryForKeysetPage(Class<T> beanClass, String namedSql, String orderBy, String pageToken, int pagesize,
+			Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForKeysetPage(beanClass, bound.getSQL(), orderBy, pageToken, pagesize, bound.getParameters());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForKeysetPage(java.lang.String, java.lang.String, java.lang.String, int, java.lang.Object[])
+	 */
+	public KeysetPage<Map<String, Object>> queryForKeysetPage(String sql, String orderBy, String pageToken, int pagesize, Object... paramValues)
+	{
+		return queryForKeysetPage(sql, orderBy, pageToken, pagesize, paramValues, new ResultIterator.RowMapper<Map<String, Object>>()
+		{
+			public Map<String, Object> mapRow(ResultSet rs) throws SQLException
+			{
+				return getRowProcessor().toMap(rs);
+			}
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForKeysetPage(java.lang.String, java.lang.String, java.lang.String, int, java.util.Map)
+	 */
+	public KeysetPage<Map<String, Object>> queryForKeysetPage(String namedSql, String orderBy, String pageToken, int pagesize,
+			Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForKeysetPage(bound.getSQL(), orderBy, pageToken, pagesize, bound.getParameters());
+	}
+
+	/**
+	 * 执行键集分页查询，多查询一行用于判断是否还有下一页
+	 * 
+	 * @param sql 要执行的查询语句，不含 ORDER BY
+	 * @param orderBy 排序键
+	 * @param pageToken 分页标记，第一页为null
+	 * @param pagesize 分页结果集大小，小于等于0时为10
+	 * @param paramValues 查询语句中的变量值
+	 * @param rowMapper 行转换器
+	 * @return 当前页数据和下一页的分页标记
+	 */
+	private <T> KeysetPage<T> queryForKeysetPage(String sql, String orderBy, String pageToken, int pagesize, Object[] paramValues,
+			ResultIterator.RowMapper<T> rowMapper)
+	{
+		int limit = pagesize <= 0 ? 10 : pagesize;
+		KeysetPaging paging = new KeysetPaging(orderBy);
+
+		List<Object> params = new ArrayList<Object>();
+		if (paramValues != null)
+		{
+			params.addAll(Arrays.asList(paramValues));
+		}
+		String pageSql = paging.createPageSQL(Dialect.getInstance(ds.getDialect()), sql, paging.decodeToken(pageToken), params, limit + 1);
+		Object[] pageParams = params.toArray();
+
+		printSQL(pageSql, pageParams);
+
+		Connection conn = getConnection();
+		try
+		{
+			return QUERY_RUNNER.query(conn, pageSql, paging.createHandler(rowMapper, limit), pageParams);
+		}
+		catch (SQLException e)
+		{
+			throw new DBException("Failed to query for keyset page by [ " + JdbcUtil.fillSQL(pageSql, pageParams) + " ]!", e);
+		}
+		finally
+		{
+			close(conn);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForIterator(java.lang.Class, java.lang.String, java.lang.Object[])
+	 */
+	public <T> ResultIterator<T> queryForIterator(Class<T> beanClass, String sql, Object... paramValues)
+	{
+		return iterate(sql, paramValues, createRowMapper(beanClass));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForIterator(java.lang.Class, java.lang.String, java.util.Map)
+	 */
+	public <T> ResultIterator<T> queryForIterator(Class<T> beanClass, String namedSql, Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForIterator(beanClass, bound.getSQL(), bound.getParameters());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForIterator(java.lang.String, java.lang.Object[])
+	 */
+	public ResultIterator<Map<String, Object>> queryForIterator(String sql, Object... paramValues)
+	{
+		return iterate(sql, paramValues, new ResultIterator.RowMapper<Map<String, Object>>()
+		{
+			public Map<String, Object> mapRow(ResultSet rs) throws SQLException
+			{
+				return getRowProcessor().toMap(rs);
+			}
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#queryForIterator(java.lang.String, java.util.Map)
+	 */
+	public ResultIterator<Map<String, Object>> queryForIterator(String namedSql, Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return queryForIterator(bound.getSQL(), bound.getParameters());
+	}
+
+	/**
+	 * 使用只进、只读游标执行流式查询，游标、Statement和数据库连接交由返回的迭代器释放
+	 * 
+	 * @param sql 要执行的查询语句
+	 * @param paramValues 查询语句中的变量值
+	 * @param rowMapper 行转换器
+	 * @return 可关闭的结果迭代器
+	 */
+	private <T> ResultIterator<T> iterate(String sql, Object[] paramValues, ResultIterator.RowMapper<T> rowMapper)
+	{
+		printSQL(sql, paramValues);
+
+		Connection conn = getConnection();
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		boolean returned = false;
+		long start = System.nanoTime();
+		try
+		{
+			pstmt = StatementCanceller.track(conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+			pstmt.setFetchSize(Dialect.getInstance(ds.getDialect()).getStreamingFetchSize(FETCH_SIZE_LOCAL.get()));
+			QueryRunner.fillStatementWithTypes(pstmt, parameterTypes, sql, paramValues);
+			rs = pstmt.executeQuery();
+			// 流式查询只统计到开始返回结果，不统计行数
+			statistics.record(sql, paramValues, start, -1, null);
+
+			ResultIterator<T> iterator = new ResultIterator<T>(rs, pstmt, conn, this, rowMapper, sql);
+			returned = true;
+			return iterator;
+		}
+		catch (SQLException e)
+		{
+			statistics.record(sql, paramValues, start, -1, e);
+			throw new DBException("Failed to query for Iterator by [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
+		}
+		finally
+		{
+			// 迭代器接管之前的任何异常（包括运行时异常），都在这里释放游标、Statement和连接
+			if (!returned)
+			{
+				try
+				{
+					close(rs);
+					close(pstmt);
+				}
+				finally
+				{
+					close(conn);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 创建流式查询的行转换器，转换规则与 queryForList 相同；每个转换器只能用于一个结果集
+	 * 
+	 * @param beanClass 自定义JavaBean.class 或基本数据类型
+	 * @return 行转换器
+	 */
+	private <T> ResultIterator.RowMapper<T> createRowMapper(final Class<T> beanClass)
+	{
+		if (String.class.equals(beanClass))
+		{
+			return new ResultIterator.RowMapper<T>()
+			{
+				public T mapRow(ResultSet rs) throws SQLException
+				{
+					Object val = rs.getObject(1);
+					return beanClass.cast(val == null ? "" : val.toString());
+				}
+			};
+		}
+
+		if (isPrimitiveClass(beanClass))
+		{
+			return new ResultIterator.RowMapper<T>()
+			{
+				@SuppressWarnings("unchecked")
+				public T mapRow(ResultSet rs) throws SQLException
+				{
+					return (T) JdbcUtil.processBigDecimal(rs.getObject(1), rs, 1);
+				}
+			};
+		}
+
+		return new ResultIterator.RowMapper<T>()
+		{
+			// 列与属性的映射在第一行解析一次，之后的行直接复用
+			private BeanProcessor.RowConverter<T>	converter	= null;
+
+			public T mapRow(ResultSet rs) throws SQLException
+			{
+				if (converter == null)
+				{
+					converter = getBeanProcessor().rowConverter(rs, beanClass);
+				}
+				return converter.toBean(rs);
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String)
+	 */
+	public boolean execute(String sql)
+	{
+		return execute(sql, new Object[]{});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String, java.lang.Object[])
+	 */
+	public boolean execute(String sql, Object... paramValues)
+	{
+		Connection conn = getConnection();
+		try
+		{
+			return execute(conn, sql, paramValues);
+		}
+		finally
+		{
+			close(conn);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.lang.String, java.util.Map)
+	 */
+	public boolean execute(String namedSql, Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+		
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return execute(bound.getSQL(), bound.getParameters());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.sql.Connection, java.lang.String, java.lang.Object[])
+	 */
+	public boolean execute(Connection conn, String sql, Object... paramValues)
+	{
+		try
+		{
+			return executeUpdate(conn, sql, paramValues);
+		}
+		finally
+		{
+			invalidateCache(sql);
+		}
+	}
+
+	/**
+	 * 在给定的数据库连接上执行写操作SQL，不删除缓存
+	 * 
+	 * @param conn 数据库连接
+	 * @param sql 要执行的SQL语句
+	 * @param paramValues SQL语句中的变量值
+	 * @return 执行成功返回 true，失败返回 false
+	 */
+	private boolean executeUpdate(Connection conn, String sql, Object... paramValues)
+	{
+		printSQL(sql, paramValues);
+
+		try
+		{
+			QUERY_RUNNER.update(conn, sql, paramValues);
+
+			return true;
+		}
+		catch (SQLException e)
+		{
+			logger.error("Failed to execute [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
+			// 如果处于事务管理，则抛出异常，用于捕获
+			if (ConnectionPool.isInTransaction())
+			{
+				throw new DBException("Failed to execute [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
+			}
+			return false;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#execute(java.sql.Connection, java.lang.String, java.util.Map)
+	 */
+	public boolean execute(Connection conn, String namedSql, Map<String, Object> paramValues)
+	{
+		printNamedSQL(namedSql, paramValues);
+		
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return execute(conn, bound.getSQL(), bound.getParameters());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#save(java.lang.Object)
+	 */
 	public boolean save(Object bean)
 	{
 		Object[] bean_sql = PersistenceUtil.createInsertSQL(bean);
@@ -654,7 +1568,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			return false;
 		}
 
-		return execute(bean_sql[0].toString(), (Object[]) bean_sql[1]);
+		return executeEntity(bean, bean_sql[0].toString(), (Object[]) bean_sql[1]);
 	}
 
 
@@ -687,7 +1601,30 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			return false;
 		}
 
-		return execute(bean_sql[0].toString(), (Object[]) bean_sql[1]);
+		return executeEntity(bean, bean_sql[0].toString(), (Object[]) bean_sql[1]);
+	}
+
+	/**
+	 * 执行写入单个实体的SQL，之后清空实体类的 @Cache 缓存区域，并只删除该实体主键的实体缓存
+	 * 
+	 * @param bean 使用了 fastDB annotation 的对象
+	 * @param sql 写入实体的SQL
+	 * @param paramValues SQL语句中的变量值
+	 * @return 执行成功返回 true，失败返回 false
+	 */
+	private boolean executeEntity(Object bean, String sql, Object... paramValues)
+	{
+		Connection conn = getConnection();
+		try
+		{
+			return executeUpdate(conn, sql, paramValues);
+		}
+		finally
+		{
+			close(conn);
+			CacheFactory.evict(bean.getClass());
+			invalidateEntity(bean, sql);
+		}
 	}
 
 	/*
@@ -713,22 +1650,25 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		PreparedStatement pstmt = null;
 		ResultSet rs = null;
 		long keyValue = -1;
+		long start = System.nanoTime();
 		try
 		{
-			pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			pstmt = StatementCanceller.track(conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS));
 			if (paramValues != null && paramValues.length > 0)
 			{
-				QUERY_RUNNER.fillStatement(pstmt, paramValues);
+				QueryRunner.fillStatementWithTypes(pstmt, parameterTypes, sql, paramValues);
 			}
-			pstmt.executeUpdate();
+			int rows = pstmt.executeUpdate();
 			rs = pstmt.getGeneratedKeys();
 			if (rs.next())
 			{
 				keyValue = rs.getLong(1);
 			}
+			statistics.record(sql, paramValues, start, rows, null);
 		}
 		catch (SQLException e)
 		{
+			statistics.record(sql, paramValues, start, -1, e);
 			throw new DBException("Failed to save for generated key by [ " + JdbcUtil.fillSQL(sql, paramValues) + " ]!", e);
 		}
 		finally
@@ -736,6 +1676,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			close(rs);
 			close(pstmt);
 			close(conn);
+			invalidateCache(sql);
 		}
 
 		return keyValue;
@@ -748,8 +1689,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	{
 		printNamedSQL(namedSql, paramValues);
 		
-		NamedSQL namedSQL = NamedSQL.parse(namedSql);
-		return saveForGeneratedKey(namedSQL.getSQL(), namedSQL.parseParameterValue(paramValues));
+		BoundSQL bound = NamedSQL.parse(namedSql).bind(paramValues);
+		return saveForGeneratedKey(bound.getSQL(), bound.getParameters());
 	}
 
 	/*
@@ -773,16 +1714,18 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		// 存储过程的connection不归入事务管理，此处直接冲连接池获得连接
 		Connection conn = ConnectionPool.getIndependConnection(this.ds.getName());
 		CallableStatement cstmt = null;
+		String sql = null;
+		long start = System.nanoTime();
 		try
 		{
 			// 语法：{ call procedure_name[(?, ?, ...)] }
 			// 组织调用参数
-			String sql = JdbcUtil.joinCallSQL(procedureName, null, paramValues);
+			sql = JdbcUtil.joinCallSQL(procedureName, null, paramValues);
 
 			printSQL(sql, paramValues);
 
 			// 调用存储过程
-			cstmt = conn.prepareCall(sql);
+			cstmt = StatementCanceller.track(conn.prepareCall(sql));
 			// 设置参数
 			if (paramValues != null && paramValues.length > 0)
 			{
@@ -793,18 +1736,20 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			}
 			// 执行存储过程
 			cstmt.execute();
+			statistics.record(sql, paramValues, start, -1, null);
 			sql = null;
 			result = true;
 		}
 		catch (SQLException e)
 		{
+			statistics.record(sql, paramValues, start, -1, e);
 			logger.error("Failed to call procedure[" + procedureName + "]"
-					+ (paramValues != null ? (" by params [" + Arrays.deepToString(paramValues) + "]") : ""), e);
+					+ (paramValues != null ? (" by params " + JdbcUtil.previewParams(paramValues)) : ""), e);
 			// 如果出于事务处理，则抛出异常用于捕获
 			if (ConnectionPool.isInTransaction())
 			{
 				throw new DBException("Failed to call procedure[" + procedureName + "]"
-						+ (paramValues != null ? (" by params [" + Arrays.deepToString(paramValues) + "]") : ""), e);
+						+ (paramValues != null ? (" by params " + JdbcUtil.previewParams(paramValues)) : ""), e);
 			}
 		}
 		finally
@@ -906,11 +1851,13 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		List<Object> list = new ArrayList<Object>();
 
 		CallableStatement cstmt = null;
+		String sql = null;
+		long start = System.nanoTime();
 		try
 		{
 			// 组织调用语句
-			String sql = JdbcUtil.joinCallSQL(procedureName, sqlTypes == null ? new int[]{} : sqlTypes, paramValues);
-			cstmt = conn.prepareCall(sql);
+			sql = JdbcUtil.joinCallSQL(procedureName, sqlTypes == null ? new int[]{} : sqlTypes, paramValues);
+			cstmt = StatementCanceller.track(conn.prepareCall(sql));
 
 			// 参数个数
 			int paramCount = (sqlTypes == null ? 0 : sqlTypes.length) + (paramValues == null ? 0 : paramValues.length);
@@ -961,6 +1908,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			}
 
 			cstmt.execute();
+			statistics.record(sql, final_params, start, -1, null);
 
 			if (sqlTypes != null && sqlTypesIndex != null)
 			{
@@ -978,6 +1926,10 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		}
 		catch (SQLException e)
 		{
+			if (sql != null)
+			{
+				statistics.record(sql, null, start, -1, e);
+			}
 			logger.error("Failed to call procedure [ " + procedureName + " ]");
 			throw new DBException("Failed to call procedure [ " + procedureName + " ]", e);
 		}
@@ -1027,14 +1979,10 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 
 		// 将所有SQL语句分为 totalBatchs 批执行，如果设置了回滚或设置了每批的大小，则分批提交
 		int totalBatchs = getTotalBatchs(sqls.length);
-		// 最终的执行结果是否成功，只有当所有批都执行没有任何错误时，才为ture
-		boolean _success = true;
-		// 执行失败的批编号
-		List<Integer> errorBatchList = new ArrayList<Integer>();
 		// 当前批执行成功的每条SQL语句的影响计数
 		int[] urows = null;
-		// 存储分批操作中的executeBatch 执行影响的计数，便于最后计算全局的计数数组
-		List<Integer> rowList = new ArrayList<Integer>();
+		// 累计执行结果：是否全部成功、执行失败的批编号、全局的计数数组
+		BatchResultBuilder result = new BatchResultBuilder(BATCH_SUMMARY_LOCAL.get(), sqls.length);
 		// 当前线程 batchSize 值
 		int batchSize = BATCH_SIZE_LOCAL.get();
 
@@ -1045,6 +1993,8 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 			rollback = true;
 		}
 
+		long start = System.nanoTime();
+		SQLException batchError = null;
 		try
 		{
 			// 如果需要回滚 或者 需要分批批量操作
@@ -1053,7 +2003,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 				conn.setAutoCommit(false);
 			}
 
-			stmt = conn.createStatement();
+			stmt = StatementCanceller.track(conn.createStatement());
 
 			// 已经执行的批数计数
 			int run_batch = 0;
@@ -1097,16 +2047,18 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 							}
 						}
 						// 记录失败
-						_success = false;
+						batchError = e;
 
-						urows = ((BatchUpdateException) e).getUpdateCounts();
+						// 回滚的批次不计入影响的行数
+						urows = null;
+						result.addFailedRows(e, rollback, i + 1 - run_batch * batchSize);
 
 						// 记录执行失败的批
-						errorBatchList.add(run_batch + 1);
+						result.addErrorBatch(run_batch + 1, totalBatchs > 0 ? run_batch * batchSize : 0, i + 1);
 					}
 
 					// 记录执行命令的计数
-					addBatchRows(urows, rowList);
+					result.addRows(urows);
 
 					run_batch++;
 				}
@@ -1147,78 +2099,365 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 								throw e;
 							}
 						}
-						// 记录失败
-						_success = false;
-
-						urows = ((BatchUpdateException) e).getUpdateCounts();
-
-						// 记录失败的批次
-						errorBatchList.add(run_batch + 1);
+						// 记录失败
+						batchError = e;
+
+						// 回滚的批次不计入影响的行数
+						urows = null;
+						result.addFailedRows(e, rollback, i + 1 - (totalBatchs > 0 ? run_batch * batchSize : 0));
+
+						// 记录失败的批次
+						result.addErrorBatch(run_batch + 1, totalBatchs > 0 ? run_batch * batchSize : 0, i + 1);
+					}
+
+					// 记录执行命令的计数
+					result.addRows(urows);
+
+					run_batch++;
+				}
+			}
+
+			statistics.recordBatch(sqls, start, result.getAffectedRows(), batchError);
+
+			return result.build();
+		}
+		catch (Exception e)
+		{
+			statistics.recordBatch(sqls, start, -1, e);
+			String msg = "Failed to execute the batchUpdate sqls " + JdbcUtil.previewSQLs(sqls) + "!";
+			logger.error(msg, e);
+			throw new DBException(msg, e);
+		}
+		finally
+		{
+			close(stmt);
+			close(conn);
+			invalidateCache(sqls);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][])
+	 */
+	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues)
+	{
+		return batchUpdate(sql, paramValues, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][], boolean)
+	 */
+	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues, boolean rollback)
+	{
+		if (StringUtils.isEmptyString(sql))
+		{
+			throw new DBException("BatchUpdate sql can not be empty!");
+		}
+
+		if (paramValues == null)
+		{
+			throw new DBException("BatchUpdate paramValues[][] can not be null!");
+		}
+
+		Connection conn = getConnection();
+		if (conn == null)
+		{
+			throw new DBException("Get connection fail!");
+		}
+
+		try
+		{
+			return batchUpdate(conn, sql, paramValues, rollback);
+		}
+		finally
+		{
+			close(conn);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][], boolean, int)
+	 */
+	public BatchUpdateResult batchUpdate(final String sql, Object[][] paramValues, final boolean rollback, int parallelism)
+	{
+		if (StringUtils.isEmptyString(sql))
+		{
+			throw new DBException("BatchUpdate sql can not be empty!");
+		}
+
+		if (paramValues == null)
+		{
+			throw new DBException("BatchUpdate paramValues[][] can not be null!");
+		}
+
+		// 批次是提交和回滚的单位，由调用者明确指定，避免整个分区作为一个批次提交
+		int batchSize = BATCH_SIZE_LOCAL.get();
+		if (batchSize <= 0)
+		{
+			throw new DBException("The parallel batchUpdate requires a batch size, call setBatchSize(int) first! SQL[" + sql + "]");
+		}
+
+		// 事务中的操作只能使用当前连接
+		if (ConnectionPool.isInTransaction())
+		{
+			return batchUpdate(sql, paramValues, rollback);
+		}
+
+		if (ds.getMaxConnectionSize() > 0)
+		{
+			parallelism = Math.min(parallelism, ds.getMaxConnectionSize());
+		}
+		int totalBatchs = (paramValues.length + batchSize - 1) / batchSize;
+		int partitions = Math.min(parallelism, totalBatchs);
+		if (partitions <= 1)
+		{
+			return batchUpdate(sql, paramValues, rollback);
+		}
+
+		// 按批次拆分为连续的分区，第一个分区在当前线程执行
+		final boolean summaryOnly = BATCH_SUMMARY_LOCAL.get();
+		List<Future<BatchUpdateResult>> futures = new ArrayList<Future<BatchUpdateResult>>(partitions);
+		int[] firstBatchs = new int[partitions];
+		Callable<BatchUpdateResult> first = null;
+		for (int k = 0; k < partitions; k++)
+		{
+			firstBatchs[k] = (int) ((long) totalBatchs * k / partitions);
+			int from = firstBatchs[k] * batchSize;
+			int to = (int) Math.min((long) totalBatchs * (k + 1) / partitions * batchSize, paramValues.length);
+
+			final Object[][] partition = Arrays.copyOfRange(paramValues, from, to);
+			final int partitionBatchSize = batchSize;
+			Callable<BatchUpdateResult> task = new Callable<BatchUpdateResult>()
+			{
+				public BatchUpdateResult call()
+				{
+					return batchUpdatePartition(sql, partition, rollback, partitionBatchSize, summaryOnly);
+				}
+			};
+
+			if (k == 0)
+			{
+				first = task;
+				futures.add(null);
+			}
+			else
+			{
+				// 异步执行时，其他分区的 Statement 随异步操作一起取消
+				futures.add(WorkerExecutorHolder.EXECUTOR.submit(StatementCanceller.wrap(task)));
+			}
+		}
+
+		// 等待所有分区结束，按分区顺序合并结果
+		BatchUpdateResult[] results = new BatchUpdateResult[partitions];
+		RuntimeException error = null;
+		boolean interrupted = false;
+		for (int k = 0; k < partitions; k++)
+		{
+			try
+			{
+				if (k == 0)
+				{
+					results[k] = first.call();
+					continue;
+				}
+
+				// 被中断时仍等待其余分区结束，返回时不能还有分区在写入；等待结束后再恢复中断状态
+				while (true)
+				{
+					try
+					{
+						results[k] = futures.get(k).get();
+						break;
+					}
+					catch (InterruptedException e)
+					{
+						interrupted = true;
+						if (error == null)
+						{
+							error = new DBException("Interrupted while waiting for the batchUpdate partitions of SQL[" + sql + "]!", e);
+						}
 					}
-
-					// 记录执行命令的计数
-					addBatchRows(urows, rowList);
-
-					run_batch++;
 				}
 			}
-
-			// 返回最终的计数数组
-			int[] _rows = new int[rowList.size()];
-			for (int j = 0; j < rowList.size(); j++)
+			catch (ExecutionException e)
 			{
-				_rows[j] = rowList.get(j);
+				if (error == null)
+				{
+					error = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new DBException(e.getCause());
+				}
+			}
+			catch (RuntimeException e)
+			{
+				if (error == null)
+				{
+					error = e;
+				}
+			}
+			catch (Exception e)
+			{
+				if (error == null)
+				{
+					error = new DBException(e);
+				}
 			}
-
-			return initBatchUpdateResult(_success, _rows, errorBatchList);
 		}
-		catch (Exception e)
+		if (interrupted)
 		{
-			logger.error("Failed to execute the batchUpdate sqls " + Arrays.deepToString(sqls) + "!", e);
-			throw new DBException("Failed to execute the batchUpdate sqls " + Arrays.deepToString(sqls) + "!", e);
+			Thread.currentThread().interrupt();
 		}
-		finally
+		if (error != null)
 		{
-			close(stmt);
-			close(conn);
+			throw error;
 		}
+
+		return mergeBatchUpdateResults(results, firstBatchs, batchSize, paramValues.length, summaryOnly);
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][])
+	 *
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#createBatchWriter(java.lang.String, int, boolean, boolean)
 	 */
-	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues)
+	public BatchWriter createBatchWriter(String sql, int batchSize, boolean rollback, boolean singleTransaction)
 	{
-		return batchUpdate(sql, paramValues, false);
+		if (sql == null || sql.trim().length() == 0)
+		{
+			throw new DBException("The batch SQL can not be empty!");
+		}
+		return new BatchWriter(this, sql, null, null, batchSize, rollback, singleTransaction);
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#batchUpdate(java.lang.String, java.lang.Object[][], boolean)
+	 *
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#createBatchWriter(java.lang.Class, int, boolean, boolean)
 	 */
-	public BatchUpdateResult batchUpdate(String sql, Object[][] paramValues, boolean rollback)
+	public BatchWriter createBatchWriter(Class<?> entityClass, int batchSize, boolean rollback, boolean singleTransaction)
+	{
+		EntityMetadata.SQLTemplate template;
+		try
+		{
+			template = PersistenceUtil.getEntityMetadata(entityClass).getInsertTemplate();
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new DBException("Can't create the batch SQL of " + entityClass.getName() + "!", e);
+		}
+		return new BatchWriter(this, template.getSQL(), template, entityClass, batchSize, rollback, singleTransaction);
+	}
+
+	/**
+	 * 使用一个新的数据库连接执行批量操作的一个分区，在执行分区的线程中按指定的批次大小和统计方式执行
+	 */
+	private BatchUpdateResult batchUpdatePartition(String sql, Object[][] paramValues, boolean rollback, int batchSize, boolean summaryOnly)
 	{
+		Integer callerBatchSize = BATCH_SIZE_LOCAL.get();
+		Boolean callerSummaryOnly = BATCH_SUMMARY_LOCAL.get();
+		BATCH_SIZE_LOCAL.set(batchSize);
+		BATCH_SUMMARY_LOCAL.set(summaryOnly);
 		Connection conn = getConnection();
-		if (conn == null)
+		try
 		{
-			throw new DBException("Get connection fail!");
+			return batchUpdate(conn, sql, paramValues, rollback);
 		}
+		finally
+		{
+			close(conn);
+			BATCH_SIZE_LOCAL.set(callerBatchSize);
+			BATCH_SUMMARY_LOCAL.set(callerSummaryOnly);
+		}
+	}
 
-		PreparedStatement pstmt = null;
+	/**
+	 * 在 BatchWriter 持有的连接上将缓冲的行作为一个批次执行，不分批、不关闭连接
+	 *
+	 * @param conn 数据库连接
+	 * @param sql 带?占位符的预编译sql语句
+	 * @param paramValues 缓冲的行
+	 * @param rollback 事务回滚
+	 * @param inTransaction 是否由 BatchWriter 的单一事务或外部事务管理
+	 * @return BatchUpdateResult 本批次的执行结果
+	 */
+	BatchUpdateResult executeBatch(Connection conn, String sql, Object[][] paramValues, boolean rollback, boolean inTransaction)
+	{
+		Integer callerBatchSize = BATCH_SIZE_LOCAL.get();
+		BATCH_SIZE_LOCAL.set(-1);
+		try
+		{
+			return batchUpdate(conn, sql, paramValues, rollback, inTransaction);
+		}
+		finally
+		{
+			BATCH_SIZE_LOCAL.set(callerBatchSize);
+		}
+	}
 
-		if (StringUtils.isEmptyString(sql))
+	/**
+	 * 按分区顺序合并并行批量操作的结果，失败批次编号和行范围转换为全局的编号
+	 * 
+	 * @param results 各分区的结果
+	 * @param firstBatchs 各分区第一个批次的全局序号（从0开始）
+	 * @param batchSize 批次大小
+	 * @param totalRows 参数总行数
+	 * @param summaryOnly 是否只统计汇总
+	 * @return 合并后的结果
+	 */
+	private BatchUpdateResult mergeBatchUpdateResults(BatchUpdateResult[] results, int[] firstBatchs, int batchSize, int totalRows,
+			boolean summaryOnly)
+	{
+		BatchResultBuilder merged = new BatchResultBuilder(summaryOnly, totalRows);
+		for (int k = 0; k < results.length; k++)
 		{
-			throw new DBException("BatchUpdate sql can not be empty!");
+			merged.add(results[k], firstBatchs[k], firstBatchs[k] * batchSize);
 		}
+		return merged.build();
+	}
 
-		if (paramValues == null)
+	/**
+	 * 在给定的数据库连接上执行预编译SQL的批量操作，不关闭连接
+	 * 
+	 * @param conn 数据库连接
+	 * @param sql 带?占位符的预编译sql语句
+	 * @param paramValues 预编译sql语句的参数
+	 * @param rollback 事务回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	private BatchUpdateResult batchUpdate(Connection conn, String sql, Object[][] paramValues, boolean rollback)
+	{
+		return batchUpdate(conn, sql, paramValues, rollback, ConnectionPool.isInTransaction());
+	}
+
+	/**
+	 * 在给定的数据库连接上执行预编译SQL的批量操作，不关闭连接
+	 * 
+	 * @param conn 数据库连接
+	 * @param sql 带?占位符的预编译sql语句
+	 * @param paramValues 预编译sql语句的参数
+	 * @param rollback 事务回滚
+	 * @param inTransaction 连接是否由外部事务管理：true 时不提交，执行失败时抛出异常由外部统一回滚
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	private BatchUpdateResult batchUpdate(Connection conn, String sql, Object[][] paramValues, boolean rollback, boolean inTransaction)
+	{
+		// 单行 INSERT 改写为多行 INSERT 执行
+		if (ds.isBatchInsertRewrite() && paramValues.length > 1)
 		{
-			throw new DBException("BatchUpdate paramValues[][] can not be null!");
+			MultiRowInsert insert = MultiRowInsert.parse(sql);
+			Dialect dialect = Dialect.getInstance(ds.getDialect());
+			if (insert != null && insert.accepts(paramValues) && insert.getSQL(dialect, 2) != null)
+			{
+				return multiRowInsert(conn, sql, insert, dialect, paramValues, rollback, inTransaction);
+			}
 		}
 
+		PreparedStatement pstmt = null;
+
 		// 当前线程 batchSize 的值
 		int batchSize = BATCH_SIZE_LOCAL.get();
 		// 分批次数
@@ -1226,22 +2465,20 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		// 已经执行的批次
 		int run_batch = 0;
 
-		// 每次 executeBatch 执行是否成功，只有当全部成功时，才算是成功
-		boolean _success = true;
-		// 执行失败的批次
-		List<Integer> errorBatchList = new ArrayList<Integer>();
 		// executeBatch 执行影响的计数
 		int[] urows = null;
-		// 存储分批操作中的executeBatch 执行影响的计数，便于最后计算全局的计数数组
-		List<Integer> rowList = new ArrayList<Integer>();
+		// 累计执行结果：是否全部成功、执行失败的批次、全局的计数数组
+		BatchResultBuilder result = new BatchResultBuilder(BATCH_SUMMARY_LOCAL.get(), paramValues.length);
 
 		// 如果当前操作在事务管理器中，则默认将回滚置为true，便于事务处理器进行统一回滚操作
 		// SHEN.GANG 于 2014-07-12 增加
-		if (ConnectionPool.isInTransaction())
+		if (inTransaction)
 		{
 			rollback = true;
 		}
 
+		long start = System.nanoTime();
+		SQLException batchError = null;
 		try
 		{
 			// 需要回滚 或者 分批次操作
@@ -1250,18 +2487,18 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 				conn.setAutoCommit(false);
 			}
 
-			pstmt = conn.prepareStatement(sql);
+			pstmt = StatementCanceller.track(conn.prepareStatement(sql));
 
 			if (paramValues != null && paramValues.length > 0)
 			{
+				printBatchSQL(sql, paramValues);
 				for (int i = 0; i < paramValues.length; i++)
 				{
 					// 为预编译SQL语句赋值
 					Object[] param = paramValues[i];
 					if (param != null && param.length > 0)
 					{
-						printSQL(sql, param);
-						QUERY_RUNNER.fillStatement(pstmt, param);
+						QueryRunner.fillStatementWithTypes(pstmt, parameterTypes, sql, param);
 					}
 					pstmt.addBatch();
 
@@ -1272,7 +2509,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 						{
 							urows = pstmt.executeBatch();
 							// 如果当前操作没有包含在事务管理器中，则按批次提交，否则，由事务管理器统一提交
-							if (!ConnectionPool.isInTransaction())
+							if (!inTransaction)
 							{
 								conn.commit();
 							}
@@ -1283,7 +2520,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 							if (rollback)
 							{
 								// 如果当前操作没有包含在事务管理器中，则按批次回滚，否则，由事务管理器统一回滚
-								if (!ConnectionPool.isInTransaction())
+								if (!inTransaction)
 								{
 									conn.rollback();
 								}
@@ -1297,87 +2534,389 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 								}
 							}
 							// 记录失败
-							_success = false;
+							batchError = e;
 
-							urows = ((BatchUpdateException) e).getUpdateCounts();
+							// 回滚的批次不计入影响的行数
+							urows = null;
+							result.addFailedRows(e, rollback, i + 1 - run_batch * batchSize);
 							// 记录执行失败的批次
-							errorBatchList.add(run_batch + 1);
+							result.addErrorBatch(run_batch + 1, run_batch * batchSize, i + 1);
+						}
+
+						// 记录执行命令的计数
+						result.addRows(urows);
+
+						run_batch++;
+					}
+					else if (i == paramValues.length - 1 && (totalBatchs <= 0 || run_batch < totalBatchs))
+					{
+						try
+						{
+							// 提交未到达批次的操作（或者未分批的所有操作）
+							urows = pstmt.executeBatch();
+
+							// 需要回滚 或者 执行分批操作
+							if (rollback || totalBatchs > 0)
+							{
+								// 如果当前操作没有包含在事务管理器中，则按批次提交，否则，由事务管理器统一提交
+								if (!inTransaction)
+								{
+									conn.commit();
+								}
+							}
+						}
+						catch (SQLException e)
+						{
+							// 该批次回滚
+							if (rollback)
+							{
+								// 如果当前操作没有包含在事务管理器中，则按批次回滚，否则，由事务管理器统一回滚
+								if (!inTransaction)
+								{
+									conn.rollback();
+								}
+								// 如果当前 batchUpdate 处在事务管理器中，则抛出异常让事务管理器捕获，由事务管理器负责统一回滚
+								// SHEN.GANG 于 2014-07-12 增加
+								else
+								{
+									logger.error("Failed to execute the batchUpdate sql, [totalBatchs = " + totalBatchs + ", batchSize = "
+											+ batchSize + ", index = " + i + "]!", e);
+									throw new BatchUpdateException(e);
+								}
+							}
+							// 记录失败
+							batchError = e;
+
+							// 回滚的批次不计入影响的行数
+							urows = null;
+							result.addFailedRows(e, rollback, i + 1 - (totalBatchs > 0 ? run_batch * batchSize : 0));
+
+							// 记录失败的批次
+							result.addErrorBatch(run_batch + 1, totalBatchs > 0 ? run_batch * batchSize : 0, i + 1);
+						}
+						// 记录执行命令的计数
+						result.addRows(urows);
+					}
+				}
+			}
+
+			statistics.recordBatch(sql, paramValues.length, start, result.getAffectedRows(), batchError);
+
+			return result.build();
+		}
+		catch (Exception e)
+		{
+			statistics.recordBatch(sql, paramValues.length, start, -1, e);
+			String msg = "Can't execute the batchUpdate SQL[" + sql + "] by params" + JdbcUtil.previewBatchParams(paramValues);
+			logger.error(msg, e);
+			throw new DBException(msg, e);
+		}
+		finally
+		{
+			close(pstmt);
+			invalidateCache(sql);
+		}
+	}
+
+	/**
+	 * 将单行 INSERT 的批量操作改写为多行 INSERT 执行，分批、提交和回滚方式与 JDBC 批处理相同
+	 * <p>
+	 * 每行的更新计数：语句影响的行数等于插入的行数时为 1，否则为 Statement.SUCCESS_NO_INFO；执行失败的批次中未成功的行为 Statement.EXECUTE_FAILED。
+	 * 
+	 * @param conn 数据库连接
+	 * @param sql 单行 INSERT 语句
+	 * @param insert 解析后的 INSERT 语句
+	 * @param dialect 数据库方言
+	 * @param paramValues 每行的参数
+	 * @param rollback 事务回滚
+	 * @param inTransaction 连接是否由外部事务管理
+	 * @return BatchUpdateResult 批量操作结果信息
+	 */
+	private BatchUpdateResult multiRowInsert(Connection conn, String sql, MultiRowInsert insert, Dialect dialect, Object[][] paramValues,
+			boolean rollback, boolean inTransaction)
+	{
+		int batchSize = BATCH_SIZE_LOCAL.get();
+		int totalBatchs = getTotalBatchs(paramValues.length);
+		int perBatch = totalBatchs > 0 ? batchSize : paramValues.length;
+
+		BatchResultBuilder result = new BatchResultBuilder(BATCH_SUMMARY_LOCAL.get(), paramValues.length);
+
+		if (inTransaction)
+		{
+			rollback = true;
+		}
+
+		long start = System.nanoTime();
+		SQLException batchError = null;
+		try
+		{
+			if (rollback || totalBatchs > 0)
+			{
+				conn.setAutoCommit(false);
+			}
+
+			printBatchSQL(sql, paramValues);
+			for (int from = 0, batch = 1; from < paramValues.length; from += perBatch, batch++)
+			{
+				int to = Math.min(from + perBatch, paramValues.length);
+				int done = from;
+				result.beginBatch();
+				try
+				{
+					int chunkRows = Math.max(1, insert.getChunkRows(dialect, paramValues, from, to));
+					while (done < to)
+					{
+						// 不足一条语句的剩余行按 2 的幂拆分，使预编译的语句只有少数几种
+						int rows = to - done >= chunkRows ? chunkRows : Integer.highestOneBit(to - done);
+						int count = executeMultiRowInsert(conn, insert.getSQL(dialect, rows), insert.flatten(paramValues, done, rows));
+						result.fillRows(count == rows ? 1 : Statement.SUCCESS_NO_INFO, rows);
+						result.addAffectedRows(count);
+						done += rows;
+					}
+
+					if ((rollback || totalBatchs > 0) && !inTransaction)
+					{
+						conn.commit();
+					}
+				}
+				catch (SQLException e)
+				{
+					if (rollback)
+					{
+						if (inTransaction)
+						{
+							logger.error("Failed to execute the batchUpdate sql, [totalBatchs = " + totalBatchs + ", batchSize = " + batchSize
+									+ ", index = " + done + "]!", e);
+							throw new BatchUpdateException(e);
 						}
+						conn.rollback();
+						done = from;
+						result.rollbackBatch();
+					}
+
+					batchError = e;
+					result.fillRows(Statement.EXECUTE_FAILED, to - done);
+					result.addErrorBatch(batch, from, to);
+				}
+			}
+
+			statistics.recordBatch(sql, paramValues.length, start, result.getAffectedRows(), batchError);
+
+			return result.build();
+		}
+		catch (Exception e)
+		{
+			statistics.recordBatch(sql, paramValues.length, start, -1, e);
+			String msg = "Can't execute the batchUpdate SQL[" + sql + "] by params" + JdbcUtil.previewBatchParams(paramValues);
+			logger.error(msg, e);
+			throw new DBException(msg, e);
+		}
+		finally
+		{
+			invalidateCache(sql);
+		}
+	}
+
+	/**
+	 * 执行一条多行 INSERT 语句
+	 * 
+	 * @return 影响的行数
+	 */
+	private int executeMultiRowInsert(Connection conn, String sql, Object[] params) throws SQLException
+	{
+		PreparedStatement pstmt = StatementCanceller.track(conn.prepareStatement(sql));
+		try
+		{
+			QueryRunner.fillStatementWithTypes(pstmt, parameterTypes, sql, params);
+			return pstmt.executeUpdate();
+		}
+		finally
+		{
+			close(pstmt);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#saveAll(java.util.Collection)
+	 */
+	public BatchUpdateResult saveAll(Collection<?> beans)
+	{
+		return persistAll(beans, PERSIST_INSERT, null, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#saveAll(java.util.Collection, boolean)
+	 */
+	public BatchUpdateResult saveAll(Collection<?> beans, boolean rollback)
+	{
+		return persistAll(beans, PERSIST_INSERT, null, rollback);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#updateAll(java.util.Collection)
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans)
+	{
+		return persistAll(beans, PERSIST_UPDATE, null, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#updateAll(java.util.Collection, boolean)
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, boolean rollback)
+	{
+		return persistAll(beans, PERSIST_UPDATE, null, rollback);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#updateAll(java.util.Collection, java.lang.String[])
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, String[] updatedFields)
+	{
+		return persistAll(beans, PERSIST_UPDATE, updatedFields, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#updateAll(java.util.Collection, java.lang.String[], boolean)
+	 */
+	public BatchUpdateResult updateAll(Collection<?> beans, String[] updatedFields, boolean rollback)
+	{
+		return persistAll(beans, PERSIST_UPDATE, updatedFields, rollback);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#deleteAll(java.util.Collection)
+	 */
+	public BatchUpdateResult deleteAll(Collection<?> beans)
+	{
+		return persistAll(beans, PERSIST_DELETE, null, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#deleteAll(java.util.Collection, boolean)
+	 */
+	public BatchUpdateResult deleteAll(Collection<?> beans, boolean rollback)
+	{
+		return persistAll(beans, PERSIST_DELETE, null, rollback);
+	}
 
-						// 记录执行命令的计数
-						addBatchRows(urows, rowList);
+	/**
+	 * 将注解对象按实体类分组，每组使用实体元数据中预先生成的SQL模板，在同一个数据库连接上批量执行
+	 * 
+	 * @param beans 注解对象集合
+	 * @param type 操作类型：PERSIST_INSERT, PERSIST_UPDATE, PERSIST_DELETE
+	 * @param updatedFields 需要更新的字段集合，仅用于 PERSIST_UPDATE
+	 * @param rollback 是否回滚执行失败的批次
+	 * @return 合并后的批量操作结果信息，失败批次在所有分组中连续编号
+	 */
+	private BatchUpdateResult persistAll(Collection<?> beans, int type, String[] updatedFields, boolean rollback)
+	{
+		if (beans == null)
+		{
+			throw new DBException("The beans collection can not be null!");
+		}
 
-						run_batch++;
-					}
-					else if (i == paramValues.length - 1 && (totalBatchs <= 0 || run_batch < totalBatchs))
-					{
-						try
-						{
-							// 提交未到达批次的操作（或者未分批的所有操作）
-							urows = pstmt.executeBatch();
+		// 按实体类分组，保持对象原有顺序
+		Map<Class<?>, List<Object>> groups = new LinkedHashMap<Class<?>, List<Object>>();
+		for (Object bean : beans)
+		{
+			if (bean == null)
+			{
+				throw new DBException("The beans collection can not contain null!");
+			}
 
-							// 需要回滚 或者 执行分批操作
-							if (rollback || totalBatchs > 0)
-							{
-								// 如果当前操作没有包含在事务管理器中，则按批次提交，否则，由事务管理器统一提交
-								if (!ConnectionPool.isInTransaction())
-								{
-									conn.commit();
-								}
-							}
-						}
-						catch (SQLException e)
-						{
-							// 该批次回滚
-							if (rollback)
-							{
-								// 如果当前操作没有包含在事务管理器中，则按批次回滚，否则，由事务管理器统一回滚
-								if (!ConnectionPool.isInTransaction())
-								{
-									conn.rollback();
-								}
-								// 如果当前 batchUpdate 处在事务管理器中，则抛出异常让事务管理器捕获，由事务管理器负责统一回滚
-								// SHEN.GANG 于 2014-07-12 增加
-								else
-								{
-									logger.error("Failed to execute the batchUpdate sql, [totalBatchs = " + totalBatchs + ", batchSize = "
-											+ batchSize + ", index = " + i + "]!", e);
-									throw new BatchUpdateException(e);
-								}
-							}
-							// 记录失败
-							_success = false;
+			List<Object> group = groups.get(bean.getClass());
+			if (group == null)
+			{
+				group = new ArrayList<Object>();
+				groups.put(bean.getClass(), group);
+			}
+			group.add(bean);
+		}
 
-							urows = ((BatchUpdateException) e).getUpdateCounts();
+		if (groups.isEmpty())
+		{
+			return new BatchResultBuilder(BATCH_SUMMARY_LOCAL.get(), 0).build();
+		}
 
-							// 记录失败的批次
-							errorBatchList.add(run_batch + 1);
-						}
-						// 记录执行命令的计数
-						addBatchRows(urows, rowList);
-					}
-				}
+		// 先生成所有分组的SQL和参数，注解定义有误时不占用数据库连接
+		List<String> sqls = new ArrayList<String>(groups.size());
+		List<Object[][]> params = new ArrayList<Object[][]>(groups.size());
+		for (Map.Entry<Class<?>, List<Object>> entry : groups.entrySet())
+		{
+			EntityMetadata.SQLTemplate template;
+			try
+			{
+				EntityMetadata meta = PersistenceUtil.getEntityMetadata(entry.getKey());
+				template = (type == PERSIST_INSERT) ? meta.getInsertTemplate() : (type == PERSIST_UPDATE) ? meta
+						.getUpdateTemplate(updatedFields) : meta.getDeleteTemplate();
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new DBException("Can't create the batch SQL of " + entry.getKey().getName() + "!", e);
 			}
 
-			// 返回最终的计数数组
-			int[] _rows = new int[rowList.size()];
-			for (int j = 0; j < rowList.size(); j++)
+			List<Object> group = entry.getValue();
+			Object[][] values = new Object[group.size()][];
+			for (int i = 0; i < values.length; i++)
 			{
-				_rows[j] = rowList.get(j);
+				values[i] = template.getParameters(group.get(i));
 			}
 
-			return initBatchUpdateResult(_success, _rows, errorBatchList);
+			sqls.add(template.getSQL());
+			params.add(values);
 		}
-		catch (Exception e)
+
+		Connection conn = getConnection();
+		if (conn == null)
+		{
+			throw new DBException("Get connection fail!");
+		}
+
+		try
 		{
-			logger.error("Can't execute the batchUpdate SQL[" + sql + "] by params" + Arrays.deepToString((Object[]) paramValues), e);
-			throw new DBException("Can't execute the batchUpdate SQL[" + sql + "] by params" + Arrays.deepToString((Object[]) paramValues),
-					e);
+			BatchResultBuilder result = new BatchResultBuilder(BATCH_SUMMARY_LOCAL.get(), beans.size());
+			// 之前分组已经执行的批次数和行数，用于连续编号失败批次和行范围
+			int batchOffset = 0;
+			int rowOffset = 0;
+
+			for (int g = 0; g < sqls.size(); g++)
+			{
+				Object[][] values = params.get(g);
+				BatchUpdateResult bur = batchUpdate(conn, sqls.get(g), values, rollback);
+
+				result.add(bur, batchOffset, rowOffset);
+
+				batchOffset += Math.max(getTotalBatchs(values.length), 1);
+				rowOffset += values.length;
+			}
+
+			return result.build();
 		}
 		finally
 		{
-			close(pstmt);
 			close(conn);
+
+			for (Class<?> beanClass : groups.keySet())
+			{
+				CacheFactory.evict(beanClass);
+			}
 		}
 	}
 
@@ -1400,64 +2939,199 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setBatchSize(int)
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		if (batchSize < 0)
+		{
+			throw new IllegalArgumentException("The batchSize must be greater than or equal to 0!");
+		}
+		BATCH_SIZE_LOCAL.set(batchSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setBatchSummaryOnly(boolean)
+	 */
+	public void setBatchSummaryOnly(boolean summaryOnly)
+	{
+		BATCH_SUMMARY_LOCAL.set(summaryOnly);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setCacheName(java.lang.String)
+	 */
+	public void setCacheName(String cacheName)
+	{
+		if (cacheName == null || cacheName.trim().length() == 0)
+		{
+			CACHE_NAME_LOCAL.remove();
+		}
+		else
+		{
+			CACHE_NAME_LOCAL.set(cacheName);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setPageCountOptions(boolean, int)
+	 */
+	public void setPageCountOptions(boolean parallel, int cacheSeconds)
+	{
+		if (cacheSeconds < 0)
+		{
+			throw new IllegalArgumentException("The cacheSeconds must be greater than or equal to 0!");
+		}
+
+		if (!parallel && cacheSeconds == 0)
+		{
+			PAGE_COUNT_LOCAL.remove();
+		}
+		else
+		{
+			PAGE_COUNT_LOCAL.set(new PageCountOptions(parallel, cacheSeconds));
+		}
+	}
+
 	/**
-	 * 统计批量操作成功执行命令的计数
+	 * 删除写操作SQL修改的表的查询缓存，事务中延迟到事务提交后执行
 	 * 
-	 * @param rows
-	 * @param rowList
+	 * @param sqls 写操作SQL语句
 	 */
-	private void addBatchRows(int[] rows, List<Integer> rowList)
+	private void invalidateCache(String... sqls)
 	{
-		if (rows != null && rows.length > 0)
+		Set<String> tables = new HashSet<String>();
+		for (String sql : sqls)
 		{
-			for (int i = 0; i < rows.length; i++)
+			if (sql == null || sql.trim().length() == 0)
+			{
+				continue;
+			}
+
+			Set<String> t = SQLTableExtractor.getWriteTables(sql);
+			if (t == SQLTableExtractor.UNKNOWN_TABLES)
 			{
-				rowList.add(rows[i]);
+				CacheFactory.invalidate(null);
+				return;
 			}
+			tables.addAll(t);
+		}
+		CacheFactory.invalidate(tables);
+	}
+
+	/**
+	 * 获得实体类按主键查询的缓存区域，事务中不使用缓存
+	 * 
+	 * @param meta 实体类元数据
+	 * @return 缓存区域，不使用缓存时返回null
+	 */
+	private QueryCache getIdentityCache(EntityMetadata meta)
+	{
+		if (ConnectionPool.isInTransaction())
+		{
+			return null;
+		}
+		return CacheFactory.getIdentityCache(meta.getEntityClass(), meta.getTableName());
+	}
+
+	/**
+	 * 记录实体缓存区域和实体表的当前版本号，在按主键查询之前调用
+	 * 
+	 * @param cache 实体缓存区域
+	 * @param meta 实体类元数据
+	 * @return 版本号
+	 */
+	private static CacheFactory.Stamp identityStamp(QueryCache cache, EntityMetadata meta)
+	{
+		return CacheFactory.stamp(cache, Collections.singleton(SQLTableExtractor.normalizeTable(meta.getTableName())));
+	}
+
+	/**
+	 * 生成实体缓存键：数据源名称 + 主键值的字符串形式，使 Integer/Long 等不同类型的相同主键值对应同一缓存
+	 * 
+	 * @param pkValues 主键值
+	 * @return 缓存键
+	 */
+	private Object identityKey(Object[] pkValues)
+	{
+		List<String> key = new ArrayList<String>(pkValues.length + 1);
+		key.add(ds.getName());
+		for (Object v : pkValues)
+		{
+			key.add(String.valueOf(v));
+		}
+		return key;
+	}
+
+	/**
+	 * 删除通过实体写入的行的缓存，实体类未定义主键时删除涉及该表的全部缓存
+	 * 
+	 * @param bean 使用了 fastDB annotation 的对象
+	 * @param sql 写入实体的SQL
+	 */
+	private void invalidateEntity(Object bean, String sql)
+	{
+		EntityMetadata meta = PersistenceUtil.getEntityMetadata(bean.getClass());
+		if (meta.getPrimaryKeys().isEmpty())
+		{
+			invalidateCache(sql);
+		}
+		else
+		{
+			CacheFactory.invalidateEntity(meta.getTableName(), identityKey(meta.getPrimaryKeyValues(bean)));
 		}
 	}
 
 	/**
-	 * 根据执行结果初始化BatchUpdateResult对象
+	 * 获得当前查询使用的缓存区域：事务中不使用缓存，避免缓存未提交的数据；
+	 * 无法解析出查询的表时不使用缓存，因为缓存结果没有表标记，任何写操作都不会使其失效；
+	 * 使用 @Cache 注解的JavaBean使用注解指定的缓存区域，否则使用当前线程设置的缓存区域
 	 * 
-	 * @param success 是否全部执行成功
-	 * @param rows 执行结果
-	 * @param errorBatchList 错误批次列表
-	 * @return 批量更新结果BatchUpdateResult
+	 * @param beanClass 查询结果类型，可以为null
+	 * @param sql 查询SQL语句
+	 * @return 缓存区域，不使用缓存时返回null
 	 */
-	private BatchUpdateResult initBatchUpdateResult(boolean success, int[] rows, List<Integer> errorBatchList)
+	private QueryCache getQueryCache(Class<?> beanClass, String sql)
 	{
-		// 批量更新返回的结果信息
-		BatchUpdateResult bur = new BatchUpdateResult();
-		// 设置批量处理最终的处理结果
-		bur.setSuccess(success);
-		bur.setBatchRows(rows);
-		// 保存执行失败的批次
-		if (errorBatchList.size() > 0)
+		if (ConnectionPool.isInTransaction() || SQLTableExtractor.getTables(sql).isEmpty())
+		{
+			return null;
+		}
+
+		if (beanClass != null)
 		{
-			int[] errorBatchs = new int[errorBatchList.size()];
-			for (int t = 0; t < errorBatchList.size(); t++)
+			QueryCache cache = CacheFactory.getCache(beanClass);
+			if (cache != null)
 			{
-				errorBatchs[t] = errorBatchList.get(t);
+				return cache;
 			}
-			bur.setErrorBatchs(errorBatchs);
 		}
 
-		return bur;
+		String cacheName = CACHE_NAME_LOCAL.get();
+		return cacheName == null ? null : CacheFactory.getCache(cacheName);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setBatchSize(int)
+	 * @see com.lizard.fastdb.jdbc.JdbcHandler#setFetchSize(int)
 	 */
-	public void setBatchSize(int batchSize)
+	public void setFetchSize(int fetchSize)
 	{
-		if (batchSize < 0)
+		if (fetchSize < 0)
 		{
-			throw new IllegalArgumentException("The batchSize must be greater than or equal to 0!");
+			throw new IllegalArgumentException("The fetchSize must be greater than or equal to 0!");
 		}
-		BATCH_SIZE_LOCAL.set(batchSize);
+		FETCH_SIZE_LOCAL.set(fetchSize);
 	}
 
 	/*
@@ -1680,6 +3354,7 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 		{
 			if (stmt != null)
 			{
+				StatementCanceller.untrack(stmt);
 				stmt.close();
 				stmt = null;
 			}
@@ -1721,9 +3396,23 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	 */
 	private void printSQL(String sql, Object[] paramValues)
 	{
-		if (Boolean.valueOf(this.ds.getShowSQL()))
+		if (listener != null)
+		{
+			listener.onSQL(new SQLEvent(ds.getName(), sql, paramValues));
+		}
+	}
+
+	/**
+	 * 打印批量执行的SQL，只打印第一组参数
+	 * 
+	 * @param sql SQL语句
+	 * @param paramValues 批量执行的参数
+	 */
+	private void printBatchSQL(String sql, Object[][] paramValues)
+	{
+		if (listener != null)
 		{
-			JdbcUtil.printSQL(sql, paramValues);
+			listener.onSQL(new SQLEvent(ds.getName(), sql, paramValues.length > 0 ? paramValues[0] : null, paramValues.length));
 		}
 	}
 	
@@ -1735,9 +3424,161 @@ public class JdbcHandlerImpl implements JdbcHandler, Serializable
 	 */
 	private void printNamedSQL( String namedSql, Map<String, Object> paramValues )
 	{
-		if (Boolean.valueOf(this.ds.getShowSQL()))
+		if (listener != null)
+		{
+			listener.onSQL(new SQLEvent(ds.getName(), namedSql, paramValues));
+		}
+	}
+
+	/**
+	 * 获得当前线程的批量操作、流式查询、缓存区域和分页统计设置，用于在其他线程中以相同的设置执行操作
+	 */
+	ThreadSettings getThreadSettings()
+	{
+		return new ThreadSettings(BATCH_SIZE_LOCAL.get(), BATCH_SUMMARY_LOCAL.get(), FETCH_SIZE_LOCAL.get(), CACHE_NAME_LOCAL.get(),
+				PAGE_COUNT_LOCAL.get());
+	}
+
+	/**
+	 * 将设置应用到当前线程
+	 * 
+	 * @param settings {@link #getThreadSettings()} 获得的设置
+	 * @return 当前线程原有的设置，用于恢复
+	 */
+	ThreadSettings setThreadSettings(ThreadSettings settings)
+	{
+		ThreadSettings previous = getThreadSettings();
+		BATCH_SIZE_LOCAL.set(settings.batchSize);
+		BATCH_SUMMARY_LOCAL.set(settings.summaryOnly);
+		FETCH_SIZE_LOCAL.set(settings.fetchSize);
+		CACHE_NAME_LOCAL.set(settings.cacheName);
+		PAGE_COUNT_LOCAL.set(settings.pageCount);
+		return previous;
+	}
+
+	/**
+	 * 线程相关的操作设置
+	 */
+	static final class ThreadSettings
+	{
+		private final int				batchSize;
+		private final boolean			summaryOnly;
+		private final int				fetchSize;
+		private final String			cacheName;
+		private final PageCountOptions	pageCount;
+
+		private ThreadSettings(int batchSize, boolean summaryOnly, int fetchSize, String cacheName, PageCountOptions pageCount)
+		{
+			this.batchSize = batchSize;
+			this.summaryOnly = summaryOnly;
+			this.fetchSize = fetchSize;
+			this.cacheName = cacheName;
+			this.pageCount = pageCount;
+		}
+	}
+
+	/**
+	 * 分页查询统计总行数的方式
+	 */
+	private static final class PageCountOptions
+	{
+		private final boolean	parallel;		// 统计语句是否与分页查询并行执行
+		private final int		cacheSeconds;	// 总行数的缓存时间（秒），0 表示不缓存
+
+		PageCountOptions(boolean parallel, int cacheSeconds)
+		{
+			this.parallel = parallel;
+			this.cacheSeconds = cacheSeconds;
+		}
+	}
+
+	/**
+	 * 并行执行分页统计语句和批量操作分区的线程池，第一次使用时创建；线程数达到上限时在调用线程中执行
+	 */
+	private static final class WorkerExecutorHolder
+	{
+		private static final ExecutorService	EXECUTOR	= new ThreadPoolExecutor(0, Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+																	60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+																	{
+																		private final AtomicInteger	count	= new AtomicInteger();
+
+																		public Thread newThread(Runnable r)
+																		{
+																			Thread t = new Thread(r, "FastDB-Worker-" + count.incrementAndGet());
+																			t.setDaemon(true);
+																			return t;
+																		}
+																	}, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * 将每次查询和更新记录到SQL执行统计的查询对象，执行中的语句可以被取消
+	 */
+	private static class StatisticsQueryRunner extends QueryRunner
+	{
+		private static final long		serialVersionUID	= 1L;
+
+		private final SQLStatistics		statistics;
+
+		StatisticsQueryRunner(ParameterTypeCache parameterTypes, SQLStatistics statistics)
+		{
+			super(parameterTypes);
+			this.statistics = statistics;
+		}
+
+		public <T> T query(Connection conn, String sql, ResultSetHandler<T> rsh, Object... params) throws SQLException
+		{
+			long start = System.nanoTime();
+			try
+			{
+				T result = super.query(conn, sql, rsh, params);
+				// 返回集合时统计集合大小，否则统计为1行或0行
+				long rows = result instanceof Collection ? ((Collection<?>) result).size() : (result == null ? 0 : 1);
+				statistics.record(sql, params, start, rows, null);
+				return result;
+			}
+			catch (SQLException e)
+			{
+				statistics.record(sql, params, start, -1, e);
+				throw e;
+			}
+			catch (RuntimeException e)
+			{
+				statistics.record(sql, params, start, -1, e);
+				throw e;
+			}
+		}
+
+		public int update(Connection conn, String sql, Object... params) throws SQLException
+		{
+			long start = System.nanoTime();
+			try
+			{
+				int rows = super.update(conn, sql, params);
+				statistics.record(sql, params, start, rows, null);
+				return rows;
+			}
+			catch (SQLException e)
+			{
+				statistics.record(sql, params, start, -1, e);
+				throw e;
+			}
+			catch (RuntimeException e)
+			{
+				statistics.record(sql, params, start, -1, e);
+				throw e;
+			}
+		}
+
+		protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException
+		{
+			return StatementCanceller.track(conn.prepareStatement(sql));
+		}
+
+		protected void close(Statement stmt) throws SQLException
 		{
-			JdbcUtil.printNamedSQL(namedSql, paramValues);
+			StatementCanceller.untrack(stmt);
+			stmt.close();
 		}
 	}
 }
@@ -18,7 +18,22 @@ import org.apache.commons.logging.LogFactory;
  */
 public class JdbcUtil
 {
-	private static final Log	logger	= LogFactory.getLog(JdbcUtil.class);
+	private static final Log	logger				= LogFactory.getLog(JdbcUtil.class);
+
+	/**
+	 * 日志和异常信息中单个参数值的最大长度
+	 */
+	public static final int		MAX_PREVIEW_LENGTH	= 200;
+
+	/**
+	 * 日志和异常信息中一组参数最多显示的参数个数
+	 */
+	public static final int		MAX_PREVIEW_PARAMS	= 100;
+
+	/**
+	 * 日志和异常信息中最多显示的批量参数组数和SQL语句条数
+	 */
+	public static final int		MAX_PREVIEW_ROWS	= 10;
 
 	/**
 	 * 根据driver-url获得mysql的schema，该方法仅限于MySQL数据库
@@ -53,7 +68,7 @@ public class JdbcUtil
 		StringBuilder info = new StringBuilder("\n*** SQL: ");
 		info.append(sql);
 		info.append(", Parameters: ");
-		info.append(params != null && params.length > 0 ? Arrays.deepToString(params) : "");
+		info.append(params != null && params.length > 0 ? previewParams(params) : "");
 		
 		if( logger.isInfoEnabled() )
 		{
@@ -127,7 +142,7 @@ public class JdbcUtil
 	}
 
 	/**
-	 * 填充SQL语句
+	 * 填充SQL语句，过长的参数值只保留开头部分，参见 {@link #previewValue(Object)}
 	 * 
 	 * @param sql
 	 * @param params
@@ -141,42 +156,184 @@ public class JdbcUtil
 			int i = 0;
 			int limit = 0;
 			int base = 0;
-			Object val = null;
 
-			StringBuffer t = new StringBuffer();
+			StringBuilder t = new StringBuilder(len + params.length * 8);
 
-			while ((limit = sql.indexOf('?', limit)) != -1)
+			// 占位符多于参数时，多出的占位符原样保留
+			while (i < params.length && (limit = sql.indexOf('?', limit)) != -1)
 			{
-				val = params[i];
-				if (val instanceof String)
-				{
-					t.append(sql.substring(base, limit));
-					t.append("'" + val + "'");
-				}
-				else
-				{
-					t.append(sql.substring(base, limit));
-					t.append(val);
-				}
+				t.append(sql, base, limit);
+				t.append(previewValue(params[i]));
 
 				i++;
 				limit++;
 				base = limit;
-				val = null;
 			}
 
 			if (base < len)
 			{
-				t.append(sql.substring(base));
+				t.append(sql, base, len);
 			}
 
-			//sql += " : " + Arrays.deepToString(params) + " --> " + t.toString();
 			return t.toString();
 		}
 
 		return sql;
 	}
 
+	/**
+	 * 获得用于日志和异常信息的参数值，字符串加单引号，过长的值只保留前 {@value #MAX_PREVIEW_LENGTH} 个字符，二进制值只显示长度
+	 * 
+	 * @param val 参数值
+	 * @return 参数值的字符串形式
+	 */
+	public static String previewValue(Object val)
+	{
+		if (val instanceof byte[])
+		{
+			return "byte[" + ((byte[]) val).length + "]";
+		}
+
+		String str = (val instanceof Object[]) ? Arrays.deepToString((Object[]) val) : String.valueOf(val);
+		if (str.length() > MAX_PREVIEW_LENGTH)
+		{
+			str = str.substring(0, MAX_PREVIEW_LENGTH) + "...(" + str.length() + " chars)";
+		}
+		return (val instanceof String) ? "'" + str + "'" : str;
+	}
+
+	/**
+	 * 获得用于日志和异常信息的参数列表，最多显示前 {@value #MAX_PREVIEW_PARAMS} 个参数
+	 * 
+	 * @param params SQL语句参数
+	 * @return 参数列表的字符串形式
+	 */
+	public static String previewParams(Object[] params)
+	{
+		if (params == null)
+		{
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder("[");
+		int count = Math.min(params.length, MAX_PREVIEW_PARAMS);
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(previewValue(params[i]));
+		}
+		if (params.length > count)
+		{
+			sb.append(", ...(").append(params.length).append(" params)");
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * 获得用于日志和异常信息的批量参数，最多显示前 {@value #MAX_PREVIEW_ROWS} 组参数
+	 * 
+	 * @param params 批量执行的参数
+	 * @return 批量参数的字符串形式
+	 */
+	public static String previewBatchParams(Object[][] params)
+	{
+		if (params == null)
+		{
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder("[");
+		int count = Math.min(params.length, MAX_PREVIEW_ROWS);
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(previewParams(params[i]));
+		}
+		if (params.length > count)
+		{
+			sb.append(", ...(").append(params.length).append(" rows)");
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * 获得用于日志和异常信息的SQL语句列表，最多显示前 {@value #MAX_PREVIEW_ROWS} 条
+	 * 
+	 * @param sqls SQL语句数组
+	 * @return SQL语句列表的字符串形式
+	 */
+	public static String previewSQLs(String[] sqls)
+	{
+		if (sqls == null)
+		{
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder("[");
+		int count = Math.min(sqls.length, MAX_PREVIEW_ROWS);
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(sqls[i]);
+		}
+		if (sqls.length > count)
+		{
+			sb.append(", ...(").append(sqls.length).append(" sqls)");
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * 将括号和引号中的内容替换为空格并转换为小写，用于查找最外层的子句
+	 */
+	static String maskNested(String sql)
+	{
+		char[] chars = sql.toCharArray();
+		int depth = 0;
+		char quote = 0;
+		for (int i = 0; i < chars.length; i++)
+		{
+			char c = chars[i];
+			if (quote != 0)
+			{
+				if (c == quote)
+				{
+					quote = 0;
+				}
+				chars[i] = ' ';
+			}
+			else if (c == '\'' || c == '"' || c == '`')
+			{
+				quote = c;
+				chars[i] = ' ';
+			}
+			else if (c == '(')
+			{
+				depth++;
+				chars[i] = ' ';
+			}
+			else if (c == ')')
+			{
+				depth--;
+				chars[i] = ' ';
+			}
+			else
+			{
+				chars[i] = depth > 0 ? ' ' : Character.toLowerCase(c);
+			}
+		}
+		return new String(chars);
+	}
+
 	/**
 	 * 处理返回字段类型为BigInteger和BigDecimal的列的值
 	 * 
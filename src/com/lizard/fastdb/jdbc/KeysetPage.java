@@ -0,0 +1,49 @@
+package com.lizard.fastdb.jdbc;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 键集分页（seek 分页）的查询结果：当前页的数据及获取下一页使用的分页标记
+ * 
+ * @see JdbcHandler#queryForKeysetPage(Class, String, String, String, int, Object...)
+ */
+public class KeysetPage<T> implements Serializable
+{
+	private static final long	serialVersionUID	= 1L;
+
+	private final List<T>		rows;				// 当前页的数据
+	private final String		nextPageToken;		// 下一页的分页标记，没有下一页时为null
+
+	public KeysetPage(List<T> rows, String nextPageToken)
+	{
+		this.rows = rows;
+		this.nextPageToken = nextPageToken;
+	}
+
+	/**
+	 * 获得当前页的数据
+	 */
+	public List<T> getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * 获得下一页的分页标记，作为下一次查询的 pageToken 参数
+	 * 
+	 * @return 分页标记，没有下一页时为null
+	 */
+	public String getNextPageToken()
+	{
+		return nextPageToken;
+	}
+
+	/**
+	 * 是否还有下一页
+	 */
+	public boolean hasNext()
+	{
+		return nextPageToken != null;
+	}
+}
@@ -0,0 +1,351 @@
+package com.lizard.fastdb.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.dialect.Dialect;
+
+/**
+ * 键集分页（seek 分页）：按排序键上一页最后一行的值定位下一页，查询代价与页码无关
+ * <p>
+ * 分页语句的生成规则：
+ * <ul>
+ * <li>查询语句最外层没有 GROUP BY、HAVING、ORDER BY、UNION 等子句时，直接在最外层的 WHERE 条件后追加定位条件，可以使用排序键上的索引</li>
+ * <li>否则将查询语句作为子查询，在外层追加定位条件，此时排序键需使用查询结果中的列名</li>
+ * </ul>
+ * 定位条件由 {@link Dialect#appendSeekPredicate(StringBuilder, List, String[], boolean[], Object[])} 生成。
+ */
+final class KeysetPaging
+{
+	private static final Charset	UTF8			= Charset.forName("UTF-8");
+
+	private static final String		TOKEN_VERSION	= "k1";
+
+	/**
+	 * 排序键，只支持列名，可以带表别名和 ASC/DESC
+	 */
+	private static final Pattern	SORT_KEY		= Pattern.compile("([\\w$#.`\"]+)(?:\\s+(asc|desc))?", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * 需要将查询语句作为子查询的最外层子句
+	 */
+	private static final Pattern	WRAP_CLAUSES	= Pattern
+															.compile("\\b(group\\s+by|having|order\\s+by|union|intersect|minus|except|limit|offset|fetch|for\\s+update|connect\\s+by)\\b");
+
+	private static final Pattern	WHERE			= Pattern.compile("\\bwhere\\b");
+
+	private final String			orderBy;
+	private final String[]			columns;		// 排序键，如 t.create_time
+	private final String[]			labels;			// 排序键在查询结果中的列名，如 create_time
+	private final boolean[]			descending;
+
+	/**
+	 * 解析排序键
+	 * 
+	 * @param orderBy 排序键，如 create_time DESC, id DESC，最后一个排序键应唯一（如主键）
+	 */
+	KeysetPaging(String orderBy)
+	{
+		if (orderBy == null || orderBy.trim().length() == 0)
+		{
+			throw new DBException("Keyset pagination requires an order by!");
+		}
+
+		String[] items = orderBy.trim().split("\\s*,\\s*");
+		this.orderBy = orderBy.trim();
+		this.columns = new String[items.length];
+		this.labels = new String[items.length];
+		this.descending = new boolean[items.length];
+
+		for (int i = 0; i < items.length; i++)
+		{
+			Matcher m = SORT_KEY.matcher(items[i]);
+			if (!m.matches())
+			{
+				throw new DBException("Keyset pagination only supports column sort keys, but [" + items[i] + "] is given!");
+			}
+
+			columns[i] = m.group(1);
+			String label = columns[i].substring(columns[i].lastIndexOf('.') + 1);
+			labels[i] = label.replace("`", "").replace("\"", "");
+			descending[i] = "desc".equalsIgnoreCase(m.group(2));
+		}
+	}
+
+	/**
+	 * 生成分页语句
+	 * 
+	 * @param dialect 数据库方言
+	 * @param sql 不含 ORDER BY 的查询语句
+	 * @param lastKeys 上一页最后一行的排序键值，第一页为null
+	 * @param params 查询语句的参数，定位条件的参数追加在其后
+	 * @param limit 最多返回的行数
+	 * @return 分页语句
+	 */
+	String createPageSQL(Dialect dialect, String sql, Object[] lastKeys, List<Object> params, int limit)
+	{
+		sql = sql.trim();
+		String masked = JdbcUtil.maskNested(sql);
+
+		StringBuilder sb = new StringBuilder(sql.length() + 128);
+		String[] sortColumns = columns;
+		if (WRAP_CLAUSES.matcher(masked).find())
+		{
+			sortColumns = labels;
+			sb.append("SELECT * FROM (").append(sql).append(") keyset_");
+			if (lastKeys != null)
+			{
+				sb.append(" WHERE ");
+				dialect.appendSeekPredicate(sb, params, sortColumns, descending, lastKeys);
+			}
+		}
+		else if (lastKeys != null)
+		{
+			Matcher where = WHERE.matcher(masked);
+			int end = -1;
+			while (where.find())
+			{
+				end = where.end();
+			}
+
+			if (end == -1)
+			{
+				sb.append(sql).append(" WHERE ");
+			}
+			// 原有条件加括号，避免与定位条件的 OR 优先级冲突
+			else
+			{
+				sb.append(sql, 0, end).append(" (").append(sql, end, sql.length()).append(") AND ");
+			}
+			dialect.appendSeekPredicate(sb, params, sortColumns, descending, lastKeys);
+		}
+		else
+		{
+			sb.append(sql);
+		}
+
+		sb.append(" ORDER BY ");
+		for (int i = 0; i < sortColumns.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(sortColumns[i]).append(descending[i] ? " DESC" : " ASC");
+		}
+
+		return dialect.getLimitSQL(sb.toString(), 0, limit);
+	}
+
+	/**
+	 * 创建结果处理器：最多转换 limit 行，还有更多行时生成下一页的分页标记
+	 */
+	<T> ResultSetHandler<KeysetPage<T>> createHandler(final ResultIterator.RowMapper<T> rowMapper, final int limit)
+	{
+		return new ResultSetHandler<KeysetPage<T>>()
+		{
+			public KeysetPage<T> handle(ResultSet rs) throws SQLException
+			{
+				List<T> rows = new ArrayList<T>(Math.min(limit, 1000));
+				while (rows.size() < limit && rs.next())
+				{
+					rows.add(rowMapper.mapRow(rs));
+				}
+
+				// 游标仍在当前页的最后一行，先读取排序键值，再判断是否还有下一页
+				String token = null;
+				if (rows.size() == limit)
+				{
+					Object[] lastKeys = readKeys(rs);
+					if (rs.next())
+					{
+						token = encodeToken(lastKeys);
+					}
+				}
+				return new KeysetPage<T>(rows, token);
+			}
+		};
+	}
+
+	/**
+	 * 读取当前行的排序键值
+	 */
+	Object[] readKeys(ResultSet rs) throws SQLException
+	{
+		ResultSetMetaData meta = rs.getMetaData();
+		Object[] keys = new Object[labels.length];
+		for (int i = 0; i < labels.length; i++)
+		{
+			int index = rs.findColumn(labels[i]);
+			switch (meta.getColumnType(index))
+			{
+				case Types.DATE:
+				case Types.TIME:
+				case Types.TIMESTAMP:
+					keys[i] = rs.getTimestamp(index);
+					break;
+				default:
+					keys[i] = rs.getObject(index);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * 将排序键值编码为分页标记
+	 */
+	String encodeToken(Object[] keys)
+	{
+		StringBuilder sb = new StringBuilder(TOKEN_VERSION).append(':').append(Integer.toHexString(orderBy.hashCode()));
+		for (int i = 0; i < keys.length; i++)
+		{
+			Object key = keys[i];
+			String value;
+			char type;
+			if (key == null)
+			{
+				throw new DBException("The sort key [" + labels[i] + "] of keyset pagination can't be null!");
+			}
+			else if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte)
+			{
+				type = 'L';
+				value = key.toString();
+			}
+			else if (key instanceof BigDecimal || key instanceof BigInteger)
+			{
+				type = 'N';
+				value = key.toString();
+			}
+			else if (key instanceof Double || key instanceof Float)
+			{
+				type = 'F';
+				value = key.toString();
+			}
+			else if (key instanceof Timestamp)
+			{
+				type = 'T';
+				value = ((Timestamp) key).getTime() + "." + ((Timestamp) key).getNanos();
+			}
+			else if (key instanceof java.util.Date)
+			{
+				type = 'T';
+				value = ((java.util.Date) key).getTime() + ".0";
+			}
+			else if (key instanceof Boolean)
+			{
+				type = 'B';
+				value = key.toString();
+			}
+			else if (key instanceof String)
+			{
+				type = 'S';
+				value = (String) key;
+			}
+			else
+			{
+				throw new DBException("Unsupported sort key type " + key.getClass().getName() + " of [" + labels[i] + "] for keyset pagination!");
+			}
+			sb.append('|').append(type).append(value.length()).append(':').append(value);
+		}
+
+		byte[] bytes = sb.toString().getBytes(UTF8);
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * 解码分页标记
+	 * 
+	 * @param token 分页标记，第一页为null
+	 * @return 排序键值，第一页为null
+	 */
+	Object[] decodeToken(String token)
+	{
+		if (token == null || token.length() == 0)
+		{
+			return null;
+		}
+
+		try
+		{
+			byte[] bytes = new byte[token.length() / 2];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = (byte) Integer.parseInt(token.substring(i * 2, i * 2 + 2), 16);
+			}
+			String s = new String(bytes, UTF8);
+
+			String prefix = TOKEN_VERSION + ":" + Integer.toHexString(orderBy.hashCode());
+			if (!s.startsWith(prefix))
+			{
+				throw new DBException("The page token doesn't match the order by [" + orderBy + "]!");
+			}
+
+			Object[] keys = new Object[labels.length];
+			int pos = prefix.length();
+			for (int i = 0; i < keys.length; i++)
+			{
+				char type = s.charAt(pos + 1);
+				int colon = s.indexOf(':', pos + 2);
+				int len = Integer.parseInt(s.substring(pos + 2, colon));
+				String value = s.substring(colon + 1, colon + 1 + len);
+				pos = colon + 1 + len;
+
+				switch (type)
+				{
+					case 'L':
+						keys[i] = Long.valueOf(value);
+						break;
+					case 'N':
+						keys[i] = new BigDecimal(value);
+						break;
+					case 'F':
+						keys[i] = Double.valueOf(value);
+						break;
+					case 'T':
+						int dot = value.indexOf('.');
+						Timestamp ts = new Timestamp(Long.parseLong(value.substring(0, dot)));
+						ts.setNanos(Integer.parseInt(value.substring(dot + 1)));
+						keys[i] = ts;
+						break;
+					case 'B':
+						keys[i] = Boolean.valueOf(value);
+						break;
+					default:
+						keys[i] = value;
+				}
+			}
+
+			if (pos != s.length())
+			{
+				throw new DBException("Invalid page token [" + token + "]!");
+			}
+			return keys;
+		}
+		catch (DBException e)
+		{
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			throw new DBException("Invalid page token [" + token + "]!", e);
+		}
+	}
+}
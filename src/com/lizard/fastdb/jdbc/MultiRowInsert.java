@@ -0,0 +1,229 @@
+package com.lizard.fastdb.jdbc;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.lizard.fastdb.dialect.Dialect;
+
+/**
+ * 可以改写为多行 INSERT 的单行 INSERT 语句：INSERT INTO t (a, b) VALUES (?, ?) [后缀]
+ * <p>
+ * 批量插入时按方言将多行合并为一条语句执行，参见 {@link Dialect#getMultiRowInsertSQL(String, String, String, int)}。
+ * 每条语句的行数受方言的参数数量和语句长度限制，且不超过 {@link #MAX_ROWS}。
+ */
+final class MultiRowInsert
+{
+	/**
+	 * 一条语句最多插入的行数
+	 */
+	static final int				MAX_ROWS	= 1000;
+
+	private static final Pattern	INSERT		= Pattern.compile("^insert\\b");
+	private static final Pattern	VALUES		= Pattern.compile("\\bvalues\\b");
+	private static final Pattern	SELECT		= Pattern.compile("\\bselect\\b");
+
+	private final String			insert;			// VALUES 之前的部分
+	private final String			values;			// 一行的值，如 (?, ?)
+	private final String			suffix;			// 值之后的部分
+	private final int				parameterCount;	// 每行的参数数量
+
+	private MultiRowInsert(String insert, String values, String suffix, int parameterCount)
+	{
+		this.insert = insert;
+		this.values = values;
+		this.suffix = suffix;
+		this.parameterCount = parameterCount;
+	}
+
+	/**
+	 * 解析单行 INSERT 语句
+	 *
+	 * @param sql 预编译的SQL语句
+	 * @return 不是只有一行参数化 VALUES 的 INSERT 语句时返回null
+	 */
+	static MultiRowInsert parse(String sql)
+	{
+		sql = sql.trim();
+		if (sql.endsWith(";"))
+		{
+			sql = sql.substring(0, sql.length() - 1).trim();
+		}
+
+		String masked = JdbcUtil.maskNested(sql);
+		if (!INSERT.matcher(masked).find())
+		{
+			return null;
+		}
+
+		// INSERT ... SELECT 不改写；后缀中可以再出现 VALUES()，如 ON DUPLICATE KEY UPDATE c = VALUES(c)
+		Matcher m = VALUES.matcher(masked);
+		if (!m.find() || SELECT.matcher(masked.substring(0, m.start())).find())
+		{
+			return null;
+		}
+		int valuesStart = m.start();
+		int open = m.end();
+
+		while (open < sql.length() && Character.isWhitespace(sql.charAt(open)))
+		{
+			open++;
+		}
+		if (open == sql.length() || sql.charAt(open) != '(')
+		{
+			return null;
+		}
+
+		// 查找与 ( 匹配的 )，统计引号外的参数数量
+		int depth = 0;
+		int count = 0;
+		char quote = 0;
+		int close = -1;
+		for (int i = open; i < sql.length() && close == -1; i++)
+		{
+			char c = sql.charAt(i);
+			if (quote != 0)
+			{
+				if (c == quote)
+				{
+					quote = 0;
+				}
+			}
+			else if (c == '\'' || c == '"' || c == '`')
+			{
+				quote = c;
+			}
+			else if (c == '?')
+			{
+				count++;
+			}
+			else if (c == '(')
+			{
+				depth++;
+			}
+			else if (c == ')' && --depth == 0)
+			{
+				close = i;
+			}
+		}
+
+		// 后缀中的参数无法按行重复
+		String suffix = close == -1 ? null : sql.substring(close + 1).trim();
+		if (suffix == null || count == 0 || suffix.indexOf('?') != -1 || suffix.startsWith(","))
+		{
+			return null;
+		}
+
+		return new MultiRowInsert(sql.substring(0, valuesStart).trim(), sql.substring(open, close + 1), suffix, count);
+	}
+
+	/**
+	 * 获得每行的参数数量
+	 */
+	int getParameterCount()
+	{
+		return parameterCount;
+	}
+
+	/**
+	 * 检查每行参数的数量是否都与语句相同，不同时不改写，由驱动报告错误
+	 *
+	 * @param paramValues 批量参数
+	 * @return true -- 可以改写
+	 */
+	boolean accepts(Object[][] paramValues)
+	{
+		for (Object[] row : paramValues)
+		{
+			if (row == null || row.length != parameterCount)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 计算一条语句插入的行数
+	 *
+	 * @param dialect 数据库方言
+	 * @param paramValues 批量参数
+	 * @param from 开始行
+	 * @param to 结束行（不含）
+	 * @return 行数，小于2时不需要改写
+	 */
+	int getChunkRows(Dialect dialect, Object[][] paramValues, int from, int to)
+	{
+		int rows = Math.min(MAX_ROWS, to - from);
+		rows = Math.min(rows, dialect.getMaxMultiRowInsertParameters() / parameterCount);
+
+		int maxBytes = dialect.getMaxMultiRowInsertBytes();
+		if (maxBytes > 0 && rows > 1)
+		{
+			// 按最大的一行估算，使同一批次的语句只有两种长度
+			long rowBytes = 0;
+			for (int i = from; i < to; i++)
+			{
+				rowBytes = Math.max(rowBytes, estimateBytes(paramValues[i]));
+			}
+			rows = (int) Math.min(rows, (maxBytes - insert.length() - suffix.length()) / rowBytes);
+		}
+		return rows;
+	}
+
+	/**
+	 * 生成插入指定行数的语句
+	 *
+	 * @param dialect 数据库方言
+	 * @param rows 行数
+	 * @return 多行 INSERT 语句，方言不支持时返回null
+	 */
+	String getSQL(Dialect dialect, int rows)
+	{
+		return dialect.getMultiRowInsertSQL(insert, values, suffix, rows);
+	}
+
+	/**
+	 * 将多行参数按行依次排列为一个参数数组
+	 *
+	 * @param paramValues 批量参数
+	 * @param from 开始行
+	 * @param rows 行数
+	 * @return 参数数组
+	 */
+	Object[] flatten(Object[][] paramValues, int from, int rows)
+	{
+		Object[] params = new Object[rows * parameterCount];
+		for (int i = 0; i < rows; i++)
+		{
+			System.arraycopy(paramValues[from + i], 0, params, i * parameterCount, parameterCount);
+		}
+		return params;
+	}
+
+	/**
+	 * 估算一行在语句中占用的字节数，字符串按 UTF-8 的最大编码长度计算
+	 */
+	private long estimateBytes(Object[] row)
+	{
+		long bytes = values.length() + 2;
+		if (row != null)
+		{
+			for (Object value : row)
+			{
+				if (value instanceof String)
+				{
+					bytes += ((String) value).length() * 3L + 2;
+				}
+				else if (value instanceof byte[])
+				{
+					bytes += ((byte[]) value).length * 2L + 3;
+				}
+				else
+				{
+					bytes += 32;
+				}
+			}
+		}
+		return bytes;
+	}
+}
@@ -1,15 +1,23 @@
 package com.lizard.fastdb.jdbc;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.cache.CacheStats;
 
 /**
  * SQL命名动态参数类，用来表示解析之后的SQL信息<br>
- * 命名参数<:参数名> - <:id>，SELECT * FROM table WHERE id =:id
+ * 命名参数<:参数名> - <:id>，SELECT * FROM table WHERE id =:id<br>
+ * 只有 IN 列表中的命名参数 IN (:ids) 的值为 Collection 或数组（byte[] 和 char[] 除外）时展开为多个占位符，参见 {@link #bind(Map)}
  *
  * @author SHEN.GANG
  */
@@ -23,7 +31,32 @@ public class NamedSQL
 	/**
 	 * 命名参数名称
 	 */
-	private List<String> namedParameter = new LinkedList<String>();
+	private List<String> namedParameter = new ArrayList<String>();
+	
+	/**
+	 * 命名参数之间的SQL片段，比命名参数多一个，用于展开 IN 列表
+	 */
+	private List<String> fragments = null;
+	
+	/**
+	 * 各命名参数是否单独构成 IN 列表，即 IN (:ids)，只有这样的参数展开
+	 */
+	private boolean[] inLists = null;
+	
+	/**
+	 * 展开 IN 列表后的SQL语句缓存，key -- 各参数展开后的占位符个数
+	 */
+	private final ConcurrentMap<ExpandKey, String> expandedSQLs = new ConcurrentHashMap<ExpandKey, String>();
+	
+	/**
+	 * 每个NamedSQL最多缓存的展开后SQL语句数量
+	 */
+	private static final int MAX_EXPANDED_SQLS = 64;
+	
+	/**
+	 * IN 列表最多的元素个数（Oracle 的限制），占位符个数补齐到2的幂，但不超过该值
+	 */
+	public static final int MAX_IN_LIST = 1000;
 	
 	
 	public NamedSQL() { }
@@ -83,14 +116,220 @@ public class NamedSQL
 	
 	
 	/**
-	 * NamedSQL缓存，用于避免相同named sql的重复解析，获取更高效率
+	 * 最多缓存的 named sql 数量，超出后淘汰最近未使用的
+	 */
+	public static final int MAX_CACHED_SQLS = 2048;
+	
+	/**
+	 * 绑定参数值：按命名参数的顺序取出参数值，IN 列表中的 Collection 和数组参数展开为多个占位符<br>
+	 * Example: SELECT * FROM table WHERE id IN (:ids) 在 ids 有3个元素时为 SELECT * FROM table WHERE id IN (?, ?, ?, ?)<br>
+	 * 为了减少不同的SQL语句以提高预编译语句缓存的命中率，占位符个数补齐到2的幂（最多补齐到 {@link #MAX_IN_LIST} 个），补齐的参数重复最后一个元素。<br>
+	 * 只有单独构成 IN 列表的参数 IN (:ids) 展开，其他位置的参数值原样绑定，如 PostgreSQL 的 id = ANY(:ids) 绑定为一个数组参数。
+	 * 
+	 * @param paramValues 命名参数值，可以使用 {@link BeanParameterMap} 以JavaBean作为参数值
+	 * @return 预编译SQL语句及其参数值
+	 * @throws DBException IN 列表参数为空集合，或元素个数超过 {@link #MAX_IN_LIST}
+	 */
+	public BoundSQL bind(Map<String, Object> paramValues)
+	{
+		Object[] values = parseParameterValue(paramValues);
+		if( null == fragments || values.length == 0 )
+		{
+			return new BoundSQL(sql, values);
+		}
+		
+		int[] sizes = null;
+		int total = values.length;
+		for( int i = 0; i < values.length; i++ )
+		{
+			if( isExpandable(i, values[i]) )
+			{
+				int length = lengthOf(values[i]);
+				if( length == 0 )
+				{
+					throw new DBException("The IN list parameter :" + namedParameter.get(i) + " is empty [" + sql + "]");
+				}
+				if( length > MAX_IN_LIST )
+				{
+					throw new DBException("The IN list parameter :" + namedParameter.get(i) + " has " + length + " elements, more than "
+							+ MAX_IN_LIST + ", split it into several queries [" + sql + "]");
+				}
+				
+				if( null == sizes )
+				{
+					sizes = new int[values.length];
+					Arrays.fill(sizes, 1);
+				}
+				sizes[i] = paddedSize(length);
+				total += sizes[i] - 1;
+			}
+		}
+		
+		if( null == sizes )
+		{
+			return new BoundSQL(sql, values);
+		}
+		
+		Object[] params = new Object[total];
+		int p = 0;
+		for( int i = 0; i < values.length; i++ )
+		{
+			if( isExpandable(i, values[i]) )
+			{
+				p = expand(values[i], params, p, sizes[i]);
+			}
+			else
+			{
+				params[p++] = values[i];
+			}
+		}
+		
+		return new BoundSQL(getExpandedSQL(sizes), params);
+	}
+	
+	/**
+	 * 获得展开 IN 列表后的SQL语句
+	 * 
+	 * @param sizes 各参数展开后的占位符个数
+	 * @return SQL语句
+	 */
+	private String getExpandedSQL(int[] sizes)
+	{
+		ExpandKey key = new ExpandKey(sizes);
+		String expanded = expandedSQLs.get(key);
+		if( null != expanded )
+		{
+			return expanded;
+		}
+		
+		StringBuilder sb = new StringBuilder(sql.length() + sizes.length * 8);
+		for( int i = 0; i < sizes.length; i++ )
+		{
+			sb.append(fragments.get(i));
+			for( int j = 0; j < sizes[i]; j++ )
+			{
+				sb.append(j == 0 ? "?" : ", ?");
+			}
+		}
+		sb.append(fragments.get(sizes.length));
+		expanded = sb.toString();
+		
+		if( expandedSQLs.size() < MAX_EXPANDED_SQLS )
+		{
+			expandedSQLs.putIfAbsent(key, expanded);
+		}
+		return expanded;
+	}
+	
+	/**
+	 * 参数值是否需要展开：IN 列表中的 Collection 或数组，byte[] 和 char[] 作为单个值
+	 * 
+	 * @param index 参数的位置
+	 * @param value 参数值
+	 */
+	private boolean isExpandable(int index, Object value)
+	{
+		return inLists[index]
+				&& (value instanceof Collection || (null != value && value.getClass().isArray() && !(value instanceof byte[]) && !(value instanceof char[])));
+	}
+	
+	private static int lengthOf(Object value)
+	{
+		return (value instanceof Collection) ? ((Collection<?>) value).size() : Array.getLength(value);
+	}
+	
+	/**
+	 * 获得展开后的占位符个数：补齐到2的幂，不超过 MAX_IN_LIST；超过 MAX_IN_LIST 时不补齐
 	 */
-	private static final Map<String, NamedSQL> NAMED_SQL_CACHE= new HashMap<String, NamedSQL>();
+	static int paddedSize(int length)
+	{
+		if( length <= 1 )
+		{
+			return 1;
+		}
+		if( length > MAX_IN_LIST )
+		{
+			return length;
+		}
+		return Math.min(Integer.highestOneBit(length - 1) << 1, MAX_IN_LIST);
+	}
+	
+	/**
+	 * 将 Collection 或数组的元素放入参数数组，不足 size 个时重复最后一个元素
+	 * 
+	 * @return 下一个参数的位置
+	 */
+	private static int expand(Object value, Object[] params, int start, int size)
+	{
+		int p = start;
+		Object last = null;
+		if( value instanceof Collection )
+		{
+			for( Object element : (Collection<?>) value )
+			{
+				params[p++] = last = element;
+			}
+		}
+		else
+		{
+			for( int i = 0, len = Array.getLength(value); i < len; i++ )
+			{
+				params[p++] = last = Array.get(value, i);
+			}
+		}
+		
+		while( p < start + size )
+		{
+			params[p++] = last;
+		}
+		return p;
+	}
+	
+	/**
+	 * 展开后SQL语句缓存的key
+	 */
+	private static final class ExpandKey
+	{
+		private final int[]	sizes;
+		private final int	hash;
+		
+		ExpandKey(int[] sizes)
+		{
+			this.sizes = sizes;
+			this.hash = Arrays.hashCode(sizes);
+		}
+		
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		public boolean equals(Object obj)
+		{
+			return obj instanceof ExpandKey && Arrays.equals(sizes, ((ExpandKey) obj).sizes);
+		}
+	}
+	
+	/**
+	 * NamedSQL缓存，用于避免相同named sql的重复解析，获取更高效率<br>
+	 * key 为原始的 named sql（区分大小写，字符串常量的大小写不同时解析结果不同）
+	 */
+	private static final ConcurrentMap<String, CacheEntry> NAMED_SQL_CACHE = new ConcurrentHashMap<String, CacheEntry>(256);
+	
+	/**
+	 * NamedSQL缓存的命中统计
+	 */
+	private static final CacheStats CACHE_STATS = new CacheStats();
+	
+	/**
+	 * 是否有线程正在淘汰缓存，同一时间只由一个线程淘汰
+	 */
+	private static final AtomicBoolean EVICTING = new AtomicBoolean();
 	
 	private static final String NAMED_SEPARATORS = " \n\r\f\t,()=<>&|+-=/*'^![]#~\\";
 	
 	/**
-	 * 解析含有命名动态参数的SQL语句<br>
+	 * 解析含有命名动态参数的SQL语句，解析结果被缓存<br>
 	 * Example: SELECT * FROM table WHERE id >:id AND time BETWEEN :stime AND :etime
 	 * 
 	 * @param namedSql 含有命名动态参数的SQL语句
@@ -98,16 +337,108 @@ public class NamedSQL
 	 */
 	public static NamedSQL parse(String namedSql)
 	{
-		synchronized(NAMED_SQL_CACHE)
+		CacheEntry entry = NAMED_SQL_CACHE.get(namedSql);
+		if( null != entry )
 		{
-			NamedSQL namedSQL = NAMED_SQL_CACHE.get(namedSql.toLowerCase());
-			if( null == namedSQL )
+			// 只在标记变化时写入，避免命中时的写竞争
+			if( !entry.used )
 			{
-				namedSQL = parseNamedSQL(namedSql);
-				NAMED_SQL_CACHE.put(namedSql.toLowerCase(), namedSQL);
+				entry.used = true;
 			}
-			
-			return namedSQL;
+			CACHE_STATS.recordHit();
+			return entry.namedSQL;
+		}
+		
+		CACHE_STATS.recordMiss();
+		NamedSQL namedSQL = parseNamedSQL(namedSql);
+		if( null == NAMED_SQL_CACHE.putIfAbsent(namedSql, new CacheEntry(namedSQL)) )
+		{
+			CACHE_STATS.recordPut();
+			if( NAMED_SQL_CACHE.size() > MAX_CACHED_SQLS )
+			{
+				evict();
+			}
+		}
+		
+		return namedSQL;
+	}
+	
+	/**
+	 * 淘汰缓存至 MAX_CACHED_SQLS 的 3/4：按 CLOCK 算法，最近被使用过的清除使用标记后保留，未被使用过的淘汰
+	 */
+	private static void evict()
+	{
+		if( !EVICTING.compareAndSet(false, true) )
+		{
+			return;
+		}
+		
+		try
+		{
+			int target = MAX_CACHED_SQLS * 3 / 4;
+			for( int pass = 0; pass < 2 && NAMED_SQL_CACHE.size() > target; pass++ )
+			{
+				Iterator<CacheEntry> it = NAMED_SQL_CACHE.values().iterator();
+				while( it.hasNext() && NAMED_SQL_CACHE.size() > target )
+				{
+					CacheEntry entry = it.next();
+					if( entry.used )
+					{
+						entry.used = false;
+					}
+					else
+					{
+						it.remove();
+						CACHE_STATS.recordEviction();
+					}
+				}
+			}
+		}
+		finally
+		{
+			EVICTING.set(false);
+		}
+	}
+	
+	/**
+	 * 获得NamedSQL缓存的命中统计
+	 * 
+	 * @return 命中统计
+	 */
+	public static CacheStats getCacheStats()
+	{
+		return CACHE_STATS;
+	}
+	
+	/**
+	 * 获得当前缓存的 named sql 数量
+	 * 
+	 * @return 缓存数量
+	 */
+	public static int getCacheSize()
+	{
+		return NAMED_SQL_CACHE.size();
+	}
+	
+	/**
+	 * 清空NamedSQL缓存
+	 */
+	public static void clearCache()
+	{
+		NAMED_SQL_CACHE.clear();
+	}
+	
+	/**
+	 * 缓存项，used 为 CLOCK 淘汰算法的使用标记
+	 */
+	private static class CacheEntry
+	{
+		private final NamedSQL	namedSQL;
+		private volatile boolean	used;
+		
+		CacheEntry(NamedSQL namedSQL)
+		{
+			this.namedSQL = namedSQL;
 		}
 	}
 	
@@ -129,6 +460,7 @@ public class NamedSQL
 	    String param = null;
 	    
 	    StringBuilder sqlFrag = new StringBuilder();
+	    List<String> fragments = new ArrayList<String>();
 	    int cut_start = 0;
 	    
 	    for (int indx = 0; indx < nsql_len; indx++) 
@@ -167,6 +499,7 @@ public class NamedSQL
 
 	        namedSQL.addParameter(param);
 	        
+	        fragments.add(namedSql.substring(cut_start, indx));
 	        sqlFrag.append(namedSql.substring(cut_start, indx));
 	        sqlFrag.append("?");
 	        cut_start = indx + param.length() + 1;
@@ -175,13 +508,68 @@ public class NamedSQL
 	      }
 	    }
 		
+	    fragments.add(namedSql.substring(cut_start, nsql_len));
 	    sqlFrag.append(namedSql.substring(cut_start, nsql_len));
 	    namedSQL.setSQL(sqlFrag.toString());
+	    namedSQL.fragments = fragments;
+	    namedSQL.inLists = new boolean[fragments.size() - 1];
+	    for (int i = 0; i < namedSQL.inLists.length; i++)
+	    {
+	    	namedSQL.inLists[i] = isInListStart(fragments.get(i)) && isInListEnd(fragments.get(i + 1));
+	    }
 	    sqlFrag = null;
 	    
 		return namedSQL;
 	}
 
+	/**
+	 * SQL片段是否以 IN ( 结尾（不区分大小写，忽略空白）
+	 */
+	private static boolean isInListStart(String fragment)
+	{
+		int i = fragment.length() - 1;
+		while (i >= 0 && Character.isWhitespace(fragment.charAt(i)))
+		{
+			i--;
+		}
+		if (i < 0 || fragment.charAt(i) != '(')
+		{
+			return false;
+		}
+		i--;
+		while (i >= 0 && Character.isWhitespace(fragment.charAt(i)))
+		{
+			i--;
+		}
+		if (i < 1 || Character.toLowerCase(fragment.charAt(i)) != 'n' || Character.toLowerCase(fragment.charAt(i - 1)) != 'i')
+		{
+			return false;
+		}
+		// IN 前面不能是标识符的一部分，如 JOIN (
+		return i == 1 || !isIdentifierPart(fragment.charAt(i - 2));
+	}
+
+	/**
+	 * SQL片段是否以 ) 开头（忽略空白）
+	 */
+	private static boolean isInListEnd(String fragment)
+	{
+		for (int i = 0, len = fragment.length(); i < len; i++)
+		{
+			char c = fragment.charAt(i);
+			if (!Character.isWhitespace(c))
+			{
+				return c == ')';
+			}
+		}
+		return false;
+	}
+
+	private static boolean isIdentifierPart(char c)
+	{
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.' || c == '"' || c == '`';
+	}
+
 	private static int firstIndexOfChar(String sqlString, String string, int startindex) 
 	{
 	    int matchAt = -1;
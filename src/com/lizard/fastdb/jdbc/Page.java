@@ -0,0 +1,77 @@
+package com.lizard.fastdb.jdbc;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.lizard.fastdb.util.PagerUtils;
+
+/**
+ * 分页查询结果：当前页的数据及符合条件的总行数
+ *
+ * @see JdbcHandler#queryForPage(Class, String, int, int, Object...)
+ */
+public class Page<T> implements Serializable
+{
+	private static final long	serialVersionUID	= 1L;
+
+	private final List<T>		rows;				// 当前页的数据
+	private final int			pageNo;				// 页码
+	private final int			pageSize;			// 分页结果集大小
+	private final long			totalRows;			// 总行数
+
+	public Page(List<T> rows, int pageNo, int pageSize, long totalRows)
+	{
+		this.rows = rows;
+		this.pageNo = pageNo;
+		this.pageSize = pageSize;
+		this.totalRows = totalRows;
+	}
+
+	/**
+	 * 获得当前页的数据
+	 */
+	public List<T> getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * 获得页码
+	 */
+	public int getPageNo()
+	{
+		return pageNo;
+	}
+
+	/**
+	 * 获得分页结果集大小
+	 */
+	public int getPageSize()
+	{
+		return pageSize;
+	}
+
+	/**
+	 * 获得符合条件的总行数
+	 */
+	public long getTotalRows()
+	{
+		return totalRows;
+	}
+
+	/**
+	 * 获得总页数
+	 */
+	public int getTotalPages()
+	{
+		return pageSize <= 0 ? 0 : (int) ((totalRows + pageSize - 1) / pageSize);
+	}
+
+	/**
+	 * 转换为 {@link PagerUtils}，用于页面分页显示
+	 */
+	public PagerUtils toPager()
+	{
+		return new PagerUtils(pageNo, pageSize, (int) Math.min(totalRows, Integer.MAX_VALUE));
+	}
+}
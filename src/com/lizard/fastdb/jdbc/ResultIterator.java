@@ -0,0 +1,183 @@
+package com.lizard.fastdb.jdbc;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.lizard.fastdb.DBException;
+
+/**
+ * 流式查询结果迭代器，逐行读取游标并转换为结果对象，不在内存中保存整个结果集
+ * <p>
+ * 迭代结束时自动关闭；提前结束迭代时必须调用 {@link #close()}，以释放游标、Statement 和数据库连接。
+ * <p>
+ * <hr>
+ * <blockquote>
+ *
+ * <pre>
+ * ResultIterator&lt;User&gt; it = jdbcHandler.queryForIterator(User.class, &quot;SELECT * FROM fastdb_user&quot;);
+ * try
+ * {
+ * 	while (it.hasNext())
+ * 	{
+ * 		User user = it.next();
+ * 		......
+ * 	}
+ * }
+ * finally
+ * {
+ * 	it.close();
+ * }
+ * </pre>
+ *
+ * </blockquote>
+ * <hr>
+ * <b>注意：</b>MySQL 流式读取期间，同一个数据库连接上不能执行其他语句（例如在事务中），直到迭代器关闭。
+ *
+ * @param <T> 结果对象类型
+ */
+public class ResultIterator<T> implements Iterator<T>, Closeable
+{
+	private final ResultSet		rs;
+	private final Statement		stmt;
+	private final Connection	conn;
+	private final JdbcHandler	jdbcHandler;
+	private final RowMapper<T>	rowMapper;
+	private final String		sql;
+
+	// 游标是否已经预读到下一行：null -- 未预读，TRUE -- 有下一行，FALSE -- 已结束
+	private Boolean				lookahead	= null;
+	private boolean				closed		= false;
+
+	/**
+	 * 创建流式查询结果迭代器
+	 *
+	 * @param rs 查询游标
+	 * @param stmt 产生游标的Statement
+	 * @param conn 数据库连接，迭代器关闭时通过 jdbcHandler 释放
+	 * @param jdbcHandler 用于释放资源的JdbcHandler
+	 * @param rowMapper 行转换器
+	 * @param sql 查询语句，用于错误信息
+	 */
+	ResultIterator(ResultSet rs, Statement stmt, Connection conn, JdbcHandler jdbcHandler, RowMapper<T> rowMapper, String sql)
+	{
+		this.rs = rs;
+		this.stmt = stmt;
+		this.conn = conn;
+		this.jdbcHandler = jdbcHandler;
+		this.rowMapper = rowMapper;
+		this.sql = sql;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public boolean hasNext()
+	{
+		if (closed)
+		{
+			return false;
+		}
+
+		if (lookahead == null)
+		{
+			try
+			{
+				lookahead = rs.next();
+			}
+			catch (SQLException e)
+			{
+				close();
+				throw new DBException("Failed to fetch the next row by [ " + sql + " ]!", e);
+			}
+
+			// 游标读取完毕，自动释放资源
+			if (!lookahead)
+			{
+				close();
+			}
+		}
+
+		return lookahead;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#next()
+	 */
+	public T next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+
+		lookahead = null;
+		try
+		{
+			return rowMapper.mapRow(rs);
+		}
+		catch (SQLException e)
+		{
+			close();
+			throw new DBException("Failed to convert the row by [ " + sql + " ]!", e);
+		}
+	}
+
+	/**
+	 * 不支持删除操作
+	 */
+	public void remove()
+	{
+		throw new UnsupportedOperationException("ResultIterator is read-only!");
+	}
+
+	/**
+	 * 关闭游标、Statement，并释放数据库连接；可以重复调用
+	 */
+	public void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+
+		try
+		{
+			jdbcHandler.close(rs);
+			jdbcHandler.close(stmt);
+		}
+		finally
+		{
+			jdbcHandler.close(conn);
+		}
+	}
+
+	/**
+	 * 迭代器是否已经关闭
+	 *
+	 * @return true -- 已关闭
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * 将游标当前行转换为结果对象
+	 *
+	 * @param <T> 结果对象类型
+	 */
+	interface RowMapper<T>
+	{
+		T mapRow(ResultSet rs) throws SQLException;
+	}
+}
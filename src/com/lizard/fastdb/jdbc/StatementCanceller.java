@@ -0,0 +1,215 @@
+package com.lizard.fastdb.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * 记录异步操作正在执行的全部 Statement，取消异步操作时调用 {@link Statement#cancel()} 中止数据库端的执行
+ * <p>
+ * 异步操作开始执行时绑定到执行线程，JdbcHandlerImpl 创建和关闭 Statement 时登记和注销；没有绑定的线程不做任何记录。
+ * 异步操作在其他线程中并行执行的部分（如并行的批量操作分区）通过 {@link #wrap(Callable)} 绑定到同一个对象；
+ * 需要单独取消的部分（如分页查询并行的统计语句）使用 {@link #fork()} 创建的对象，随所属的异步操作一起取消。
+ * 取消之后再创建的 Statement 立即关闭并抛出 SQLException，使操作尽快结束。
+ */
+final class StatementCanceller
+{
+	private static final Log								logger		= LogFactory.getLog(StatementCanceller.class);
+
+	private static final ThreadLocal<StatementCanceller>	CURRENT		= new ThreadLocal<StatementCanceller>();
+
+	private final List<Statement>							statements	= new ArrayList<Statement>(2);	// 正在执行的 Statement
+	private List<StatementCanceller>						children	= null;							// fork 创建的对象
+	private boolean											cancelled	= false;
+
+	/**
+	 * 创建单独取消的对象，当前线程绑定的异步操作取消时一并取消
+	 *
+	 * @return 新的 StatementCanceller，由执行的线程绑定
+	 */
+	static StatementCanceller fork()
+	{
+		StatementCanceller child = new StatementCanceller();
+		StatementCanceller parent = CURRENT.get();
+		if (parent != null)
+		{
+			synchronized (parent)
+			{
+				if (parent.cancelled)
+				{
+					child.cancelled = true;
+				}
+				else
+				{
+					if (parent.children == null)
+					{
+						parent.children = new ArrayList<StatementCanceller>(1);
+					}
+					parent.children.add(child);
+				}
+			}
+		}
+		return child;
+	}
+
+	/**
+	 * 将当前线程的 Statement 记录到本对象
+	 * <p>
+	 * 线程池满时任务可能在提交任务的线程中执行，该线程可能已经绑定了其他对象，结束时需要通过 {@link #unbind(StatementCanceller)} 恢复。
+	 *
+	 * @return 当前线程原来绑定的对象，没有绑定时返回 null
+	 */
+	StatementCanceller bind()
+	{
+		StatementCanceller previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	/**
+	 * 异步操作结束时解除与当前线程的绑定，之后取消不再影响操作使用过的 Statement
+	 *
+	 * @param previous {@link #bind()} 返回的原来绑定的对象
+	 */
+	void unbind(StatementCanceller previous)
+	{
+		restore(previous);
+		synchronized (this)
+		{
+			statements.clear();
+			children = null;
+		}
+	}
+
+	/**
+	 * 取消正在执行的全部 Statement，包括 {@link #fork()} 创建的对象
+	 */
+	void cancel()
+	{
+		List<StatementCanceller> forked;
+		synchronized (this)
+		{
+			cancelled = true;
+			for (Statement stmt : statements)
+			{
+				try
+				{
+					stmt.cancel();
+				}
+				catch (SQLException e)
+				{
+					logger.warn("Failed to cancel the statement.", e);
+				}
+			}
+			forked = children;
+			children = null;
+		}
+
+		if (forked != null)
+		{
+			for (StatementCanceller child : forked)
+			{
+				child.cancel();
+			}
+		}
+	}
+
+	/**
+	 * 包装当前线程的异步操作在其他线程中执行的部分，使其创建的 Statement 也随异步操作取消；当前线程没有绑定时返回 task 本身
+	 *
+	 * @param task 在其他线程中执行的任务
+	 * @return 执行时绑定到当前异步操作的任务
+	 */
+	static <T> Callable<T> wrap(final Callable<T> task)
+	{
+		final StatementCanceller canceller = CURRENT.get();
+		if (canceller == null)
+		{
+			return task;
+		}
+
+		return new Callable<T>()
+		{
+			public T call() throws Exception
+			{
+				StatementCanceller previous = CURRENT.get();
+				CURRENT.set(canceller);
+				try
+				{
+					return task.call();
+				}
+				finally
+				{
+					restore(previous);
+				}
+			}
+		};
+	}
+
+	private static void restore(StatementCanceller previous)
+	{
+		if (previous == null)
+		{
+			CURRENT.remove();
+		}
+		else
+		{
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * 登记当前线程创建的 Statement
+	 *
+	 * @param stmt 新创建的 Statement
+	 * @return stmt
+	 * @throws SQLException 当前线程的异步操作已经取消
+	 */
+	static <S extends Statement> S track(S stmt) throws SQLException
+	{
+		StatementCanceller canceller = CURRENT.get();
+		if (canceller != null)
+		{
+			synchronized (canceller)
+			{
+				if (canceller.cancelled)
+				{
+					stmt.close();
+					throw new SQLException("The operation has been cancelled!");
+				}
+				canceller.statements.add(stmt);
+			}
+		}
+		return stmt;
+	}
+
+	/**
+	 * 注销当前线程关闭的 Statement；缓存的预编译语句关闭后可能被其他线程使用，不能再取消
+	 *
+	 * @param stmt 要关闭的 Statement
+	 */
+	static void untrack(Statement stmt)
+	{
+		StatementCanceller canceller = CURRENT.get();
+		if (canceller != null)
+		{
+			synchronized (canceller)
+			{
+				for (int i = canceller.statements.size() - 1; i >= 0; i--)
+				{
+					if (canceller.statements.get(i) == stmt)
+					{
+						canceller.statements.remove(i);
+						break;
+					}
+				}
+			}
+		}
+	}
+}
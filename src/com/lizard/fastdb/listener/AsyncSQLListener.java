@@ -0,0 +1,146 @@
+package com.lizard.fastdb.listener;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 异步SQL执行监听器：执行SQL的线程只将事件放入有界队列，由后台线程调用被包装的监听器
+ * <p>
+ * 队列已满时丢弃事件，不阻塞执行SQL的线程，丢弃的数量参见 {@link #getDroppedCount()}。可以设置采样率，只处理一部分事件。
+ */
+public class AsyncSQLListener implements SQLListener
+{
+	private static final Log				logger		= LogFactory.getLog(AsyncSQLListener.class);
+
+	private final SQLListener				delegate;												// 被包装的监听器
+	private final BlockingQueue<SQLEvent>	queue;													// 事件队列
+	private final double					sampleRate;												// 采样率，1 表示处理全部事件
+	private final AtomicLong				dropped		= new AtomicLong();							// 队列已满丢弃的事件数
+	private final Thread					worker;													// 处理事件的后台线程
+
+	private volatile boolean				running		= true;
+
+	/**
+	 * 创建异步监听器，处理全部事件
+	 * 
+	 * @param delegate 被包装的监听器
+	 * @param capacity 队列容量
+	 */
+	public AsyncSQLListener(SQLListener delegate, int capacity)
+	{
+		this(delegate, capacity, 1);
+	}
+
+	/**
+	 * 创建异步监听器
+	 * 
+	 * @param delegate 被包装的监听器
+	 * @param capacity 队列容量
+	 * @param sampleRate 采样率，取值 (0, 1]，如 0.1 表示随机处理约 10% 的事件
+	 */
+	public AsyncSQLListener(SQLListener delegate, int capacity, double sampleRate)
+	{
+		if (sampleRate <= 0 || sampleRate > 1)
+		{
+			throw new IllegalArgumentException("sampleRate must be in (0, 1]: " + sampleRate);
+		}
+
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<SQLEvent>(capacity);
+		this.sampleRate = sampleRate;
+
+		this.worker = new Thread("FastDB-SQLListener")
+		{
+			public void run()
+			{
+				dispatch();
+			}
+		};
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.listener.SQLListener#onSQL(com.lizard.fastdb.listener.SQLEvent)
+	 */
+	public void onSQL(SQLEvent event)
+	{
+		if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+		{
+			return;
+		}
+
+		if (!queue.offer(event))
+		{
+			dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 后台线程：取出事件并调用被包装的监听器
+	 */
+	private void dispatch()
+	{
+		long reported = 0;
+		while (running || !queue.isEmpty())
+		{
+			SQLEvent event;
+			try
+			{
+				event = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				continue;
+			}
+
+			try
+			{
+				delegate.onSQL(event);
+			}
+			catch (Throwable t)
+			{
+				logger.warn("SQLListener " + delegate.getClass().getName() + " failed.", t);
+			}
+
+			long d = dropped.get();
+			if (d != reported)
+			{
+				logger.warn((d - reported) + " SQL events were dropped because the queue of " + delegate.getClass().getName() + " is full.");
+				reported = d;
+			}
+		}
+	}
+
+	/**
+	 * 获得队列已满丢弃的事件数
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * 获得队列中等待处理的事件数
+	 */
+	public int getPendingCount()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * 停止后台线程，队列中剩余的事件处理完后线程结束
+	 */
+	public void shutdown()
+	{
+		running = false;
+		worker.interrupt();
+	}
+}
@@ -0,0 +1,27 @@
+package com.lizard.fastdb.listener;
+
+/**
+ * 组合多个SQL执行监听器，按顺序调用
+ */
+public class CompositeSQLListener implements SQLListener
+{
+	private final SQLListener[]	listeners;
+
+	public CompositeSQLListener(SQLListener... listeners)
+	{
+		this.listeners = listeners.clone();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.listener.SQLListener#onSQL(com.lizard.fastdb.listener.SQLEvent)
+	 */
+	public void onSQL(SQLEvent event)
+	{
+		for (SQLListener listener : listeners)
+		{
+			listener.onSQL(event);
+		}
+	}
+}
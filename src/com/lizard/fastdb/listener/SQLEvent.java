@@ -0,0 +1,118 @@
+package com.lizard.fastdb.listener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次SQL执行的事件，由 JdbcHandler 在执行SQL之前发出
+ * <p>
+ * 事件只保存SQL和参数（参数数组和命名参数Map为浅拷贝），不做任何格式化，格式化由 {@link SQLListener} 完成（异步监听器在后台线程中完成）。
+ */
+public class SQLEvent
+{
+	private final String				dataSourceName;										// 数据源名称
+	private final String				sql;												// SQL语句或命名参数SQL语句
+	private final Object[]				params;												// SQL语句参数，批量执行时为第一组参数
+	private final Map<String, Object>	namedParams;										// 命名参数SQL语句的参数
+	private final int					batchCount;											// 批量执行的参数组数，非批量执行时为0
+	private final long					timestamp	= System.currentTimeMillis();			// 事件发生的时间
+	private final String				threadName	= Thread.currentThread().getName();		// 执行SQL的线程
+
+	/**
+	 * 创建SQL语句的事件
+	 * 
+	 * @param dataSourceName 数据源名称
+	 * @param sql SQL语句
+	 * @param params SQL语句参数
+	 */
+	public SQLEvent(String dataSourceName, String sql, Object[] params)
+	{
+		this(dataSourceName, sql, params, null, 0);
+	}
+
+	/**
+	 * 创建命名参数SQL语句的事件
+	 * 
+	 * @param dataSourceName 数据源名称
+	 * @param namedSql 命名参数SQL语句
+	 * @param namedParams 命名参数
+	 */
+	public SQLEvent(String dataSourceName, String namedSql, Map<String, Object> namedParams)
+	{
+		this(dataSourceName, namedSql, null, namedParams, 0);
+	}
+
+	/**
+	 * 创建批量执行的事件
+	 * 
+	 * @param dataSourceName 数据源名称
+	 * @param sql SQL语句
+	 * @param firstParams 第一组参数
+	 * @param batchCount 参数组数
+	 */
+	public SQLEvent(String dataSourceName, String sql, Object[] firstParams, int batchCount)
+	{
+		this(dataSourceName, sql, firstParams, null, batchCount);
+	}
+
+	private SQLEvent(String dataSourceName, String sql, Object[] params, Map<String, Object> namedParams, int batchCount)
+	{
+		this.dataSourceName = dataSourceName;
+		this.sql = sql;
+		this.params = (params == null) ? null : params.clone();
+		this.namedParams = (namedParams == null) ? null : new LinkedHashMap<String, Object>(namedParams);
+		this.batchCount = batchCount;
+	}
+
+	public String getDataSourceName()
+	{
+		return dataSourceName;
+	}
+
+	public String getSql()
+	{
+		return sql;
+	}
+
+	/**
+	 * 获得SQL语句参数，批量执行时为第一组参数，命名参数SQL语句时为null
+	 */
+	public Object[] getParams()
+	{
+		return params;
+	}
+
+	/**
+	 * 获得命名参数，非命名参数SQL语句时为null
+	 */
+	public Map<String, Object> getNamedParams()
+	{
+		return namedParams;
+	}
+
+	/**
+	 * 是否为命名参数SQL语句
+	 */
+	public boolean isNamed()
+	{
+		return namedParams != null;
+	}
+
+	/**
+	 * 获得批量执行的参数组数，非批量执行时为0
+	 */
+	public int getBatchCount()
+	{
+		return batchCount;
+	}
+
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	public String getThreadName()
+	{
+		return threadName;
+	}
+}
@@ -0,0 +1,16 @@
+package com.lizard.fastdb.listener;
+
+/**
+ * SQL执行监听器，通过 {@link SQLListeners#register(String, SQLListener)} 注册到数据源
+ * <p>
+ * 监听器在执行SQL的线程中被调用，耗时的处理应使用 {@link AsyncSQLListener} 包装。
+ */
+public interface SQLListener
+{
+	/**
+	 * 执行SQL之前调用
+	 * 
+	 * @param event SQL执行事件
+	 */
+	public void onSQL(SQLEvent event);
+}
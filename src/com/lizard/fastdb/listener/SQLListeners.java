@@ -0,0 +1,82 @@
+package com.lizard.fastdb.listener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SQL执行监听器注册表
+ * <p>
+ * JdbcHandler 创建时确定所使用的监听器：数据源注册了监听器时使用注册的监听器，否则开启 show-sql 时使用默认的异步日志监听器，都没有时不发出任何事件。
+ * 因此注册或移除监听器只对之后创建的 JdbcHandler 生效。
+ */
+public final class SQLListeners
+{
+	/**
+	 * 默认日志监听器的队列容量
+	 */
+	public static final int									DEFAULT_CAPACITY	= 8192;
+
+	/**
+	 * 数据源名称 与 监听器 映射
+	 */
+	private static final ConcurrentMap<String, SQLListener>	LISTENERS			= new ConcurrentHashMap<String, SQLListener>();
+
+	private SQLListeners()
+	{
+	}
+
+	/**
+	 * 默认的异步日志监听器，第一次使用时创建
+	 */
+	private static class DefaultHolder
+	{
+		private static final SQLListener	LOG_LISTENER	= new AsyncSQLListener(new SQLLogListener(), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * 为数据源注册监听器，同一数据源只能注册一个，多个监听器可以使用 {@link CompositeSQLListener} 组合
+	 * 
+	 * @param ds_name 数据源名称
+	 * @param listener 监听器
+	 */
+	public static void register(String ds_name, SQLListener listener)
+	{
+		LISTENERS.put(ds_name.toLowerCase(), listener);
+	}
+
+	/**
+	 * 移除数据源注册的监听器
+	 * 
+	 * @param ds_name 数据源名称
+	 * @return 被移除的监听器，没有注册时返回null
+	 */
+	public static SQLListener remove(String ds_name)
+	{
+		return LISTENERS.remove(ds_name.toLowerCase());
+	}
+
+	/**
+	 * 获得数据源使用的监听器
+	 * 
+	 * @param ds_name 数据源名称
+	 * @param showSQL 数据源是否开启了 show-sql
+	 * @return 监听器，不需要发出事件时返回null
+	 */
+	public static SQLListener get(String ds_name, boolean showSQL)
+	{
+		SQLListener listener = LISTENERS.get(ds_name.toLowerCase());
+		if (listener != null)
+		{
+			return listener;
+		}
+		return showSQL ? DefaultHolder.LOG_LISTENER : null;
+	}
+
+	/**
+	 * 获得默认的异步日志监听器，用于和自定义监听器组合
+	 */
+	public static SQLListener getLogListener()
+	{
+		return DefaultHolder.LOG_LISTENER;
+	}
+}
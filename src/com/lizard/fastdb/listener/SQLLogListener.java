@@ -0,0 +1,52 @@
+package com.lizard.fastdb.listener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.jdbc.JdbcUtil;
+
+/**
+ * 输出SQL语句的监听器，即 show-sql 的输出，过长的参数只输出开头部分（参见 {@link JdbcUtil#previewParams(Object[])}）
+ */
+public class SQLLogListener implements SQLListener
+{
+	private static final Log	logger	= LogFactory.getLog(SQLLogListener.class);
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.lizard.fastdb.listener.SQLListener#onSQL(com.lizard.fastdb.listener.SQLEvent)
+	 */
+	public void onSQL(SQLEvent event)
+	{
+		StringBuilder info = new StringBuilder(event.isNamed() ? "\n*** NamedSQL: " : "\n*** SQL: ");
+		info.append(event.getSql());
+		if (event.getBatchCount() > 0)
+		{
+			info.append(", Batch: ").append(event.getBatchCount());
+		}
+		info.append(", Parameters: ");
+		if (event.isNamed())
+		{
+			info.append(event.getNamedParams());
+		}
+		else if (event.getParams() != null && event.getParams().length > 0)
+		{
+			info.append(JdbcUtil.previewParams(event.getParams()));
+			if (event.getBatchCount() > 1)
+			{
+				info.append(" ...");
+			}
+		}
+
+		// 如果不能使用log.info输出，则使用 System.out.println 输出
+		if (logger.isInfoEnabled())
+		{
+			logger.info(info.toString());
+		}
+		else
+		{
+			System.out.println(info.toString());
+		}
+	}
+}
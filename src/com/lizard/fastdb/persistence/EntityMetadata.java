@@ -0,0 +1,668 @@
+package com.lizard.fastdb.persistence;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.lizard.fastdb.annotation.Column;
+import com.lizard.fastdb.annotation.ColumnType;
+import com.lizard.fastdb.annotation.GeneratorType;
+
+/**
+ * 注解实体类的元数据（不可变），每个类只解析一次并缓存：
+ * 表名、主键、主键生成方式、有序的列及其取值句柄，以及预先生成的 INSERT/UPDATE/DELETE/SELECT SQL 模板
+ */
+public final class EntityMetadata
+{
+	private static final MethodHandles.Lookup			LOOKUP				= MethodHandles.lookup();
+	private static final MethodType						GETTER_TYPE			= MethodType.methodType(Object.class, Object.class);
+
+	// 每个实体类最多缓存的部分字段 UPDATE 模板数
+	private static final int							MAX_UPDATE_TEMPLATES	= 64;
+
+	private final Class<?>								entityClass;
+	private final String								tableName;
+	private final List<ColumnMetadata>					columns;
+	private final List<ColumnMetadata>					primaryKeys;
+
+	// sequence主键未指定sequence名称时的错误，此时不能生成 INSERT SQL
+	private final IllegalArgumentException				insertError;
+	private final SQLTemplate							insertTemplate;
+	private final SQLTemplate							updateTemplate;
+	private final SQLTemplate							deleteTemplate;
+	// SELECT 全部注解列 FROM 表名
+	private final String								selectPrefix;
+	private final SQLTemplate							selectByIdTemplate;
+
+	// 部分字段 UPDATE 模板缓存，key：小写的待更新字段列表
+	private final ConcurrentMap<String, SQLTemplate>	updateTemplates		= new ConcurrentHashMap<String, SQLTemplate>();
+
+	/**
+	 * 解析注解实体类
+	 *
+	 * @param clazz 注解实体类
+	 */
+	EntityMetadata(Class<?> clazz)
+	{
+		this.entityClass = clazz;
+		this.tableName = PersistenceUtil.getTableName(clazz);
+
+		List<ColumnMetadata> cols = new ArrayList<ColumnMetadata>();
+		List<ColumnMetadata> pks = new ArrayList<ColumnMetadata>();
+		IllegalArgumentException error = null;
+
+		// 只有通过 getMethods 方法才能获取到继承自父类的私有字段属性
+		for (Method m : clazz.getMethods())
+		{
+			String m_name = m.getName();
+
+			// 只解析getter方法，对于Boolean类型，其getter方法可能是 isAbc
+			if (!m_name.startsWith("get") && !m_name.startsWith("is"))
+			{
+				continue;
+			}
+
+			// getter 方法无参数
+			if (m.getParameterTypes().length > 0)
+			{
+				continue;
+			}
+
+			// Java注解只支持基本数据类型
+			if (!ColumnType.isPrimitiveClass(m.getReturnType()))
+			{
+				continue;
+			}
+
+			m_name = PersistenceUtil.lowerFirst(m_name.startsWith("get") ? m_name.substring(3) : m_name.substring(2));
+
+			// 从当前类开始逐级向父类查找字段定义；如果找到的字段没有定义注解，则不再到父类中查找
+			Field f = findDeclaredField(clazz, m_name);
+			if (null == f)
+			{
+				continue;
+			}
+
+			Column col = f.getAnnotation(Column.class);
+			if (null == col)
+			{
+				continue;
+			}
+
+			// 列名 @Column(name='') 为空，则使用属性名替代
+			String col_name = col.name();
+			if (null == col_name || col_name.trim().length() == 0)
+			{
+				col_name = f.getName();
+			}
+
+			// 对于SEQUENCE 生成方式的主键，必须指定 SEQUENCE 名称
+			if (col.primaryKey() && col.generatorType() == GeneratorType.SEQUENCE
+					&& (null == col.sequence() || col.sequence().trim().length() == 0) && null == error)
+			{
+				error = new IllegalArgumentException("The " + f.getDeclaringClass().getName() + "[" + f.getName()
+						+ "] Annotation @Column(isPrimaryKey=true, generatorType=GeneratorType.SEQUENCE, sequence='...'), but the sequence name is empty!");
+			}
+
+			ColumnMetadata cm = new ColumnMetadata(col_name, f.getName(), f.getType(), col.primaryKey(), col.generatorType(), col.sequence(),
+					getterHandle(m));
+			cols.add(cm);
+			if (cm.isPrimaryKey())
+			{
+				pks.add(cm);
+			}
+		}
+
+		this.columns = Collections.unmodifiableList(cols);
+		this.primaryKeys = Collections.unmodifiableList(pks);
+		this.insertError = error;
+		this.insertTemplate = (null == error) ? createInsertTemplate() : null;
+		this.updateTemplate = createUpdateTemplate(null);
+		this.deleteTemplate = pks.isEmpty() ? null : createDeleteTemplate();
+		this.selectPrefix = createSelectPrefix();
+		this.selectByIdTemplate = pks.isEmpty() ? null : new SQLTemplate(selectPrefix + createPrimaryKeyCondition(), pks);
+	}
+
+	/**
+	 * 获取实体类
+	 *
+	 * @return 实体类
+	 */
+	public Class<?> getEntityClass()
+	{
+		return entityClass;
+	}
+
+	/**
+	 * 获取数据库表名
+	 *
+	 * @return 数据库表名
+	 */
+	public String getTableName()
+	{
+		return tableName;
+	}
+
+	/**
+	 * 获取所有注解列，顺序固定
+	 *
+	 * @return 只读的列元数据集合
+	 */
+	public List<ColumnMetadata> getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * 获取主键列
+	 *
+	 * @return 只读的主键列元数据集合
+	 */
+	public List<ColumnMetadata> getPrimaryKeys()
+	{
+		return primaryKeys;
+	}
+
+	/**
+	 * 获取 INSERT SQL 模板
+	 *
+	 * @return INSERT SQL 模板
+	 * @throws IllegalArgumentException 当SEQUENCE主键未指定sequence名称时
+	 */
+	public SQLTemplate getInsertTemplate()
+	{
+		if (null != insertError)
+		{
+			throw insertError;
+		}
+		return insertTemplate;
+	}
+
+	/**
+	 * 获取 UPDATE SQL 模板
+	 *
+	 * @param updateFields 待更新的JavaBean属性名集合（不区分大小写），如果为null或空，则更新全部
+	 * @return UPDATE SQL 模板
+	 */
+	public SQLTemplate getUpdateTemplate(String[] updateFields)
+	{
+		if (null == updateFields || updateFields.length == 0)
+		{
+			return updateTemplate;
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (String f : updateFields)
+		{
+			key.append(String.valueOf(f).toLowerCase()).append(',');
+		}
+
+		String k = key.toString();
+		SQLTemplate template = updateTemplates.get(k);
+		if (null == template)
+		{
+			template = createUpdateTemplate(updateFields);
+			if (updateTemplates.size() < MAX_UPDATE_TEMPLATES)
+			{
+				updateTemplates.putIfAbsent(k, template);
+			}
+		}
+
+		return template;
+	}
+
+	/**
+	 * 获取根据主键删除的 DELETE SQL 模板
+	 *
+	 * @return DELETE SQL 模板
+	 * @throws IllegalArgumentException 当实体类没有定义主键时
+	 */
+	public SQLTemplate getDeleteTemplate()
+	{
+		if (null == deleteTemplate)
+		{
+			throw new IllegalArgumentException("The " + entityClass.getName()
+					+ " has no primary key defined by Annotation @Column(primaryKey=true), can't create DELETE SQL!");
+		}
+		return deleteTemplate;
+	}
+
+	/**
+	 * 获取根据主键查询的 SELECT SQL 模板，参数顺序与 {@link #getPrimaryKeys()} 一致
+	 *
+	 * @return SELECT SQL 模板
+	 * @throws IllegalArgumentException 当实体类没有定义主键时
+	 */
+	public SQLTemplate getSelectByIdTemplate()
+	{
+		if (null == selectByIdTemplate)
+		{
+			throw new IllegalArgumentException("The " + entityClass.getName()
+					+ " has no primary key defined by Annotation @Column(primaryKey=true), can't create SELECT SQL!");
+		}
+		return selectByIdTemplate;
+	}
+
+	/**
+	 * 获取根据多个主键值查询的 SELECT SQL：单主键使用 pk IN (?, ?, ...)，联合主键使用 (pk1 = ? AND pk2 = ?) OR ...<br>
+	 * 参数依次为每个主键值（联合主键按 {@link #getPrimaryKeys()} 的顺序展开）
+	 *
+	 * @param count 主键值的个数，必须大于0
+	 * @return SELECT SQL
+	 * @throws IllegalArgumentException 当实体类没有定义主键时
+	 */
+	public String getSelectByIdsSQL(int count)
+	{
+		getSelectByIdTemplate();
+
+		StringBuilder sql_buf = new StringBuilder(selectPrefix);
+		sql_buf.append(" WHERE ");
+		if (primaryKeys.size() == 1)
+		{
+			sql_buf.append(primaryKeys.get(0).getName());
+			sql_buf.append(" IN (");
+			for (int i = 0; i < count; i++)
+			{
+				sql_buf.append(i == 0 ? "?" : ", ?");
+			}
+			sql_buf.append(")");
+		}
+		else
+		{
+			String condition = createPrimaryKeyCondition().substring(" WHERE ".length());
+			for (int i = 0; i < count; i++)
+			{
+				if (i > 0)
+				{
+					sql_buf.append(" OR ");
+				}
+				sql_buf.append("(").append(condition).append(")");
+			}
+		}
+
+		return sql_buf.toString();
+	}
+
+	/**
+	 * 读取JavaBean的主键值，顺序与 {@link #getPrimaryKeys()} 一致
+	 *
+	 * @param bean 注解对象
+	 * @return 主键值
+	 */
+	public Object[] getPrimaryKeyValues(Object bean)
+	{
+		Object[] values = new Object[primaryKeys.size()];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = primaryKeys.get(i).getValue(bean);
+		}
+		return values;
+	}
+
+	/**
+	 * 创建 SELECT 全部注解列 FROM 表名
+	 */
+	private String createSelectPrefix()
+	{
+		StringBuilder sql_buf = new StringBuilder();
+		sql_buf.append("SELECT ");
+		for (int i = 0; i < columns.size(); i++)
+		{
+			if (i > 0)
+			{
+				sql_buf.append(", ");
+			}
+			sql_buf.append(columns.get(i).getName());
+		}
+		sql_buf.append(" FROM ");
+		sql_buf.append(tableName);
+
+		return sql_buf.toString();
+	}
+
+	/**
+	 * 创建 WHERE 全部主键列 的条件
+	 */
+	private String createPrimaryKeyCondition()
+	{
+		StringBuilder sql_buf = new StringBuilder(" WHERE ");
+		for (int i = 0; i < primaryKeys.size(); i++)
+		{
+			if (i > 0)
+			{
+				sql_buf.append(" AND ");
+			}
+			sql_buf.append(primaryKeys.get(i).getName());
+			sql_buf.append(" = ?");
+		}
+		return sql_buf.toString();
+	}
+
+	/**
+	 * 创建 INSERT SQL 模板：主键列在前（SEQUENCE 主键直接使用 seqname.NEXTVAL，AUTO_INCREMENT 主键忽略），普通列在后
+	 */
+	private SQLTemplate createInsertTemplate()
+	{
+		StringBuilder sql_buf_1 = new StringBuilder();
+		StringBuilder sql_buf_2 = new StringBuilder();
+		sql_buf_1.append("INSERT INTO ");
+		sql_buf_1.append(tableName);
+		sql_buf_1.append("(");
+		sql_buf_2.append(" VALUES(");
+
+		List<ColumnMetadata> params = new ArrayList<ColumnMetadata>();
+
+		// 主键列
+		for (ColumnMetadata pf : columns)
+		{
+			if (!pf.isPrimaryKey())
+			{
+				continue;
+			}
+
+			if (pf.getGeneratorType() == GeneratorType.SEQUENCE)
+			{
+				sql_buf_1.append(pf.getName());
+				sql_buf_1.append(", ");
+
+				sql_buf_2.append(pf.getSequence() + ".NEXTVAL");
+				sql_buf_2.append(", ");
+			}
+			else if (pf.getGeneratorType() == GeneratorType.ASSIGN)
+			{
+				sql_buf_1.append(pf.getName());
+				sql_buf_1.append(", ");
+
+				sql_buf_2.append("?, ");
+
+				params.add(pf);
+			}
+		}
+
+		// 普通列
+		for (ColumnMetadata cf : columns)
+		{
+			if (cf.isPrimaryKey())
+			{
+				continue;
+			}
+
+			sql_buf_1.append(cf.getName());
+			sql_buf_1.append(", ");
+
+			sql_buf_2.append("?, ");
+
+			params.add(cf);
+		}
+
+		String sql1 = sql_buf_1.toString();
+		String sql2 = sql_buf_2.toString();
+
+		if (sql1.lastIndexOf(",") != -1)
+		{
+			sql1 = sql1.substring(0, sql1.lastIndexOf(",")) + ")";
+		}
+		if (sql2.lastIndexOf(",") != -1)
+		{
+			sql2 = sql2.substring(0, sql2.lastIndexOf(",")) + ")";
+		}
+
+		return new SQLTemplate(sql1 + sql2, params);
+	}
+
+	/**
+	 * 创建 UPDATE SQL 模板：SET 待更新的列，WHERE 全部主键列
+	 */
+	private SQLTemplate createUpdateTemplate(String[] updateFields)
+	{
+		StringBuilder sql_buf_1 = new StringBuilder();
+		StringBuilder sql_buf_2 = new StringBuilder();
+		sql_buf_1.append("UPDATE ");
+		sql_buf_1.append(tableName);
+		sql_buf_1.append(" SET ");
+		sql_buf_2.append(" WHERE ");
+
+		List<ColumnMetadata> params = new ArrayList<ColumnMetadata>();
+
+		// 判断Bean的属性，而不是@Column对应的数据表列名
+		for (ColumnMetadata cf : columns)
+		{
+			if (withinUpdateFields(cf.getProperty(), updateFields))
+			{
+				sql_buf_1.append(cf.getName());
+				sql_buf_1.append(" = ?, ");
+
+				params.add(cf);
+			}
+		}
+
+		// 主键列
+		for (ColumnMetadata pf : primaryKeys)
+		{
+			sql_buf_2.append(pf.getName());
+			sql_buf_2.append(" = ? AND ");
+
+			params.add(pf);
+		}
+
+		String sql1 = sql_buf_1.toString();
+		String sql2 = sql_buf_2.toString();
+
+		if (sql1.lastIndexOf(",") != -1)
+		{
+			sql1 = sql1.substring(0, sql1.lastIndexOf(","));
+		}
+
+		if (sql2.lastIndexOf("AND") != -1)
+		{
+			sql2 = sql2.substring(0, sql2.lastIndexOf("AND"));
+		}
+
+		return new SQLTemplate(sql1 + sql2, params);
+	}
+
+	/**
+	 * 创建 DELETE SQL 模板：WHERE 全部主键列
+	 */
+	private SQLTemplate createDeleteTemplate()
+	{
+		return new SQLTemplate("DELETE FROM " + tableName + createPrimaryKeyCondition(), primaryKeys);
+	}
+
+	/**
+	 * 判断一个字段名称是否在一个给定的待更新字段集合中
+	 */
+	private static boolean withinUpdateFields(String fname, String[] updateFields)
+	{
+		if (null == updateFields || updateFields.length == 0)
+		{
+			return true;
+		}
+
+		for (String f : updateFields)
+		{
+			if (fname.equalsIgnoreCase(f))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 从当前类开始逐级向父类（不包括Object）查找字段定义
+	 */
+	private static Field findDeclaredField(Class<?> clazz, String name)
+	{
+		for (Class<?> clz = clazz; null != clz && !"java.lang.Object".equals(clz.getName()); clz = clz.getSuperclass())
+		{
+			for (Field f : clz.getDeclaredFields())
+			{
+				if (f.getName().equals(name))
+				{
+					return f;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 创建getter方法句柄，类型为 (Object)Object
+	 */
+	private static MethodHandle getterHandle(Method m)
+	{
+		try
+		{
+			m.setAccessible(true);
+			return LOOKUP.unreflect(m).asType(GETTER_TYPE);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalArgumentException("Can't access getter method [" + m + "]!", e);
+		}
+	}
+
+	/**
+	 * 注解列元数据
+	 */
+	public static final class ColumnMetadata
+	{
+		private final String		name;
+		private final String		property;
+		private final Class<?>		type;
+		private final boolean		primaryKey;
+		private final GeneratorType	generatorType;
+		private final String		sequence;
+		private final MethodHandle	getter;
+
+		ColumnMetadata(String name, String property, Class<?> type, boolean primaryKey, GeneratorType generatorType, String sequence,
+				MethodHandle getter)
+		{
+			this.name = name;
+			this.property = property;
+			this.type = type;
+			this.primaryKey = primaryKey;
+			this.generatorType = generatorType;
+			this.sequence = sequence;
+			this.getter = getter;
+		}
+
+		/**
+		 * 获取数据库表对应的列名
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * 获取JavaBean属性名
+		 */
+		public String getProperty()
+		{
+			return property;
+		}
+
+		/**
+		 * 获取列字段类型
+		 */
+		public Class<?> getType()
+		{
+			return type;
+		}
+
+		/**
+		 * 是否是主键
+		 */
+		public boolean isPrimaryKey()
+		{
+			return primaryKey;
+		}
+
+		/**
+		 * 获取列值生成方式
+		 */
+		public GeneratorType getGeneratorType()
+		{
+			return generatorType;
+		}
+
+		/**
+		 * 获取SEQUENCE名称
+		 */
+		public String getSequence()
+		{
+			return sequence;
+		}
+
+		/**
+		 * 读取JavaBean中该列的属性值
+		 *
+		 * @param bean 注解对象
+		 * @return 属性值
+		 */
+		public Object getValue(Object bean)
+		{
+			try
+			{
+				return (Object) getter.invokeExact(bean);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Throwable e)
+			{
+				throw new IllegalStateException("Failed to read property [" + property + "]!", e);
+			}
+		}
+	}
+
+	/**
+	 * 预先生成的SQL模板：带占位符 ? 的SQL 以及占位符对应的列
+	 */
+	public static final class SQLTemplate
+	{
+		private final String			sql;
+		private final ColumnMetadata[]	parameters;
+
+		SQLTemplate(String sql, List<ColumnMetadata> parameters)
+		{
+			this.sql = sql;
+			this.parameters = parameters.toArray(new ColumnMetadata[parameters.size()]);
+		}
+
+		/**
+		 * 获取带占位符 ? 的SQL
+		 */
+		public String getSQL()
+		{
+			return sql;
+		}
+
+		/**
+		 * 从注解对象中取出占位符对应的参数值
+		 *
+		 * @param bean 注解对象
+		 * @return 参数值
+		 */
+		public Object[] getParameters(Object bean)
+		{
+			Object[] values = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; i++)
+			{
+				values[i] = parameters[i].getValue(bean);
+			}
+			return values;
+		}
+	}
+}
@@ -2,9 +2,10 @@ package com.lizard.fastdb.persistence;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.lizard.fastdb.annotation.Column;
 import com.lizard.fastdb.annotation.ColumnType;
@@ -18,6 +19,12 @@ import com.lizard.fastdb.annotation.Table;
  */
 public final class PersistenceUtil
 {
+	// 实体元数据缓存，key：注解类
+	private static final ConcurrentMap<Class<?>, EntityMetadata> ENTITY_METADATA_CACHE = new ConcurrentHashMap<Class<?>, EntityMetadata>();
+	
+	// 注解属性映射关系缓存，key：注解类，value：只读的映射关系
+	private static final ConcurrentMap<Class<?>, Map<String, String>> FIELD_MAPPING_CACHE = new ConcurrentHashMap<Class<?>, Map<String, String>>();
+	
 	/**
 	 * 获取注解对象的数据库表名
 	 * 
@@ -63,6 +70,28 @@ public final class PersistenceUtil
 		return table_name;
 	}
 	
+	/**
+	 * 获取注解类的实体元数据，每个类只解析一次
+	 * 
+	 * @param clazz 注解类
+	 * @return 实体元数据
+	 */
+	public static EntityMetadata getEntityMetadata( Class<?> clazz )
+	{
+		EntityMetadata meta = ENTITY_METADATA_CACHE.get( clazz );
+		if( null == meta )
+		{
+			meta = new EntityMetadata( clazz );
+			EntityMetadata cached = ENTITY_METADATA_CACHE.putIfAbsent( clazz, meta );
+			if( null != cached )
+			{
+				meta = cached;
+			}
+		}
+		
+		return meta;
+	}
+	
 	/**
 	 * 将首字母变成小写
 	 * 
@@ -84,146 +113,43 @@ public final class PersistenceUtil
 	 */
 	public static Persistence parsePersistence(Object obj, boolean isPersistenced)
 	{
-		Class<?> clz = obj.getClass(); 	
+		EntityMetadata meta = getEntityMetadata(obj.getClass());
 		
-		// 只有通过 getMethods 方法才能获取到继承自父类的私有字段属性
-		Method[] methods = clz.getMethods();
-		
-		// 字段是否存在，用来递归解析注解字段
-		boolean isFieldExist = true;
-		// 用于内部强制异常时，中断catch；此处用在下面的 sequence 判断
-		boolean isBreak = false;
-
-		// 主键字段
-		//PrimaryField p_field = null;
-		// 普通字段
-		ColumnField n_field = null;
-		
-		String col_name = null;
-		Object col_val = null;
+		// 对于未持久化的对象（insert），SEQUENCE 生成方式的主键必须指定 SEQUENCE 名称
+		if( !isPersistenced )
+		{
+			try
+			{
+				meta.getInsertTemplate();
+			} catch (IllegalArgumentException e)
+			{
+				e.printStackTrace();
+				return null;
+			}
+		}
 		
 		Persistence persistence = new Persistence();
-		persistence.setTableName( getTableName( clz ) );
+		persistence.setTableName( meta.getTableName() );
 		
-		for( Method m : methods )
+		ColumnField n_field = null;
+		for( EntityMetadata.ColumnMetadata cm : meta.getColumns() )
 		{
-			/* 
-			 每次字段查找都要从当前类开始，然后再递归父类。
-			 因为 getMethods()返回的数组中的元素没有排序，也没有任何特定的顺序，有可能当前类的某(些)字段被放置到了父类属性的后面，
-			 而后面的递归父类操作改变了 clz 的对象，这样一来会造成这些字段被丢弃；
-			 所以每次查找开始都要将 clz 对象重置为当前对象。
-			 */
-			clz = obj.getClass();
-			
-			String m_name = m.getName();
-			
-			// 只解析getter方法，对于Boolean类型，其getter方法可能是 isAbc
-			if(!m_name.startsWith("get") && !m_name.startsWith("is"))
-			{
-				continue;
-			}
-			
-			// getter 方法无参数
-			if( m.getParameterTypes().length > 0 )
+			n_field = new ColumnField();
+			n_field.setName( cm.getName() );
+			// sequence 方式主键的值是 seqname.NEXTVAL
+			if( !isPersistenced && cm.isPrimaryKey() && cm.getGeneratorType() == GeneratorType.SEQUENCE )
 			{
-				continue;
+				n_field.setValue( cm.getSequence()+".NEXTVAL" );
 			}
-			
-			// Java注解只支持基本数据类型
-			if( !ColumnType.isPrimitiveClass(m.getReturnType()) )
+			else
 			{
-				continue;
+				n_field.setValue( cm.getValue(obj) );
 			}
+			n_field.setType( cm.getType() );
+			n_field.setPrimaryKey( cm.isPrimaryKey() );
+			n_field.setGeneratorType( cm.getGeneratorType() );
 			
-			m_name = lowerFirst(m_name.startsWith("get") ? m_name.substring(3) : m_name.substring(2));
-			
-			// 如果当前类找不到Field定义，则递归到其父类中寻找，以此进行下去
-			Field f;
-			Column col;
-			do
-			{
-				try
-				{
-					// 这里会产生后面的异常：如果字段是父类中继承过来的，则在当前类getDeclaredField会产生异常
-					f = clz.getDeclaredField(m_name);
-					col = f.getAnnotation(Column.class);
-					
-					// 如果该字段定义了注解，则解析；如果没有定义注解，则也不会到父类中查找
-					if( null != col )
-					{
-						col_name = col.name();
-						col_val = m.invoke(obj, new Object[]{});
-						
-						// 列名 @Column(name='') 为空，则使用属性名替代
-						if( null == col_name || col_name.trim().length() == 0 )
-						{
-							col_name = f.getName();
-						}
-						
-						// 如果是主键
-						if( col.primaryKey() )
-						{
-							// 如果对象未被持久化 并且是 SEQUENCE 生成方式
-							if( !isPersistenced && col.generatorType() == GeneratorType.SEQUENCE )
-							{
-								// 对于SEQUENCE 生成方式的主键，必须指定 SEQUENCE 名称
-								if( null == col.sequence() || col.sequence().trim().length() == 0 )
-								{
-									isBreak = true;
-									throw new IllegalArgumentException("The "+clz.getName()+"["+f.getName()+
-												"] Annotation @Column(isPrimaryKey=true, generatorType=GeneratorType.SEQUENCE, sequence='...'), but the sequence name is empty!");
-								}
-								
-								// sequence 方式主键的值是 seqname.NEXTVAL
-								col_val = col.sequence()+".NEXTVAL";
-							}
-							
-							// 创建主键字段
-							// 扩充了ColumnField，使用 ColumnField替代
-							/*p_field = new PrimaryField();
-							p_field.setName( col_name );
-							p_field.setValue( col_val );
-							p_field.setGeneratorType( col.generatorType() );
-							p_field.setType(f.getType());
-							
-							persistence.addPrimaryField( p_field );*/
-						}
-						
-						// 创建字段
-						n_field = new ColumnField();
-						n_field.setName( col_name );
-						n_field.setValue( col_val );
-						n_field.setType( f.getType() );
-						n_field.setPrimaryKey( col.primaryKey() );
-						n_field.setGeneratorType(col.generatorType());
-						
-						persistence.addColumnField( n_field );
-					}
-					
-					isFieldExist = true;
-				} catch (Exception e)
-				{
-					// 内部强制抛出异常
-					if( isBreak )
-					{
-						e.printStackTrace();
-						return null;
-					}
-					
-					isFieldExist = false;
-					
-					// 如果当前类没有找到，则到其父类中查找
-					clz = clz.getSuperclass();
-					// 父类不存在或是Object基类，则结束下次递归操作
-					if( null == clz || "java.lang.Object".equals(clz.getName()) )
-					{
-						isFieldExist = true;
-					}
-				} 
-				
-			} while(!isFieldExist);
-			
-			n_field = null;
+			persistence.addColumnField( n_field );
 		}
 		
 		return persistence;
@@ -346,10 +272,34 @@ public final class PersistenceUtil
 	/**
 	 * 解析一个使用了fastDB Annotation的类的注解属性映射关系
 	 * 
+	 * 注：解析结果按类缓存，返回的Map为只读
+	 * 
 	 * @param clazz 使用了fastDB Annotation的类
 	 * @return Map： key -- 表示数据库表字段；value -- 表示JavaBean对应的注解属性名称
 	 */
 	public static Map<String, String> getFieldAnnotationMapping(Class<?> clazz)
+	{
+		Map<String, String> field_mapping = FIELD_MAPPING_CACHE.get(clazz);
+		if( null == field_mapping )
+		{
+			field_mapping = Collections.unmodifiableMap(parseFieldAnnotationMapping(clazz));
+			Map<String, String> cached = FIELD_MAPPING_CACHE.putIfAbsent(clazz, field_mapping);
+			if( null != cached )
+			{
+				field_mapping = cached;
+			}
+		}
+		
+		return field_mapping;
+	}
+	
+	/**
+	 * 解析一个使用了fastDB Annotation的类的注解属性映射关系
+	 * 
+	 * @param clazz 使用了fastDB Annotation的类
+	 * @return Map： key -- 表示数据库表字段；value -- 表示JavaBean对应的注解属性名称
+	 */
+	private static Map<String, String> parseFieldAnnotationMapping(Class<?> clazz)
 	{
 		// 只有通过 getMethods 方法才能获取到继承自父类的私有字段属性
 		Method[] methods = clazz.getMethods();
@@ -457,93 +407,19 @@ public final class PersistenceUtil
 			return null;
 		}
 		
-		// 采用新的解析方式，用于支持注解继承
-		Persistence p = parsePersistence( bean, false );
+		EntityMetadata meta = getEntityMetadata( bean.getClass() );
 		
-		if( null == p || null == p.getTableName() )
+		EntityMetadata.SQLTemplate template = null;
+		try
 		{
-			return null;
-		}
-		
-		Object[] oo = new Object[2];
-		
-		StringBuilder sql_buf_1 = new StringBuilder();
-		StringBuilder sql_buf_2 = new StringBuilder();
-		sql_buf_1.append( "INSERT INTO ");
-		sql_buf_1.append( p.getTableName());
-		sql_buf_1.append( "(");
-		sql_buf_2.append( " VALUES(" );
-		
-		List<Object> valList = new LinkedList<Object>();
-		
-		List<ColumnField> col_fields = p.getColumnFields();
-		
-		// 主键列
-		for( ColumnField pf : col_fields )
-		{
-			if( !pf.isPrimaryKey() )
-			{
-				continue;
-			}
-			
-			if( pf.getGeneratorType() == GeneratorType.SEQUENCE )
-			{
-				sql_buf_1.append(pf.getName());
-				sql_buf_1.append(", ");
-				
-				sql_buf_2.append(pf.getValue());
-				sql_buf_2.append(", ");
-			}
-			else if( pf.getGeneratorType() == GeneratorType.ASSIGN )
-			{
-				sql_buf_1.append(pf.getName());
-				sql_buf_1.append(", ");
-				
-				sql_buf_2.append( "?, " );
-				
-				valList.add( pf.getValue() );
-			}
-		}
-		
-		// 普通列
-		for( ColumnField cf : col_fields )
-		{
-			if( cf.isPrimaryKey() )
-			{
-				continue;
-			}
-			
-			sql_buf_1.append(cf.getName());
-			sql_buf_1.append(", ");
-			
-			sql_buf_2.append( "?, " );
-			
-			valList.add( cf.getValue() );
-		}
-		
-		String sql1 = sql_buf_1.toString();
-		String sql2 = sql_buf_2.toString();
-		
-		if( sql1.lastIndexOf(",") != -1 )
+			template = meta.getInsertTemplate();
+		} catch (IllegalArgumentException e)
 		{
-			sql1 = sql1.substring(0, sql1.lastIndexOf(",")) +")";
-		}
-		if( sql2.lastIndexOf(",") != -1 )
-		{
-			sql2 = sql2.substring(0, sql2.lastIndexOf(",")) +")";
+			e.printStackTrace();
+			return null;
 		}
 		
-		oo[0] = sql1 + sql2;
-		oo[1] = valList.toArray();
-		
-		sql_buf_1 = null; 
-		sql_buf_2 = null; 
-		valList.clear(); 
-		valList = null;
-		p.clear();
-		p = null;
-		
-		return oo;
+		return new Object[]{ template.getSQL(), template.getParameters(bean) };
 	}
 	
 	/**
@@ -562,84 +438,9 @@ public final class PersistenceUtil
 			return null;
 		}
 		
-		// 采用新的解析方式，用于支持注解继承
-		Persistence p = parsePersistence( bean, true );
-		Map<String, String> mapping = getFieldAnnotationMapping(bean.getClass());
-		
-		if( null == p || null == p.getTableName() )
-		{
-			return null;
-		}
-		
-		Object[] oo = new Object[2];
-		
-		StringBuilder sql_buf_1 = new StringBuilder();
-		StringBuilder sql_buf_2 = new StringBuilder();
-		sql_buf_1.append( "UPDATE ");
-		sql_buf_1.append(p.getTableName());
-		sql_buf_1.append(" SET ");
-		sql_buf_2.append( " WHERE " );
-		
-		List<Object> valList = new LinkedList<Object>();
-		
-		List<ColumnField> col_fields = p.getColumnFields();
-		
-		// 普通列
-		for( ColumnField cf : col_fields )
-		{
-			/*if( cf.isPrimaryKey() )
-			{
-				continue;
-			}*/
-			
-			// 判断Bean的属性，而不是@Column对应的数据表列名
-			if( withinUpdateFields(mapping.get(cf.getName()), updateFields) )
-			{
-				sql_buf_1.append(cf.getName());
-				sql_buf_1.append(" = ?, ");
-				
-				valList.add( cf.getValue() );
-			}
-		}
-		
-		// 主键列
-		for( ColumnField pf : col_fields )
-		{
-			if( !pf.isPrimaryKey() )
-			{
-				continue;
-			}
-			
-			sql_buf_2.append(pf.getName());
-			sql_buf_2.append(" = ? AND ");
-			
-			valList.add( pf.getValue() );
-		}
-		
-		String sql1 = sql_buf_1.toString();
-		String sql2 = sql_buf_2.toString();
-		
-		if( sql1.lastIndexOf(",") != -1 )
-		{
-			sql1 = sql1.substring(0, sql1.lastIndexOf(","));
-		}
-		
-		if( sql2.lastIndexOf("AND") != -1 )
-		{
-			sql2 = sql2.substring(0, sql2.lastIndexOf("AND"));
-		}
-		
-		oo[0] = sql1 + sql2;
-		oo[1] = valList.toArray();
-		
-		sql_buf_1 = null; 
-		sql_buf_2 = null; 
-		valList.clear(); 
-		valList = null;
-		p.clear();
-		p = null;
+		EntityMetadata.SQLTemplate template = getEntityMetadata( bean.getClass() ).getUpdateTemplate( updateFields );
 		
-		return oo;
+		return new Object[]{ template.getSQL(), template.getParameters(bean) };
 	}
 	
 	/**
@@ -656,28 +457,23 @@ public final class PersistenceUtil
 	}
 	
 	/**
-	 * 判断一个字段名称是否在一个给定的待更新字段集合中
+	 * 根据已经持久化的注解对象创建按主键删除的 Delete SQL 语句
 	 * 
-	 * @param fname 待判断的字段名称
-	 * @param updateFields 给定的待更新字段集合
-	 * @return
+	 * @param bean 已经持久化的注解对象，必须定义了主键
+	 * 
+	 * @return object[0] -- 带占位符 ? 的Delete SQL;<br/>
+	 *         object[1] -- 占位符对应的参数值
 	 */
-	private static boolean withinUpdateFields( String fname, String[] updateFields )
+	public static Object[] createDeleteSQL( Object bean )
 	{
-		if(null == updateFields || updateFields.length == 0)
+		if( null == bean )
 		{
-			return true;
+			return null;
 		}
 		
-		for( String f : updateFields )
-		{
-			if( fname.equalsIgnoreCase(f) )
-			{
-				return true;
-			}
-		}
+		EntityMetadata.SQLTemplate template = getEntityMetadata( bean.getClass() ).getDeleteTemplate();
 		
-		return false;
+		return new Object[]{ template.getSQL(), template.getParameters(bean) };
 	}
 	
 }
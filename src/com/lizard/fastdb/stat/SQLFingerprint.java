@@ -0,0 +1,286 @@
+package com.lizard.fastdb.stat;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * SQL指纹：将SQL语句规范化，使只有常量不同的语句归为同一条统计
+ * <p>
+ * 规范化规则：
+ * <ul>
+ * <li>字符串和数字常量替换为 ?</li>
+ * <li>去掉注释，连续的空白合并为一个空格，引号外的内容转换为小写</li>
+ * <li>IN 列表 (?, ?, ...) 以及 VALUES 中重复的行合并为一个</li>
+ * </ul>
+ * 规范化结果按SQL缓存，超过 {@link #MAX_CACHED_SQLS} 条时按 CLOCK 算法淘汰最近未使用的。
+ */
+public final class SQLFingerprint
+{
+	/**
+	 * 最多缓存规范化结果的SQL数量
+	 */
+	public static final int								MAX_CACHED_SQLS	= 2048;
+
+	private static final ConcurrentMap<String, Entry>	FINGERPRINTS	= new ConcurrentHashMap<String, Entry>(256);
+
+	/**
+	 * 是否有线程正在淘汰缓存，同一时间只由一个线程淘汰
+	 */
+	private static final AtomicBoolean					EVICTING		= new AtomicBoolean();
+
+	/**
+	 * 重复的括号组，如 IN (?, ?, ?) 和 VALUES (?, ?), (?, ?)
+	 */
+	private static final Pattern						PLACEHOLDERS	= Pattern.compile("\\(\\?(?:, \\?)+\\)");
+	private static final Pattern						REPEATED_GROUPS	= Pattern.compile("(\\([^()]*\\))(?:, \\1)+");
+
+	private SQLFingerprint()
+	{
+	}
+
+	/**
+	 * 获得SQL语句的指纹
+	 *
+	 * @param sql SQL语句
+	 * @return 规范化后的SQL语句
+	 */
+	public static String of(String sql)
+	{
+		if (sql == null)
+		{
+			return "";
+		}
+
+		Entry entry = FINGERPRINTS.get(sql);
+		if (entry != null)
+		{
+			// 只在标记变化时写入，避免命中时的写竞争
+			if (!entry.used)
+			{
+				entry.used = true;
+			}
+			return entry.fingerprint;
+		}
+
+		String fingerprint = normalize(sql);
+		if (FINGERPRINTS.putIfAbsent(sql, new Entry(fingerprint)) == null && FINGERPRINTS.size() > MAX_CACHED_SQLS)
+		{
+			evict();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * 获得当前缓存的SQL数量
+	 *
+	 * @return 缓存数量
+	 */
+	public static int getCacheSize()
+	{
+		return FINGERPRINTS.size();
+	}
+
+	/**
+	 * 淘汰缓存至 MAX_CACHED_SQLS 的 3/4：按 CLOCK 算法，最近被使用过的清除使用标记后保留，未被使用过的淘汰
+	 */
+	private static void evict()
+	{
+		if (!EVICTING.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		try
+		{
+			int target = MAX_CACHED_SQLS * 3 / 4;
+			for (int pass = 0; pass < 2 && FINGERPRINTS.size() > target; pass++)
+			{
+				Iterator<Entry> it = FINGERPRINTS.values().iterator();
+				while (it.hasNext() && FINGERPRINTS.size() > target)
+				{
+					Entry entry = it.next();
+					if (entry.used)
+					{
+						entry.used = false;
+					}
+					else
+					{
+						it.remove();
+					}
+				}
+			}
+		}
+		finally
+		{
+			EVICTING.set(false);
+		}
+	}
+
+	/**
+	 * 缓存项，used 为 CLOCK 淘汰算法的使用标记
+	 */
+	private static final class Entry
+	{
+		private final String		fingerprint;
+		private volatile boolean	used;
+
+		Entry(String fingerprint)
+		{
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private static String normalize(String sql)
+	{
+		int len = sql.length();
+		StringBuilder sb = new StringBuilder(len);
+
+		int i = 0;
+		while (i < len)
+		{
+			char c = sql.charAt(i);
+
+			// 空白
+			if (Character.isWhitespace(c))
+			{
+				while (i < len && Character.isWhitespace(sql.charAt(i)))
+				{
+					i++;
+				}
+				appendSpace(sb);
+				continue;
+			}
+
+			// 单行注释
+			if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-')
+			{
+				while (i < len && sql.charAt(i) != '\n')
+				{
+					i++;
+				}
+				appendSpace(sb);
+				continue;
+			}
+
+			// 多行注释
+			if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*')
+			{
+				int end = sql.indexOf("*/", i + 2);
+				i = (end == -1) ? len : end + 2;
+				appendSpace(sb);
+				continue;
+			}
+
+			// 字符串常量，'' 为转义的单引号
+			if (c == '\'')
+			{
+				i++;
+				while (i < len)
+				{
+					if (sql.charAt(i) == '\'')
+					{
+						if (i + 1 < len && sql.charAt(i + 1) == '\'')
+						{
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					if (sql.charAt(i) == '\\')
+					{
+						i++;
+					}
+					i++;
+				}
+				i++;
+				sb.append('?');
+				continue;
+			}
+
+			// 引号中的标识符原样保留
+			if (c == '"' || c == '`')
+			{
+				int end = sql.indexOf(c, i + 1);
+				end = (end == -1) ? len : end + 1;
+				sb.append(sql, i, end);
+				i = end;
+				continue;
+			}
+
+			// 数字常量，不包括标识符中的数字
+			if (Character.isDigit(c) && !isIdentifierEnd(sb))
+			{
+				while (i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+				{
+					i++;
+				}
+				sb.append('?');
+				continue;
+			}
+
+			// 逗号和括号前后的空白统一，便于合并重复的参数
+			if (c == ',')
+			{
+				trimSpace(sb);
+				sb.append(", ");
+				i++;
+				while (i < len && Character.isWhitespace(sql.charAt(i)))
+				{
+					i++;
+				}
+				continue;
+			}
+			if (c == '(')
+			{
+				sb.append('(');
+				i++;
+				while (i < len && Character.isWhitespace(sql.charAt(i)))
+				{
+					i++;
+				}
+				continue;
+			}
+			if (c == ')')
+			{
+				trimSpace(sb);
+			}
+
+			sb.append(Character.toLowerCase(c));
+			i++;
+		}
+
+		trimSpace(sb);
+		String fingerprint = sb.toString();
+		fingerprint = PLACEHOLDERS.matcher(fingerprint).replaceAll("(?)");
+		return REPEATED_GROUPS.matcher(fingerprint).replaceAll("$1");
+	}
+
+	private static boolean isIdentifierEnd(StringBuilder sb)
+	{
+		if (sb.length() == 0)
+		{
+			return false;
+		}
+		char last = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+	}
+
+	private static void appendSpace(StringBuilder sb)
+	{
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ' && sb.charAt(sb.length() - 1) != '(')
+		{
+			sb.append(' ');
+		}
+	}
+
+	private static void trimSpace(StringBuilder sb)
+	{
+		while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ')
+		{
+			sb.setLength(sb.length() - 1);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.lizard.fastdb.stat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一条SQL指纹的执行统计：执行次数、耗时分布、返回或影响的行数和错误次数
+ *
+ * @see SQLStatistics
+ */
+public class SQLStat
+{
+	/**
+	 * 执行耗时分布的区间上限（毫秒），最后一个区间为超过 10000 毫秒
+	 */
+	public static final long[]		TIME_BUCKETS	= { 1, 10, 100, 1000, 10000 };
+
+	private final String			sql;
+
+	private final AtomicLong		executeCount	= new AtomicLong();
+	private final AtomicLong		errorCount		= new AtomicLong();
+	private final AtomicLong		slowCount		= new AtomicLong();
+	private final AtomicLong		totalTime		= new AtomicLong();	// 纳秒
+	private final AtomicLong		maxTime			= new AtomicLong();	// 纳秒
+	private final AtomicLong		rows			= new AtomicLong();
+	private final AtomicLongArray	histogram		= new AtomicLongArray(TIME_BUCKETS.length + 1);
+
+	private volatile String			lastError;
+
+	SQLStat(String sql)
+	{
+		this.sql = sql;
+	}
+
+	/**
+	 * 记录一次执行
+	 *
+	 * @param nanos 耗时（纳秒）
+	 * @param rowCount 返回或影响的行数，未知时为负数
+	 * @param error 执行出错时的异常，成功时为null
+	 * @param slow 是否超过了慢SQL阈值
+	 */
+	void record(long nanos, long rowCount, Throwable error, boolean slow)
+	{
+		executeCount.incrementAndGet();
+		totalTime.addAndGet(nanos);
+
+		long max;
+		while (nanos > (max = maxTime.get()) && !maxTime.compareAndSet(max, nanos))
+		{
+			// 重试
+		}
+
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int i = 0;
+		while (i < TIME_BUCKETS.length && millis > TIME_BUCKETS[i])
+		{
+			i++;
+		}
+		histogram.incrementAndGet(i);
+
+		if (rowCount > 0)
+		{
+			rows.addAndGet(rowCount);
+		}
+		if (error != null)
+		{
+			errorCount.incrementAndGet();
+			lastError = error.toString();
+		}
+		if (slow)
+		{
+			slowCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 获得规范化后的SQL语句，参见 {@link SQLFingerprint}
+	 */
+	public String getSql()
+	{
+		return sql;
+	}
+
+	/**
+	 * 获得执行次数
+	 */
+	public long getExecuteCount()
+	{
+		return executeCount.get();
+	}
+
+	/**
+	 * 获得执行出错的次数
+	 */
+	public long getErrorCount()
+	{
+		return errorCount.get();
+	}
+
+	/**
+	 * 获得超过慢SQL阈值的次数
+	 */
+	public long getSlowCount()
+	{
+		return slowCount.get();
+	}
+
+	/**
+	 * 获得总耗时（毫秒）
+	 */
+	public double getTotalTime()
+	{
+		return totalTime.get() / 1000000.0;
+	}
+
+	/**
+	 * 获得平均耗时（毫秒）
+	 */
+	public double getAvgTime()
+	{
+		long count = executeCount.get();
+		return count == 0 ? 0 : totalTime.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * 获得最大耗时（毫秒）
+	 */
+	public double getMaxTime()
+	{
+		return maxTime.get() / 1000000.0;
+	}
+
+	/**
+	 * 获得查询返回和更新影响的总行数
+	 */
+	public long getRows()
+	{
+		return rows.get();
+	}
+
+	/**
+	 * 获得耗时分布，第 i 个值为耗时不超过 {@link #TIME_BUCKETS}[i] 毫秒（且超过前一个区间）的次数，最后一个值为超过 10000 毫秒的次数
+	 */
+	public long[] getHistogram()
+	{
+		long[] values = new long[histogram.length()];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = histogram.get(i);
+		}
+		return values;
+	}
+
+	/**
+	 * 获得最近一次的错误信息
+	 */
+	public String getLastError()
+	{
+		return lastError;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("count=%d, errors=%d, slow=%d, total=%.1fms, avg=%.3fms, max=%.1fms, rows=%d | %s", getExecuteCount(),
+				getErrorCount(), getSlowCount(), getTotalTime(), getAvgTime(), getMaxTime(), getRows(), sql);
+	}
+}
@@ -0,0 +1,502 @@
+package com.lizard.fastdb.stat;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.lizard.fastdb.jdbc.JdbcUtil;
+
+/**
+ * 数据源的SQL执行统计，按SQL指纹（参见 {@link SQLFingerprint}）记录每条SQL的执行次数、耗时分布、行数和错误
+ * <p>
+ * 执行耗时超过 slow-sql-threshold 时，以 WARN 级别记录填充参数后的SQL语句，不需要开启 show-sql。每个数据源的统计同时注册为 JMX
+ * MBean，参见 {@link SQLStatisticsMBean}。
+ * <p>
+ * 每个数据源最多统计 {@link #MAX_STATEMENTS} 个SQL指纹，超出后的SQL统计到 {@link #OTHER_STATEMENTS} 中。
+ * 数据源配置 sql-statistics 为 false 时使用 {@link #DISABLED}，不统计也不记录慢SQL。
+ */
+public class SQLStatistics implements SQLStatisticsMBean, Serializable
+{
+	private static final long									serialVersionUID	= 1L;
+	private static final Log									logger				= LogFactory.getLog(SQLStatistics.class);
+
+	/**
+	 * 每个数据源最多统计的SQL指纹数量
+	 */
+	public static final int										MAX_STATEMENTS		= 1000;
+
+	/**
+	 * 超出数量限制的SQL的统计名称
+	 */
+	public static final String									OTHER_STATEMENTS	= "<other statements>";
+
+	private static final String									JMX_DOMAIN			= "com.lizard.fastdb";
+
+	/**
+	 * 批量执行多条不同的SQL语句时，统计名称中最多列出的SQL指纹数量
+	 */
+	private static final int									MAX_BATCH_SQLS		= 5;
+
+	/**
+	 * 数据源名称 与 SQL执行统计 映射
+	 */
+	private static final ConcurrentMap<String, SQLStatistics>	STATISTICS			= new ConcurrentHashMap<String, SQLStatistics>();
+
+	/**
+	 * 不统计的SQL执行统计，记录方法直接返回，不注册 JMX MBean
+	 */
+	public static final SQLStatistics							DISABLED			= new SQLStatistics("<disabled>", 0, false);
+
+	private final String										name;
+	private final boolean										enabled;
+	private volatile long										slowSqlThreshold;	// 毫秒，0 表示不记录慢SQL
+
+	private final transient ConcurrentMap<String, SQLStat>		stats				= new ConcurrentHashMap<String, SQLStat>();
+	private final transient AtomicLong							executeCount		= new AtomicLong();
+	private final transient AtomicLong							errorCount			= new AtomicLong();
+	private final transient AtomicLong							slowCount			= new AtomicLong();
+
+	private transient ObjectName								objectName;
+
+	private SQLStatistics(String name, long slowSqlThreshold, boolean enabled)
+	{
+		this.name = name;
+		this.slowSqlThreshold = slowSqlThreshold;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * 获得数据源的SQL执行统计，不存在时创建并注册 JMX MBean
+	 *
+	 * @param name 数据源名称
+	 * @param slowSqlThreshold 创建时使用的慢SQL阈值（毫秒），0 表示不记录慢SQL
+	 * @return SQL执行统计
+	 */
+	public static SQLStatistics get(String name, long slowSqlThreshold)
+	{
+		name = name.toLowerCase();
+		SQLStatistics statistics = STATISTICS.get(name);
+		if (statistics != null)
+		{
+			return statistics;
+		}
+
+		statistics = new SQLStatistics(name, Math.max(0, slowSqlThreshold), true);
+		SQLStatistics exists = STATISTICS.putIfAbsent(name, statistics);
+		if (exists != null)
+		{
+			return exists;
+		}
+
+		statistics.register();
+		return statistics;
+	}
+
+	/**
+	 * 反序列化时使用当前数据源的SQL执行统计
+	 */
+	private Object readResolve()
+	{
+		return enabled ? get(name, slowSqlThreshold) : DISABLED;
+	}
+
+	/**
+	 * 获得数据源的SQL执行统计
+	 *
+	 * @param name 数据源名称
+	 * @return SQL执行统计，数据源还没有执行过SQL时返回null
+	 */
+	public static SQLStatistics get(String name)
+	{
+		return name == null ? null : STATISTICS.get(name.toLowerCase());
+	}
+
+	/**
+	 * 移除数据源的SQL执行统计，并注销 JMX MBean
+	 *
+	 * @param name 数据源名称
+	 */
+	public static void remove(String name)
+	{
+		SQLStatistics statistics = STATISTICS.remove(name.toLowerCase());
+		if (statistics != null)
+		{
+			statistics.unregister();
+		}
+	}
+
+	/**
+	 * 移除全部SQL执行统计
+	 */
+	public static void removeAll()
+	{
+		for (String name : STATISTICS.keySet())
+		{
+			remove(name);
+		}
+	}
+
+	/**
+	 * 记录一次SQL执行，超过慢SQL阈值时记录填充参数后的SQL语句
+	 *
+	 * @param sql SQL语句
+	 * @param params SQL语句的参数
+	 * @param startNanos 开始执行的时间，System.nanoTime()
+	 * @param rows 返回或影响的行数，未知时为负数
+	 * @param error 执行出错时的异常，成功时为null
+	 */
+	public void record(String sql, Object[] params, long startNanos, long rows, Throwable error)
+	{
+		if (!enabled)
+		{
+			return;
+		}
+
+		long nanos = System.nanoTime() - startNanos;
+		boolean slow = isSlow(nanos);
+		record(SQLFingerprint.of(sql), nanos, rows, error, slow);
+
+		if (slow)
+		{
+			logger.warn("Slow SQL [" + name + "] " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms: " + fillSQL(sql, params));
+		}
+	}
+
+	/**
+	 * 记录一次批量执行，超过慢SQL阈值时记录SQL语句和批量的行数
+	 *
+	 * @param sql SQL语句
+	 * @param batchCount 批量执行的参数组数
+	 * @param startNanos 开始执行的时间，System.nanoTime()
+	 * @param rows 影响的总行数，未知时为负数
+	 * @param error 执行出错时的异常，成功时为null
+	 */
+	public void recordBatch(String sql, int batchCount, long startNanos, long rows, Throwable error)
+	{
+		if (enabled)
+		{
+			recordBatch(SQLFingerprint.of(sql), sql, batchCount, startNanos, rows, error);
+		}
+	}
+
+	/**
+	 * 记录一次多条SQL语句的批量执行，不同的SQL指纹以 ; 分隔作为统计名称，最多列出 {@link #MAX_BATCH_SQLS} 条
+	 *
+	 * @param sqls SQL语句数组
+	 * @param startNanos 开始执行的时间，System.nanoTime()
+	 * @param rows 影响的总行数，未知时为负数
+	 * @param error 执行出错时的异常，成功时为null
+	 */
+	public void recordBatch(String[] sqls, long startNanos, long rows, Throwable error)
+	{
+		if (!enabled)
+		{
+			return;
+		}
+
+		Set<String> fingerprints = new LinkedHashSet<String>();
+		for (String sql : sqls)
+		{
+			if (sql != null && sql.trim().length() > 0)
+			{
+				fingerprints.add(SQLFingerprint.of(sql));
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
+		for (String fingerprint : fingerprints)
+		{
+			if (count > 0)
+			{
+				sb.append("; ");
+			}
+			if (++count > MAX_BATCH_SQLS)
+			{
+				sb.append("...");
+				break;
+			}
+			sb.append(fingerprint);
+		}
+
+		String joined = sb.toString();
+		recordBatch(joined, joined, sqls.length, startNanos, rows, error);
+	}
+
+	private void recordBatch(String fingerprint, String sql, int batchCount, long startNanos, long rows, Throwable error)
+	{
+		long nanos = System.nanoTime() - startNanos;
+		boolean slow = isSlow(nanos);
+		record(fingerprint, nanos, rows, error, slow);
+
+		if (slow)
+		{
+			logger.warn("Slow SQL [" + name + "] " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms, batch of " + batchCount + ": " + sql);
+		}
+	}
+
+	private boolean isSlow(long nanos)
+	{
+		long threshold = slowSqlThreshold;
+		return threshold > 0 && nanos > TimeUnit.MILLISECONDS.toNanos(threshold);
+	}
+
+	private void record(String fingerprint, long nanos, long rows, Throwable error, boolean slow)
+	{
+		executeCount.incrementAndGet();
+		if (error != null)
+		{
+			errorCount.incrementAndGet();
+		}
+		if (slow)
+		{
+			slowCount.incrementAndGet();
+		}
+
+		SQLStat stat = stats.get(fingerprint);
+		if (stat == null)
+		{
+			if (stats.size() >= MAX_STATEMENTS)
+			{
+				fingerprint = OTHER_STATEMENTS;
+			}
+			stat = new SQLStat(fingerprint);
+			SQLStat exists = stats.putIfAbsent(fingerprint, stat);
+			if (exists != null)
+			{
+				stat = exists;
+			}
+		}
+		stat.record(nanos, rows, error, slow);
+	}
+
+	/**
+	 * 填充SQL语句的参数，参数个数与占位符不一致时附加参数列表
+	 */
+	private static String fillSQL(String sql, Object[] params)
+	{
+		try
+		{
+			return JdbcUtil.fillSQL(sql, params);
+		}
+		catch (RuntimeException e)
+		{
+			return sql + " : " + Arrays.deepToString(params);
+		}
+	}
+
+	/**
+	 * 获得全部SQL统计
+	 *
+	 * @return SQL统计列表
+	 */
+	public List<SQLStat> getStatements()
+	{
+		return new ArrayList<SQLStat>(stats.values());
+	}
+
+	/**
+	 * 获得排名前 n 的SQL统计
+	 *
+	 * @param n 数量
+	 * @param orderBy 排序依据：totalTime, avgTime, maxTime, count, errors, slow, rows，默认为 totalTime
+	 * @return SQL统计列表，按排序依据降序
+	 */
+	public List<SQLStat> getTop(int n, String orderBy)
+	{
+		List<SQLStat> list = getStatements();
+		Collections.sort(list, comparator(orderBy));
+		return list.size() > n ? new ArrayList<SQLStat>(list.subList(0, Math.max(0, n))) : list;
+	}
+
+	private static Comparator<SQLStat> comparator(final String orderBy)
+	{
+		return new Comparator<SQLStat>()
+		{
+			public int compare(SQLStat a, SQLStat b)
+			{
+				return Double.compare(value(b), value(a));
+			}
+
+			private double value(SQLStat stat)
+			{
+				if ("avgTime".equalsIgnoreCase(orderBy))
+				{
+					return stat.getAvgTime();
+				}
+				if ("maxTime".equalsIgnoreCase(orderBy))
+				{
+					return stat.getMaxTime();
+				}
+				if ("count".equalsIgnoreCase(orderBy))
+				{
+					return stat.getExecuteCount();
+				}
+				if ("errors".equalsIgnoreCase(orderBy))
+				{
+					return stat.getErrorCount();
+				}
+				if ("slow".equalsIgnoreCase(orderBy))
+				{
+					return stat.getSlowCount();
+				}
+				if ("rows".equalsIgnoreCase(orderBy))
+				{
+					return stat.getRows();
+				}
+				return stat.getTotalTime();
+			}
+		};
+	}
+
+	private void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":type=SQLStatistics,name=" + (name.matches("[\\w.\\-]+") ? name : ObjectName.quote(name)));
+			if (!server.isRegistered(on))
+			{
+				server.registerMBean(this, on);
+				this.objectName = on;
+			}
+		}
+		catch (Exception e)
+		{
+			logger.warn("Failed to register the SQL statistics MBean of [" + name + "].", e);
+		}
+	}
+
+	private void unregister()
+	{
+		if (objectName == null)
+		{
+			return;
+		}
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (Exception e)
+		{
+			logger.warn("Failed to unregister the SQL statistics MBean of [" + name + "].", e);
+		}
+		objectName = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getDataSourceName()
+	 */
+	public String getDataSourceName()
+	{
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getSlowSqlThreshold()
+	 */
+	public long getSlowSqlThreshold()
+	{
+		return slowSqlThreshold;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#setSlowSqlThreshold(long)
+	 */
+	public void setSlowSqlThreshold(long slowSqlThreshold)
+	{
+		this.slowSqlThreshold = Math.max(0, slowSqlThreshold);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getStatementCount()
+	 */
+	public int getStatementCount()
+	{
+		return stats.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getExecuteCount()
+	 */
+	public long getExecuteCount()
+	{
+		return executeCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getErrorCount()
+	 */
+	public long getErrorCount()
+	{
+		return errorCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getSlowCount()
+	 */
+	public long getSlowCount()
+	{
+		return slowCount.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#getTopStatements(int, java.lang.String)
+	 */
+	public String[] getTopStatements(int n, String orderBy)
+	{
+		List<SQLStat> top = getTop(n, orderBy);
+		String[] result = new String[top.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = top.get(i).toString();
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.lizard.fastdb.stat.SQLStatisticsMBean#reset()
+	 */
+	public void reset()
+	{
+		stats.clear();
+		executeCount.set(0);
+		errorCount.set(0);
+		slowCount.set(0);
+	}
+}
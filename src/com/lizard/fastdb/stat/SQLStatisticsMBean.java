@@ -0,0 +1,41 @@
+package com.lizard.fastdb.stat;
+
+/**
+ * 数据源SQL执行统计的 JMX 接口，每个数据源注册一个，ObjectName 为 com.lizard.fastdb:type=SQLStatistics,name=数据源名称
+ */
+public interface SQLStatisticsMBean
+{
+	public String getDataSourceName();
+
+	/**
+	 * 慢SQL阈值（毫秒），0 表示不记录慢SQL
+	 */
+	public long getSlowSqlThreshold();
+
+	public void setSlowSqlThreshold(long slowSqlThreshold);
+
+	/**
+	 * 统计的SQL指纹数量
+	 */
+	public int getStatementCount();
+
+	public long getExecuteCount();
+
+	public long getErrorCount();
+
+	public long getSlowCount();
+
+	/**
+	 * 获得排名前 n 的SQL统计
+	 *
+	 * @param n 数量
+	 * @param orderBy 排序依据：totalTime, avgTime, maxTime, count, errors, slow, rows
+	 * @return 每条SQL的统计信息
+	 */
+	public String[] getTopStatements(int n, String orderBy);
+
+	/**
+	 * 清空统计
+	 */
+	public void reset();
+}
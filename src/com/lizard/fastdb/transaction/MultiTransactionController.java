@@ -13,6 +13,8 @@ import org.objectweb.jotm.Jotm;
 import org.objectweb.jotm.TimerManager;
 import org.objectweb.transaction.jta.TMService;
 
+import com.lizard.fastdb.cache.CacheFactory;
+import com.lizard.fastdb.connection.XAConnectionPool;
 import com.lizard.fastdb.util.StringUtils;
 
 /**
@@ -107,9 +109,13 @@ public class MultiTransactionController
 			{
 				transMgr.commit();
 				logger.info("多数据源事务管理器提交数据...");
+				
+				// 数据已提交，删除事务中被修改的表的查询缓存
+				CacheFactory.commitInvalidation();
 			}
 			
 		} catch (Exception e) {
+			CacheFactory.discardInvalidation();
 			try {
 				transMgr.rollback();
 				logger.error("提交事务失败！");
@@ -149,6 +155,7 @@ public class MultiTransactionController
 		LOCAL_TRANS.set( null );
 		LOCAL_CONNECTIONPOOL.set(null);
 		Transaction.setTransMode(null);
+		CacheFactory.discardInvalidation();
 		
 		try
 		{
@@ -172,10 +179,8 @@ public class MultiTransactionController
 			for( Map.Entry<String,Connection> e : connPool.entrySet() )
 			{
 				Connection conn = e.getValue(); //connPool.get(ds_name);
-				if(conn != null && !conn.isClosed())
-				{
-					conn.close();
-				}
+				// 关闭连接句柄，物理XA连接归还连接池
+				XAConnectionPool.release(conn);
 				conn = null;
 			}
 			
@@ -6,6 +6,7 @@ import java.sql.SQLException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.lizard.fastdb.cache.CacheFactory;
 import com.lizard.fastdb.util.StringUtils;
 
 
@@ -92,9 +93,13 @@ public class TransactionController
 					conn.commit();
 					logger.info("单数据源事务管理器提交数据，数据源【"+LOCAL_DSNAME.get()+"】...");
 				}
+				
+				// 数据已提交，删除事务中被修改的表的查询缓存
+				CacheFactory.commitInvalidation();
 			}
 			
 		} catch (Exception e) {
+			CacheFactory.discardInvalidation();
 			try {
 				// 提交数据失败，回滚数据
 				conn.rollback(); 
@@ -140,6 +145,7 @@ public class TransactionController
 		LOCAL_CONNECTION.set(null);
 		LOCAL_DSNAME.set(null);
 		Transaction.setTransMode(null);
+		CacheFactory.discardInvalidation();
 		
 		try
 		{
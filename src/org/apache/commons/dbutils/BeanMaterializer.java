@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbutils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Specialized row-to-bean reader for one (bean class, column layout) pair.
+ * The constructor and every setter are resolved once into
+ * <code>MethodHandle</code>s, and each column is read with the typed
+ * <code>ResultSet</code> getter matching the property type, so a row costs
+ * one getter call and one direct setter call per column.
+ * </p>
+ *
+ * <p>
+ * The produced beans are the same as the ones built by
+ * <code>BeanProcessor.createBean</code>: primitives get their defaults and
+ * Strings get "" for SQL NULL, and java.sql date types are converted.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+final class BeanMaterializer {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType OBJECT_SETTER = MethodType.methodType(
+        void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+
+    private final MethodHandle constructor;
+
+    private final ColumnWriter[] writers;
+
+    private BeanMaterializer(Class<?> type, MethodHandle constructor,
+            ColumnWriter[] writers) {
+        this.type = type;
+        this.constructor = constructor;
+        this.writers = writers;
+    }
+
+    /**
+     * Builds the materializer of the given bean class and column mapping.
+     *
+     * @param type The bean class.
+     * @param props The bean property descriptors.
+     * @param columnToProperty Column index to property index mappings.
+     * @return the materializer, or <code>null</code> when the bean can not be
+     * handled with method handles (the caller should use reflection then).
+     */
+    static BeanMaterializer create(Class<?> type, PropertyDescriptor[] props,
+            int[] columnToProperty) {
+        try {
+            Constructor<?> ctor = type.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            MethodHandle constructor = LOOKUP.unreflectConstructor(ctor)
+                .asType(MethodType.methodType(Object.class));
+
+            List<ColumnWriter> writers = new ArrayList<ColumnWriter>();
+            for (int i = 1; i < columnToProperty.length; i++) {
+                if (columnToProperty[i] == BeanProcessor.PROPERTY_NOT_FOUND) {
+                    continue;
+                }
+
+                PropertyDescriptor prop = props[columnToProperty[i]];
+                Method setter = prop.getWriteMethod();
+                if (setter == null) {
+                    continue;
+                }
+                setter.setAccessible(true);
+                writers.add(createWriter(i, prop.getName(),
+                    setter.getParameterTypes()[0], LOOKUP.unreflect(setter)));
+            }
+
+            return new BeanMaterializer(type, constructor,
+                writers.toArray(new ColumnWriter[writers.size()]));
+
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a bean and fills it from the current row of the
+     * <code>ResultSet</code>.
+     *
+     * @param rs The result set, positioned on a valid row.
+     * @return An initialized bean.
+     * @throws SQLException if a database error occurs or a property can not
+     * be set.
+     */
+    Object createBean(ResultSet rs) throws SQLException {
+        Object bean;
+        try {
+            bean = (Object) this.constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SQLException(
+                "Cannot create " + this.type.getName() + ": " + e.getMessage());
+        }
+
+        for (ColumnWriter writer : this.writers) {
+            try {
+                writer.write(rs, bean);
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException(
+                    "Cannot set " + writer.name + ": " + e.getMessage());
+            }
+        }
+
+        return bean;
+    }
+
+    private static ColumnWriter createWriter(int index, String name,
+            Class<?> propType, MethodHandle setter) {
+
+        if (propType.equals(String.class)) {
+            return new StringWriter(index, name, objectSetter(setter));
+
+        } else if (propType.equals(Integer.TYPE)) {
+            return new IntWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, int.class)));
+
+        } else if (propType.equals(Long.TYPE)) {
+            return new LongWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, long.class)));
+
+        } else if (propType.equals(Double.TYPE)) {
+            return new DoubleWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, double.class)));
+
+        } else if (propType.equals(Float.TYPE)) {
+            return new FloatWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, float.class)));
+
+        } else if (propType.equals(Boolean.TYPE)) {
+            return new BooleanWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, boolean.class)));
+
+        } else if (propType.equals(Short.TYPE)) {
+            return new ShortWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, short.class)));
+
+        } else if (propType.equals(Byte.TYPE)) {
+            return new ByteWriter(index, name, setter.asType(
+                MethodType.methodType(void.class, Object.class, byte.class)));
+
+        } else if (propType.equals(Integer.class)
+                || propType.equals(Long.class)
+                || propType.equals(Double.class)
+                || propType.equals(Float.class)
+                || propType.equals(Boolean.class)
+                || propType.equals(Short.class)
+                || propType.equals(Byte.class)
+                || propType.equals(Timestamp.class)) {
+            return new WrapperWriter(index, name, propType, objectSetter(setter));
+
+        } else {
+            return new ObjectWriter(index, name, propType, objectSetter(setter));
+        }
+    }
+
+    private static MethodHandle objectSetter(MethodHandle setter) {
+        return setter.asType(OBJECT_SETTER);
+    }
+
+    /**
+     * Reads one column with a typed getter and passes it to one setter.
+     */
+    private abstract static class ColumnWriter {
+        final int index;
+        final String name;
+        final MethodHandle setter;
+
+        ColumnWriter(int index, String name, MethodHandle setter) {
+            this.index = index;
+            this.name = name;
+            this.setter = setter;
+        }
+
+        abstract void write(ResultSet rs, Object bean) throws Throwable;
+    }
+
+    private static final class StringWriter extends ColumnWriter {
+        StringWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            String value = rs.getString(this.index);
+            this.setter.invokeExact(bean, (Object) (value == null ? "" : value));
+        }
+    }
+
+    private static final class IntWriter extends ColumnWriter {
+        IntWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getInt(this.index));
+        }
+    }
+
+    private static final class LongWriter extends ColumnWriter {
+        LongWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getLong(this.index));
+        }
+    }
+
+    private static final class DoubleWriter extends ColumnWriter {
+        DoubleWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getDouble(this.index));
+        }
+    }
+
+    private static final class FloatWriter extends ColumnWriter {
+        FloatWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getFloat(this.index));
+        }
+    }
+
+    private static final class BooleanWriter extends ColumnWriter {
+        BooleanWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getBoolean(this.index));
+        }
+    }
+
+    private static final class ShortWriter extends ColumnWriter {
+        ShortWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getShort(this.index));
+        }
+    }
+
+    private static final class ByteWriter extends ColumnWriter {
+        ByteWriter(int index, String name, MethodHandle setter) {
+            super(index, name, setter);
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            this.setter.invokeExact(bean, rs.getByte(this.index));
+        }
+    }
+
+    /**
+     * Wrapper and Timestamp properties: typed getter, then
+     * <code>wasNull()</code> instead of a second <code>getObject</code>.
+     */
+    private static final class WrapperWriter extends ColumnWriter {
+        private final Class<?> propType;
+
+        WrapperWriter(int index, String name, Class<?> propType,
+                MethodHandle setter) {
+            super(index, name, setter);
+            this.propType = propType;
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            Object value;
+            if (this.propType == Integer.class) {
+                value = rs.getInt(this.index);
+            } else if (this.propType == Long.class) {
+                value = rs.getLong(this.index);
+            } else if (this.propType == Double.class) {
+                value = rs.getDouble(this.index);
+            } else if (this.propType == Float.class) {
+                value = rs.getFloat(this.index);
+            } else if (this.propType == Boolean.class) {
+                value = rs.getBoolean(this.index);
+            } else if (this.propType == Short.class) {
+                value = rs.getShort(this.index);
+            } else if (this.propType == Byte.class) {
+                value = rs.getByte(this.index);
+            } else {
+                value = rs.getTimestamp(this.index);
+            }
+
+            if (rs.wasNull()) {
+                value = null;
+            }
+            this.setter.invokeExact(bean, value);
+        }
+    }
+
+    /**
+     * Any other property type: <code>getObject</code> with the same
+     * conversions and type check as <code>BeanProcessor.callSetter</code>.
+     */
+    private static final class ObjectWriter extends ColumnWriter {
+        private final Class<?> propType;
+
+        ObjectWriter(int index, String name, Class<?> propType,
+                MethodHandle setter) {
+            super(index, name, setter);
+            this.propType = propType;
+        }
+
+        void write(ResultSet rs, Object bean) throws Throwable {
+            Object value = rs.getObject(this.index);
+
+            if (value == null) {
+                if (this.propType.isPrimitive()) {
+                    value = Character.valueOf('\u0000');
+                }
+            } else if (value instanceof java.util.Date) {
+                long time = ((java.util.Date) value).getTime();
+                if (this.propType == java.sql.Date.class) {
+                    value = new java.sql.Date(time);
+                } else if (this.propType == java.sql.Time.class) {
+                    value = new java.sql.Time(time);
+                } else if (this.propType == java.sql.Timestamp.class) {
+                    value = new java.sql.Timestamp(time);
+                }
+            }
+
+            if (value != null && !this.propType.isInstance(value)
+                    && !(this.propType == Character.TYPE && value instanceof Character)) {
+                throw new SQLException(
+                    "Cannot set " + this.name + ": incompatible types.");
+            }
+            this.setter.invokeExact(bean, value);
+        }
+    }
+
+}
@@ -29,8 +29,12 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.lizard.fastdb.persistence.PersistenceUtil;
 
@@ -77,11 +81,51 @@ public class BeanProcessor {
         primitiveDefaults.put(Character.TYPE, '\u0000');
     }
 
+    /**
+     * Upper bound of cached column mappings, protects against SQL that builds
+     * an unbounded number of distinct column lists.  When there are more, the
+     * mappings not used recently are evicted (CLOCK).
+     */
+    private static final int MAX_CACHED_MAPPINGS = 2048;
+
+    /**
+     * PropertyDescriptors per bean class, <code>Introspector</code> clones the
+     * array on every call so we keep our own copy.
+     */
+    private final ConcurrentMap<Class<?>, PropertyDescriptor[]> propertyCache =
+        new ConcurrentHashMap<Class<?>, PropertyDescriptor[]>();
+
+    /**
+     * Column to property mappings per (bean class, column labels) signature.
+     */
+    private final ConcurrentMap<ColumnSignature, ColumnMapping> mappingCache =
+        new ConcurrentHashMap<ColumnSignature, ColumnMapping>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Whether beans are built by generated <code>BeanMaterializer</code>s
+     * instead of reflection.
+     */
+    private final boolean materialize;
+
     /**
      * Constructor for BeanProcessor.
      */
     public BeanProcessor() {
+        this(false);
+    }
+
+    /**
+     * Constructor for BeanProcessor.
+     *
+     * @param materialize <code>true</code> to build beans with a
+     * <code>MethodHandle</code> based materializer generated once per bean
+     * class and column layout, <code>false</code> to use reflection.
+     */
+    public BeanProcessor(boolean materialize) {
         super();
+        this.materialize = materialize;
     }
 
     /**
@@ -122,11 +166,45 @@ public class BeanProcessor {
         PropertyDescriptor[] props = this.propertyDescriptors(type);
 
         ResultSetMetaData rsmd = rs.getMetaData();
-        // SHEN.GANG modify: add 'type' param to mapColumnsToProperties
-        //int[] columnToProperty = this.mapColumnsToProperties(rsmd, props);
-        int[] columnToProperty = this.mapColumnsToProperties(rsmd, props, type);
+        ColumnMapping mapping = this.columnMapping(rsmd, props, type);
 
-        return this.createBean(rs, type, props, columnToProperty);
+        BeanMaterializer materializer = this.materializer(mapping, props, type);
+        if (materializer != null) {
+            return type.cast(materializer.createBean(rs));
+        }
+        return this.createBean(rs, type, props, mapping.columnToProperty);
+    }
+
+    /**
+     * Creates a converter for the rows of one <code>ResultSet</code>.  The
+     * column to property mapping (and the materializer, if enabled) is
+     * resolved once from the current metadata, so each row only reads its
+     * column values.  Use it for row-at-a-time processing where
+     * <code>toBeanList</code> does not fit; the converter must not be used
+     * with another <code>ResultSet</code>.
+     *
+     * @param <T> The type of bean to create
+     * @param rs ResultSet that supplies the bean data
+     * @param type Class from which to create the bean instances
+     * @throws SQLException if a database access error occurs
+     * @return the converter bound to the columns of <code>rs</code>
+     */
+    public <T> RowConverter<T> rowConverter(ResultSet rs, final Class<T> type)
+            throws SQLException {
+
+        final PropertyDescriptor[] props = this.propertyDescriptors(type);
+        ColumnMapping mapping = this.columnMapping(rs.getMetaData(), props, type);
+
+        final BeanMaterializer materializer = this.materializer(mapping, props, type);
+        final int[] columnToProperty = mapping.columnToProperty;
+        return new RowConverter<T>() {
+            public T toBean(ResultSet row) throws SQLException {
+                if (materializer != null) {
+                    return type.cast(materializer.createBean(row));
+                }
+                return BeanProcessor.this.createBean(row, type, props, columnToProperty);
+            }
+        };
     }
 
     /**
@@ -171,11 +249,17 @@ public class BeanProcessor {
 
         PropertyDescriptor[] props = this.propertyDescriptors(type);
         ResultSetMetaData rsmd = rs.getMetaData();
-        
-        // SHEN.GANG modify: add 'type' param to mapColumnsToProperties
-        //int[] columnToProperty = this.mapColumnsToProperties(rsmd, props);
-        int[] columnToProperty = this.mapColumnsToProperties(rsmd, props, type);
-        
+        ColumnMapping mapping = this.columnMapping(rsmd, props, type);
+
+        BeanMaterializer materializer = this.materializer(mapping, props, type);
+        if (materializer != null) {
+            do {
+                results.add(type.cast(materializer.createBean(rs)));
+            } while (rs.next());
+            return results;
+        }
+
+        int[] columnToProperty = mapping.columnToProperty;
         do {
             results.add(this.createBean(rs, type, props, columnToProperty));
         } while (rs.next());
@@ -369,7 +453,11 @@ public class BeanProcessor {
      */
     private PropertyDescriptor[] propertyDescriptors(Class<?> c)
         throws SQLException {
-        // Introspector caches BeanInfo classes for better performance
+        PropertyDescriptor[] props = this.propertyCache.get(c);
+        if (props != null) {
+            return props;
+        }
+
         BeanInfo beanInfo = null;
         try {
             beanInfo = Introspector.getBeanInfo(c);
@@ -379,7 +467,94 @@ public class BeanProcessor {
                 "Bean introspection failed: " + e.getMessage());
         }
 
-        return beanInfo.getPropertyDescriptors();
+        props = beanInfo.getPropertyDescriptors();
+        this.propertyCache.putIfAbsent(c, props);
+        return props;
+    }
+
+    /**
+     * Returns the column to property mapping for the given bean class and
+     * <code>ResultSet</code> columns, resolving it with
+     * <code>mapColumnsToProperties</code> only the first time a (class, column
+     * labels) signature is seen.
+     *
+     * @param rsmd The <code>ResultSetMetaData</code> containing column
+     * information.
+     * @param props The bean property descriptors.
+     * @param beanType The bean class.
+     * @throws SQLException if a database access error occurs
+     * @return the column mapping, its array must not be modified.
+     */
+    private ColumnMapping columnMapping(ResultSetMetaData rsmd,
+            PropertyDescriptor[] props, Class<?> beanType) throws SQLException {
+
+        int cols = rsmd.getColumnCount();
+        String[] labels = new String[cols];
+        for (int col = 1; col <= cols; col++) {
+            labels[col - 1] = rsmd.getColumnLabel(col);
+        }
+
+        ColumnSignature key = new ColumnSignature(beanType, labels);
+        ColumnMapping mapping = this.mappingCache.get(key);
+        if (mapping == null) {
+            mapping = new ColumnMapping(
+                this.mapColumnsToProperties(rsmd, props, beanType));
+            ColumnMapping cached = this.mappingCache.putIfAbsent(key, mapping);
+            if (cached != null) {
+                mapping = cached;
+            } else if (this.mappingCache.size() > MAX_CACHED_MAPPINGS) {
+                this.evict();
+            }
+        } else if (!mapping.used) {
+            mapping.used = true;
+        }
+        return mapping;
+    }
+
+    /**
+     * Evicts column mappings down to 3/4 of {@link #MAX_CACHED_MAPPINGS}: the
+     * ones used since the last pass lose their mark and are kept, the others
+     * are removed.
+     */
+    private void evict() {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            int target = MAX_CACHED_MAPPINGS * 3 / 4;
+            for (int pass = 0; pass < 2 && this.mappingCache.size() > target; pass++) {
+                Iterator<ColumnMapping> it = this.mappingCache.values().iterator();
+                while (it.hasNext() && this.mappingCache.size() > target) {
+                    ColumnMapping mapping = it.next();
+                    if (mapping.used) {
+                        mapping.used = false;
+                    } else {
+                        it.remove();
+                    }
+                }
+            }
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    /**
+     * Returns the materializer of a column mapping, generating it on first
+     * use.  Returns <code>null</code> when materializers are disabled or the
+     * bean can not be materialized, reflection is used then.
+     */
+    private BeanMaterializer materializer(ColumnMapping mapping,
+            PropertyDescriptor[] props, Class<?> type) {
+        if (!this.materialize) {
+            return null;
+        }
+        if (!mapping.resolved) {
+            mapping.materializer = BeanMaterializer.create(
+                type, props, mapping.columnToProperty);
+            mapping.resolved = true;
+        }
+        return mapping.materializer;
     }
 
     /**
@@ -505,4 +680,72 @@ public class BeanProcessor {
 
     }
 
+    /**
+     * Converts the current row of a <code>ResultSet</code> into a bean with a
+     * column mapping resolved in advance.
+     *
+     * @param <T> The type of bean to create
+     * @see BeanProcessor#rowConverter(ResultSet, Class)
+     */
+    public interface RowConverter<T> {
+
+        /**
+         * Creates a bean from the current row.
+         * @param rs the <code>ResultSet</code> the converter was created for
+         * @throws SQLException if a database access error occurs
+         * @return the newly created bean
+         */
+        T toBean(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Resolved column to property mapping and its lazily generated
+     * materializer.  Concurrent first uses may both generate a materializer,
+     * which is harmless.  <code>used</code> is the CLOCK eviction mark.
+     */
+    private static final class ColumnMapping {
+        final int[] columnToProperty;
+        volatile BeanMaterializer materializer;
+        volatile boolean resolved;
+        volatile boolean used;
+
+        ColumnMapping(int[] columnToProperty) {
+            this.columnToProperty = columnToProperty;
+        }
+    }
+
+    /**
+     * Cache key of a column mapping: the bean class plus the column labels of
+     * the <code>ResultSet</code> in order.
+     */
+    private static final class ColumnSignature {
+        private final Class<?> type;
+        private final String[] labels;
+        private final int hash;
+
+        ColumnSignature(Class<?> type, String[] labels) {
+            this.type = type;
+            this.labels = labels;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ColumnSignature)) {
+                return false;
+            }
+            ColumnSignature other = (ColumnSignature) obj;
+            return this.hash == other.hash && this.type == other.type
+                && Arrays.equals(this.labels, other.labels);
+        }
+    }
+
 }
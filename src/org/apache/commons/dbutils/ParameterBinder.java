@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbutils;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Binds one non-null parameter value with the typed
+ * <code>PreparedStatement</code> setter of its class, so the driver does not
+ * have to dispatch on the value type inside <code>setObject</code>.
+ * </p>
+ *
+ * <p>
+ * Only classes whose <code>setObject</code> mapping is fixed by the JDBC
+ * specification get a typed binder; any other value (including
+ * <code>java.util.Date</code>, whose handling differs between drivers) is
+ * still bound with <code>setObject</code>.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public abstract class ParameterBinder {
+
+    /**
+     * Binder used for classes without a typed setter.
+     */
+    public static final ParameterBinder OBJECT = new ParameterBinder() {
+        public void bind(PreparedStatement stmt, int index, Object value)
+                throws SQLException {
+            stmt.setObject(index, value);
+        }
+    };
+
+    /**
+     * Typed binders by exact value class.
+     */
+    private static final Map<Class<?>, ParameterBinder> BINDERS;
+
+    static {
+        Map<Class<?>, ParameterBinder> binders =
+            new HashMap<Class<?>, ParameterBinder>();
+
+        binders.put(String.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setString(index, (String) value);
+            }
+        });
+        binders.put(Integer.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setInt(index, ((Integer) value).intValue());
+            }
+        });
+        binders.put(Long.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setLong(index, ((Long) value).longValue());
+            }
+        });
+        binders.put(Short.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setShort(index, ((Short) value).shortValue());
+            }
+        });
+        binders.put(Byte.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setByte(index, ((Byte) value).byteValue());
+            }
+        });
+        binders.put(Double.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setDouble(index, ((Double) value).doubleValue());
+            }
+        });
+        binders.put(Float.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setFloat(index, ((Float) value).floatValue());
+            }
+        });
+        binders.put(Boolean.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setBoolean(index, ((Boolean) value).booleanValue());
+            }
+        });
+        binders.put(BigDecimal.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setBigDecimal(index, (BigDecimal) value);
+            }
+        });
+        binders.put(Timestamp.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setTimestamp(index, (Timestamp) value);
+            }
+        });
+        binders.put(java.sql.Date.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setDate(index, (java.sql.Date) value);
+            }
+        });
+        binders.put(Time.class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setTime(index, (Time) value);
+            }
+        });
+        binders.put(byte[].class, new ParameterBinder() {
+            public void bind(PreparedStatement stmt, int index, Object value)
+                    throws SQLException {
+                stmt.setBytes(index, (byte[]) value);
+            }
+        });
+
+        BINDERS = Collections.unmodifiableMap(binders);
+    }
+
+    /**
+     * Returns the binder of the given value class.
+     *
+     * @param type The class of a non-null parameter value.
+     * @return the typed binder, or {@link #OBJECT} when the class has none.
+     */
+    public static ParameterBinder forClass(Class<?> type) {
+        ParameterBinder binder = BINDERS.get(type);
+        return binder == null ? OBJECT : binder;
+    }
+
+    /**
+     * Sets one parameter of the statement.
+     *
+     * @param stmt The statement to fill.
+     * @param index The parameter index, starting at 1.
+     * @param value The non-null parameter value.
+     * @throws SQLException if a database access error occurs
+     */
+    public abstract void bind(PreparedStatement stmt, int index, Object value)
+        throws SQLException;
+
+}
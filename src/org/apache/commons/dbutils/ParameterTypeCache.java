@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.dbutils;
+
+import java.math.BigDecimal;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Remembers the SQL types of the parameters of each SQL statement, used to
+ * bind <code>null</code> values with <code>setNull</code>.
+ * </p>
+ *
+ * <p>
+ * The types are read from <code>ParameterMetaData</code> the first time a
+ * statement binds a <code>null</code>, and never again for the same SQL.
+ * When the driver can not describe the parameters of a statement (Oracle,
+ * MySQL without server side prepared statements) the metadata is not asked
+ * again for that SQL, and each <code>null</code> is bound with the type of
+ * the non-null values bound earlier at the same position, or
+ * <code>Types.VARCHAR</code> when there were none, which works with most
+ * drivers regardless of the actual column type.
+ * </p>
+ *
+ * <p>
+ * At most {@link #MAX_CACHED_STATEMENTS} statements are remembered; when
+ * there are more, the statements not used recently are evicted (CLOCK).
+ * </p>
+ *
+ * <p>
+ * One cache should be used per database, since the same SQL may have
+ * different parameter types on different databases. This class is
+ * thread-safe.
+ * </p>
+ */
+public class ParameterTypeCache {
+
+    /**
+     * The max number of SQL statements remembered.
+     */
+    public static final int MAX_CACHED_STATEMENTS = 2048;
+
+    /**
+     * A parameter position whose type is not known yet.
+     */
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /**
+     * SQL types of the value classes, used when the driver can not describe
+     * the parameters.
+     */
+    private static final Map<Class<?>, Integer> VALUE_TYPES;
+
+    static {
+        Map<Class<?>, Integer> valueTypes = new HashMap<Class<?>, Integer>();
+        valueTypes.put(String.class, Types.VARCHAR);
+        valueTypes.put(Integer.class, Types.INTEGER);
+        valueTypes.put(Long.class, Types.BIGINT);
+        valueTypes.put(Short.class, Types.SMALLINT);
+        valueTypes.put(Byte.class, Types.TINYINT);
+        valueTypes.put(Double.class, Types.DOUBLE);
+        valueTypes.put(Float.class, Types.REAL);
+        valueTypes.put(Boolean.class, Types.BIT);
+        valueTypes.put(BigDecimal.class, Types.DECIMAL);
+        valueTypes.put(Timestamp.class, Types.TIMESTAMP);
+        valueTypes.put(java.util.Date.class, Types.TIMESTAMP);
+        valueTypes.put(java.sql.Date.class, Types.DATE);
+        valueTypes.put(Time.class, Types.TIME);
+        valueTypes.put(byte[].class, Types.VARBINARY);
+        VALUE_TYPES = Collections.unmodifiableMap(valueTypes);
+    }
+
+    private final ConcurrentMap<String, Entry> entries =
+        new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Returns the SQL types to bind the <code>null</code>s of the given
+     * parameters with, reading them from the statement metadata the first
+     * time. The classes of the non-null parameters are remembered for the
+     * positions whose type the driver can not describe.
+     *
+     * @param stmt A statement prepared from <code>sql</code>.
+     * @param sql The SQL of the statement.
+     * @param params The parameters bound.
+     * @return the SQL types, at least <code>params.length</code> long, or
+     * <code>null</code> when no parameter is <code>null</code>.
+     */
+    public int[] getTypes(PreparedStatement stmt, String sql, Object[] params) {
+        Entry entry = this.entries.get(sql);
+        if (entry == null || entry.valueTypes.length < params.length) {
+            entry = new Entry(params.length);
+            if (this.entries.put(sql, entry) == null
+                    && this.entries.size() > MAX_CACHED_STATEMENTS) {
+                this.evict();
+            }
+        } else if (!entry.used) {
+            entry.used = true;
+        }
+
+        boolean hasNull = false;
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] == null) {
+                hasNull = true;
+            } else if (entry.valueTypes[i] == UNKNOWN) {
+                Integer type = VALUE_TYPES.get(params[i].getClass());
+                if (type != null) {
+                    entry.valueTypes[i] = type.intValue();
+                }
+            }
+        }
+        if (!hasNull) {
+            return null;
+        }
+
+        if (entry.metaTypes == null && !entry.pmdKnownBroken) {
+            entry.learn(stmt);
+        }
+        int[] sqlTypes = entry.metaTypes;
+        if (sqlTypes != null && sqlTypes.length >= params.length) {
+            return sqlTypes;
+        }
+
+        sqlTypes = entry.valueTypes.clone();
+        for (int i = 0; i < sqlTypes.length; i++) {
+            if (sqlTypes[i] == UNKNOWN) {
+                sqlTypes[i] = Types.VARCHAR;
+            }
+        }
+        return sqlTypes;
+    }
+
+    /**
+     * Returns the number of SQL statements remembered.
+     *
+     * @return the number of statements.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Evicts statements down to 3/4 of {@link #MAX_CACHED_STATEMENTS}: the
+     * ones used since the last pass lose their mark and are kept, the others
+     * are removed.
+     */
+    private void evict() {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            int target = MAX_CACHED_STATEMENTS * 3 / 4;
+            for (int pass = 0; pass < 2 && this.entries.size() > target; pass++) {
+                Iterator<Entry> it = this.entries.values().iterator();
+                while (it.hasNext() && this.entries.size() > target) {
+                    Entry entry = it.next();
+                    if (entry.used) {
+                        entry.used = false;
+                    } else {
+                        it.remove();
+                    }
+                }
+            }
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    /**
+     * The parameter types of one SQL statement.
+     */
+    private static class Entry {
+
+        /**
+         * The types read from the statement metadata, <code>null</code> until
+         * read.
+         */
+        private volatile int[] metaTypes;
+
+        /**
+         * Does the driver fail to describe the parameters of this statement?
+         */
+        private volatile boolean pmdKnownBroken;
+
+        /**
+         * The types of the non-null values bound at each position.
+         */
+        private final int[] valueTypes;
+
+        /**
+         * CLOCK eviction mark.
+         */
+        private volatile boolean used;
+
+        Entry(int paramCount) {
+            this.valueTypes = new int[paramCount];
+            Arrays.fill(this.valueTypes, UNKNOWN);
+        }
+
+        /**
+         * Reads the parameter types from the statement metadata.
+         */
+        void learn(PreparedStatement stmt) {
+            try {
+                ParameterMetaData pmd = stmt.getParameterMetaData();
+                int count = pmd.getParameterCount();
+                if (count < this.valueTypes.length) {
+                    this.pmdKnownBroken = true;
+                    return;
+                }
+                int[] sqlTypes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    sqlTypes[i] = pmd.getParameterType(i + 1);
+                }
+                this.metaTypes = sqlTypes;
+            } catch (SQLException e) {
+                this.pmdKnownBroken = true;
+            } catch (RuntimeException e) {
+                // some drivers throw unchecked exceptions for unsupported metadata
+                this.pmdKnownBroken = true;
+            }
+        }
+    }
+
+}
@@ -52,12 +52,19 @@ public class QueryRunner implements Serializable{
      */
     protected final DataSource ds;
 
+    /**
+     * Parameter types remembered per SQL, <code>null</code> to describe the
+     * parameters on every execution as {@link #fillStatement} does.
+     */
+    private final transient ParameterTypeCache parameterTypes;
+
     /**
      * Constructor for QueryRunner.
      */
     public QueryRunner() {
         super();
         ds = null;
+        parameterTypes = null;
     }
 
     /**
@@ -70,6 +77,22 @@ public class QueryRunner implements Serializable{
         super();
         this.pmdKnownBroken = pmdKnownBroken; 
         ds = null;
+        parameterTypes = null;
+    }
+
+    /**
+     * Constructor for QueryRunner that binds parameters with typed setters
+     * and reads the parameter types of each SQL only once.
+     *
+     * @param parameterTypes The parameter types remembered per SQL, shared
+     * by all runners of the same database.
+     * @see #fillStatementWithTypes(PreparedStatement, ParameterTypeCache, String, Object...)
+     */
+    public QueryRunner(ParameterTypeCache parameterTypes) {
+        super();
+        this.pmdKnownBroken = true;
+        this.ds = null;
+        this.parameterTypes = parameterTypes;
     }
     
     /**
@@ -82,6 +105,7 @@ public class QueryRunner implements Serializable{
     public QueryRunner(DataSource ds) {
         super();
         this.ds = ds;
+        this.parameterTypes = null;
     }
     
     /**
@@ -98,6 +122,7 @@ public class QueryRunner implements Serializable{
         super();
         this.pmdKnownBroken = pmdKnownBroken;
         this.ds = ds;
+        this.parameterTypes = null;
     }
     
     /**
@@ -121,7 +146,7 @@ public class QueryRunner implements Serializable{
             stmt = this.prepareStatement(conn, sql);
 
             for (int i = 0; i < params.length; i++) {
-                this.fillStatement(stmt, params[i]);
+                this.fillStatement(stmt, sql, params[i]);
                 stmt.addBatch();
             }
             rows = stmt.executeBatch();
@@ -201,6 +226,60 @@ public class QueryRunner implements Serializable{
         }
     }
 
+    /**
+     * Fill the <code>PreparedStatement</code> replacement parameters of the
+     * given SQL, with the parameter types of this runner when it has some.
+     *
+     * @param stmt PreparedStatement to fill
+     * @param sql The SQL the statement was prepared from
+     * @param params Query replacement parameters
+     * @throws SQLException if a database access error occurs
+     */
+    private void fillStatement(PreparedStatement stmt, String sql,
+            Object[] params) throws SQLException {
+
+        if (this.parameterTypes == null) {
+            this.fillStatement(stmt, params);
+        } else {
+            fillStatementWithTypes(stmt, this.parameterTypes, sql, params);
+        }
+    }
+
+    /**
+     * Fill the <code>PreparedStatement</code> replacement parameters with
+     * the given objects, using the typed setter of each value class (see
+     * {@link ParameterBinder}) and the parameter types remembered for the
+     * SQL to bind <code>null</code>s. Unlike
+     * {@link #fillStatement(PreparedStatement, Object...)} the parameter
+     * metadata is read at most once per SQL, and only when a
+     * <code>null</code> is bound; see {@link ParameterTypeCache}.
+     *
+     * @param stmt PreparedStatement to fill
+     * @param parameterTypes The parameter types remembered per SQL
+     * @param sql The SQL the statement was prepared from
+     * @param params Query replacement parameters; <code>null</code> is a valid
+     * value to pass in.
+     * @throws SQLException if a database access error occurs
+     */
+    public static void fillStatementWithTypes(PreparedStatement stmt,
+            ParameterTypeCache parameterTypes, String sql, Object... params)
+        throws SQLException {
+
+        if (params == null) {
+            return;
+        }
+
+        int[] sqlTypes = parameterTypes.getTypes(stmt, sql, params);
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            if (value != null) {
+                ParameterBinder.forClass(value.getClass()).bind(stmt, i + 1, value);
+            } else {
+                stmt.setNull(i + 1, sqlTypes[i]);
+            }
+        }
+    }
+
     /**
      * Fill the <code>PreparedStatement</code> replacement parameters with the
      * given object's bean property values.
@@ -393,7 +472,7 @@ public class QueryRunner implements Serializable{
 
         try {
             stmt = this.prepareStatement(conn, sql);
-            this.fillStatement(stmt, params);
+            this.fillStatement(stmt, sql, params);
             rs = this.wrap(stmt.executeQuery());
             result = rsh.handle(rs);
 
@@ -594,7 +673,7 @@ public class QueryRunner implements Serializable{
 
         try {
             stmt = this.prepareStatement(conn, sql);
-            this.fillStatement(stmt, params);
+            this.fillStatement(stmt, sql, params);
             rows = stmt.executeUpdate();
 
         } catch (SQLException e) {
@@ -0,0 +1,127 @@
+package com.lizard.fastdb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CacheFactoryTest
+{
+	private static Collection<String> tables(String table)
+	{
+		return Collections.singleton(table);
+	}
+
+	private static void put(QueryCache cache, Object key, Object value, Collection<String> tables)
+	{
+		assertTrue(CacheFactory.put(cache, key, value, tables, CacheFactory.stamp(cache, tables)));
+	}
+
+	@Test
+	public void writeOnlyInvalidatesQueriesOnItsTable()
+	{
+		QueryCache cache = CacheFactory.getCache("cache-factory-test-tables");
+		put(cache, "orders", "o", SQLTableExtractor.getTables("SELECT * FROM cft_orders o JOIN cft_items i ON o.id = i.order_id"));
+		put(cache, "users", "u", SQLTableExtractor.getTables("SELECT * FROM cft_users WHERE id = ?"));
+
+		CacheFactory.invalidate(SQLTableExtractor.getWriteTables("UPDATE cft_items SET price = ? WHERE id = ?"));
+
+		assertNull(cache.get("orders"));
+		assertEquals("u", cache.get("users"));
+	}
+
+	@Test
+	public void resultReadBeforeTheWriteIsNotCached()
+	{
+		QueryCache cache = CacheFactory.getCache("cache-factory-test-stamp");
+		CacheFactory.Stamp stamp = CacheFactory.stamp(cache, tables("cft_stamp"));
+
+		// 查询执行期间表被修改
+		CacheFactory.invalidate(tables("cft_stamp"));
+
+		assertFalse(CacheFactory.put(cache, "q", "stale", tables("cft_stamp"), stamp));
+		assertNull(cache.get("q"));
+	}
+
+	@Test
+	public void changingReturnedResultDoesNotChangeTheCache()
+	{
+		QueryCache cache = CacheFactory.getCache("cache-factory-test-copy");
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("name", "a");
+		row.put("created", new java.util.Date(0L));
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		rows.add(row);
+
+		// 与 JdbcHandlerImpl 相同：放入和取出时都复制
+		put(cache, "q", CacheValues.copy(rows), tables("cft_copy"));
+		row.put("name", "changed by the caller after caching");
+
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> first = (List<Map<String, Object>>) CacheValues.copy(cache.get("q"));
+		first.get(0).put("name", "b");
+		((java.util.Date) first.get(0).get("created")).setTime(1000L);
+		first.clear();
+
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> second = (List<Map<String, Object>>) CacheValues.copy(cache.get("q"));
+		assertEquals(1, second.size());
+		assertEquals("a", second.get(0).get("name"));
+		assertEquals(0L, ((java.util.Date) second.get(0).get("created")).getTime());
+	}
+
+	@Test
+	public void changingReturnedBeanDoesNotChangeTheCache()
+	{
+		QueryCache cache = CacheFactory.getCache("cache-factory-test-bean");
+		Item item = new Item();
+		item.setName("a");
+		item.setTags(new ArrayList<String>(Collections.singletonList("x")));
+		put(cache, "q", CacheValues.copy(item), tables("cft_bean"));
+
+		Item first = (Item) CacheValues.copy(cache.get("q"));
+		first.setName("b");
+		first.getTags().add("y");
+
+		Item second = (Item) CacheValues.copy(cache.get("q"));
+		assertNotNull(second);
+		assertEquals("a", second.getName());
+		assertEquals(1, second.getTags().size());
+	}
+
+	public static class Item
+	{
+		private String			name;
+		private List<String>	tags;
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+
+		public List<String> getTags()
+		{
+			return tags;
+		}
+
+		public void setTags(List<String> tags)
+		{
+			this.tags = tags;
+		}
+	}
+}
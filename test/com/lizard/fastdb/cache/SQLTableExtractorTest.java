@@ -0,0 +1,34 @@
+package com.lizard.fastdb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SQLTableExtractorTest
+{
+	@Test
+	public void readAndWriteTablesAreExtracted()
+	{
+		assertEquals(Collections.singleton("user"), SQLTableExtractor.getTables("SELECT * FROM `db`.`User` u WHERE u.id = ?"));
+		assertEquals(Collections.singleton("orders"), SQLTableExtractor.getWriteTables("UPDATE orders SET state = ? WHERE id = ?"));
+		assertSame(SQLTableExtractor.UNKNOWN_TABLES, SQLTableExtractor.getWriteTables("CALL refresh_all()"));
+	}
+
+	@Test
+	public void cacheIsBounded()
+	{
+		String hot = "SELECT * FROM hot WHERE id = ?";
+		for (int i = 0; i < SQLTableExtractor.MAX_CACHED_SQLS * 3; i++)
+		{
+			SQLTableExtractor.getTables(hot);
+			assertEquals(Collections.singleton("t_" + i), SQLTableExtractor.getTables("SELECT * FROM t_" + i));
+			assertEquals(Collections.singleton("t_" + i), SQLTableExtractor.getWriteTables("DELETE FROM t_" + i));
+			assertTrue(SQLTableExtractor.getCacheSize() <= SQLTableExtractor.MAX_CACHED_SQLS * 2 + 2);
+		}
+		assertEquals(Collections.singleton("hot"), SQLTableExtractor.getTables(hot));
+	}
+}
@@ -0,0 +1,197 @@
+package com.lizard.fastdb.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lizard.fastdb.test.StubDriver;
+
+public class StatementCachingConnectionTest
+{
+	private Connection			physical;
+	private ConnectionProvider	owner;
+
+	@Before
+	public void setUp() throws SQLException
+	{
+		StubDriver.reset();
+		physical = DriverManager.getConnection(StubDriver.URL);
+		owner = (ConnectionProvider) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ConnectionProvider.class },
+				new InvocationHandler()
+				{
+					public Object invoke(Object proxy, Method method, Object[] args)
+					{
+						if ("equals".equals(method.getName()))
+						{
+							return proxy == args[0];
+						}
+						if ("hashCode".equals(method.getName()))
+						{
+							return System.identityHashCode(proxy);
+						}
+						return null;
+					}
+				});
+	}
+
+	@After
+	public void tearDown()
+	{
+		StatementCache.removeAll(owner);
+	}
+
+	/**
+	 * 模拟第三方连接池的借出连接：close() 不关闭物理连接
+	 */
+	private Connection checkout(int cacheSize)
+	{
+		Connection logical = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler()
+				{
+					private boolean	closed	= false;
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+					{
+						if ("close".equals(method.getName()))
+						{
+							closed = true;
+							return null;
+						}
+						if ("isClosed".equals(method.getName()))
+						{
+							return closed;
+						}
+						try
+						{
+							return method.invoke(physical, args);
+						}
+						catch (InvocationTargetException e)
+						{
+							throw e.getCause();
+						}
+					}
+				});
+		return StatementCachingConnection.wrap(logical, physical, StatementCache.get(owner, physical, cacheSize));
+	}
+
+	@Test
+	public void statementIsReusedAcrossCheckouts() throws SQLException
+	{
+		Connection conn = checkout(4);
+		PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+		assertSame(conn, pstmt.getConnection());
+		pstmt.close();
+		conn.close();
+
+		conn = checkout(4);
+		conn.prepareStatement("SELECT 1").close();
+		conn.close();
+
+		assertEquals(1, StubDriver.STATEMENTS_PREPARED.get());
+		assertEquals(1, StubDriver.STATEMENTS_OPEN.get());
+		assertSame(StatementCache.get(owner, physical, 4), StatementCache.get(owner, physical, 4));
+	}
+
+	@Test
+	public void generatedKeysAreCachedSeparately() throws SQLException
+	{
+		Connection conn = checkout(4);
+		conn.prepareStatement("INSERT INTO t VALUES (?)").close();
+		conn.prepareStatement("INSERT INTO t VALUES (?)", Statement.RETURN_GENERATED_KEYS).close();
+		conn.prepareStatement("INSERT INTO t VALUES (?)", Statement.RETURN_GENERATED_KEYS).close();
+		conn.close();
+
+		assertEquals(2, StubDriver.STATEMENTS_PREPARED.get());
+	}
+
+	@Test
+	public void eldestStatementIsClosed() throws SQLException
+	{
+		Connection conn = checkout(2);
+		conn.prepareStatement("SELECT 1").close();
+		conn.prepareStatement("SELECT 2").close();
+		conn.prepareStatement("SELECT 3").close();
+		assertEquals(2, StubDriver.STATEMENTS_OPEN.get());
+
+		conn.prepareStatement("SELECT 1").close();
+		conn.close();
+		assertEquals(4, StubDriver.STATEMENTS_PREPARED.get());
+	}
+
+	@Test
+	public void unclosedStatementIsClosedWithTheConnection() throws SQLException
+	{
+		Connection conn = checkout(4);
+		conn.prepareStatement("SELECT 1");
+		conn.close();
+		assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+
+		conn = checkout(4);
+		conn.prepareStatement("SELECT 1").close();
+		conn.close();
+		assertEquals(2, StubDriver.STATEMENTS_PREPARED.get());
+	}
+
+	@Test
+	public void closedPhysicalConnectionIsForgotten() throws SQLException
+	{
+		StatementCache cache = StatementCache.get(owner, physical, 4);
+		physical.close();
+
+		StatementCache.get(owner, DriverManager.getConnection(StubDriver.URL), 4);
+		assertNotSame(cache, StatementCache.get(owner, physical, 4));
+	}
+
+	@Test
+	public void settingsAreRestoredBeforeReuse() throws SQLException
+	{
+		Connection conn = checkout(4);
+		PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+		pstmt.setMaxRows(10);
+		pstmt.setQueryTimeout(5);
+		pstmt.setFetchSize(100);
+		pstmt.setFetchDirection(ResultSet.FETCH_REVERSE);
+		pstmt.close();
+		conn.close();
+
+		conn = checkout(4);
+		pstmt = conn.prepareStatement("SELECT 1");
+		assertEquals(0, pstmt.getMaxRows());
+		assertEquals(0, pstmt.getQueryTimeout());
+		assertEquals(0, pstmt.getFetchSize());
+		assertEquals(0, pstmt.getFetchDirection());
+		pstmt.close();
+		conn.close();
+		assertEquals(1, StubDriver.STATEMENTS_PREPARED.get());
+	}
+
+	@Test
+	public void removeAllClosesTheCachedStatements() throws SQLException
+	{
+		Connection conn = checkout(4);
+		conn.prepareStatement("SELECT 1").close();
+		conn.prepareStatement("SELECT 2").close();
+		conn.close();
+		assertEquals(2, StubDriver.STATEMENTS_OPEN.get());
+
+		StatementCache cache = StatementCache.get(owner, physical, 4);
+		StatementCache.removeAll(owner);
+		assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+		assertNotSame(cache, StatementCache.get(owner, physical, 4));
+	}
+}
@@ -0,0 +1,182 @@
+package com.lizard.fastdb.connection.fast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.lizard.fastdb.test.StubDriver;
+
+public class FastPoolTest
+{
+	private FastConnectionProvider	provider;
+
+	private FastConnectionProvider open(int maxSize, int statementCacheSize)
+	{
+		StubDriver.reset();
+
+		Properties prop = new Properties();
+		prop.setProperty("name", "fast-pool-test");
+		prop.setProperty("driver-class", StubDriver.class.getName());
+		prop.setProperty("driver-url", StubDriver.URL);
+		prop.setProperty("user", "u");
+		prop.setProperty("password", "p");
+		prop.setProperty("max-connection-size", String.valueOf(maxSize));
+		prop.setProperty("min-connection-size", "0");
+		prop.setProperty("connection-timeout", "1");
+		prop.setProperty("statement-cache-size", String.valueOf(statementCacheSize));
+
+		provider = new FastConnectionProvider();
+		provider.configure(prop);
+		return provider;
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (provider != null)
+		{
+			provider.shutdown();
+		}
+	}
+
+	@Test
+	public void returnedConnectionIsReused() throws SQLException
+	{
+		open(2, 0);
+
+		Connection first = provider.getConnection();
+		first.close();
+		Connection second = provider.getConnection();
+		second.close();
+
+		assertNotSame(first, second);
+		assertEquals(1, StubDriver.CONNECTIONS_CREATED.get());
+		assertEquals(1, provider.getPool().getIdleConnections());
+	}
+
+	@Test
+	public void closedProxyCannotBeUsed() throws SQLException
+	{
+		Connection conn = open(1, 0).getConnection();
+		conn.close();
+		conn.close();
+
+		assertTrue(conn.isClosed());
+		try
+		{
+			conn.createStatement();
+			fail("A returned connection must not be usable.");
+		}
+		catch (SQLException e)
+		{
+			assertEquals("08003", e.getSQLState());
+		}
+	}
+
+	@Test
+	public void borrowTimesOutWhenExhausted() throws SQLException
+	{
+		open(1, 0);
+		Connection conn = provider.getConnection();
+		try
+		{
+			provider.getConnection();
+			fail("The pool has no idle connection.");
+		}
+		catch (SQLException e)
+		{
+			assertEquals("08001", e.getSQLState());
+		}
+		finally
+		{
+			conn.close();
+		}
+
+		provider.getConnection().close();
+	}
+
+	@Test
+	public void preparedStatementIsCachedAcrossCheckouts() throws SQLException
+	{
+		open(1, 10);
+
+		for (int i = 0; i < 3; i++)
+		{
+			Connection conn = provider.getConnection();
+			PreparedStatement pstmt = conn.prepareStatement("select 1");
+			assertSame(conn, pstmt.getConnection());
+			pstmt.executeQuery();
+			pstmt.close();
+			conn.close();
+		}
+
+		assertEquals(1, StubDriver.STATEMENTS_PREPARED.get());
+		assertEquals(1, StubDriver.STATEMENTS_OPEN.get());
+	}
+
+	@Test
+	public void sameSqlInUseIsNotShared() throws SQLException
+	{
+		Connection conn = open(1, 10).getConnection();
+		PreparedStatement a = conn.prepareStatement("select 1");
+		PreparedStatement b = conn.prepareStatement("select 1");
+		a.close();
+		b.close();
+		conn.close();
+
+		assertEquals(2, StubDriver.STATEMENTS_PREPARED.get());
+		// 第二条相同的语句放回时缓存中已存在，直接关闭
+		assertEquals(1, StubDriver.STATEMENTS_OPEN.get());
+	}
+
+	@Test
+	public void unclosedStatementsAreClosedOnRelease() throws SQLException
+	{
+		Connection conn = open(1, 10).getConnection();
+		Statement stmt = conn.createStatement();
+		PreparedStatement pstmt = conn.prepareStatement("update t set a = 1");
+		conn.close();
+
+		assertTrue(stmt.isClosed());
+		assertTrue(pstmt.isClosed());
+		assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+		try
+		{
+			pstmt.executeUpdate();
+			fail("A statement of a returned connection must not be usable.");
+		}
+		catch (SQLException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void shutdownClosesPhysicalConnections() throws SQLException
+	{
+		open(2, 10);
+		Connection a = provider.getConnection();
+		Connection b = provider.getConnection();
+		a.prepareStatement("select 1").close();
+		a.close();
+
+		provider.shutdown();
+		assertEquals(1, StubDriver.CONNECTIONS_CLOSED.get());
+		assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+
+		// 关闭后归还的连接直接关闭
+		b.close();
+		assertEquals(2, StubDriver.CONNECTIONS_CLOSED.get());
+	}
+}
@@ -0,0 +1,162 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.DBFactory;
+import com.lizard.fastdb.datasource.DataSource;
+import com.lizard.fastdb.test.StubDriver;
+import com.lizard.fastdb.test.oracle.OracleStubDriver;
+import com.lizard.fastdb.transaction.Transaction;
+import com.lizard.fastdb.transaction.TransactionConstant;
+
+public class AsyncJdbcHandlerTest
+{
+	private static final String			NAME	= "async-handler-test";
+
+	private JdbcHandlerImpl					handler;
+	private AsyncJdbcHandler				async;
+	private JdbcHandlerImpl.ThreadSettings	settings;
+
+	@Before
+	public void setUp()
+	{
+		StubDriver.reset();
+		// 一个异步线程，最多排队4个操作；Oracle 方言的流式查询使用调用方设置的 fetchSize
+		DataSource ds = StubDriver.newDataSource(NAME, OracleStubDriver.class);
+		ds.setMaxConnectionSize(1);
+		async = DBFactory.createAsync(ds);
+		handler = (JdbcHandlerImpl) async.getJdbcHandler();
+		settings = handler.getThreadSettings();
+	}
+
+	@After
+	public void tearDown()
+	{
+		handler.setThreadSettings(settings);
+		DBFactory.destroy(NAME);
+	}
+
+	private static void awaitCount(AtomicInteger counter, int expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 5000;
+		while (counter.get() < expected && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(expected, counter.get());
+	}
+
+	@Test
+	public void fullQueueReturnsFailedFuture() throws InterruptedException
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<Object> blocking = new Callable<Object>()
+		{
+			public Object call() throws InterruptedException
+			{
+				release.await(10, TimeUnit.SECONDS);
+				return null;
+			}
+		};
+
+		List<JdbcFuture<Object>> accepted = new ArrayList<JdbcFuture<Object>>();
+		try
+		{
+			// 1个执行中 + 4个排队
+			for (int i = 0; i < 5; i++)
+			{
+				accepted.add(async.submit(blocking));
+			}
+
+			JdbcFuture<Object> rejected = async.submit(blocking);
+			assertTrue(rejected.isDone());
+			assertFalse(rejected.isSuccess());
+			assertTrue(rejected.getCause() instanceof DBException);
+			assertTrue(rejected.getCause().getCause() instanceof RejectedExecutionException);
+		}
+		finally
+		{
+			release.countDown();
+		}
+
+		for (JdbcFuture<Object> future : accepted)
+		{
+			future.join();
+			assertTrue(future.isSuccess());
+		}
+	}
+
+	@Test
+	public void callerSettingsApplyInTheWorker()
+	{
+		handler.setBatchSize(2);
+		handler.setFetchSize(50);
+
+		Object[][] rows = new Object[5][];
+		for (int i = 0; i < rows.length; i++)
+		{
+			rows[i] = new Object[] { i + 1 };
+		}
+		assertTrue(async.batchUpdate(StubDriver.ECHO_SQL, rows, false).join().isSuccess());
+		assertEquals(3, StubDriver.BATCHES_EXECUTED.get());
+
+		async.submit(new Callable<Object>()
+		{
+			public Object call()
+			{
+				ResultIterator<Map<String, Object>> it = handler.queryForIterator("SELECT id FROM t");
+				it.close();
+				return null;
+			}
+		}).join();
+		assertEquals(50, StubDriver.LAST_FETCH_SIZE.get());
+	}
+
+	@Test
+	public void cancelReachesTheRunningStatement() throws InterruptedException
+	{
+		JdbcFuture<List<Map<String, Object>>> future = async.queryForList("SELECT block FROM t");
+		awaitCount(StubDriver.BLOCKED, 1);
+
+		assertTrue(future.cancel(true));
+		assertEquals(1, StubDriver.CANCELS.get());
+		assertTrue(future.isCancelled());
+	}
+
+	@Test
+	public void operationInTransactionIsRejected()
+	{
+		Transaction.setTransMode(TransactionConstant.TRANS_MODE_SINGLEDATASOURCE);
+		try
+		{
+			async.execute("UPDATE t SET a = 1");
+			fail("An asynchronous operation must not take part in the transaction.");
+		}
+		catch (DBException e)
+		{
+			// 没有在数据库上执行
+			assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+		}
+		finally
+		{
+			Transaction.setTransMode(null);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+public class BatchResultBuilderTest
+{
+	@Test
+	public void rowsAndAffectedRowsAreAccumulated()
+	{
+		BatchResultBuilder builder = new BatchResultBuilder(false, 2);
+		builder.addRows(new int[] { 1, 2 });
+		builder.addRows(new int[] { Statement.SUCCESS_NO_INFO, 3 });
+		builder.fillRows(1, 2);
+
+		BatchUpdateResult result = builder.build();
+		assertTrue(result.isSuccess());
+		assertArrayEquals(new int[] { 1, 2, Statement.SUCCESS_NO_INFO, 3, 1, 1 }, result.getBatchRows());
+		assertEquals(6, result.getAffectedRows());
+		assertEquals(0, result.getErrorBatchs().length);
+	}
+
+	@Test
+	public void summaryOnlyKeepsNoRows()
+	{
+		BatchResultBuilder builder = new BatchResultBuilder(true, 100);
+		builder.addRows(new int[] { 1, 1, 1 });
+
+		BatchUpdateResult result = builder.build();
+		assertNull(result.getBatchRows());
+		assertEquals(3, result.getAffectedRows());
+		assertTrue(result.isSummaryOnly());
+	}
+
+	@Test
+	public void rolledBackBatchAffectsNoRows()
+	{
+		BatchResultBuilder builder = new BatchResultBuilder(false, 4);
+		builder.addRows(new int[] { 1, 1 });
+		BatchUpdateException e = new BatchUpdateException("failed", new int[] { 1, Statement.EXECUTE_FAILED });
+		builder.addFailedRows(e, true, 2);
+		builder.addErrorBatch(2, 2, 4);
+
+		BatchUpdateResult result = builder.build();
+		assertFalse(result.isSuccess());
+		assertArrayEquals(new int[] { 1, 1, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, result.getBatchRows());
+		assertEquals(2, result.getAffectedRows());
+		assertArrayEquals(new int[] { 2 }, result.getErrorBatchs());
+		assertArrayEquals(new int[] { 2, 4 }, result.getErrorRowRanges()[0]);
+	}
+
+	@Test
+	public void failedBatchWithoutRollbackKeepsDriverCounts()
+	{
+		BatchResultBuilder builder = new BatchResultBuilder(false, 3);
+		BatchUpdateException e = new BatchUpdateException("failed", new int[] { 1, Statement.EXECUTE_FAILED, 1 });
+		builder.addFailedRows(e, false, 3);
+
+		assertArrayEquals(new int[] { 1, Statement.EXECUTE_FAILED, 1 }, builder.build().getBatchRows());
+		assertEquals(2, builder.getAffectedRows());
+	}
+
+	@Test
+	public void rollbackBatchDiscardsRowsAndAffectedRowsOfCurrentBatch()
+	{
+		BatchResultBuilder builder = new BatchResultBuilder(true, 6);
+		builder.beginBatch();
+		builder.fillRows(1, 3);
+		builder.addAffectedRows(3);
+
+		builder.beginBatch();
+		builder.fillRows(1, 2);
+		builder.addAffectedRows(2);
+		builder.rollbackBatch();
+		builder.fillRows(Statement.EXECUTE_FAILED, 3);
+
+		assertEquals(3, builder.getAffectedRows());
+
+		BatchResultBuilder detailed = new BatchResultBuilder(false, 6);
+		detailed.beginBatch();
+		detailed.fillRows(1, 3);
+		detailed.addAffectedRows(3);
+		detailed.beginBatch();
+		detailed.fillRows(1, 2);
+		detailed.addAffectedRows(2);
+		detailed.rollbackBatch();
+		detailed.fillRows(Statement.EXECUTE_FAILED, 3);
+
+		assertArrayEquals(new int[] { 1, 1, 1, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, detailed.build()
+				.getBatchRows());
+		assertEquals(3, detailed.getAffectedRows());
+	}
+
+	@Test
+	public void partitionsAreMergedWithOffsets()
+	{
+		BatchResultBuilder first = new BatchResultBuilder(false, 2);
+		first.addRows(new int[] { 1, 1 });
+		BatchResultBuilder second = new BatchResultBuilder(false, 2);
+		second.fillRows(Statement.EXECUTE_FAILED, 2);
+		second.addErrorBatch(1, 0, 2);
+
+		BatchResultBuilder merged = new BatchResultBuilder(false, 4);
+		merged.add(first.build(), 0, 0);
+		merged.add(second.build(), 1, 2);
+
+		BatchUpdateResult result = merged.build();
+		assertFalse(result.isSuccess());
+		assertEquals(2, result.getAffectedRows());
+		assertArrayEquals(new int[] { 2 }, result.getErrorBatchs());
+		assertArrayEquals(new int[] { 2, 4 }, result.getErrorRowRanges()[0]);
+	}
+}
@@ -0,0 +1,133 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.DBFactory;
+import com.lizard.fastdb.connection.fast.FastConnectionProvider;
+import com.lizard.fastdb.datasource.DataSourceCache;
+import com.lizard.fastdb.test.StubDriver;
+
+public class BatchWriterTest
+{
+	private static final String	NAME	= "batch-writer-test";
+
+	private JdbcHandler			handler;
+
+	@Before
+	public void setUp()
+	{
+		handler = StubDriver.createDataSource(NAME);
+	}
+
+	@After
+	public void tearDown()
+	{
+		DBFactory.destroy(NAME);
+	}
+
+	private static int activeConnections()
+	{
+		return ((FastConnectionProvider) DataSourceCache.getConnectionProvider(NAME)).getPool().getActiveConnections();
+	}
+
+	@Test
+	public void failedBatchIsRolledBackAndWritingContinues()
+	{
+		StubDriver.FAILING_VALUES.add(3);
+		BatchWriter writer = handler.createBatchWriter(StubDriver.ECHO_SQL, 2, true, false);
+		try
+		{
+			for (int i = 1; i <= 5; i++)
+			{
+				writer.add(i);
+			}
+			assertFalse(writer.finish());
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		assertArrayEquals(new int[] { 2 }, writer.getErrorBatchs());
+		assertEquals(3, writer.getBatchCount());
+		assertEquals(5, writer.getWrittenRows());
+		assertEquals(1 + 2 + 5, writer.getAffectedRows());
+		assertEquals(1, StubDriver.ROLLBACKS.get());
+		assertEquals(2, StubDriver.COMMITS.get());
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void failedBatchAbortsTheSingleTransaction()
+	{
+		StubDriver.FAILING_VALUES.add(3);
+		BatchWriter writer = handler.createBatchWriter(StubDriver.ECHO_SQL, 2, false, true);
+		writer.add(1);
+		writer.add(2);
+		writer.add(3);
+		try
+		{
+			writer.add(4);
+			fail("A failed batch must abort the single transaction.");
+		}
+		catch (DBException e)
+		{
+			// 之前的批次随事务撤销
+			assertArrayEquals(new int[] { 2 }, writer.getErrorBatchs());
+			assertEquals(0, writer.getWrittenRows());
+			assertEquals(0, writer.getAffectedRows());
+		}
+
+		try
+		{
+			writer.add(5);
+			fail("An aborted BatchWriter must not accept rows.");
+		}
+		catch (IllegalStateException e)
+		{
+			writer.close();
+		}
+		assertEquals(1, StubDriver.ROLLBACKS.get());
+		assertEquals(0, StubDriver.COMMITS.get());
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void closeWithoutFinishRollsBackTheSingleTransaction()
+	{
+		BatchWriter writer = handler.createBatchWriter(StubDriver.ECHO_SQL, 2, false, true);
+		writer.add(1);
+		writer.add(2);
+		writer.add(3);
+		writer.close();
+
+		assertEquals(1, writer.getBatchCount());
+		assertEquals(0, writer.getWrittenRows());
+		assertEquals(1, StubDriver.ROLLBACKS.get());
+		assertEquals(0, StubDriver.COMMITS.get());
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void closeWithoutFinishDropsBufferedRows()
+	{
+		BatchWriter writer = handler.createBatchWriter(StubDriver.ECHO_SQL, 2, true, false);
+		writer.add(1);
+		writer.add(2);
+		writer.add(3);
+		writer.close();
+
+		assertEquals(2, writer.getWrittenRows());
+		assertEquals(3, writer.getAffectedRows());
+		assertEquals(1, StubDriver.COMMITS.get());
+		assertEquals(0, activeConnections());
+	}
+}
@@ -0,0 +1,59 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CountSQLTest
+{
+	@Test
+	public void simpleSelectColumnsAreReplaced()
+	{
+		assertEquals("SELECT count(*) FROM t WHERE a = ?", CountSQL.create("select id, name FROM t WHERE a = ? ORDER BY id DESC"));
+		assertEquals("SELECT count(*) FROM t t1 JOIN s ON t1.id = s.id WHERE s.x IN (SELECT x FROM u ORDER BY x)",
+				CountSQL.create("SELECT t1.*, (SELECT 1 FROM dual) one FROM t t1 JOIN s ON t1.id = s.id WHERE s.x IN (SELECT x FROM u ORDER BY x);"));
+	}
+
+	@Test
+	public void complexQueriesAreWrapped()
+	{
+		assertEquals("SELECT count(*) FROM (SELECT DISTINCT a FROM t) count_", CountSQL.create("SELECT DISTINCT a FROM t ORDER BY a"));
+		assertEquals("SELECT count(*) FROM (SELECT a, count(*) FROM t GROUP BY a) count_", CountSQL.create("SELECT a, count(*) FROM t GROUP BY a"));
+		assertEquals("SELECT count(*) FROM (SELECT max(id) FROM t) count_", CountSQL.create("SELECT max(id) FROM t"));
+		assertEquals("SELECT count(*) FROM (SELECT a FROM t UNION SELECT a FROM s) count_", CountSQL.create("SELECT a FROM t UNION SELECT a FROM s"));
+	}
+
+	@Test
+	public void parametersKeepTheirOrder()
+	{
+		// 查询列和 ORDER BY 中的参数不能去掉
+		assertEquals("SELECT count(*) FROM (SELECT a, ? b FROM t WHERE c = ?) count_", CountSQL.create("SELECT a, ? b FROM t WHERE c = ?"));
+		assertEquals("SELECT count(*) FROM t WHERE c = ? ORDER BY field(id, ?)", CountSQL.create("SELECT a FROM t WHERE c = ? ORDER BY field(id, ?)"));
+	}
+
+	@Test
+	public void orderByBeforeLimitIsKept()
+	{
+		assertEquals("SELECT count(*) FROM (SELECT a FROM t ORDER BY a LIMIT 10) count_", CountSQL.create("SELECT a FROM t ORDER BY a LIMIT 10"));
+	}
+
+	@Test
+	public void quotedKeywordsAreIgnored()
+	{
+		assertEquals("SELECT count(*) FROM t WHERE name = 'group by x'", CountSQL.create("SELECT a FROM t WHERE name = 'group by x'"));
+	}
+
+	@Test
+	public void cacheIsBounded()
+	{
+		String hot = "SELECT a FROM hot ORDER BY a";
+		for (int i = 0; i < CountSQL.MAX_CACHED_SQLS * 3; i++)
+		{
+			CountSQL.create(hot);
+			assertEquals("SELECT count(*) FROM t_" + i, CountSQL.create("SELECT a FROM t_" + i));
+			assertTrue(CountSQL.getCacheSize() <= CountSQL.MAX_CACHED_SQLS + 1);
+		}
+		assertEquals("SELECT count(*) FROM hot", CountSQL.create(hot));
+	}
+}
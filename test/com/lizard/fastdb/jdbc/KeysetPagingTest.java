@@ -0,0 +1,128 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.dialect.Dialect;
+import com.lizard.fastdb.dialect.MySQLDialect;
+
+public class KeysetPagingTest
+{
+	private final Dialect	dialect	= new MySQLDialect();
+
+	@Test
+	public void firstPageOnlyAddsOrderByAndLimit()
+	{
+		List<Object> params = new ArrayList<Object>();
+		params.add(1);
+		String sql = new KeysetPaging("create_time DESC, id DESC").createPageSQL(dialect, "SELECT * FROM t WHERE a = ?", null, params, 10);
+
+		assertEquals("SELECT * FROM t WHERE a = ? ORDER BY create_time DESC, id DESC limit 10", sql);
+		assertEquals(1, params.size());
+	}
+
+	@Test
+	public void seekPredicateIsAppendedToOuterWhere()
+	{
+		Timestamp time = new Timestamp(1000L);
+		List<Object> params = new ArrayList<Object>();
+		params.add(1);
+		String sql = new KeysetPaging("t.create_time DESC, t.id DESC").createPageSQL(dialect,
+				"SELECT * FROM t WHERE a = ? OR b IN (SELECT b FROM s WHERE c = 1)", new Object[] { time, 5L }, params, 10);
+
+		assertEquals("SELECT * FROM t WHERE ( a = ? OR b IN (SELECT b FROM s WHERE c = 1)) AND t.create_time <= ? AND (t.create_time, t.id) < (?, ?)"
+				+ " ORDER BY t.create_time DESC, t.id DESC limit 10", sql);
+		assertArrayEquals(new Object[] { 1, time, time, 5L }, params.toArray());
+	}
+
+	@Test
+	public void seekPredicateWithoutWhereAndMixedDirections()
+	{
+		List<Object> params = new ArrayList<Object>();
+		String sql = new KeysetPaging("name, id DESC").createPageSQL(dialect, "SELECT * FROM t", new Object[] { "x", 5L }, params, 20);
+
+		assertEquals("SELECT * FROM t WHERE name >= ? AND ((name > ?) OR (name = ? AND id < ?)) ORDER BY name ASC, id DESC limit 20", sql);
+		assertArrayEquals(new Object[] { "x", "x", "x", 5L }, params.toArray());
+	}
+
+	@Test
+	public void groupedQueryIsWrappedAndUsesColumnLabels()
+	{
+		List<Object> params = new ArrayList<Object>();
+		String sql = new KeysetPaging("t.`type`").createPageSQL(dialect, "SELECT t.type, count(*) c FROM t GROUP BY t.type", new Object[] { 3L },
+				params, 10);
+
+		assertEquals("SELECT * FROM (SELECT t.type, count(*) c FROM t GROUP BY t.type) keyset_ WHERE type > ? ORDER BY type ASC limit 10", sql);
+		assertArrayEquals(new Object[] { 3L }, params.toArray());
+	}
+
+	@Test
+	public void tokenRoundTripsSortKeys()
+	{
+		KeysetPaging paging = new KeysetPaging("create_time DESC, name, id");
+		Timestamp time = new Timestamp(1234567L);
+		time.setNanos(123456789);
+
+		Object[] keys = paging.decodeToken(paging.encodeToken(new Object[] { time, "a|b:c 中文", 7 }));
+
+		assertArrayEquals(new Object[] { time, "a|b:c 中文", 7L }, keys);
+		assertEquals(null, paging.decodeToken(null));
+	}
+
+	@Test
+	public void tokenOfAnotherOrderByIsRejected()
+	{
+		String token = new KeysetPaging("id").encodeToken(new Object[] { 1L });
+		try
+		{
+			new KeysetPaging("id DESC").decodeToken(token);
+			fail("A token of another order by must be rejected.");
+		}
+		catch (DBException e)
+		{
+			assertEquals("The page token doesn't match the order by [id DESC]!", e.getMessage());
+		}
+
+		try
+		{
+			new KeysetPaging("id").decodeToken(token + "00");
+			fail("A malformed token must be rejected.");
+		}
+		catch (DBException e)
+		{
+			assertEquals("Invalid page token [" + token + "00]!", e.getMessage());
+		}
+	}
+
+	@Test
+	public void invalidSortKeysAreRejected()
+	{
+		try
+		{
+			new KeysetPaging("lower(name)");
+			fail("Only column sort keys are supported.");
+		}
+		catch (DBException e)
+		{
+			// expected
+		}
+
+		try
+		{
+			new KeysetPaging("id").encodeToken(new Object[] { null });
+			fail("A null sort key must be rejected.");
+		}
+		catch (DBException e)
+		{
+			// expected
+		}
+	}
+}
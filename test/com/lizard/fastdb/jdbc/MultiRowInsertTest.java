@@ -0,0 +1,94 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.lizard.fastdb.dialect.Dialect;
+import com.lizard.fastdb.dialect.MySQLDialect;
+
+public class MultiRowInsertTest
+{
+	private final Dialect	dialect	= new MySQLDialect();
+
+	@Test
+	public void singleRowInsertIsRewritten()
+	{
+		MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO t (a, b, c) VALUES (?, now(), ?) ON DUPLICATE KEY UPDATE b = VALUES(b);");
+
+		assertEquals(2, insert.getParameterCount());
+		assertEquals("INSERT INTO t (a, b, c) VALUES (?, now(), ?), (?, now(), ?) ON DUPLICATE KEY UPDATE b = VALUES(b)", insert.getSQL(dialect, 2));
+	}
+
+	@Test
+	public void unsupportedStatementsAreNotRewritten()
+	{
+		assertNull(MultiRowInsert.parse("UPDATE t SET a = ?"));
+		assertNull(MultiRowInsert.parse("INSERT INTO t (a) SELECT a FROM s WHERE b = ?"));
+		assertNull(MultiRowInsert.parse("INSERT INTO t (a) VALUES (1)"));
+		assertNull(MultiRowInsert.parse("INSERT INTO t (a) VALUES (?), (?)"));
+		assertNull(MultiRowInsert.parse("INSERT INTO t (a, b) VALUES (?, 1) ON DUPLICATE KEY UPDATE b = ?"));
+	}
+
+	@Test
+	public void quotedQuestionMarksAreNotParameters()
+	{
+		MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO t (a, b) VALUES (?, 'why?')");
+
+		assertEquals(1, insert.getParameterCount());
+		assertNull(insert.getSQL(new Dialect()
+		{
+			@Override
+			public String getLimitSQL(String sql, int offset, int limit)
+			{
+				return sql;
+			}
+
+			@Override
+			public String getGeneratedKeySQL(Object... params)
+			{
+				return null;
+			}
+
+			@Override
+			public String getTestSQL()
+			{
+				return "SELECT 1";
+			}
+		}, 2));
+	}
+
+	@Test
+	public void rowsAreFlattenedInOrder()
+	{
+		MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO t (a, b) VALUES (?, ?)");
+		Object[][] rows = new Object[][] { { 1, "a" }, { 2, "b" }, { 3, "c" } };
+
+		assertTrue(insert.accepts(rows));
+		assertFalse(insert.accepts(new Object[][] { { 1, "a" }, { 2 } }));
+		assertArrayEquals(new Object[] { 2, "b", 3, "c" }, insert.flatten(rows, 1, 2));
+	}
+
+	@Test
+	public void chunkRowsAreLimited()
+	{
+		MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO t (a, b) VALUES (?, ?)");
+		Object[][] rows = new Object[5000][];
+		for (int i = 0; i < rows.length; i++)
+		{
+			rows[i] = new Object[] { i, "x" };
+		}
+		assertEquals(MultiRowInsert.MAX_ROWS, insert.getChunkRows(dialect, rows, 0, rows.length));
+		assertEquals(10, insert.getChunkRows(dialect, rows, 0, 10));
+
+		// 按最大的一行估算语句长度
+		char[] big = new char[100000];
+		rows[3] = new Object[] { 3, new String(big) };
+		int chunk = insert.getChunkRows(dialect, rows, 0, rows.length);
+		assertTrue(chunk > 1 && chunk * 300000L <= dialect.getMaxMultiRowInsertBytes());
+	}
+}
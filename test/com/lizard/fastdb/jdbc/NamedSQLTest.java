@@ -0,0 +1,141 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.lizard.fastdb.DBException;
+
+public class NamedSQLTest
+{
+	private static Map<String, Object> params(Object... keyValues)
+	{
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < keyValues.length; i += 2)
+		{
+			map.put((String) keyValues[i], keyValues[i + 1]);
+		}
+		return map;
+	}
+
+	@Test
+	public void namedParametersAreReplacedInOrder()
+	{
+		BoundSQL bound = NamedSQL.parse("SELECT * FROM t WHERE a = :a AND b > :b AND c = 'x:y'").bind(params("b", 2, "a", 1));
+
+		assertEquals("SELECT * FROM t WHERE a = ? AND b > ? AND c = 'x:y'", bound.getSQL());
+		assertArrayEquals(new Object[] { 1, 2 }, bound.getParameters());
+	}
+
+	@Test
+	public void inListIsExpandedAndPadded()
+	{
+		BoundSQL bound = NamedSQL.parse("SELECT * FROM t WHERE id IN (:ids) AND status = :status").bind(
+				params("ids", Arrays.asList(1, 2, 3), "status", 0));
+
+		assertEquals("SELECT * FROM t WHERE id IN (?, ?, ?, ?) AND status = ?", bound.getSQL());
+		assertArrayEquals(new Object[] { 1, 2, 3, 3, 0 }, bound.getParameters());
+	}
+
+	@Test
+	public void arraysAreExpandedInInList()
+	{
+		BoundSQL bound = NamedSQL.parse("select * from t where id not in( :ids )").bind(params("ids", new int[] { 5, 6 }));
+
+		assertEquals("select * from t where id not in( ?, ? )", bound.getSQL());
+		assertArrayEquals(new Object[] { 5, 6 }, bound.getParameters());
+	}
+
+	@Test
+	public void sameShapeReusesExpandedSQL()
+	{
+		NamedSQL named = NamedSQL.parse("SELECT * FROM t WHERE id IN (:ids)");
+		String a = named.bind(params("ids", Arrays.asList(1, 2, 3))).getSQL();
+		String b = named.bind(params("ids", Arrays.asList(7, 8, 9, 10))).getSQL();
+
+		assertSame(a, b);
+	}
+
+	@Test
+	public void collectionOutsideInListIsBoundAsOneValue()
+	{
+		Integer[] ids = new Integer[] { 1, 2 };
+		List<Integer> list = Arrays.asList(3, 4);
+		BoundSQL bound = NamedSQL.parse("SELECT * FROM t WHERE id = ANY(:ids) OR id IN (:list, 0) OR id IN (:first)").bind(
+				params("ids", ids, "list", list, "first", Collections.singletonList(9)));
+
+		assertEquals("SELECT * FROM t WHERE id = ANY(?) OR id IN (?, 0) OR id IN (?)", bound.getSQL());
+		assertSame(ids, bound.getParameters()[0]);
+		assertSame(list, bound.getParameters()[1]);
+		assertEquals(9, bound.getParameters()[2]);
+	}
+
+	@Test
+	public void bytesAreNotExpanded()
+	{
+		byte[] data = new byte[] { 1, 2, 3 };
+		BoundSQL bound = NamedSQL.parse("SELECT * FROM t WHERE data IN (:data)").bind(params("data", data));
+
+		assertEquals("SELECT * FROM t WHERE data IN (?)", bound.getSQL());
+		assertSame(data, bound.getParameters()[0]);
+	}
+
+	@Test
+	public void emptyInListIsRejected()
+	{
+		try
+		{
+			NamedSQL.parse("SELECT * FROM t WHERE id IN (:ids)").bind(params("ids", new ArrayList<Object>()));
+			fail("An empty IN list must be rejected.");
+		}
+		catch (DBException e)
+		{
+			assertTrue(e.getMessage().contains(":ids"));
+		}
+	}
+
+	@Test
+	public void oversizedInListIsRejected()
+	{
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i <= NamedSQL.MAX_IN_LIST; i++)
+		{
+			ids.add(i);
+		}
+
+		try
+		{
+			NamedSQL.parse("SELECT * FROM t WHERE id IN (:ids)").bind(params("ids", ids));
+			fail("An IN list over the limit must be rejected.");
+		}
+		catch (DBException e)
+		{
+			assertTrue(e.getMessage().contains(":ids"));
+		}
+
+		BoundSQL bound = NamedSQL.parse("SELECT * FROM t WHERE id IN (:ids)").bind(params("ids", ids.subList(0, NamedSQL.MAX_IN_LIST)));
+		assertEquals(NamedSQL.MAX_IN_LIST, bound.getParameters().length);
+	}
+
+	@Test
+	public void paddedSizeIsPowerOfTwoUpToLimit()
+	{
+		assertEquals(1, NamedSQL.paddedSize(0));
+		assertEquals(1, NamedSQL.paddedSize(1));
+		assertEquals(2, NamedSQL.paddedSize(2));
+		assertEquals(4, NamedSQL.paddedSize(3));
+		assertEquals(512, NamedSQL.paddedSize(512));
+		assertEquals(NamedSQL.MAX_IN_LIST, NamedSQL.paddedSize(513));
+	}
+}
@@ -0,0 +1,123 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lizard.fastdb.DBException;
+import com.lizard.fastdb.DBFactory;
+import com.lizard.fastdb.test.StubDriver;
+
+public class ParallelBatchUpdateTest
+{
+	private static final String	NAME	= "parallel-batch-test";
+
+	private JdbcHandler			handler;
+
+	@Before
+	public void setUp()
+	{
+		handler = StubDriver.createDataSource(NAME);
+	}
+
+	@After
+	public void tearDown()
+	{
+		DBFactory.destroy(NAME);
+	}
+
+	private static Object[][] rows(int count)
+	{
+		Object[][] rows = new Object[count][];
+		for (int i = 0; i < count; i++)
+		{
+			rows[i] = new Object[] { i + 1 };
+		}
+		return rows;
+	}
+
+	@Test
+	public void partitionResultsAreMergedInRowOrder()
+	{
+		handler.setBatchSize(3);
+		BatchUpdateResult result = handler.batchUpdate(StubDriver.ECHO_SQL, rows(10), true, 3);
+
+		assertTrue(result.isSuccess());
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }, result.getBatchRows());
+		assertEquals(55, result.getAffectedRows());
+		assertEquals(4, StubDriver.COMMITS.get());
+	}
+
+	@Test
+	public void failedBatchIsNumberedAcrossPartitions()
+	{
+		// 5 个批次分为 [1, 2] 和 [3, 4, 5] 两个分区，第 8 行在第 4 个批次
+		StubDriver.FAILING_VALUES.add(8);
+		handler.setBatchSize(2);
+		BatchUpdateResult result = handler.batchUpdate(StubDriver.ECHO_SQL, rows(10), true, 2);
+
+		assertFalse(result.isSuccess());
+		assertArrayEquals(new int[] { 4 }, result.getErrorBatchs());
+		assertArrayEquals(new int[] { 6, 8 }, result.getErrorRowRanges()[0]);
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, 9, 10 }, result.getBatchRows());
+	}
+
+	@Test
+	public void failedBatchIsRolledBackInItsPartitionOnly()
+	{
+		StubDriver.FAILING_VALUES.add(3);
+		StubDriver.FAILING_VALUES.add(8);
+		handler.setBatchSize(2);
+		BatchUpdateResult result = handler.batchUpdate(StubDriver.ECHO_SQL, rows(10), true, 2);
+
+		// 两个分区各回滚一个批次，其余批次照常提交
+		assertArrayEquals(new int[] { 2, 4 }, result.getErrorBatchs());
+		assertEquals(2, StubDriver.ROLLBACKS.get());
+		assertEquals(3, StubDriver.COMMITS.get());
+		assertEquals(1 + 2 + 5 + 6 + 9 + 10, result.getAffectedRows());
+	}
+
+	@Test
+	public void failedBatchWithoutRollbackKeepsExecutedRows()
+	{
+		StubDriver.FAILING_VALUES.add(8);
+		handler.setBatchSize(2);
+		BatchUpdateResult result = handler.batchUpdate(StubDriver.ECHO_SQL, rows(10), false, 2);
+
+		assertArrayEquals(new int[] { 4 }, result.getErrorBatchs());
+		assertEquals(0, StubDriver.ROLLBACKS.get());
+		assertEquals(55 - 8, result.getAffectedRows());
+		assertEquals(7, result.getBatchRows()[6]);
+	}
+
+	@Test
+	public void interruptWaitsForAllPartitions()
+	{
+		handler.setBatchSize(2);
+		Thread.currentThread().interrupt();
+		try
+		{
+			handler.batchUpdate(StubDriver.ECHO_SQL, rows(10), true, 3);
+			fail("The interrupted batchUpdate must fail.");
+		}
+		catch (DBException e)
+		{
+			// 所有分区都已执行完毕，中断状态保留给调用者
+			assertTrue(Thread.interrupted());
+			assertEquals(5, StubDriver.BATCHES_EXECUTED.get());
+			assertEquals(5, StubDriver.COMMITS.get());
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+	}
+}
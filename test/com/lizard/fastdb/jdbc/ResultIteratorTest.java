@@ -0,0 +1,62 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lizard.fastdb.DBFactory;
+import com.lizard.fastdb.connection.PoolMetrics;
+import com.lizard.fastdb.test.StubDriver;
+
+public class ResultIteratorTest
+{
+	private static final String	NAME	= "result-iterator-test";
+
+	private JdbcHandler			handler;
+
+	@Before
+	public void setUp()
+	{
+		handler = StubDriver.createDataSource(NAME);
+	}
+
+	@After
+	public void tearDown()
+	{
+		DBFactory.destroy(NAME);
+	}
+
+	@Test
+	public void closeReleasesStatementAndConnection()
+	{
+		ResultIterator<Map<String, Object>> it = handler.queryForIterator("SELECT id FROM t");
+		assertEquals(1, PoolMetrics.get(NAME).getActiveConnections());
+
+		assertFalse(it.hasNext());
+		it.close();
+		assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+		assertEquals(0, PoolMetrics.get(NAME).getActiveConnections());
+	}
+
+	@Test
+	public void runtimeFailureReleasesStatementAndConnection()
+	{
+		try
+		{
+			handler.queryForIterator("SELECT crash FROM t");
+			fail("The driver failure must be thrown.");
+		}
+		catch (IllegalStateException e)
+		{
+			// 迭代器创建之前失败，不能泄漏 Statement 和连接
+			assertEquals(0, StubDriver.STATEMENTS_OPEN.get());
+			assertEquals(0, PoolMetrics.get(NAME).getActiveConnections());
+		}
+	}
+}
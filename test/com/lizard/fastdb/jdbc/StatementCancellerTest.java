@@ -0,0 +1,198 @@
+package com.lizard.fastdb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StatementCancellerTest
+{
+	private final AtomicInteger	cancels	= new AtomicInteger();
+	private final AtomicInteger	closes	= new AtomicInteger();
+
+	private Statement newStatement()
+	{
+		return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class }, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				if ("cancel".equals(method.getName()))
+				{
+					cancels.incrementAndGet();
+				}
+				else if ("close".equals(method.getName()))
+				{
+					closes.incrementAndGet();
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void unboundThreadIsNotTracked() throws SQLException
+	{
+		Statement stmt = newStatement();
+		assertSame(stmt, StatementCanceller.track(stmt));
+
+		Callable<Object> task = new Callable<Object>()
+		{
+			public Object call()
+			{
+				return null;
+			}
+		};
+		assertSame(task, StatementCanceller.wrap(task));
+	}
+
+	@Test
+	public void cancelReachesEveryOpenStatement() throws SQLException
+	{
+		StatementCanceller canceller = new StatementCanceller();
+		StatementCanceller previous = canceller.bind();
+		try
+		{
+			StatementCanceller.track(newStatement());
+			Statement closed = StatementCanceller.track(newStatement());
+			StatementCanceller.track(newStatement());
+			StatementCanceller.untrack(closed);
+
+			canceller.cancel();
+			assertEquals(2, cancels.get());
+
+			try
+			{
+				StatementCanceller.track(newStatement());
+				fail("A cancelled operation must not create statements.");
+			}
+			catch (SQLException e)
+			{
+				assertEquals(1, closes.get());
+			}
+		}
+		finally
+		{
+			canceller.unbind(previous);
+		}
+	}
+
+	@Test
+	public void wrappedTaskIsCancelledWithTheOperation() throws Exception
+	{
+		StatementCanceller canceller = new StatementCanceller();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		StatementCanceller previous = canceller.bind();
+		try
+		{
+			executor.submit(StatementCanceller.wrap(new Callable<Object>()
+			{
+				public Object call() throws SQLException
+				{
+					return StatementCanceller.track(newStatement());
+				}
+			})).get();
+
+			canceller.cancel();
+			assertEquals(1, cancels.get());
+
+			// 工作线程执行完毕后不再绑定
+			assertTrue(executor.submit(new Callable<Statement>()
+			{
+				public Statement call() throws SQLException
+				{
+					return StatementCanceller.track(newStatement());
+				}
+			}).get() != null);
+		}
+		finally
+		{
+			canceller.unbind(previous);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void forkedCancellerIsCancelledWithTheOperation() throws SQLException
+	{
+		StatementCanceller canceller = new StatementCanceller();
+		StatementCanceller previous = canceller.bind();
+		StatementCanceller forked;
+		try
+		{
+			forked = StatementCanceller.fork();
+		}
+		finally
+		{
+			canceller.unbind(previous);
+		}
+
+		previous = forked.bind();
+		try
+		{
+			StatementCanceller.track(newStatement());
+			forked.cancel();
+			assertEquals(1, cancels.get());
+		}
+		finally
+		{
+			forked.unbind(previous);
+		}
+
+		canceller = new StatementCanceller();
+		previous = canceller.bind();
+		try
+		{
+			forked = StatementCanceller.fork();
+			StatementCanceller previousForked = forked.bind();
+			try
+			{
+				StatementCanceller.track(newStatement());
+				canceller.cancel();
+				assertEquals(2, cancels.get());
+			}
+			finally
+			{
+				forked.unbind(previousForked);
+			}
+		}
+		finally
+		{
+			canceller.unbind(previous);
+		}
+	}
+
+	@Test
+	public void forkRunInCallerThreadRestoresTheOperation() throws SQLException
+	{
+		StatementCanceller canceller = new StatementCanceller();
+		StatementCanceller previous = canceller.bind();
+		try
+		{
+			// 线程池满时（CallerRunsPolicy）统计语句在当前线程执行
+			StatementCanceller forked = StatementCanceller.fork();
+			StatementCanceller previousForked = forked.bind();
+			assertSame(canceller, previousForked);
+			forked.unbind(previousForked);
+
+			StatementCanceller.track(newStatement());
+			canceller.cancel();
+			assertEquals(1, cancels.get());
+		}
+		finally
+		{
+			canceller.unbind(previous);
+		}
+	}
+}
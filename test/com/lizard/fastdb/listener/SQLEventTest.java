@@ -0,0 +1,38 @@
+package com.lizard.fastdb.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SQLEventTest
+{
+	@Test
+	public void parametersAreSnapshotted()
+	{
+		Object[] params = new Object[] { 1, "a" };
+		SQLEvent event = new SQLEvent("ds", "select * from t where id = ? and name = ?", params);
+		params[0] = 2;
+
+		assertEquals(1, event.getParams()[0]);
+		assertNull(event.getNamedParams());
+	}
+
+	@Test
+	public void namedParametersAreSnapshotted()
+	{
+		Map<String, Object> named = new HashMap<String, Object>();
+		named.put("id", 1);
+		SQLEvent event = new SQLEvent("ds", "select * from t where id = :id", named);
+		named.put("id", 2);
+		named.put("name", "a");
+
+		assertTrue(event.isNamed());
+		assertEquals(1, event.getNamedParams().get("id"));
+		assertEquals(1, event.getNamedParams().size());
+	}
+}
@@ -0,0 +1,36 @@
+package com.lizard.fastdb.stat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SQLFingerprintTest
+{
+	@Test
+	public void literalsAndWhitespaceAreNormalized()
+	{
+		assertEquals("select * from t where id = ? and name = ?", SQLFingerprint.of("SELECT *  FROM t\n WHERE id = 12 AND name = 'a''b'"));
+		assertEquals("select * from t2 where id = ?", SQLFingerprint.of("select * from t2 where id = ? -- comment"));
+	}
+
+	@Test
+	public void repeatedGroupsAreMerged()
+	{
+		assertEquals("select * from t where id in (?)", SQLFingerprint.of("select * from t where id in (1, 2,3)"));
+		assertEquals("insert into t (a, b) values (?)", SQLFingerprint.of("insert into t (a, b) values (?, ?), (?, ?), (?, ?)"));
+	}
+
+	@Test
+	public void cacheIsBounded()
+	{
+		String hot = "select * from hot where id = ?";
+		for (int i = 0; i < SQLFingerprint.MAX_CACHED_SQLS * 3; i++)
+		{
+			SQLFingerprint.of(hot);
+			assertEquals("select * from t_" + i + " where id = ?", SQLFingerprint.of("select * from t_" + i + " where id = 1"));
+			assertTrue(SQLFingerprint.getCacheSize() <= SQLFingerprint.MAX_CACHED_SQLS + 1);
+		}
+		assertEquals("select * from hot where id = ?", SQLFingerprint.of(hot));
+	}
+}
@@ -0,0 +1,55 @@
+package com.lizard.fastdb.stat;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SQLStatisticsTest
+{
+	private static final String	NAME	= "sql-statistics-test";
+
+	@After
+	public void tearDown()
+	{
+		SQLStatistics.remove(NAME);
+	}
+
+	@Test
+	public void executionsAreGroupedByFingerprint()
+	{
+		SQLStatistics statistics = SQLStatistics.get(NAME, 0);
+		statistics.record("select * from t where id = 1", null, System.nanoTime(), 1, null);
+		statistics.record("select * from t where id = 2", null, System.nanoTime(), 1, null);
+		statistics.record("select * from t where id = ?", new Object[] { 3 }, System.nanoTime(), -1, new RuntimeException("failed"));
+
+		assertEquals(1, statistics.getStatementCount());
+		assertEquals(3, statistics.getExecuteCount());
+		assertEquals(1, statistics.getErrorCount());
+
+		SQLStat stat = statistics.getStatements().get(0);
+		assertEquals("select * from t where id = ?", stat.getSql());
+		assertEquals(3, stat.getExecuteCount());
+	}
+
+	@Test
+	public void batchOfStatementsIsNamedByItsFingerprints()
+	{
+		SQLStatistics statistics = SQLStatistics.get(NAME, 0);
+		statistics.recordBatch(new String[] { "delete from a where id = 1", "delete from a where id = 2", "delete from b" }, System.nanoTime(), 3,
+				null);
+
+		assertEquals(1, statistics.getStatementCount());
+		assertEquals("delete from a where id = ?; delete from b", statistics.getStatements().get(0).getSql());
+	}
+
+	@Test
+	public void disabledStatisticsRecordNothing()
+	{
+		SQLStatistics.DISABLED.record("select 1", null, System.nanoTime(), 1, null);
+		SQLStatistics.DISABLED.recordBatch(new String[] { "delete from a" }, System.nanoTime(), 1, null);
+
+		assertEquals(0, SQLStatistics.DISABLED.getExecuteCount());
+		assertEquals(0, SQLStatistics.DISABLED.getStatementCount());
+	}
+}
@@ -0,0 +1,418 @@
+package com.lizard.fastdb.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.lizard.fastdb.DBFactory;
+import com.lizard.fastdb.connection.fast.FastConnectionProvider;
+import com.lizard.fastdb.datasource.DataSource;
+import com.lizard.fastdb.jdbc.JdbcHandler;
+import com.lizard.fastdb.test.mysql.MySQLStubDriver;
+
+/**
+ * 测试用的 JDBC 驱动，不连接数据库，记录创建和关闭的连接、语句数量
+ * <p>
+ * URL 为 jdbc:fastdb-stub:任意名称；executeUpdate 返回1，executeBatch 每条返回1，executeQuery 返回空结果集。
+ * <p>
+ * 批量执行时，第一个参数在 {@link #FAILING_VALUES} 中的行执行失败，executeBatch 抛出 BatchUpdateException；
+ * SQL 中含有 echo 时，每行的更新计数为该行第一个参数的值。语句的 setMaxRows、setFetchSize 等设置由对应的 get 方法返回。
+ * <p>
+ * SQL 中含有 block 时，执行语句一直等待到 Statement.cancel()（最多10秒），然后抛出 SQLException；
+ * SQL 中含有 crash 时，执行语句抛出 IllegalStateException，模拟驱动的运行时异常。
+ */
+public class StubDriver implements Driver
+{
+	public static final String			URL						= "jdbc:fastdb-stub:test";
+
+	/**
+	 * 含有 echo 的更新语句：每行的更新计数为该行的参数值
+	 */
+	public static final String			ECHO_SQL				= "UPDATE t SET echo = 1 WHERE id = ?";
+
+	public static final AtomicInteger	CONNECTIONS_CREATED		= new AtomicInteger();
+	public static final AtomicInteger	CONNECTIONS_CLOSED		= new AtomicInteger();
+	public static final AtomicInteger	STATEMENTS_PREPARED		= new AtomicInteger();
+	public static final AtomicInteger	STATEMENTS_OPEN			= new AtomicInteger();
+	public static final AtomicInteger	COMMITS					= new AtomicInteger();
+	public static final AtomicInteger	ROLLBACKS				= new AtomicInteger();	// 撤销了未提交修改的回滚次数
+	public static final AtomicInteger	BATCHES_EXECUTED		= new AtomicInteger();
+	public static final AtomicInteger	BLOCKED					= new AtomicInteger();	// 正在等待取消的语句数
+	public static final AtomicInteger	CANCELS					= new AtomicInteger();
+	public static final AtomicInteger	LAST_FETCH_SIZE			= new AtomicInteger();
+
+	/**
+	 * 批量执行时，第一个参数为这些值的行执行失败
+	 */
+	public static final Set<Object>		FAILING_VALUES			= new CopyOnWriteArraySet<Object>();
+
+	static
+	{
+		try
+		{
+			DriverManager.registerDriver(new StubDriver());
+		}
+		catch (SQLException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * 清零全部计数
+	 */
+	public static void reset()
+	{
+		CONNECTIONS_CREATED.set(0);
+		CONNECTIONS_CLOSED.set(0);
+		STATEMENTS_PREPARED.set(0);
+		STATEMENTS_OPEN.set(0);
+		COMMITS.set(0);
+		ROLLBACKS.set(0);
+		BATCHES_EXECUTED.set(0);
+		BLOCKED.set(0);
+		CANCELS.set(0);
+		LAST_FETCH_SIZE.set(0);
+		FAILING_VALUES.clear();
+	}
+
+	/**
+	 * 创建使用 {@link FastConnectionProvider} 的数据源配置，驱动类名决定数据源的方言
+	 *
+	 * @param name 数据源名称
+	 * @param driverClass 本驱动或其子类
+	 * @return 数据源配置
+	 */
+	public static DataSource newDataSource(String name, Class<? extends StubDriver> driverClass)
+	{
+		DataSource ds = new DataSource(name, driverClass.getName(), URL, "u", "p");
+		ds.setConnectionProvider(FastConnectionProvider.class.getName());
+		return ds;
+	}
+
+	/**
+	 * 清零计数，并创建使用本驱动（MySQL 方言）和 {@link FastConnectionProvider} 的数据源，测试结束时由 DBFactory.destroy(name) 销毁
+	 *
+	 * @param name 数据源名称
+	 * @return 数据源的 JdbcHandler
+	 */
+	public static JdbcHandler createDataSource(String name)
+	{
+		reset();
+		return DBFactory.create(newDataSource(name, MySQLStubDriver.class));
+	}
+
+	public Connection connect(String url, Properties info) throws SQLException
+	{
+		if (!acceptsURL(url))
+		{
+			return null;
+		}
+		CONNECTIONS_CREATED.incrementAndGet();
+		return (Connection) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] { Connection.class },
+				new ConnectionHandler());
+	}
+
+	public boolean acceptsURL(String url)
+	{
+		return url != null && url.startsWith("jdbc:fastdb-stub:");
+	}
+
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+	{
+		return new DriverPropertyInfo[0];
+	}
+
+	public int getMajorVersion()
+	{
+		return 1;
+	}
+
+	public int getMinorVersion()
+	{
+		return 0;
+	}
+
+	public boolean jdbcCompliant()
+	{
+		return false;
+	}
+
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException
+	{
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	/**
+	 * 方法返回值的默认值，基本类型不能返回null
+	 */
+	private static Object defaultValue(Class<?> type)
+	{
+		if (type == boolean.class)
+		{
+			return Boolean.FALSE;
+		}
+		if (type == int.class)
+		{
+			return Integer.valueOf(0);
+		}
+		if (type == long.class)
+		{
+			return Long.valueOf(0);
+		}
+		if (type.isPrimitive() && type != void.class)
+		{
+			return Integer.valueOf(0);
+		}
+		return null;
+	}
+
+	private static class ConnectionHandler implements InvocationHandler
+	{
+		private boolean	closed		= false;
+		private boolean	autoCommit	= true;
+		private boolean	uncommitted	= false;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			String name = method.getName();
+			if ("close".equals(name))
+			{
+				if (!closed)
+				{
+					closed = true;
+					CONNECTIONS_CLOSED.incrementAndGet();
+				}
+				return null;
+			}
+			if ("isClosed".equals(name))
+			{
+				return closed;
+			}
+			if ("isValid".equals(name))
+			{
+				return !closed;
+			}
+			if ("getAutoCommit".equals(name))
+			{
+				return autoCommit;
+			}
+			if ("setAutoCommit".equals(name))
+			{
+				autoCommit = (Boolean) args[0];
+				return null;
+			}
+			if ("commit".equals(name))
+			{
+				COMMITS.incrementAndGet();
+				uncommitted = false;
+				return null;
+			}
+			if ("rollback".equals(name) && args == null)
+			{
+				if (uncommitted)
+				{
+					ROLLBACKS.incrementAndGet();
+					uncommitted = false;
+				}
+				return null;
+			}
+			if ("getTransactionIsolation".equals(name))
+			{
+				return Connection.TRANSACTION_READ_COMMITTED;
+			}
+			if ("equals".equals(name))
+			{
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name))
+			{
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(name))
+			{
+				return "StubConnection";
+			}
+			if ("createStatement".equals(name) || "prepareStatement".equals(name) || "prepareCall".equals(name))
+			{
+				if (!"createStatement".equals(name))
+				{
+					STATEMENTS_PREPARED.incrementAndGet();
+				}
+				STATEMENTS_OPEN.incrementAndGet();
+				Class<?> type = "prepareCall".equals(name) ? CallableStatement.class : "prepareStatement".equals(name) ? PreparedStatement.class
+						: Statement.class;
+				return Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] { type }, new StatementHandler(this,
+						args != null && args[0] instanceof String ? (String) args[0] : null));
+			}
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static class StatementHandler implements InvocationHandler
+	{
+		private final ConnectionHandler	owner;
+		private final boolean			echo;
+		private final boolean			block;
+		private final boolean			crash;
+		private final CountDownLatch	cancelled	= new CountDownLatch(1);
+		private boolean					closed		= false;
+		private Object					firstParam	= null;
+		private final List<Object>		batches		= new ArrayList<Object>();
+		private final Map<String, Object>	settings	= new HashMap<String, Object>();	// setMaxRows 等的设置值
+
+		StatementHandler(ConnectionHandler owner, String sql)
+		{
+			this.owner = owner;
+			this.echo = sql != null && sql.contains("echo");
+			this.block = sql != null && sql.contains("block");
+			this.crash = sql != null && sql.contains("crash");
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			String name = method.getName();
+			if ("close".equals(name))
+			{
+				if (!closed)
+				{
+					closed = true;
+					STATEMENTS_OPEN.decrementAndGet();
+				}
+				return null;
+			}
+			if ("isClosed".equals(name))
+			{
+				return closed;
+			}
+			if ("cancel".equals(name))
+			{
+				CANCELS.incrementAndGet();
+				cancelled.countDown();
+				return null;
+			}
+			if (closed && !"equals".equals(name) && !"hashCode".equals(name))
+			{
+				throw new SQLException("Statement is closed!");
+			}
+			if (block && name.startsWith("execute"))
+			{
+				BLOCKED.incrementAndGet();
+				cancelled.await(10, TimeUnit.SECONDS);
+				throw new SQLException("Statement is cancelled!");
+			}
+			if (crash && name.startsWith("execute"))
+			{
+				throw new IllegalStateException("Driver crashed!");
+			}
+			if (name.startsWith("set") && args != null && args.length > 1 && Integer.valueOf(1).equals(args[0]))
+			{
+				firstParam = "setNull".equals(name) ? null : args[1];
+				return null;
+			}
+			if ("setFetchSize".equals(name))
+			{
+				LAST_FETCH_SIZE.set((Integer) args[0]);
+			}
+			if (name.startsWith("set") && args != null && args.length == 1)
+			{
+				settings.put(name.substring(3), args[0]);
+				return null;
+			}
+			if (name.startsWith("get") && args == null && settings.containsKey(name.substring(3)))
+			{
+				return settings.get(name.substring(3));
+			}
+			if ("addBatch".equals(name))
+			{
+				batches.add(firstParam);
+				return null;
+			}
+			if ("clearBatch".equals(name))
+			{
+				batches.clear();
+				return null;
+			}
+			if ("executeBatch".equals(name))
+			{
+				BATCHES_EXECUTED.incrementAndGet();
+				return executeBatch();
+			}
+			if ("executeUpdate".equals(name))
+			{
+				return 1;
+			}
+			if ("getUpdateCount".equals(name))
+			{
+				return -1;
+			}
+			if ("executeQuery".equals(name) || "getResultSet".equals(name) || "getGeneratedKeys".equals(name))
+			{
+				return Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler()
+				{
+					public Object invoke(Object rs, Method m, Object[] a)
+					{
+						return defaultValue(m.getReturnType());
+					}
+				});
+			}
+			if ("equals".equals(name))
+			{
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name))
+			{
+				return System.identityHashCode(proxy);
+			}
+			return defaultValue(method.getReturnType());
+		}
+
+		private int[] executeBatch() throws BatchUpdateException
+		{
+			int[] counts = new int[batches.size()];
+			owner.uncommitted = !owner.autoCommit;
+			try
+			{
+				for (int i = 0; i < counts.length; i++)
+				{
+					Object param = batches.get(i);
+					if (FAILING_VALUES.contains(param))
+					{
+						int[] executed = new int[i + 1];
+						System.arraycopy(counts, 0, executed, 0, i);
+						executed[i] = Statement.EXECUTE_FAILED;
+						throw new BatchUpdateException("Row " + param + " failed", executed);
+					}
+					counts[i] = (echo && param instanceof Integer) ? ((Integer) param).intValue() : 1;
+				}
+				return counts;
+			}
+			finally
+			{
+				batches.clear();
+			}
+		}
+	}
+}
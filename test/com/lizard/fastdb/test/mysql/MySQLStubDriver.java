@@ -0,0 +1,10 @@
+package com.lizard.fastdb.test.mysql;
+
+import com.lizard.fastdb.test.StubDriver;
+
+/**
+ * 类名中含有 mysql 的 {@link StubDriver}，数据源据此使用 MySQL 方言
+ */
+public class MySQLStubDriver extends StubDriver
+{
+}
@@ -0,0 +1,10 @@
+package com.lizard.fastdb.test.oracle;
+
+import com.lizard.fastdb.test.StubDriver;
+
+/**
+ * 类名中含有 oracle 的 {@link StubDriver}，数据源据此使用 Oracle 方言
+ */
+public class OracleStubDriver extends StubDriver
+{
+}
@@ -0,0 +1,100 @@
+package org.apache.commons.dbutils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.Test;
+
+public class ParameterTypeCacheTest {
+
+    private int metadataCalls;
+
+    /**
+     * A statement whose metadata describes every parameter as
+     * <code>type</code>, or fails when <code>type</code> is null.
+     */
+    private PreparedStatement statement(final Integer type, final int paramCount) {
+        final ParameterMetaData pmd = (ParameterMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ParameterMetaData.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getParameterCount".equals(method.getName()) ? paramCount : type;
+                    }
+                });
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        if ("getParameterMetaData".equals(method.getName())) {
+                            metadataCalls++;
+                            if (type == null) {
+                                throw new SQLException("Parameter metadata not available");
+                            }
+                            return pmd;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void metadataIsReadOncePerSQL() {
+        ParameterTypeCache cache = new ParameterTypeCache();
+        PreparedStatement stmt = statement(Types.NUMERIC, 2);
+
+        assertNull(cache.getTypes(stmt, "sql", new Object[] { 1, 2 }));
+        assertEquals(0, metadataCalls);
+
+        assertArrayEquals(new int[] { Types.NUMERIC, Types.NUMERIC }, cache.getTypes(stmt, "sql", new Object[] { 1, null }));
+        cache.getTypes(stmt, "sql", new Object[] { null, null });
+        assertEquals(1, metadataCalls);
+    }
+
+    @Test
+    public void brokenMetadataOnlyAffectsItsSQL() {
+        ParameterTypeCache cache = new ParameterTypeCache();
+
+        int[] types = cache.getTypes(statement(null, 2), "broken", new Object[] { null, null });
+        assertArrayEquals(new int[] { Types.VARCHAR, Types.VARCHAR }, types);
+        cache.getTypes(statement(null, 2), "broken", new Object[] { null, null });
+        assertEquals(1, metadataCalls);
+
+        types = cache.getTypes(statement(Types.INTEGER, 1), "other", new Object[] { null });
+        assertArrayEquals(new int[] { Types.INTEGER }, types);
+    }
+
+    @Test
+    public void valueClassesAreUsedWhenMetadataIsBroken() {
+        ParameterTypeCache cache = new ParameterTypeCache();
+        PreparedStatement stmt = statement(null, 3);
+
+        cache.getTypes(stmt, "sql", new Object[] { 1L, new java.sql.Timestamp(0L), "a" });
+        int[] types = cache.getTypes(stmt, "sql", new Object[] { null, null, new Object() });
+
+        assertEquals(Types.BIGINT, types[0]);
+        assertEquals(Types.TIMESTAMP, types[1]);
+    }
+
+    @Test
+    public void newStatementsAreCachedOverTheLimit() {
+        ParameterTypeCache cache = new ParameterTypeCache();
+        PreparedStatement stmt = statement(Types.INTEGER, 1);
+        for (int i = 0; i < ParameterTypeCache.MAX_CACHED_STATEMENTS * 2; i++) {
+            cache.getTypes(stmt, "sql" + i, new Object[] { null });
+        }
+        assertTrue(cache.size() <= ParameterTypeCache.MAX_CACHED_STATEMENTS);
+
+        metadataCalls = 0;
+        cache.getTypes(stmt, "new", new Object[] { null });
+        cache.getTypes(stmt, "new", new Object[] { null });
+        assertEquals(1, metadataCalls);
+    }
+}